@@ -65,7 +65,7 @@ public class AllData extends BaseMessage implements Identifiable {
 	 *         not be parsed
 	 */
 	public long getDataLength() {
-		return FcpUtils.safeParseLong(getField("DataLength"));
+		return getParsedFields(Fields::new).dataLength;
 	}
 
 	/**
@@ -75,7 +75,7 @@ public class AllData extends BaseMessage implements Identifiable {
 	 *         1970 UTC), or <code>-1</code> if the time could not be parsed
 	 */
 	public long getStartupTime() {
-		return FcpUtils.safeParseLong(getField("StartupTime"));
+		return getParsedFields(Fields::new).startupTime;
 	}
 
 	/**
@@ -85,7 +85,7 @@ public class AllData extends BaseMessage implements Identifiable {
 	 *         1970 UTC), or <code>-1</code> if the time could not be parsed
 	 */
 	public long getCompletionTime() {
-		return FcpUtils.safeParseLong(getField("CompletionTime"));
+		return getParsedFields(Fields::new).completionTime;
 	}
 
 	/**
@@ -108,4 +108,21 @@ public class AllData extends BaseMessage implements Identifiable {
 		return getField("Metadata.ContentType");
 	}
 
+	/**
+	 * The parsed numeric fields of an “AllData” message.
+	 */
+	private static class Fields {
+
+		private final long dataLength;
+		private final long startupTime;
+		private final long completionTime;
+
+		private Fields(FcpMessage fcpMessage) {
+			dataLength = FcpUtils.safeParseLong(fcpMessage.getField("DataLength"));
+			startupTime = FcpUtils.safeParseLong(fcpMessage.getField("StartupTime"));
+			completionTime = FcpUtils.safeParseLong(fcpMessage.getField("CompletionTime"));
+		}
+
+	}
+
 }
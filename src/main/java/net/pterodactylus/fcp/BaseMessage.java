@@ -18,6 +18,7 @@
 package net.pterodactylus.fcp;
 
 import java.util.Map;
+import java.util.function.Function;
 
 /**
  * A basic message abstraction that wraps a received FCP message.
@@ -29,6 +30,9 @@ public class BaseMessage {
 	/** The received message, wrapped here. */
 	private final FcpMessage receivedMessage;
 
+	/** The fields parsed by a subclass, created on first use. */
+	private volatile ParsedFields<?> parsedFields;
+
 	/**
 	 * Creates a new base message that wraps the given message.
 	 *
@@ -70,4 +74,76 @@ public class BaseMessage {
 		return receivedMessage.getFields();
 	}
 
+	/**
+	 * Returns the fields from the received message below the given prefix,
+	 * without the prefix.
+	 *
+	 * @see FcpMessage#subtree(String)
+	 * @param prefix
+	 *            The prefix of the field names, without the trailing dot
+	 * @return The fields below the given prefix
+	 */
+	public Map<String, String> subtree(String prefix) {
+		return receivedMessage.subtree(prefix);
+	}
+
+	/**
+	 * Returns the fields from the received message below the given prefix,
+	 * with their complete names.
+	 *
+	 * @see FcpMessage#getFields(String)
+	 * @param prefix
+	 *            The prefix of the field names, without the trailing dot
+	 * @return The fields below the given prefix
+	 */
+	public Map<String, String> getFields(String prefix) {
+		return receivedMessage.getFields(prefix);
+	}
+
+	//
+	// PACKAGE-PRIVATE METHODS
+	//
+
+	/**
+	 * Returns the fields of the received message as parsed by the given
+	 * parser. The parser is only called on first use, and again if a field of
+	 * the received message has been changed since, so subclasses can parse
+	 * their fields into primitive values once instead of in every getter.
+	 *
+	 * @param parser
+	 *            The parser for the fields; must always return the same type
+	 * @param <T>
+	 *            The type of the parsed fields
+	 * @return The parsed fields
+	 */
+	@SuppressWarnings("unchecked")
+	<T> T getParsedFields(Function<FcpMessage, T> parser) {
+		ParsedFields<?> parsedFields = this.parsedFields;
+		int modificationCount = receivedMessage.getModificationCount();
+		if ((parsedFields == null) || (parsedFields.modificationCount != modificationCount)) {
+			parsedFields = new ParsedFields<>(parser.apply(receivedMessage), modificationCount);
+			this.parsedFields = parsedFields;
+		}
+		return (T) parsedFields.fields;
+	}
+
+	/**
+	 * Parsed fields together with the modification count of the received
+	 * message they were parsed from.
+	 *
+	 * @param <T>
+	 *            The type of the parsed fields
+	 */
+	private static class ParsedFields<T> {
+
+		private final T fields;
+		private final int modificationCount;
+
+		private ParsedFields(T fields, int modificationCount) {
+			this.fields = fields;
+			this.modificationCount = modificationCount;
+		}
+
+	}
+
 }
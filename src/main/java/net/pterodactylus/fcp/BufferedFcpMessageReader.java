@@ -0,0 +1,222 @@
+package net.pterodactylus.fcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * {@link FcpMessageReader} implementation that reads from an
+ * {@link InputStream} in bulk. Bytes are read into a single buffer that is
+ * reused for all lines; line terminators are searched in the buffer, and
+ * field names and values are decoded directly from the buffer, without
+ * creating an intermediate string for the complete line.
+ * <p>
+ * Lines can be terminated by ‘\r’, ‘\n’, or ‘\r\n’.
+ */
+public class BufferedFcpMessageReader implements FcpMessageReader {
+
+	/** The default size of the read buffer. */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/** The input stream to read from. */
+	private final InputStream inputStream;
+
+	/** The parser for the lines of a message. */
+	private final FcpLineParser lineParser = new FcpLineParser();
+
+	/** The input stream for payloads. */
+	private final InputStream payloadInputStream = new PayloadInputStream();
+
+	/** The read buffer; grows if a single line does not fit into it. */
+	private byte[] buffer;
+
+	/** The index of the next unprocessed byte in {@link #buffer}. */
+	private int position;
+
+	/** The index after the last valid byte in {@link #buffer}. */
+	private int limit;
+
+	/** Whether the last line was terminated by ‘\r’. */
+	private boolean skipLinefeed;
+
+	/** Whether the input stream has reached its end. */
+	private boolean endOfStream;
+
+	/**
+	 * Creates a new message reader using a buffer of
+	 * {@link #DEFAULT_BUFFER_SIZE} bytes.
+	 *
+	 * @param inputStream The input stream to read from
+	 */
+	public BufferedFcpMessageReader(InputStream inputStream) {
+		this(inputStream, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a new message reader.
+	 *
+	 * @param inputStream The input stream to read from
+	 * @param bufferSize The initial size of the read buffer
+	 */
+	public BufferedFcpMessageReader(InputStream inputStream, int bufferSize) {
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("bufferSize must be positive");
+		}
+		this.inputStream = inputStream;
+		this.buffer = new byte[bufferSize];
+	}
+
+	@Override
+	public FcpMessage readMessage() throws IOException {
+		while (true) {
+			int lineEnd = findLineEnd();
+			if (lineEnd == -1) {
+				return null;
+			}
+			int lineStart = position;
+			if (lineEnd < limit) {
+				skipLinefeed = buffer[lineEnd] == '\r';
+				position = lineEnd + 1;
+			} else {
+				skipLinefeed = false;
+				position = lineEnd;
+			}
+			FcpMessage fcpMessage = lineParser.parseLine(buffer, lineStart, lineEnd);
+			if (fcpMessage != null) {
+				return fcpMessage;
+			}
+		}
+	}
+
+	@Override
+	public InputStream getPayloadInputStream() {
+		return payloadInputStream;
+	}
+
+	@Override
+	public boolean isPayloadFollowing() {
+		return lineParser.isPayloadFollowing();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Searches the next line terminator, reading more data if necessary.
+	 *
+	 * @return The index of the line terminator in {@link #buffer}, {@link
+	 * #limit} if the stream ended after an unterminated line, or {@code -1}
+	 * if the stream ended and there is no more data
+	 * @throws IOException if an I/O error occurs
+	 */
+	private int findLineEnd() throws IOException {
+		int index = position;
+		while (true) {
+			while (index < limit) {
+				byte nextByte = buffer[index];
+				if ((nextByte == '\n') || (nextByte == '\r')) {
+					return index;
+				}
+				index++;
+			}
+			if (endOfStream) {
+				return (position < limit) ? limit : -1;
+			}
+			int scanned = index - position;
+			fill();
+			index = position + scanned;
+		}
+	}
+
+	/**
+	 * Moves the unprocessed bytes to the start of the buffer (enlarging it if
+	 * it is full) and reads more bytes from the input stream.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void fill() throws IOException {
+		if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+		}
+		if (limit == buffer.length) {
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		}
+		int read = inputStream.read(buffer, limit, buffer.length - limit);
+		if (read == -1) {
+			endOfStream = true;
+		} else {
+			limit += read;
+		}
+	}
+
+	/**
+	 * Removes a linefeed that is left over from a “\r\n” terminator of the
+	 * last line before payload bytes are handed out.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	private void skipPendingLinefeed() throws IOException {
+		if (!skipLinefeed) {
+			return;
+		}
+		skipLinefeed = false;
+		if ((position == limit) && !endOfStream) {
+			fill();
+		}
+		if ((position < limit) && (buffer[position] == '\n')) {
+			position++;
+		}
+	}
+
+	/**
+	 * Input stream that delivers the bytes remaining in the buffer first,
+	 * and then reads directly from the underlying input stream.
+	 */
+	private class PayloadInputStream extends InputStream {
+
+		@Override
+		public int read() throws IOException {
+			skipPendingLinefeed();
+			if ((position == limit) && !endOfStream) {
+				fill();
+			}
+			if (position == limit) {
+				return -1;
+			}
+			return buffer[position++] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if (length == 0) {
+				return 0;
+			}
+			skipPendingLinefeed();
+			if (position < limit) {
+				int copied = Math.min(length, limit - position);
+				System.arraycopy(buffer, position, bytes, offset, copied);
+				position += copied;
+				return copied;
+			}
+			if (endOfStream) {
+				return -1;
+			}
+			return inputStream.read(bytes, offset, length);
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (limit - position) + inputStream.available();
+		}
+
+		@Override
+		public void close() {
+			/* the underlying stream stays open. */
+		}
+
+	}
+
+}
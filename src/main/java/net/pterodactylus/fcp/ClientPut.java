@@ -17,6 +17,11 @@
 
 package net.pterodactylus.fcp;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
+import net.pterodactylus.fcp.io.FilePayloadInputStream;
+
 /**
  * A “ClientPut” requests inserts a single file into freenet, either uploading
  * it directly with this messge ({@link UploadFrom#direct}), uploading it from
@@ -237,6 +242,23 @@ public class ClientPut extends FcpMessage {
 		setField("DataLength", String.valueOf(dataLength));
 	}
 
+	/**
+	 * Sets the payload of this message to the content of the given file and
+	 * sets the data length accordingly. The file is not read until the
+	 * message is sent; connections that support it transfer the file straight
+	 * into the socket.
+	 *
+	 * @param path
+	 *            The file to upload
+	 * @throws IOException
+	 *             if the size of the file can not be determined
+	 */
+	public void setData(Path path) throws IOException {
+		FilePayloadInputStream filePayloadInputStream = new FilePayloadInputStream(path);
+		setPayloadInputStream(filePayloadInputStream);
+		setDataLength(filePayloadInputStream.getLength());
+	}
+
 	/**
 	 * Sets the name of the file to upload the data from.
 	 *
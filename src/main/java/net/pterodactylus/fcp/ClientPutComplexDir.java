@@ -17,9 +17,7 @@
 
 package net.pterodactylus.fcp;
 
-import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.SequenceInputStream;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -210,7 +208,8 @@ public class ClientPutComplexDir extends FcpMessage {
 	 *            The file entry to add
 	 */
 	public void addFileEntry(FileEntry fileEntry) {
-		fileEntry.getFields().forEach((key, value) -> setField("Files." + fileIndex + "." + key, value));
+		String prefix = "Files." + fileIndex + ".";
+		fileEntry.getFields().forEach((key, value) -> setField(prefix.concat(key), value));
 		directFileInputStreams.add(fileEntry.getInputStream());
 		fileIndex++;
 	}
@@ -229,13 +228,19 @@ public class ClientPutComplexDir extends FcpMessage {
 
 	/**
 	 * {@inheritDoc}
+	 * <p>
+	 * The payload of this message consists of the contents of all
+	 * {@link FileEntry}s that were added using
+	 * {@link #addFileEntry(FileEntry)}.
 	 */
 	@Override
-	public void write(OutputStream outputStream) throws IOException {
-		/* create payload stream. */
-		super.setPayloadInputStream(new SequenceInputStream(Collections.enumeration(directFileInputStreams)));
-		/* write out all the fields. */
-		super.write(outputStream);
+	public InputStream getPayloadInputStream() {
+		return new SequenceInputStream(Collections.enumeration(directFileInputStreams));
+	}
+
+	@Override
+	List<InputStream> getPayloadParts() {
+		return Collections.unmodifiableList(directFileInputStreams);
 	}
 
 }
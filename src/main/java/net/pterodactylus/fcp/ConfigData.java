@@ -37,6 +37,16 @@ public class ConfigData extends BaseMessage {
 		super(receivedMessage);
 	}
 
+	/**
+	 * Returns the identifier of the request this message answers, if the
+	 * request had one.
+	 *
+	 * @return The identifier of the request, or {@code null}
+	 */
+	public String getIdentifier() {
+		return getField("Identifier");
+	}
+
 	/**
 	 * Returns the current value of the given option.
 	 *
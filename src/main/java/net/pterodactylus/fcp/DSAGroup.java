@@ -18,6 +18,7 @@
 package net.pterodactylus.fcp;
 
 import java.security.interfaces.DSAParams;
+import java.util.Objects;
 
 /**
  * Container for the DSA group of a peer. A DSA group consists of a base
@@ -81,4 +82,28 @@ public class DSAGroup {
 		return subprime;
 	}
 
+	//
+	// OBJECT METHODS
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(Object object) {
+		if (!(object instanceof DSAGroup)) {
+			return false;
+		}
+		DSAGroup dsaGroup = (DSAGroup) object;
+		return Objects.equals(base, dsaGroup.base) && Objects.equals(prime, dsaGroup.prime) && Objects.equals(subprime, dsaGroup.subprime);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode() {
+		return Objects.hash(base, prime, subprime);
+	}
+
 }
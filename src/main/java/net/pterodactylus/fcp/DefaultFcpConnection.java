@@ -17,22 +17,29 @@
 
 package net.pterodactylus.fcp;
 
+import java.io.ByteArrayInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.channels.Channels;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.google.common.io.ByteStreams;
+import net.pterodactylus.fcp.FcpMessageDispatcher.PayloadSource;
+import net.pterodactylus.fcp.io.SpillManager;
 import net.pterodactylus.fcp.io.TempInputStream;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
 
 /**
  * Default {@link FcpConnection} implementation.
@@ -48,6 +55,27 @@ public class DefaultFcpConnection implements FcpConnection {
 	/** Listener management. */
 	private final FcpListenerManager fcpListenerManager = new FcpListenerManager(this);
 
+	/** Dispatches received messages to the listeners. */
+	private final FcpMessageDispatcher messageDispatcher = new FcpMessageDispatcher(fcpListenerManager);
+
+	/** The sinks for payloads of “AllData” messages. */
+	private final PayloadSinkRegistry payloadSinkRegistry = new PayloadSinkRegistry();
+
+	/** Reads payloads directly from the node while dispatching a message. */
+	private final PayloadSource directPayloadSource = new PayloadSource() {
+
+		@Override
+		public InputStream getPayload(FcpMessage fcpMessage, long dataLength) throws IOException {
+			return getInputStream(fcpMessage, dataLength);
+		}
+
+		@Override
+		public void discardPayload(FcpMessage fcpMessage, long dataLength) throws IOException {
+			DefaultFcpConnection.this.discardPayload(fcpMessage, dataLength);
+		}
+
+	};
+
 	/** The address of the node. */
 	private final InetAddress address;
 
@@ -63,11 +91,29 @@ public class DefaultFcpConnection implements FcpConnection {
 	/** The output stream to the node. */
 	private OutputStream remoteOutputStream;
 
+	/** Creates the message reader for a new connection. */
+	private Function<? super InputStream, ? extends FcpMessageReader> messageReaderFactory = BufferedFcpMessageReader::new;
+
+	/** The reader for messages from the node. */
+	private FcpMessageReader messageReader;
+
+	/** The spill manager for received payloads. */
+	private volatile SpillManager spillManager = SpillManager.getDefault();
+
+	/** The pipeline that processes received messages, or {@code null}. */
+	private volatile ReceivePipeline receivePipeline;
+
+	/** Serialises the dispatching of messages without a pipeline. */
+	private final Object dispatchLock = new Object();
+
+	/** The tracer for sent and received messages, or {@code null}. */
+	private volatile FcpTracer tracer;
+
 	/** The connection handler. */
 	private FcpConnectionHandler connectionHandler;
 
-	/** Incoming message statistics. */
-	private static final Map<String, Integer> incomingMessageStatistics = Collections.synchronizedMap(new HashMap<>());
+	/** The writer for messages to the node. */
+	private FcpMessageWriter messageWriter;
 
 	/**
 	 * Creates a new FCP connection to the freenet node running on localhost,
@@ -147,6 +193,107 @@ public class DefaultFcpConnection implements FcpConnection {
 		fcpListenerManager.removeListener(fcpListener);
 	}
 
+	@Override
+	public void addFcpListener(String identifier, FcpListener fcpListener) {
+		fcpListenerManager.addListener(identifier, fcpListener);
+	}
+
+	@Override
+	public void removeFcpListener(String identifier, FcpListener fcpListener) {
+		fcpListenerManager.removeListener(identifier, fcpListener);
+	}
+
+	@Override
+	public boolean addPayloadSink(String identifier, PayloadSink payloadSink) {
+		payloadSinkRegistry.add(identifier, payloadSink);
+		return true;
+	}
+
+	@Override
+	public void removePayloadSink(String identifier) {
+		payloadSinkRegistry.remove(identifier);
+	}
+
+	@Override
+	public <T> boolean registerMessageDecoder(String messageName, FcpMessageDecoder<? extends T> messageDecoder, Consumer<? super T> messageConsumer) {
+		messageDispatcher.registerMessageDecoder(messageName, messageDecoder, messageConsumer);
+		return true;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Sets the factory that creates the {@link FcpMessageReader} for the
+	 * input stream of the node. The factory is used by the next call to
+	 * {@link #connect()}.
+	 *
+	 * @param messageReaderFactory
+	 *            The message reader factory
+	 */
+	public synchronized void setMessageReaderFactory(Function<? super InputStream, ? extends FcpMessageReader> messageReaderFactory) {
+		this.messageReaderFactory = messageReaderFactory;
+	}
+
+	/**
+	 * Sets the spill manager that decides whether received payloads are kept
+	 * in memory or stored in temporary files. Unless set, the
+	 * {@link SpillManager#getDefault() default spill manager} is used.
+	 *
+	 * @param spillManager
+	 *            The spill manager for received payloads
+	 */
+	public void setSpillManager(SpillManager spillManager) {
+		this.spillManager = spillManager;
+	}
+
+	/**
+	 * Sets the pipeline that decodes received messages and notifies the
+	 * listeners. Without a pipeline, which is the default, this happens on
+	 * the thread that reads from the node. With a pipeline, that thread only
+	 * reads messages and their payloads, and hands them to the pipeline.
+	 * The message reader must be able to tell whether a payload follows a
+	 * message (see {@link FcpMessageReader#isPayloadFollowing()}).
+	 *
+	 * @param receivePipeline
+	 *            The pipeline for received messages, or {@code null} to
+	 *            process messages on the reading thread
+	 */
+	public void setReceivePipeline(ReceivePipeline receivePipeline) {
+		this.receivePipeline = receivePipeline;
+	}
+
+	/**
+	 * Sets the coalescer for “SimpleProgress” messages. Without a coalescer,
+	 * which is the default, every progress message is handed to the
+	 * listeners. With a {@link #setReceivePipeline(ReceivePipeline) receive
+	 * pipeline}, coalesced progress is delivered by the pipeline once it is
+	 * due; without one, it is delivered on a separate thread, but never
+	 * while the reading thread dispatches a message.
+	 *
+	 * @param progressCoalescer
+	 *            The progress coalescer, or {@code null} to deliver every
+	 *            progress message
+	 */
+	public void setProgressCoalescer(ProgressCoalescer progressCoalescer) {
+		if (progressCoalescer != null) {
+			progressCoalescer.setDispatchExecutor(this::runWithDispatching);
+		}
+		messageDispatcher.setProgressCoalescer(progressCoalescer);
+	}
+
+	/**
+	 * Sets the tracer that records the messages sent to and received from the
+	 * node. Without a tracer, which is the default, messages are not traced.
+	 *
+	 * @param tracer
+	 *            The tracer, or {@code null} to disable tracing
+	 */
+	public void setTracer(FcpTracer tracer) {
+		this.tracer = tracer;
+	}
+
 	@Override
 	public synchronized boolean isClosed() {
 		return connectionHandler == null;
@@ -165,7 +312,9 @@ public class DefaultFcpConnection implements FcpConnection {
 		remoteSocket = new Socket(address, port);
 		remoteInputStream = remoteSocket.getInputStream();
 		remoteOutputStream = remoteSocket.getOutputStream();
-		new Thread(connectionHandler = new FcpConnectionHandler(remoteInputStream)).start();
+		messageReader = messageReaderFactory.apply(remoteInputStream);
+		new Thread(messageWriter = new FcpMessageWriter(remoteOutputStream, this::handleDisconnect)).start();
+		new Thread(connectionHandler = new FcpConnectionHandler(messageReader)).start();
 	}
 
 	@Override
@@ -180,9 +329,39 @@ public class DefaultFcpConnection implements FcpConnection {
 	}
 
 	@Override
-	public synchronized void sendMessage(FcpMessage fcpMessage) throws IOException {
-		logger.fine("sending message: " + fcpMessage.getName());
-		fcpMessage.write(remoteOutputStream);
+	public void sendMessage(FcpMessage fcpMessage) throws IOException {
+		sendMessages(singletonList(fcpMessage));
+	}
+
+	@Override
+	public void sendMessages(Collection<? extends FcpMessage> fcpMessages) throws IOException {
+		FcpUtils.await(enqueueMessages(fcpMessages));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The messages are written by a separate thread; messages that are queued
+	 * while a previous batch is being written are written together.
+	 */
+	@Override
+	public synchronized CompletableFuture<Void> enqueueMessages(Collection<? extends FcpMessage> fcpMessages) {
+		if (messageWriter == null) {
+			CompletableFuture<Void> completion = new CompletableFuture<>();
+			completion.completeExceptionally(new IOException("connection is closed"));
+			return completion;
+		}
+		FcpTracer tracer = this.tracer;
+		boolean logMessages = logger.isLoggable(Level.FINE);
+		if ((tracer != null) || logMessages) {
+			for (FcpMessage fcpMessage : fcpMessages) {
+				FcpTraceRecord.trace(tracer, FcpTraceRecord.Direction.sent, fcpMessage, fcpMessage.getPayloadInputStream() != null);
+				if (logMessages) {
+					logger.log(Level.FINE, "sending message: {0}", fcpMessage.getName());
+				}
+			}
+		}
+		return messageWriter.enqueue(fcpMessages);
 	}
 
 	//
@@ -197,92 +376,29 @@ public class DefaultFcpConnection implements FcpConnection {
 	 *            The received message
 	 */
 	private void handleMessage(FcpMessage fcpMessage) throws IOException{
-		logger.fine("received message: " + fcpMessage.getName());
-		String messageName = fcpMessage.getName();
-		countMessage(messageName);
-		if ("SimpleProgress".equals(messageName)) {
-			fcpListenerManager.fireReceivedSimpleProgress(new SimpleProgress(fcpMessage));
-		} else if ("ProtocolError".equals(messageName)) {
-			fcpListenerManager.fireReceivedProtocolError(new ProtocolError(fcpMessage));
-		} else if ("PersistentGet".equals(messageName)) {
-			fcpListenerManager.fireReceivedPersistentGet(new PersistentGet(fcpMessage));
-		} else if ("PersistentPut".equals(messageName)) {
-			fcpListenerManager.fireReceivedPersistentPut(new PersistentPut(fcpMessage));
-		} else if ("PersistentPutDir".equals(messageName)) {
-			fcpListenerManager.fireReceivedPersistentPutDir(new PersistentPutDir(fcpMessage));
-		} else if ("URIGenerated".equals(messageName)) {
-			fcpListenerManager.fireReceivedURIGenerated(new URIGenerated(fcpMessage));
-		} else if ("EndListPersistentRequests".equals(messageName)) {
-			fcpListenerManager.fireReceivedEndListPersistentRequests(new EndListPersistentRequests(fcpMessage));
-		} else if ("Peer".equals(messageName)) {
-			fcpListenerManager.fireReceivedPeer(new Peer(fcpMessage));
-		} else if ("PeerNote".equals(messageName)) {
-			fcpListenerManager.fireReceivedPeerNote(new PeerNote(fcpMessage));
-		} else if ("StartedCompression".equals(messageName)) {
-			fcpListenerManager.fireReceivedStartedCompression(new StartedCompression(fcpMessage));
-		} else if ("FinishedCompression".equals(messageName)) {
-			fcpListenerManager.fireReceivedFinishedCompression(new FinishedCompression(fcpMessage));
-		} else if ("GetFailed".equals(messageName)) {
-			fcpListenerManager.fireReceivedGetFailed(new GetFailed(fcpMessage));
-		} else if ("PutFetchable".equals(messageName)) {
-			fcpListenerManager.fireReceivedPutFetchable(new PutFetchable(fcpMessage));
-		} else if ("PutSuccessful".equals(messageName)) {
-			fcpListenerManager.fireReceivedPutSuccessful(new PutSuccessful(fcpMessage));
-		} else if ("PutFailed".equals(messageName)) {
-			fcpListenerManager.fireReceivedPutFailed(new PutFailed(fcpMessage));
-		} else if ("DataFound".equals(messageName)) {
-			fcpListenerManager.fireReceivedDataFound(new DataFound(fcpMessage));
-		} else if ("SubscribedUSKUpdate".equals(messageName)) {
-			fcpListenerManager.fireReceivedSubscribedUSKUpdate(new SubscribedUSKUpdate(fcpMessage));
-		} else if ("SubscribedUSK".equals(messageName)) {
-			fcpListenerManager.fireReceivedSubscribedUSK(new SubscribedUSK(fcpMessage));
-		} else if ("IdentifierCollision".equals(messageName)) {
-			fcpListenerManager.fireReceivedIdentifierCollision(new IdentifierCollision(fcpMessage));
-		} else if ("AllData".equals(messageName)) {
-			InputStream payloadInputStream = getInputStream(FcpUtils.safeParseLong(fcpMessage.getField("DataLength")));
-			fcpListenerManager.fireReceivedAllData(new AllData(fcpMessage, payloadInputStream));
-		} else if ("EndListPeerNotes".equals(messageName)) {
-			fcpListenerManager.fireReceivedEndListPeerNotes(new EndListPeerNotes(fcpMessage));
-		} else if ("EndListPeers".equals(messageName)) {
-			fcpListenerManager.fireReceivedEndListPeers(new EndListPeers(fcpMessage));
-		} else if ("SSKKeypair".equals(messageName)) {
-			fcpListenerManager.fireReceivedSSKKeypair(new SSKKeypair(fcpMessage));
-		} else if ("PeerRemoved".equals(messageName)) {
-			fcpListenerManager.fireReceivedPeerRemoved(new PeerRemoved(fcpMessage));
-		} else if ("PersistentRequestModified".equals(messageName)) {
-			fcpListenerManager.fireReceivedPersistentRequestModified(new PersistentRequestModified(fcpMessage));
-		} else if ("PersistentRequestRemoved".equals(messageName)) {
-			fcpListenerManager.fireReceivedPersistentRequestRemoved(new PersistentRequestRemoved(fcpMessage));
-		} else if ("UnknownPeerNoteType".equals(messageName)) {
-			fcpListenerManager.fireReceivedUnknownPeerNoteType(new UnknownPeerNoteType(fcpMessage));
-		} else if ("UnknownNodeIdentifier".equals(messageName)) {
-			fcpListenerManager.fireReceivedUnknownNodeIdentifier(new UnknownNodeIdentifier(fcpMessage));
-		} else if ("FCPPluginReply".equals(messageName)) {
-			InputStream payloadInputStream = getInputStream(FcpUtils.safeParseLong(fcpMessage.getField("DataLength"), 0));
-			fcpListenerManager.fireReceivedFCPPluginReply(new FCPPluginReply(fcpMessage, payloadInputStream));
-		} else if ("PluginInfo".equals(messageName)) {
-			fcpListenerManager.fireReceivedPluginInfo(new PluginInfo(fcpMessage));
-		} else if ("PluginRemoved".equals(messageName)) {
-			fcpListenerManager.fireReceivedPluginRemoved(new PluginRemoved(fcpMessage));
-		} else if ("NodeData".equals(messageName)) {
-			fcpListenerManager.fireReceivedNodeData(new NodeData(fcpMessage));
-		} else if ("TestDDAReply".equals(messageName)) {
-			fcpListenerManager.fireReceivedTestDDAReply(new TestDDAReply(fcpMessage));
-		} else if ("TestDDAComplete".equals(messageName)) {
-			fcpListenerManager.fireReceivedTestDDAComplete(new TestDDAComplete(fcpMessage));
-		} else if ("ConfigData".equals(messageName)) {
-			fcpListenerManager.fireReceivedConfigData(new ConfigData(fcpMessage));
-		} else if ("NodeHello".equals(messageName)) {
-			fcpListenerManager.fireReceivedNodeHello(new NodeHello(fcpMessage));
-		} else if ("CloseConnectionDuplicateClientName".equals(messageName)) {
-			fcpListenerManager.fireReceivedCloseConnectionDuplicateClientName(new CloseConnectionDuplicateClientName(fcpMessage));
-		} else if ("SentFeed".equals(messageName)) {
-			fcpListenerManager.fireReceivedSentFeed(new SentFeed(fcpMessage));
-		} else if ("ReceivedBookmarkFeed".equals(messageName)) {
-			fcpListenerManager.fireReceivedBookmarkFeed(new ReceivedBookmarkFeed(fcpMessage));
-		} else {
-			fcpListenerManager.fireMessageReceived(fcpMessage);
+		FcpTraceRecord.trace(tracer, FcpTraceRecord.Direction.received, fcpMessage, messageReader.isPayloadFollowing());
+		logger.log(Level.FINE, "received message: {0}", fcpMessage.getName());
+		ReceivePipeline receivePipeline = this.receivePipeline;
+		if (receivePipeline == null) {
+			synchronized (dispatchLock) {
+				messageDispatcher.flushDueProgress();
+				messageDispatcher.dispatch(fcpMessage, directPayloadSource);
+			}
+			return;
 		}
+		InputStream payloadInputStream = messageReader.isPayloadFollowing() ? getInputStream(fcpMessage, FcpUtils.safeParseLong(fcpMessage.getField("DataLength"), 0)) : null;
+		receivePipeline.submit(fcpMessage.getField("Identifier"), () -> {
+			try {
+				messageDispatcher.dispatch(fcpMessage, (message, dataLength) -> {
+					if (payloadInputStream == null) {
+						throw new IOException("no payload for " + message.getName());
+					}
+					return payloadInputStream;
+				});
+			} catch (IOException ioe1) {
+				handleDisconnect(ioe1);
+			}
+		}, payloadInputStream, true);
 	}
 
 	/**
@@ -296,10 +412,24 @@ public class DefaultFcpConnection implements FcpConnection {
 		FcpUtils.close(remoteInputStream);
 		FcpUtils.close(remoteOutputStream);
 		FcpUtils.close(remoteSocket);
+		if (messageWriter != null) {
+			messageWriter.close(throwable);
+			messageWriter = null;
+		}
 		if (connectionHandler != null) {
 			connectionHandler.stop();
 			connectionHandler = null;
-			fcpListenerManager.fireConnectionClosed(throwable);
+			payloadSinkRegistry.closeAll();
+			ReceivePipeline receivePipeline = this.receivePipeline;
+			if (receivePipeline == null) {
+				fcpListenerManager.fireConnectionClosed(throwable);
+			} else {
+				try {
+					receivePipeline.submit(null, () -> fcpListenerManager.fireConnectionClosed(throwable), false);
+				} catch (InterruptedIOException iioe1) {
+					/* can not happen, submit does not wait. */
+				}
+			}
 		}
 	}
 
@@ -308,23 +438,53 @@ public class DefaultFcpConnection implements FcpConnection {
 	//
 
 	/**
-	 * Incremets the counter in {@link #incomingMessageStatistics} by
-	 * <cod>1</code> for the given message name.
+	 * Runs the given task so that it does not overlap with the dispatching of
+	 * received messages: as a barrier of the receive pipeline, or, without a
+	 * pipeline, on a new thread that waits until the reading thread is done
+	 * dispatching its current message.
 	 *
-	 * @param name
-	 *            The name of the message to count
+	 * @param task
+	 *            The task to run
 	 */
-	private void countMessage(String name) {
-		int oldValue = 0;
-		if (incomingMessageStatistics.containsKey(name)) {
-			oldValue = incomingMessageStatistics.get(name);
+	private void runWithDispatching(Runnable task) {
+		ReceivePipeline receivePipeline = this.receivePipeline;
+		if (receivePipeline == null) {
+			new Thread(() -> {
+				synchronized (dispatchLock) {
+					task.run();
+				}
+			}).start();
+			return;
+		}
+		try {
+			receivePipeline.submit(null, task, false);
+		} catch (InterruptedIOException iioe1) {
+			/* can not happen, submit does not wait. */
 		}
-		incomingMessageStatistics.put(name, oldValue + 1);
-		logger.finest("count for " + name + ": " + (oldValue + 1));
 	}
 
-	private synchronized InputStream getInputStream(long dataLength) throws IOException {
-		return new TempInputStream(remoteInputStream, dataLength);
+	private InputStream getInputStream(FcpMessage fcpMessage, long dataLength) throws IOException {
+		if (transferToPayloadSink(fcpMessage, dataLength)) {
+			return new ByteArrayInputStream(new byte[0]);
+		}
+		return new TempInputStream(messageReader.getPayloadInputStream(), dataLength, spillManager);
+	}
+
+	private void discardPayload(FcpMessage fcpMessage, long dataLength) throws IOException {
+		if (!transferToPayloadSink(fcpMessage, dataLength)) {
+			FcpUtils.copy(messageReader.getPayloadInputStream(), ByteStreams.nullOutputStream(), dataLength);
+		}
+	}
+
+	private boolean transferToPayloadSink(FcpMessage fcpMessage, long dataLength) throws IOException {
+		PayloadSink payloadSink = payloadSinkRegistry.take(fcpMessage);
+		if (payloadSink == null) {
+			return false;
+		}
+		try (PayloadSink closingPayloadSink = payloadSink) {
+			closingPayloadSink.transferCompletelyFrom(Channels.newChannel(messageReader.getPayloadInputStream()), dataLength);
+		}
+		return true;
 	}
 
 	/**
@@ -332,26 +492,21 @@ public class DefaultFcpConnection implements FcpConnection {
 	 */
 	class FcpConnectionHandler implements Runnable {
 
-		/** The logger. */
-		private final Logger logger = Logger.getLogger(FcpConnectionHandler.class.getName());
-
-		/** The input stream from the node. */
-		private final InputStream remoteInputStream;
+		/** The reader for messages from the node. */
+		private final FcpMessageReader messageReader;
 
 		/** Whether to stop the connection handler. */
 		private boolean shouldStop;
 
-		/** Whether the next read line feed should be ignored. */
-		private boolean ignoreNextLinefeed;
-
 		/**
-		 * Creates a new connection handler that operates on the given input stream.
+		 * Creates a new connection handler that operates on the given message
+		 * reader.
 		 *
-		 * @param remoteInputStream
-		 *            The input stream from the node
+		 * @param messageReader
+		 *            The reader for messages from the node
 		 */
-		public FcpConnectionHandler(InputStream remoteInputStream) {
-			this.remoteInputStream = remoteInputStream;
+		public FcpConnectionHandler(FcpMessageReader messageReader) {
+			this.messageReader = messageReader;
 		}
 
 		/**
@@ -359,7 +514,6 @@ public class DefaultFcpConnection implements FcpConnection {
 		 */
 		@Override
 		public void run() {
-			FcpMessage fcpMessage = null;
 			Throwable throwable = null;
 			while (true) {
 				synchronized (this) {
@@ -368,33 +522,12 @@ public class DefaultFcpConnection implements FcpConnection {
 					}
 				}
 				try {
-					String line = readLine();
-					logger.log(Level.FINEST, String.format("read line: %1$s", line));
-					if (line == null) {
+					FcpMessage fcpMessage = messageReader.readMessage();
+					if (fcpMessage == null) {
 						throwable = new EOFException();
 						break;
 					}
-					if (line.length() == 0) {
-						continue;
-					}
-					line = line.trim();
-					if (fcpMessage == null) {
-						fcpMessage = new FcpMessage(line);
-						continue;
-					}
-					if ("EndMessage".equalsIgnoreCase(line) || "Data".equalsIgnoreCase(line)) {
-						handleMessage(fcpMessage);
-						fcpMessage = null;
-					}
-					int equalSign = line.indexOf('=');
-					if (equalSign == -1) {
-						/* something's fishy! */
-						continue;
-					}
-					String field = line.substring(0, equalSign);
-					String value = line.substring(equalSign + 1);
-					assert fcpMessage != null: "fcp message is null";
-					fcpMessage.setField(field, value);
+					handleMessage(fcpMessage);
 				} catch (IOException ioe1) {
 					throwable = ioe1;
 					break;
@@ -412,50 +545,6 @@ public class DefaultFcpConnection implements FcpConnection {
 			}
 		}
 
-		//
-		// PRIVATE METHODS
-		//
-
-		/**
-		 * Reads bytes from {@link #remoteInputStream} until ‘\r’ or ‘\n’ are
-		 * encountered and decodes the read bytes using UTF-8.
-		 *
-		 * @return The decoded line
-		 * @throws IOException
-		 *             if an I/O error occurs
-		 */
-		private String readLine() throws IOException {
-			byte[] readBytes = new byte[512];
-			int readIndex = 0;
-			while (true) {
-				int nextByte = remoteInputStream.read();
-				if (nextByte == -1) {
-					if (readIndex == 0) {
-						return null;
-					}
-					break;
-				}
-				if (nextByte == 10) {
-					if (!ignoreNextLinefeed) {
-						break;
-					}
-				}
-				ignoreNextLinefeed = false;
-				if (nextByte == 13) {
-					ignoreNextLinefeed = true;
-					break;
-				}
-				if (readIndex == readBytes.length) {
-					/* recopy & enlarge array */
-					byte[] newReadBytes = new byte[readBytes.length * 2];
-					System.arraycopy(readBytes, 0, newReadBytes, 0, readBytes.length);
-					readBytes = newReadBytes;
-				}
-				readBytes[readIndex++] = (byte) nextByte;
-			}
-			return new String(readBytes, UTF_8);
-		}
-
 	}
 
 }
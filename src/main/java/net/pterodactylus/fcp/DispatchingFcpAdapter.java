@@ -1,243 +1,436 @@
 package net.pterodactylus.fcp;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Consumer;
 
-import static java.util.Collections.emptyList;
-import static java.util.Collections.singletonList;
-
 /**
  * {@link FcpListener} implementation that dispatches messages to event
  * listeners that are really just {@link Consumer}s. All methods named
  * “receivedX” from the {@link FcpListener} interface can be dispatched by
- * calling {@link #addListener(String, Consumer)} with “X” as the message
- * name. Registering a listener for the method
+ * calling {@link #addListener(MessageType, Consumer)} with the corresponding
+ * {@link MessageType}, by calling {@link #addListener(Class, Consumer)} with
+ * the class of the message, or by calling
+ * {@link #addListener(String, Consumer)} with “X” as the message name.
+ * Registering a listener for the method
  * {@link FcpListener#connectionClosed(FcpConnection, Throwable)} uses
- * {@code "ConnectionClosed"} as message name, and the given consumer
- * will receive the throwable.
+ * {@link MessageType#ConnectionClosed} (or {@code "ConnectionClosed"} as
+ * message name), and the given consumer will receive the throwable.
+ * <p>
+ * Listeners can be added and removed at any time, also while messages are
+ * being dispatched. The listeners of each type are kept in an array that is
+ * replaced on every change, so dispatching a message neither locks nor
+ * looks up anything but the array of its type.
  */
 public class DispatchingFcpAdapter implements FcpListener {
 
+	/** The array that is used while a type has no listeners. */
+	private static final Consumer<?>[] NO_LISTENERS = new Consumer<?>[0];
+
+	/** The message types by the class of their events. */
+	private static final Map<Class<?>, MessageType> messageTypesByEventClass = new HashMap<>();
+
+	static {
+		for (MessageType messageType : MessageType.values()) {
+			messageTypesByEventClass.put(messageType.getEventClass(), messageType);
+		}
+	}
+
+	/** The listeners, indexed by the ordinal of their message type. */
+	private final AtomicReferenceArray<Consumer<?>[]> eventListeners = new AtomicReferenceArray<>(MessageType.values().length);
+
+	/**
+	 * Creates a new dispatching adapter without any listeners.
+	 */
+	public DispatchingFcpAdapter() {
+		for (int index = 0; index < eventListeners.length(); index++) {
+			eventListeners.set(index, NO_LISTENERS);
+		}
+	}
+
+	/**
+	 * Adds a listener for the message with the given name. {@code "Message"}
+	 * registers the listener for unknown messages, and
+	 * {@code "ConnectionClosed"} for the closing of the connection.
+	 *
+	 * @param message
+	 *            The name of the message
+	 * @param eventListener
+	 *            The listener to add
+	 * @param <T>
+	 *            The type of the message
+	 * @throws IllegalArgumentException
+	 *             if there is no message with the given name
+	 */
 	public <T> void addListener(String message, Consumer<T> eventListener) {
-		eventListeners.merge(message, singletonList((Consumer<Object>) eventListener), (l1, l2) -> {
-			List<Consumer<? super Object>> merged = new ArrayList<>(l1);
-			merged.addAll(l2);
-			return merged;
-		});
+		addListener(getMessageType(message), eventListener);
+	}
+
+	/**
+	 * Adds a listener for messages of the given class.
+	 *
+	 * @param eventClass
+	 *            The class of the message, {@link FcpMessage} for unknown
+	 *            messages, or {@link Throwable} for the closing of the
+	 *            connection
+	 * @param eventListener
+	 *            The listener to add
+	 * @param <T>
+	 *            The type of the message
+	 * @throws IllegalArgumentException
+	 *             if there is no message with the given class
+	 */
+	public <T> void addListener(Class<T> eventClass, Consumer<? super T> eventListener) {
+		addListener(getMessageType(eventClass), eventListener);
+	}
+
+	/**
+	 * Adds a listener for messages of the given type. The listener has to
+	 * accept objects of the {@link MessageType#getEventClass() event class} of
+	 * the type.
+	 *
+	 * @param messageType
+	 *            The type of the message
+	 * @param eventListener
+	 *            The listener to add
+	 */
+	public void addListener(MessageType messageType, Consumer<?> eventListener) {
+		int index = messageType.ordinal();
+		while (true) {
+			Consumer<?>[] listeners = eventListeners.get(index);
+			Consumer<?>[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+			newListeners[listeners.length] = eventListener;
+			if (eventListeners.compareAndSet(index, listeners, newListeners)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Removes a listener for the message with the given name. If the listener
+	 * was added more than once, only one registration is removed.
+	 *
+	 * @param message
+	 *            The name of the message
+	 * @param eventListener
+	 *            The listener to remove
+	 * @return {@code true} if the listener was removed, {@code false} if it
+	 *         was not registered
+	 * @throws IllegalArgumentException
+	 *             if there is no message with the given name
+	 */
+	public boolean removeListener(String message, Consumer<?> eventListener) {
+		return removeListener(getMessageType(message), eventListener);
+	}
+
+	/**
+	 * Removes a listener for messages of the given class. If the listener was
+	 * added more than once, only one registration is removed.
+	 *
+	 * @param eventClass
+	 *            The class of the message
+	 * @param eventListener
+	 *            The listener to remove
+	 * @return {@code true} if the listener was removed, {@code false} if it
+	 *         was not registered
+	 * @throws IllegalArgumentException
+	 *             if there is no message with the given class
+	 */
+	public boolean removeListener(Class<?> eventClass, Consumer<?> eventListener) {
+		return removeListener(getMessageType(eventClass), eventListener);
+	}
+
+	/**
+	 * Removes a listener for messages of the given type. If the listener was
+	 * added more than once, only one registration is removed.
+	 *
+	 * @param messageType
+	 *            The type of the message
+	 * @param eventListener
+	 *            The listener to remove
+	 * @return {@code true} if the listener was removed, {@code false} if it
+	 *         was not registered
+	 */
+	public boolean removeListener(MessageType messageType, Consumer<?> eventListener) {
+		int index = messageType.ordinal();
+		while (true) {
+			Consumer<?>[] listeners = eventListeners.get(index);
+			int listenerIndex = indexOf(listeners, eventListener);
+			if (listenerIndex == -1) {
+				return false;
+			}
+			Consumer<?>[] newListeners = NO_LISTENERS;
+			if (listeners.length > 1) {
+				newListeners = new Consumer<?>[listeners.length - 1];
+				System.arraycopy(listeners, 0, newListeners, 0, listenerIndex);
+				System.arraycopy(listeners, listenerIndex + 1, newListeners, listenerIndex, newListeners.length - listenerIndex);
+			}
+			if (eventListeners.compareAndSet(index, listeners, newListeners)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Returns whether any listener is registered for messages of the given
+	 * type.
+	 *
+	 * @param messageType
+	 *            The type of the message
+	 * @return {@code true} if there is a listener for the type, {@code false}
+	 *         otherwise
+	 */
+	public boolean hasListeners(MessageType messageType) {
+		return eventListeners.get(messageType.ordinal()).length > 0;
 	}
 
 	@Override
 	public void receivedNodeHello(FcpConnection fcpConnection, NodeHello nodeHello) {
-		dispatchEvent("NodeHello", nodeHello);
+		dispatchEvent(MessageType.NodeHello, nodeHello);
 	}
 
 	@Override
 	public void receivedCloseConnectionDuplicateClientName(FcpConnection fcpConnection, CloseConnectionDuplicateClientName closeConnectionDuplicateClientName) {
-		dispatchEvent("CloseConnectionDuplicateClientName", closeConnectionDuplicateClientName);
+		dispatchEvent(MessageType.CloseConnectionDuplicateClientName, closeConnectionDuplicateClientName);
 	}
 
 	@Override
 	public void receivedSSKKeypair(FcpConnection fcpConnection, SSKKeypair sskKeypair) {
-		dispatchEvent("SSKKeypair", sskKeypair);
+		dispatchEvent(MessageType.SSKKeypair, sskKeypair);
 	}
 
 	@Override
 	public void receivedPeer(FcpConnection fcpConnection, Peer peer) {
-		dispatchEvent("Peer", peer);
+		dispatchEvent(MessageType.Peer, peer);
 	}
 
 	@Override
 	public void receivedEndListPeers(FcpConnection fcpConnection, EndListPeers endListPeers) {
-		dispatchEvent("EndListPeers", endListPeers);
+		dispatchEvent(MessageType.EndListPeers, endListPeers);
 	}
 
 	@Override
 	public void receivedPeerNote(FcpConnection fcpConnection, PeerNote peerNote) {
-		dispatchEvent("PeerNote", peerNote);
+		dispatchEvent(MessageType.PeerNote, peerNote);
 	}
 
 	@Override
 	public void receivedEndListPeerNotes(FcpConnection fcpConnection, EndListPeerNotes endListPeerNotes) {
-		dispatchEvent("EndListPeerNotes", endListPeerNotes);
+		dispatchEvent(MessageType.EndListPeerNotes, endListPeerNotes);
 	}
 
 	@Override
 	public void receivedPeerRemoved(FcpConnection fcpConnection, PeerRemoved peerRemoved) {
-		dispatchEvent("PeerRemoved", peerRemoved);
+		dispatchEvent(MessageType.PeerRemoved, peerRemoved);
 	}
 
 	@Override
 	public void receivedNodeData(FcpConnection fcpConnection, NodeData nodeData) {
-		dispatchEvent("NodeData", nodeData);
+		dispatchEvent(MessageType.NodeData, nodeData);
 	}
 
 	@Override
 	public void receivedTestDDAReply(FcpConnection fcpConnection, TestDDAReply testDDAReply) {
-		dispatchEvent("TestDDAReply", testDDAReply);
+		dispatchEvent(MessageType.TestDDAReply, testDDAReply);
 	}
 
 	@Override
 	public void receivedTestDDAComplete(FcpConnection fcpConnection, TestDDAComplete testDDAComplete) {
-		dispatchEvent("TestDDAComplete", testDDAComplete);
+		dispatchEvent(MessageType.TestDDAComplete, testDDAComplete);
 	}
 
 	@Override
 	public void receivedPersistentGet(FcpConnection fcpConnection, PersistentGet persistentGet) {
-		dispatchEvent("PersistentGet", persistentGet);
+		dispatchEvent(MessageType.PersistentGet, persistentGet);
 	}
 
 	@Override
 	public void receivedPersistentPut(FcpConnection fcpConnection, PersistentPut persistentPut) {
-		dispatchEvent("PersistentPut", persistentPut);
+		dispatchEvent(MessageType.PersistentPut, persistentPut);
 	}
 
 	@Override
 	public void receivedEndListPersistentRequests(FcpConnection fcpConnection, EndListPersistentRequests endListPersistentRequests) {
-		dispatchEvent("EndListPersistentRequests", endListPersistentRequests);
+		dispatchEvent(MessageType.EndListPersistentRequests, endListPersistentRequests);
 	}
 
 	@Override
 	public void receivedURIGenerated(FcpConnection fcpConnection, URIGenerated uriGenerated) {
-		dispatchEvent("URIGenerated", uriGenerated);
+		dispatchEvent(MessageType.URIGenerated, uriGenerated);
 	}
 
 	@Override
 	public void receivedDataFound(FcpConnection fcpConnection, DataFound dataFound) {
-		dispatchEvent("DataFound", dataFound);
+		dispatchEvent(MessageType.DataFound, dataFound);
 	}
 
 	@Override
 	public void receivedAllData(FcpConnection fcpConnection, AllData allData) {
-		dispatchEvent("AllData", allData);
+		dispatchEvent(MessageType.AllData, allData);
 	}
 
 	@Override
 	public void receivedSimpleProgress(FcpConnection fcpConnection, SimpleProgress simpleProgress) {
-		dispatchEvent("SimpleProgress", simpleProgress);
+		dispatchEvent(MessageType.SimpleProgress, simpleProgress);
 	}
 
 	@Override
 	public void receivedStartedCompression(FcpConnection fcpConnection, StartedCompression startedCompression) {
-		dispatchEvent("StartedCompression", startedCompression);
+		dispatchEvent(MessageType.StartedCompression, startedCompression);
 	}
 
 	@Override
 	public void receivedFinishedCompression(FcpConnection fcpConnection, FinishedCompression finishedCompression) {
-		dispatchEvent("FinishedCompression", finishedCompression);
+		dispatchEvent(MessageType.FinishedCompression, finishedCompression);
 	}
 
 	@Override
 	public void receivedUnknownPeerNoteType(FcpConnection fcpConnection, UnknownPeerNoteType unknownPeerNoteType) {
-		dispatchEvent("UnknownPeerNoteType", unknownPeerNoteType);
+		dispatchEvent(MessageType.UnknownPeerNoteType, unknownPeerNoteType);
 	}
 
 	@Override
 	public void receivedUnknownNodeIdentifier(FcpConnection fcpConnection, UnknownNodeIdentifier unknownNodeIdentifier) {
-		dispatchEvent("UnknownNodeIdentifier", unknownNodeIdentifier);
+		dispatchEvent(MessageType.UnknownNodeIdentifier, unknownNodeIdentifier);
 	}
 
 	@Override
 	public void receivedConfigData(FcpConnection fcpConnection, ConfigData configData) {
-		dispatchEvent("ConfigData", configData);
+		dispatchEvent(MessageType.ConfigData, configData);
 	}
 
 	@Override
 	public void receivedGetFailed(FcpConnection fcpConnection, GetFailed getFailed) {
-		dispatchEvent("GetFailed", getFailed);
+		dispatchEvent(MessageType.GetFailed, getFailed);
 	}
 
 	@Override
 	public void receivedPutFailed(FcpConnection fcpConnection, PutFailed putFailed) {
-		dispatchEvent("PutFailed", putFailed);
+		dispatchEvent(MessageType.PutFailed, putFailed);
 	}
 
 	@Override
 	public void receivedIdentifierCollision(FcpConnection fcpConnection, IdentifierCollision identifierCollision) {
-		dispatchEvent("IdentifierCollision", identifierCollision);
+		dispatchEvent(MessageType.IdentifierCollision, identifierCollision);
 	}
 
 	@Override
 	public void receivedPersistentPutDir(FcpConnection fcpConnection, PersistentPutDir persistentPutDir) {
-		dispatchEvent("PersistentPutDir", persistentPutDir);
+		dispatchEvent(MessageType.PersistentPutDir, persistentPutDir);
 	}
 
 	@Override
 	public void receivedPersistentRequestRemoved(FcpConnection fcpConnection, PersistentRequestRemoved persistentRequestRemoved) {
-		dispatchEvent("PersistentRequestRemoved", persistentRequestRemoved);
+		dispatchEvent(MessageType.PersistentRequestRemoved, persistentRequestRemoved);
 	}
 
 	@Override
 	public void receivedSubscribedUSK(FcpConnection fcpConnection, SubscribedUSK subscribedUSK) {
-		dispatchEvent("SubscribedUSK", subscribedUSK);
+		dispatchEvent(MessageType.SubscribedUSK, subscribedUSK);
 	}
 
 	@Override
 	public void receivedSubscribedUSKUpdate(FcpConnection fcpConnection, SubscribedUSKUpdate subscribedUSKUpdate) {
-		dispatchEvent("SubscribedUSKUpdate", subscribedUSKUpdate);
+		dispatchEvent(MessageType.SubscribedUSKUpdate, subscribedUSKUpdate);
 	}
 
 	@Override
 	public void receivedPluginInfo(FcpConnection fcpConnection, PluginInfo pluginInfo) {
-		dispatchEvent("PluginInfo", pluginInfo);
+		dispatchEvent(MessageType.PluginInfo, pluginInfo);
 	}
 
 	@Override
 	public void receivedPluginRemoved(FcpConnection fcpConnection, PluginRemoved pluginRemoved) {
-		dispatchEvent("PluginRemoved", pluginRemoved);
+		dispatchEvent(MessageType.PluginRemoved, pluginRemoved);
 	}
 
 	@Override
 	public void receivedFCPPluginReply(FcpConnection fcpConnection, FCPPluginReply fcpPluginReply) {
-		dispatchEvent("FCPPluginReply", fcpPluginReply);
+		dispatchEvent(MessageType.FCPPluginReply, fcpPluginReply);
 	}
 
 	@Override
 	public void receivedPersistentRequestModified(FcpConnection fcpConnection, PersistentRequestModified persistentRequestModified) {
-		dispatchEvent("PersistentRequestModified", persistentRequestModified);
+		dispatchEvent(MessageType.PersistentRequestModified, persistentRequestModified);
 	}
 
 	@Override
 	public void receivedPutSuccessful(FcpConnection fcpConnection, PutSuccessful putSuccessful) {
-		dispatchEvent("PutSuccessful", putSuccessful);
+		dispatchEvent(MessageType.PutSuccessful, putSuccessful);
 	}
 
 	@Override
 	public void receivedPutFetchable(FcpConnection fcpConnection, PutFetchable putFetchable) {
-		dispatchEvent("PutFetchable", putFetchable);
+		dispatchEvent(MessageType.PutFetchable, putFetchable);
 	}
 
 	@Override
 	public void receivedSentFeed(FcpConnection source, SentFeed sentFeed) {
-		dispatchEvent("SentFeed", sentFeed);
+		dispatchEvent(MessageType.SentFeed, sentFeed);
 	}
 
 	@Override
 	public void receivedBookmarkFeed(FcpConnection fcpConnection, ReceivedBookmarkFeed receivedBookmarkFeed) {
-		dispatchEvent("ReceivedBookmarkFeed", receivedBookmarkFeed);
+		dispatchEvent(MessageType.ReceivedBookmarkFeed, receivedBookmarkFeed);
 	}
 
 	@Override
 	public void receivedProtocolError(FcpConnection fcpConnection, ProtocolError protocolError) {
-		dispatchEvent("ProtocolError", protocolError);
+		dispatchEvent(MessageType.ProtocolError, protocolError);
 	}
 
 	@Override
 	public void receivedMessage(FcpConnection fcpConnection, FcpMessage fcpMessage) {
-		dispatchEvent("Message", fcpMessage);
+		dispatchEvent(MessageType.UnknownMessage, fcpMessage);
 	}
 
 	@Override
 	public void connectionClosed(FcpConnection fcpConnection, Throwable throwable) {
-		dispatchEvent("ConnectionClosed", throwable);
-	}
-
-	private void dispatchEvent(String name, Object message) {
-		eventListeners.getOrDefault(name, emptyList()).forEach(eventListener -> eventListener.accept(message));
+		dispatchEvent(MessageType.ConnectionClosed, throwable);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	@SuppressWarnings("unchecked")
+	private void dispatchEvent(MessageType messageType, Object message) {
+		for (Consumer<?> eventListener : eventListeners.get(messageType.ordinal())) {
+			((Consumer<Object>) eventListener).accept(message);
+		}
+	}
+
+	private static MessageType getMessageType(String message) {
+		if ("Message".equals(message)) {
+			return MessageType.UnknownMessage;
+		}
+		if ("ConnectionClosed".equals(message)) {
+			return MessageType.ConnectionClosed;
+		}
+		MessageType messageType = MessageType.forMessageName(message);
+		if (messageType == MessageType.UnknownMessage) {
+			throw new IllegalArgumentException("unknown message: " + message);
+		}
+		return messageType;
+	}
+
+	private static MessageType getMessageType(Class<?> eventClass) {
+		MessageType messageType = messageTypesByEventClass.get(eventClass);
+		if (messageType == null) {
+			throw new IllegalArgumentException("unknown message class: " + eventClass.getName());
+		}
+		return messageType;
+	}
+
+	private static int indexOf(Consumer<?>[] listeners, Consumer<?> eventListener) {
+		for (int index = 0; index < listeners.length; index++) {
+			if (listeners[index] == eventListener) {
+				return index;
+			}
+		}
+		return -1;
 	}
 
-	private final Map<String, List<Consumer<Object>>> eventListeners = new HashMap<>();
-
 }
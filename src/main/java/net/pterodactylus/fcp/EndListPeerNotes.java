@@ -36,4 +36,14 @@ public class EndListPeerNotes extends BaseMessage {
 		super(fcpMessage);
 	}
 
+	/**
+	 * Returns the identifier of the request this message answers, if the
+	 * request had one.
+	 *
+	 * @return The identifier of the request, or {@code null}
+	 */
+	public String getIdentifier() {
+		return getField("Identifier");
+	}
+
 }
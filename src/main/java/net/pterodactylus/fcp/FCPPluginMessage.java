@@ -17,7 +17,11 @@
 
 package net.pterodactylus.fcp;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+
+import net.pterodactylus.fcp.io.FilePayloadInputStream;
 
 /**
  * An “FCPPluginMessage” sends a message with custom parameters and (optional)
@@ -77,4 +81,16 @@ public class FCPPluginMessage extends FcpMessage {
 		setDataLength(dataLength);
 	}
 
+	/**
+	 * Sets the additional data of this message to the content of the given
+	 * file. The file is not read until the message is sent.
+	 *
+	 * @param path The file containing the additional data
+	 * @throws IOException if the size of the file can not be determined
+	 */
+	public void setData(Path path) throws IOException {
+		FilePayloadInputStream filePayloadInputStream = new FilePayloadInputStream(path);
+		setData(filePayloadInputStream, filePayloadInputStream.getLength());
+	}
+
 }
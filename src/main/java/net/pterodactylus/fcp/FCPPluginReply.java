@@ -18,11 +18,7 @@
 package net.pterodactylus.fcp;
 
 import java.io.InputStream;
-import java.util.AbstractMap;
 import java.util.Map;
-import java.util.Map.Entry;
-
-import static java.util.stream.Collectors.toMap;
 
 /**
  * The “FCPPluginReply” is sent by a plugin as a response to a
@@ -96,10 +92,7 @@ public class FCPPluginReply extends BaseMessage implements Identifiable {
 	 * @return All replies from the plugin
 	 */
 	public Map<String, String> getReplies() {
-		return getFields().entrySet().stream()
-				.filter(entry -> entry.getKey().startsWith("Replies."))
-				.map(entry -> new AbstractMap.SimpleImmutableEntry<>(entry.getKey().substring(8), entry.getValue()))
-				.collect(toMap(Entry::getKey, Entry::getValue));
+		return subtree("Replies");
 	}
 
 	/**
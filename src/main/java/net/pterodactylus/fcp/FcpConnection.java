@@ -2,6 +2,11 @@ package net.pterodactylus.fcp;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static java.util.Collections.singletonList;
 
 /**
  * An FCP connection to a Freenet node.
@@ -22,6 +27,32 @@ public interface FcpConnection extends Closeable {
 	 */
 	void removeFcpListener(FcpListener fcpListener);
 
+	/**
+	 * Adds a listener that is only interested in messages for the request
+	 * with the given identifier. The listener receives all
+	 * {@link Identifiable} messages with the given identifier and all
+	 * messages that are not {@link Identifiable}, but no
+	 * {@link Identifiable} messages for other requests. The default
+	 * implementation adds the listener for all messages.
+	 *
+	 * @param identifier The identifier of the request
+	 * @param fcpListener The listener to add
+	 */
+	default void addFcpListener(String identifier, FcpListener fcpListener) {
+		addFcpListener(fcpListener);
+	}
+
+	/**
+	 * Removes a listener that was added using
+	 * {@link #addFcpListener(String, FcpListener)}.
+	 *
+	 * @param identifier The identifier the listener was added for
+	 * @param fcpListener The listener to remove
+	 */
+	default void removeFcpListener(String identifier, FcpListener fcpListener) {
+		removeFcpListener(fcpListener);
+	}
+
 	/**
 	 * Returns whether this connection has been closed, either by {@link #close()} or by the remote side.
 	 *
@@ -61,4 +92,96 @@ public interface FcpConnection extends Closeable {
 	 */
 	void sendMessage(FcpMessage fcpMessage) throws IOException;
 
+	/**
+	 * Sends the given FCP messages, in the order of the collection, and waits
+	 * until all of them have been written. Implementations may encode many
+	 * messages into a single write.
+	 *
+	 * @param fcpMessages The FCP messages to send
+	 * @throws IOException if an I/O error occurs
+	 */
+	default void sendMessages(Collection<? extends FcpMessage> fcpMessages) throws IOException {
+		for (FcpMessage fcpMessage : fcpMessages) {
+			sendMessage(fcpMessage);
+		}
+	}
+
+	/**
+	 * Queues the given FCP message for sending without waiting for it to be
+	 * written.
+	 *
+	 * @param fcpMessage The FCP message to send
+	 * @return A future that is completed once the message has been written,
+	 * or completed exceptionally if it could not be written
+	 */
+	default CompletableFuture<Void> enqueueMessage(FcpMessage fcpMessage) {
+		return enqueueMessages(singletonList(fcpMessage));
+	}
+
+	/**
+	 * Queues the given FCP messages for sending without waiting for them to
+	 * be written. Messages are written in the order in which they were
+	 * queued. The default implementation sends the messages synchronously.
+	 *
+	 * @param fcpMessages The FCP messages to send
+	 * @return A future that is completed once all messages have been written,
+	 * or completed exceptionally if they could not be written
+	 */
+	default CompletableFuture<Void> enqueueMessages(Collection<? extends FcpMessage> fcpMessages) {
+		CompletableFuture<Void> completion = new CompletableFuture<>();
+		try {
+			sendMessages(fcpMessages);
+			completion.complete(null);
+		} catch (IOException | RuntimeException e) {
+			completion.completeExceptionally(e);
+		}
+		return completion;
+	}
+
+	/**
+	 * Registers a sink for the payload of the {@link AllData} message of the
+	 * request with the given identifier. The payload is transferred from the
+	 * node directly into the sink, and the sink is closed afterwards; the
+	 * dispatched {@link AllData} message has an empty payload. A sink is used
+	 * for a single {@link AllData} message only. If the connection is closed,
+	 * all registered sinks are closed.
+	 *
+	 * @param identifier The identifier of the request
+	 * @param payloadSink The sink for the payload
+	 * @return {@code true} if the sink was registered, {@code false} if this
+	 * connection does not support payload sinks
+	 */
+	default boolean addPayloadSink(String identifier, PayloadSink payloadSink) {
+		return false;
+	}
+
+	/**
+	 * Removes the payload sink for the request with the given identifier. The
+	 * sink is not closed.
+	 *
+	 * @param identifier The identifier of the request
+	 */
+	default void removePayloadSink(String identifier) {
+	}
+
+	/**
+	 * Registers a decoder for messages with the given name. Received messages
+	 * with this name are decoded by the given decoder and handed to the given
+	 * consumer instead of being forwarded to
+	 * {@link FcpListener#receivedMessage(FcpConnection, FcpMessage)}. This
+	 * allows applications to handle message types that this library does not
+	 * know. A decoder that is registered for a message type known to this
+	 * library replaces the built-in handling.
+	 *
+	 * @param messageName The name of the message
+	 * @param messageDecoder The decoder for the message
+	 * @param messageConsumer The consumer for the decoded message
+	 * @param <T> The type of the decoded message
+	 * @return {@code true} if the decoder was registered, {@code false} if
+	 * this connection does not support decoders
+	 */
+	default <T> boolean registerMessageDecoder(String messageName, FcpMessageDecoder<? extends T> messageDecoder, Consumer<? super T> messageConsumer) {
+		return false;
+	}
+
 }
@@ -0,0 +1,242 @@
+package net.pterodactylus.fcp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A single thread that performs the I/O for any number of
+ * {@link NioFcpConnection}s using one {@link Selector}. All listeners of the
+ * connections registered with an event loop are notified on the event loop’s
+ * thread, so listeners must not block.
+ * <p>
+ * Create one event loop and share it between connections; to spread the
+ * work over more than one thread, create a small number of event loops and
+ * distribute the connections between them.
+ */
+public class FcpEventLoop implements Closeable {
+
+	/** The logger. */
+	private static final Logger logger = Logger.getLogger(FcpEventLoop.class.getName());
+
+	/** The selector for all registered channels. */
+	private final Selector selector;
+
+	/** Tasks to run on the event loop thread. */
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+	/** The event loop thread. */
+	private final Thread thread;
+
+	/** Whether this event loop has been closed. */
+	private volatile boolean closed;
+
+	/** Whether the event loop thread has released the selector. */
+	private volatile boolean terminated;
+
+	/**
+	 * Creates and starts a new event loop.
+	 *
+	 * @throws IOException
+	 *             if the selector can not be opened
+	 */
+	public FcpEventLoop() throws IOException {
+		this("FCP Event Loop");
+	}
+
+	/**
+	 * Creates and starts a new event loop.
+	 *
+	 * @param threadName
+	 *            The name of the event loop thread
+	 * @throws IOException
+	 *             if the selector can not be opened
+	 */
+	public FcpEventLoop(String threadName) throws IOException {
+		selector = Selector.open();
+		thread = new Thread(this::run, threadName);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops the event loop. Channels that are still registered are closed.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		selector.wakeup();
+	}
+
+	//
+	// PACKAGE-PRIVATE METHODS
+	//
+
+	/**
+	 * Returns whether the current thread is the event loop thread.
+	 *
+	 * @return {@code true} if the current thread is the event loop thread,
+	 *         {@code false} otherwise
+	 */
+	boolean inEventLoop() {
+		return Thread.currentThread() == thread;
+	}
+
+	/**
+	 * Runs the given task on the event loop thread. Tasks are run in the order
+	 * they are submitted.
+	 *
+	 * @param task
+	 *            The task to run
+	 */
+	void execute(Runnable task) {
+		tasks.add(task);
+		if (terminated) {
+			runTasks();
+		} else if (!inEventLoop()) {
+			selector.wakeup();
+		}
+	}
+
+	/**
+	 * Registers the given non-blocking channel with this event loop and waits
+	 * for the registration to complete. If the event loop is closed before
+	 * the channel has been registered, the registration fails.
+	 *
+	 * @param channel
+	 *            The channel to register
+	 * @param interestOps
+	 *            The initial interest set
+	 * @param eventHandler
+	 *            The handler for events on the channel
+	 * @return The selection key of the channel
+	 * @throws IOException
+	 *             if the channel can not be registered
+	 */
+	SelectionKey register(SelectableChannel channel, int interestOps, EventHandler eventHandler) throws IOException {
+		if (closed) {
+			throw new IOException("event loop is closed");
+		}
+		CompletableFuture<SelectionKey> registration = new CompletableFuture<>();
+		execute(() -> {
+			try {
+				registration.complete(channel.register(selector, interestOps, eventHandler));
+			} catch (IOException | RuntimeException e) {
+				registration.completeExceptionally(e);
+			}
+		});
+		try {
+			return registration.get();
+		} catch (InterruptedException ie1) {
+			throw new InterruptedIOException("interrupted while registering channel");
+		} catch (ExecutionException ee1) {
+			throw new IOException("could not register channel", ee1.getCause());
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void run() {
+		try {
+			while (!closed) {
+				runTasks();
+				try {
+					selector.select();
+				} catch (IOException ioe1) {
+					logger.log(Level.WARNING, "could not select channels", ioe1);
+					break;
+				}
+				Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+				while (selectedKeys.hasNext()) {
+					SelectionKey selectionKey = selectedKeys.next();
+					selectedKeys.remove();
+					handleEvents(selectionKey);
+				}
+			}
+		} finally {
+			closed = true;
+			terminate();
+		}
+	}
+
+	/**
+	 * Closes all registered channels and the selector, and runs the tasks
+	 * that are still queued. Tasks that are queued later are run by the
+	 * thread that queues them. Registrations fail once the selector is
+	 * closed, so nothing waits for this event loop anymore.
+	 */
+	private void terminate() {
+		for (SelectionKey selectionKey : selector.keys()) {
+			try {
+				((EventHandler) selectionKey.attachment()).closed();
+			} catch (RuntimeException re1) {
+				logger.log(Level.WARNING, "could not close channel", re1);
+			}
+		}
+		FcpUtils.close(selector);
+		terminated = true;
+		runTasks();
+	}
+
+	private void runTasks() {
+		Runnable task;
+		while ((task = tasks.poll()) != null) {
+			try {
+				task.run();
+			} catch (RuntimeException re1) {
+				logger.log(Level.WARNING, "task failed", re1);
+			}
+		}
+	}
+
+	private void handleEvents(SelectionKey selectionKey) {
+		EventHandler eventHandler = (EventHandler) selectionKey.attachment();
+		try {
+			if (selectionKey.isReadable()) {
+				eventHandler.readable();
+			}
+			if (selectionKey.isValid() && selectionKey.isWritable()) {
+				eventHandler.writable();
+			}
+		} catch (CancelledKeyException cke1) {
+			/* channel was closed, ignore. */
+		}
+	}
+
+	/**
+	 * Handler for events of a registered channel. All methods are called on
+	 * the event loop thread.
+	 */
+	interface EventHandler {
+
+		/**
+		 * Called when the channel has data to read.
+		 */
+		void readable();
+
+		/**
+		 * Called when the channel can accept more data.
+		 */
+		void writable();
+
+		/**
+		 * Called when the event loop is closed.
+		 */
+		void closed();
+
+	}
+
+}
@@ -0,0 +1,124 @@
+package net.pterodactylus.fcp;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Assembles {@link FcpMessage}s from the lines sent by a node. Lines are
+ * handed to the parser as ranges of a byte array (without line terminators),
+ * and field names and values are decoded directly from that array.
+ * <p>
+ * Leading and trailing whitespace is removed from every line, empty lines
+ * are ignored, as are lines (other than the message name) that do not
+ * contain an equals sign.
+ * <p>
+ * Message and field names are resolved through a {@link FieldNameDictionary}
+ * so that names the parser has seen before are not decoded again, and the
+ * values of fields that are usually identical across messages are
+ * {@link SharedValues#share(String, String, String) shared}.
+ */
+class FcpLineParser {
+
+	private static final byte[] END_MESSAGE = "EndMessage".getBytes(UTF_8);
+	private static final byte[] DATA = "Data".getBytes(UTF_8);
+
+	/** The dictionary resolving message and field names. */
+	private final FieldNameDictionary fieldNameDictionary;
+
+	/** The message that is currently being assembled. */
+	private FcpMessage fcpMessage;
+
+	/** Whether the last completed message was terminated by “Data”. */
+	private boolean payloadFollowing;
+
+	/**
+	 * Creates a new line parser that uses the
+	 * {@link FieldNameDictionary#getDefault() default dictionary}.
+	 */
+	FcpLineParser() {
+		this(FieldNameDictionary.getDefault());
+	}
+
+	/**
+	 * Creates a new line parser.
+	 *
+	 * @param fieldNameDictionary The dictionary resolving message and field
+	 * names
+	 */
+	FcpLineParser(FieldNameDictionary fieldNameDictionary) {
+		this.fieldNameDictionary = fieldNameDictionary;
+	}
+
+	/**
+	 * Parses the given line.
+	 *
+	 * @param buffer The buffer containing the line
+	 * @param start The index of the first byte of the line
+	 * @param end The index after the last byte of the line
+	 * @return The completed message, or {@code null} if the line did not
+	 * complete a message
+	 */
+	FcpMessage parseLine(byte[] buffer, int start, int end) {
+		while ((start < end) && ((buffer[start] & 0xff) <= ' ')) {
+			start++;
+		}
+		while ((end > start) && ((buffer[end - 1] & 0xff) <= ' ')) {
+			end--;
+		}
+		if (start == end) {
+			return null;
+		}
+		if (fcpMessage == null) {
+			fcpMessage = new FcpMessage(fieldNameDictionary.resolve(buffer, start, end));
+			return null;
+		}
+		boolean endMessage = equalsIgnoreCase(buffer, start, end, END_MESSAGE);
+		if (endMessage || equalsIgnoreCase(buffer, start, end, DATA)) {
+			FcpMessage completedMessage = fcpMessage;
+			fcpMessage = null;
+			payloadFollowing = !endMessage;
+			return completedMessage;
+		}
+		int equalSign = indexOf(buffer, '=', start, end);
+		if (equalSign == -1) {
+			/* something’s fishy! */
+			return null;
+		}
+		String field = fieldNameDictionary.resolve(buffer, start, equalSign);
+		String value = new String(buffer, equalSign + 1, end - equalSign - 1, UTF_8);
+		fcpMessage.setField(field, SharedValues.share(fcpMessage.getName(), field, value));
+		return null;
+	}
+
+	/**
+	 * Returns whether the last message returned by {@link #parseLine(byte[],
+	 * int, int)} was terminated by “Data”, i.e. whether payload follows.
+	 *
+	 * @return {@code true} if payload follows the last message, {@code false}
+	 * otherwise
+	 */
+	boolean isPayloadFollowing() {
+		return payloadFollowing;
+	}
+
+	private static boolean equalsIgnoreCase(byte[] buffer, int start, int end, byte[] marker) {
+		if ((end - start) != marker.length) {
+			return false;
+		}
+		for (int index = 0; index < marker.length; index++) {
+			if ((buffer[start + index] | 0x20) != (marker[index] | 0x20)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int indexOf(byte[] buffer, char character, int start, int end) {
+		for (int index = start; index < end; index++) {
+			if (buffer[index] == character) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+}
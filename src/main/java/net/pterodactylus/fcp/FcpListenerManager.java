@@ -17,8 +17,17 @@
 
 package net.pterodactylus.fcp;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.google.common.collect.Iterables;
 
 /**
  * Manages FCP listeners and event firing.
@@ -30,6 +39,15 @@ public class FcpListenerManager {
 	private final FcpConnection source;
 	private final List<FcpListener> listeners = new CopyOnWriteArrayList<FcpListener>();
 
+	/** The listeners without identifier, by the ordinal of the message type they are interested in. */
+	private volatile FcpListener[][] listenersByType = createListenersByType(Collections.<FcpListener>emptyList());
+
+	/** Listeners that are only interested in messages for a single identifier. */
+	private final Map<String, List<FcpListener>> identifiedListeners = new ConcurrentHashMap<String, List<FcpListener>>();
+
+	/** The number of identified listeners, by the ordinal of the message type they are interested in. */
+	private final AtomicIntegerArray identifiedListenerCounts = new AtomicIntegerArray(MessageType.values().length);
+
 	/**
 	 * Creates a new listener manager.
 	 *
@@ -40,20 +58,137 @@ public class FcpListenerManager {
 		this.source = fcpConnection;
 	}
 
-	public void addListener(FcpListener fcpListener) {
+	/**
+	 * Adds a listener. A listener that extends {@link FcpAdapter} is only
+	 * notified about the message types whose methods it overrides; all other
+	 * listeners are notified about all message types.
+	 *
+	 * @param fcpListener
+	 *            The listener to add
+	 */
+	public synchronized void addListener(FcpListener fcpListener) {
 		listeners.add(fcpListener);
+		listenersByType = createListenersByType(listeners);
+	}
+
+	public synchronized void removeListener(FcpListener fcpListener) {
+		if (listeners.remove(fcpListener)) {
+			listenersByType = createListenersByType(listeners);
+		}
+	}
+
+	/**
+	 * Adds a listener that is only interested in messages for the given
+	 * identifier. The listener receives all {@link Identifiable} messages with
+	 * the given identifier, and all messages that are not
+	 * {@link Identifiable}, such as “ProtocolError” or
+	 * “CloseConnectionDuplicateClientName”. Finding the listeners for an
+	 * {@link Identifiable} message costs a single lookup, no matter how many
+	 * identified listeners are registered.
+	 *
+	 * @param identifier
+	 *            The identifier of the messages to receive
+	 * @param fcpListener
+	 *            The listener to add
+	 */
+	public void addListener(String identifier, FcpListener fcpListener) {
+		identifiedListeners.compute(identifier, (key, fcpListeners) -> {
+			List<FcpListener> newFcpListeners = (fcpListeners == null) ? new ArrayList<FcpListener>(1) : new ArrayList<FcpListener>(fcpListeners);
+			newFcpListeners.add(fcpListener);
+			return newFcpListeners;
+		});
+		for (MessageType messageType : ListenerInterests.getMessageTypes(fcpListener)) {
+			identifiedListenerCounts.incrementAndGet(messageType.ordinal());
+		}
+	}
+
+	/**
+	 * Removes a listener that was added using
+	 * {@link #addListener(String, FcpListener)}.
+	 *
+	 * @param identifier
+	 *            The identifier the listener was added for
+	 * @param fcpListener
+	 *            The listener to remove
+	 */
+	public void removeListener(String identifier, FcpListener fcpListener) {
+		AtomicBoolean removed = new AtomicBoolean();
+		identifiedListeners.computeIfPresent(identifier, (key, fcpListeners) -> {
+			List<FcpListener> newFcpListeners = new ArrayList<FcpListener>(fcpListeners);
+			removed.set(newFcpListeners.remove(fcpListener));
+			return newFcpListeners.isEmpty() ? null : newFcpListeners;
+		});
+		if (removed.get()) {
+			for (MessageType messageType : ListenerInterests.getMessageTypes(fcpListener)) {
+				identifiedListenerCounts.decrementAndGet(messageType.ordinal());
+			}
+		}
 	}
 
-	public void removeListener(FcpListener fcpListener) {
-		listeners.remove(fcpListener);
+	/**
+	 * Returns whether any listener is interested in messages of the given
+	 * type. Connections use this to skip decoding messages nobody listens to.
+	 *
+	 * @param messageType
+	 *            The type of the message
+	 * @return {@code true} if at least one listener is interested in the
+	 *         message type, {@code false} otherwise
+	 */
+	public boolean hasListeners(MessageType messageType) {
+		return (listenersByType[messageType.ordinal()].length > 0) || (identifiedListenerCounts.get(messageType.ordinal()) > 0);
 	}
 
 	private FcpConnection getSource() {
 		return source;
 	}
 
-	private List<FcpListener> getListeners() {
-		return listeners;
+	/**
+	 * Returns the listeners for the given message: all listeners that were
+	 * added without an identifier, and the listeners that were added for the
+	 * identifier of the message, as long as they are interested in the type
+	 * of the message.
+	 */
+	private Iterable<FcpListener> getListeners(MessageType messageType, Identifiable identifiable) {
+		List<FcpListener> typeListeners = Arrays.asList(listenersByType[messageType.ordinal()]);
+		if (identifiedListenerCounts.get(messageType.ordinal()) == 0) {
+			return typeListeners;
+		}
+		String identifier = identifiable.getIdentifier();
+		if (identifier == null) {
+			return getAllListeners(messageType);
+		}
+		List<FcpListener> fcpListeners = identifiedListeners.get(identifier);
+		if (fcpListeners == null) {
+			return typeListeners;
+		}
+		return Iterables.concat(typeListeners, Iterables.filter(fcpListeners, fcpListener -> ListenerInterests.isInterested(fcpListener, messageType)));
+	}
+
+	/**
+	 * Returns all listeners that are interested in the given message type,
+	 * including all listeners that were added for an identifier.
+	 */
+	private Iterable<FcpListener> getAllListeners(MessageType messageType) {
+		List<FcpListener> typeListeners = Arrays.asList(listenersByType[messageType.ordinal()]);
+		if (identifiedListenerCounts.get(messageType.ordinal()) == 0) {
+			return typeListeners;
+		}
+		return Iterables.concat(typeListeners, Iterables.filter(Iterables.concat(identifiedListeners.values()), fcpListener -> ListenerInterests.isInterested(fcpListener, messageType)));
+	}
+
+	private static FcpListener[][] createListenersByType(List<FcpListener> fcpListeners) {
+		MessageType[] messageTypes = MessageType.values();
+		FcpListener[][] listenersByType = new FcpListener[messageTypes.length][];
+		for (MessageType messageType : messageTypes) {
+			List<FcpListener> typeListeners = new ArrayList<FcpListener>();
+			for (FcpListener fcpListener : fcpListeners) {
+				if (ListenerInterests.isInterested(fcpListener, messageType)) {
+					typeListeners.add(fcpListener);
+				}
+			}
+			listenersByType[messageType.ordinal()] = typeListeners.toArray(new FcpListener[typeListeners.size()]);
+		}
+		return listenersByType;
 	}
 
 	/**
@@ -64,7 +199,7 @@ public class FcpListenerManager {
 	 *            The “NodeHello” message
 	 */
 	public void fireReceivedNodeHello(NodeHello nodeHello) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getAllListeners(MessageType.NodeHello)) {
 			fcpListener.receivedNodeHello(getSource(), nodeHello);
 		}
 	}
@@ -79,7 +214,7 @@ public class FcpListenerManager {
 	 *            The “CloseConnectionDuplicateClientName” message
 	 */
 	public void fireReceivedCloseConnectionDuplicateClientName(CloseConnectionDuplicateClientName closeConnectionDuplicateClientName) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getAllListeners(MessageType.CloseConnectionDuplicateClientName)) {
 			fcpListener.receivedCloseConnectionDuplicateClientName(getSource(), closeConnectionDuplicateClientName);
 		}
 	}
@@ -92,7 +227,7 @@ public class FcpListenerManager {
 	 *            The “SSKKeypair” message
 	 */
 	public void fireReceivedSSKKeypair(SSKKeypair sskKeypair) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.SSKKeypair, sskKeypair)) {
 			fcpListener.receivedSSKKeypair(getSource(), sskKeypair);
 		}
 	}
@@ -105,7 +240,7 @@ public class FcpListenerManager {
 	 *            The “Peer” message
 	 */
 	public void fireReceivedPeer(Peer peer) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.Peer, peer)) {
 			fcpListener.receivedPeer(getSource(), peer);
 		}
 	}
@@ -118,7 +253,7 @@ public class FcpListenerManager {
 	 *            The “EndListPeers” message
 	 */
 	public void fireReceivedEndListPeers(EndListPeers endListPeers) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.EndListPeers, endListPeers)) {
 			fcpListener.receivedEndListPeers(getSource(), endListPeers);
 		}
 	}
@@ -131,7 +266,7 @@ public class FcpListenerManager {
 	 *            The “PeerNote” message
 	 */
 	public void fireReceivedPeerNote(PeerNote peerNote) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getAllListeners(MessageType.PeerNote)) {
 			fcpListener.receivedPeerNote(getSource(), peerNote);
 		}
 	}
@@ -145,7 +280,7 @@ public class FcpListenerManager {
 	 *            The “EndListPeerNotes” message
 	 */
 	public void fireReceivedEndListPeerNotes(EndListPeerNotes endListPeerNotes) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getAllListeners(MessageType.EndListPeerNotes)) {
 			fcpListener.receivedEndListPeerNotes(getSource(), endListPeerNotes);
 		}
 	}
@@ -158,7 +293,7 @@ public class FcpListenerManager {
 	 *            The “PeerRemoved” message
 	 */
 	public void fireReceivedPeerRemoved(PeerRemoved peerRemoved) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getAllListeners(MessageType.PeerRemoved)) {
 			fcpListener.receivedPeerRemoved(getSource(), peerRemoved);
 		}
 	}
@@ -171,7 +306,7 @@ public class FcpListenerManager {
 	 *            The “NodeData” message
 	 */
 	public void fireReceivedNodeData(NodeData nodeData) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getAllListeners(MessageType.NodeData)) {
 			fcpListener.receivedNodeData(getSource(), nodeData);
 		}
 	}
@@ -184,7 +319,7 @@ public class FcpListenerManager {
 	 *            The “TestDDAReply” message
 	 */
 	public void fireReceivedTestDDAReply(TestDDAReply testDDAReply) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getAllListeners(MessageType.TestDDAReply)) {
 			fcpListener.receivedTestDDAReply(getSource(), testDDAReply);
 		}
 	}
@@ -197,7 +332,7 @@ public class FcpListenerManager {
 	 *            The “TestDDAComplete” message
 	 */
 	public void fireReceivedTestDDAComplete(TestDDAComplete testDDAComplete) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getAllListeners(MessageType.TestDDAComplete)) {
 			fcpListener.receivedTestDDAComplete(getSource(), testDDAComplete);
 		}
 	}
@@ -210,7 +345,7 @@ public class FcpListenerManager {
 	 *            The “PersistentGet” message
 	 */
 	public void fireReceivedPersistentGet(PersistentGet persistentGet) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.PersistentGet, persistentGet)) {
 			fcpListener.receivedPersistentGet(getSource(), persistentGet);
 		}
 	}
@@ -223,7 +358,7 @@ public class FcpListenerManager {
 	 *            The “PersistentPut” message
 	 */
 	public void fireReceivedPersistentPut(PersistentPut persistentPut) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.PersistentPut, persistentPut)) {
 			fcpListener.receivedPersistentPut(getSource(), persistentPut);
 		}
 	}
@@ -238,7 +373,7 @@ public class FcpListenerManager {
 	 *            The “EndListPersistentRequests” message
 	 */
 	public void fireReceivedEndListPersistentRequests(EndListPersistentRequests endListPersistentRequests) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getAllListeners(MessageType.EndListPersistentRequests)) {
 			fcpListener.receivedEndListPersistentRequests(getSource(), endListPersistentRequests);
 		}
 	}
@@ -251,7 +386,7 @@ public class FcpListenerManager {
 	 *            The “URIGenerated” message
 	 */
 	public void fireReceivedURIGenerated(URIGenerated uriGenerated) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.URIGenerated, uriGenerated)) {
 			fcpListener.receivedURIGenerated(getSource(), uriGenerated);
 		}
 	}
@@ -264,7 +399,7 @@ public class FcpListenerManager {
 	 *            The “DataFound” message
 	 */
 	public void fireReceivedDataFound(DataFound dataFound) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.DataFound, dataFound)) {
 			fcpListener.receivedDataFound(getSource(), dataFound);
 		}
 	}
@@ -277,7 +412,7 @@ public class FcpListenerManager {
 	 *            The “AllData” message
 	 */
 	public void fireReceivedAllData(AllData allData) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.AllData, allData)) {
 			fcpListener.receivedAllData(getSource(), allData);
 		}
 	}
@@ -290,7 +425,7 @@ public class FcpListenerManager {
 	 *            The “SimpleProgress” message
 	 */
 	public void fireReceivedSimpleProgress(SimpleProgress simpleProgress) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.SimpleProgress, simpleProgress)) {
 			fcpListener.receivedSimpleProgress(getSource(), simpleProgress);
 		}
 	}
@@ -304,7 +439,7 @@ public class FcpListenerManager {
 	 *            The “StartedCompression” message
 	 */
 	public void fireReceivedStartedCompression(StartedCompression startedCompression) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.StartedCompression, startedCompression)) {
 			fcpListener.receivedStartedCompression(getSource(), startedCompression);
 		}
 	}
@@ -319,7 +454,7 @@ public class FcpListenerManager {
 	 *            The “FinishedCompression” message
 	 */
 	public void fireReceivedFinishedCompression(FinishedCompression finishedCompression) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.FinishedCompression, finishedCompression)) {
 			fcpListener.receivedFinishedCompression(getSource(), finishedCompression);
 		}
 	}
@@ -334,7 +469,7 @@ public class FcpListenerManager {
 	 *            The “UnknownPeerNoteType” message
 	 */
 	public void fireReceivedUnknownPeerNoteType(UnknownPeerNoteType unknownPeerNoteType) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getAllListeners(MessageType.UnknownPeerNoteType)) {
 			fcpListener.receivedUnknownPeerNoteType(getSource(), unknownPeerNoteType);
 		}
 	}
@@ -349,7 +484,7 @@ public class FcpListenerManager {
 	 *            The “UnknownNodeIdentifier” message
 	 */
 	public void fireReceivedUnknownNodeIdentifier(UnknownNodeIdentifier unknownNodeIdentifier) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getAllListeners(MessageType.UnknownNodeIdentifier)) {
 			fcpListener.receivedUnknownNodeIdentifier(getSource(), unknownNodeIdentifier);
 		}
 	}
@@ -362,7 +497,7 @@ public class FcpListenerManager {
 	 *            The “ConfigData” message
 	 */
 	public void fireReceivedConfigData(ConfigData configData) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getAllListeners(MessageType.ConfigData)) {
 			fcpListener.receivedConfigData(getSource(), configData);
 		}
 	}
@@ -375,7 +510,7 @@ public class FcpListenerManager {
 	 *            The “GetFailed” message
 	 */
 	public void fireReceivedGetFailed(GetFailed getFailed) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.GetFailed, getFailed)) {
 			fcpListener.receivedGetFailed(getSource(), getFailed);
 		}
 	}
@@ -388,7 +523,7 @@ public class FcpListenerManager {
 	 *            The “PutFailed” message
 	 */
 	public void fireReceivedPutFailed(PutFailed putFailed) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.PutFailed, putFailed)) {
 			fcpListener.receivedPutFailed(getSource(), putFailed);
 		}
 	}
@@ -403,7 +538,7 @@ public class FcpListenerManager {
 	 *            The “IdentifierCollision” message
 	 */
 	public void fireReceivedIdentifierCollision(IdentifierCollision identifierCollision) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.IdentifierCollision, identifierCollision)) {
 			fcpListener.receivedIdentifierCollision(getSource(), identifierCollision);
 		}
 	}
@@ -417,7 +552,7 @@ public class FcpListenerManager {
 	 *            The “PersistentPutDir” message
 	 */
 	public void fireReceivedPersistentPutDir(PersistentPutDir persistentPutDir) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.PersistentPutDir, persistentPutDir)) {
 			fcpListener.receivedPersistentPutDir(getSource(), persistentPutDir);
 		}
 	}
@@ -432,13 +567,13 @@ public class FcpListenerManager {
 	 *            The “PersistentRequestRemoved” message
 	 */
 	public void fireReceivedPersistentRequestRemoved(PersistentRequestRemoved persistentRequestRemoved) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.PersistentRequestRemoved, persistentRequestRemoved)) {
 			fcpListener.receivedPersistentRequestRemoved(getSource(), persistentRequestRemoved);
 		}
 	}
 
 	public void fireReceivedSubscribedUSK(SubscribedUSK subscribedUSK) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.SubscribedUSK, subscribedUSK)) {
 			fcpListener.receivedSubscribedUSK(getSource(), subscribedUSK);
 		}
 	}
@@ -453,7 +588,7 @@ public class FcpListenerManager {
 	 *            The “SubscribedUSKUpdate” message
 	 */
 	public void fireReceivedSubscribedUSKUpdate(SubscribedUSKUpdate subscribedUSKUpdate) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.SubscribedUSKUpdate, subscribedUSKUpdate)) {
 			fcpListener.receivedSubscribedUSKUpdate(getSource(), subscribedUSKUpdate);
 		}
 	}
@@ -466,13 +601,13 @@ public class FcpListenerManager {
 	 *            The “PluginInfo” message
 	 */
 	public void fireReceivedPluginInfo(PluginInfo pluginInfo) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.PluginInfo, pluginInfo)) {
 			fcpListener.receivedPluginInfo(getSource(), pluginInfo);
 		}
 	}
 
 	public void fireReceivedPluginRemoved(PluginRemoved pluginRemoved) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.PluginRemoved, pluginRemoved)) {
 			fcpListener.receivedPluginRemoved(getSource(), pluginRemoved);
 		}
 	}
@@ -485,7 +620,7 @@ public class FcpListenerManager {
 	 *            The “FCPPluginReply” message
 	 */
 	public void fireReceivedFCPPluginReply(FCPPluginReply fcpPluginReply) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.FCPPluginReply, fcpPluginReply)) {
 			fcpListener.receivedFCPPluginReply(getSource(), fcpPluginReply);
 		}
 	}
@@ -500,7 +635,7 @@ public class FcpListenerManager {
 	 *            The “PersistentRequestModified” message
 	 */
 	public void fireReceivedPersistentRequestModified(PersistentRequestModified persistentRequestModified) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.PersistentRequestModified, persistentRequestModified)) {
 			fcpListener.receivedPersistentRequestModified(getSource(), persistentRequestModified);
 		}
 	}
@@ -513,7 +648,7 @@ public class FcpListenerManager {
 	 *            The “PutSuccessful” message
 	 */
 	public void fireReceivedPutSuccessful(PutSuccessful putSuccessful) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.PutSuccessful, putSuccessful)) {
 			fcpListener.receivedPutSuccessful(getSource(), putSuccessful);
 		}
 	}
@@ -526,7 +661,7 @@ public class FcpListenerManager {
 	 *            The “PutFetchable” message
 	 */
 	public void fireReceivedPutFetchable(PutFetchable putFetchable) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.PutFetchable, putFetchable)) {
 			fcpListener.receivedPutFetchable(getSource(), putFetchable);
 		}
 	}
@@ -539,7 +674,7 @@ public class FcpListenerManager {
 	 *            The “ProtocolError” message
 	 */
 	public void fireReceivedProtocolError(ProtocolError protocolError) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getAllListeners(MessageType.ProtocolError)) {
 			fcpListener.receivedProtocolError(getSource(), protocolError);
 		}
 	}
@@ -552,7 +687,7 @@ public class FcpListenerManager {
 	 *            The “SentFeed” message.
 	 */
 	public void fireReceivedSentFeed(SentFeed sentFeed) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getListeners(MessageType.SentFeed, sentFeed)) {
 			fcpListener.receivedSentFeed(getSource(), sentFeed);
 		}
 	}
@@ -567,7 +702,7 @@ public class FcpListenerManager {
 	 *            The “ReceivedBookmarkFeed” message
 	 */
 	public void fireReceivedBookmarkFeed(ReceivedBookmarkFeed receivedBookmarkFeed) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getAllListeners(MessageType.ReceivedBookmarkFeed)) {
 			fcpListener.receivedBookmarkFeed(getSource(), receivedBookmarkFeed);
 		}
 	}
@@ -580,7 +715,7 @@ public class FcpListenerManager {
 	 *            The message that was received
 	 */
 	public void fireMessageReceived(FcpMessage fcpMessage) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getAllListeners(MessageType.UnknownMessage)) {
 			fcpListener.receivedMessage(getSource(), fcpMessage);
 		}
 	}
@@ -594,7 +729,7 @@ public class FcpListenerManager {
 	 * @see FcpListener#connectionClosed(FcpConnection, Throwable)
 	 */
 	public void fireConnectionClosed(Throwable throwable) {
-		for (FcpListener fcpListener : getListeners()) {
+		for (FcpListener fcpListener : getAllListeners(MessageType.ConnectionClosed)) {
 			fcpListener.connectionClosed(getSource(), throwable);
 		}
 	}
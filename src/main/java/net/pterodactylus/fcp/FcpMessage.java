@@ -20,29 +20,71 @@ package net.pterodactylus.fcp;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import net.pterodactylus.fcp.io.ByteBufferPool;
 
 /**
  * An FCP message. FCP messages consist of a name, an arbitrary amount of
  * “fields” (i.e. key-value pairs), a message end marker, and optional payload
  * data that follows the marker.
+ * <p>
+ * The fields are stored in parallel arrays in the order in which they were
+ * first set, which is also the order in which they are written. Messages
+ * with many fields, such as large “ConfigData” or “ClientPutComplexDir”
+ * messages, additionally keep a hash index of the field names. Fields with
+ * dotted names (such as “Replies.Status” or “volatile.status”) can be
+ * accessed by their prefix using {@link #subtree(String)}; the prefix index is
+ * built on first use and rebuilt once fields have been added. Reading a
+ * message does not modify it, so a message that is not modified anymore can
+ * be read by many threads at once.
  *
  * @author David ‘Bombe’ Roden &lt;bombe@freenetproject.org&gt;
  */
 public class FcpMessage implements Iterable<String> {
 
-	/** Constant for the linefeed. */
-	private static final String LINEFEED = "\r\n";
-
 	/** The name of the message. */
 	private final String name;
 
-	/** The fields of the message. */
-	private final Map<String, String> fields = new HashMap<String, String>();
+	/** The initial capacity of the field arrays. */
+	private static final int INITIAL_FIELD_CAPACITY = 8;
+
+	/** The number of fields above which the hash index is used. */
+	private static final int HASH_INDEX_THRESHOLD = 32;
+
+	/** The names of the fields. */
+	private String[] fieldNames = new String[INITIAL_FIELD_CAPACITY];
+
+	/** The hash codes of the field names. */
+	private int[] fieldNameHashes = new int[INITIAL_FIELD_CAPACITY];
+
+	/** The values of the fields. */
+	private String[] fieldValues = new String[INITIAL_FIELD_CAPACITY];
+
+	/** The number of fields. */
+	private int fieldCount;
+
+	/** The indices of the fields by name, once there are many fields. */
+	private Map<String, Integer> fieldIndices;
+
+	/** The number of times a field has been set. */
+	private int modificationCount;
+
+	/** The read-only view of the fields. */
+	private final Map<String, String> fieldsView = new FieldsView();
+
+	/** The fields by dotted name prefix, created on first use. */
+	private volatile PrefixIndex prefixIndex;
 
 	/** The optional payload input stream. */
 	private InputStream payloadInputStream;
@@ -90,7 +132,7 @@ public class FcpMessage implements Iterable<String> {
 	 *         name, <code>false</code> otherwise
 	 */
 	public boolean hasField(String field) {
-		return fields.containsKey(field);
+		return indexOf(field) != -1;
 	}
 
 	/**
@@ -106,7 +148,30 @@ public class FcpMessage implements Iterable<String> {
 		if ((field == null) || (value == null)) {
 			throw new NullPointerException(((field == null) ? "field " : "value ") + "must not be null");
 		}
-		fields.put(field, value);
+		modificationCount++;
+		int index = indexOf(field);
+		if (index != -1) {
+			fieldValues[index] = value;
+			return;
+		}
+		if (fieldCount == fieldNames.length) {
+			int newCapacity = fieldCount * 2;
+			fieldNames = Arrays.copyOf(fieldNames, newCapacity);
+			fieldNameHashes = Arrays.copyOf(fieldNameHashes, newCapacity);
+			fieldValues = Arrays.copyOf(fieldValues, newCapacity);
+		}
+		fieldNames[fieldCount] = field;
+		fieldNameHashes[fieldCount] = field.hashCode();
+		fieldValues[fieldCount] = value;
+		fieldCount++;
+		if (fieldIndices != null) {
+			fieldIndices.put(field, fieldCount - 1);
+		} else if (fieldCount > HASH_INDEX_THRESHOLD) {
+			fieldIndices = new HashMap<>(fieldCount * 2);
+			for (int fieldIndex = 0; fieldIndex < fieldCount; fieldIndex++) {
+				fieldIndices.put(fieldNames[fieldIndex], fieldIndex);
+			}
+		}
 	}
 
 	public FcpMessage put(String field, String value) {
@@ -123,16 +188,53 @@ public class FcpMessage implements Iterable<String> {
 	 *         field
 	 */
 	public String getField(String field) {
-		return fields.get(field);
+		int index = indexOf(field);
+		return (index == -1) ? null : fieldValues[index];
 	}
 
 	/**
-	 * Returns all fields of this message.
+	 * Returns all fields of this message. The returned map is a read-only
+	 * view that reflects later changes to this message; it iterates the
+	 * fields in the order in which they were first set.
 	 *
 	 * @return All fields of this message
 	 */
 	public Map<String, String> getFields() {
-		return Collections.unmodifiableMap(fields);
+		return fieldsView;
+	}
+
+	/**
+	 * Returns the fields whose names start with the given prefix, followed by
+	 * a dot. The keys of the returned map do not contain the prefix or the
+	 * dot, i.e. {@code subtree("Replies")} contains the field
+	 * “Replies.Status” as “Status”. Prefixes can contain dots themselves, so
+	 * {@code subtree("Files.0")} returns the fields of the first file of a
+	 * directory insert.
+	 * <p>
+	 * The returned map is a read-only view that reflects later changes to
+	 * this message, and it iterates the fields in the order in which they
+	 * were first set. Finding the fields of a subtree does not require
+	 * scanning all fields of the message.
+	 *
+	 * @param prefix
+	 *            The prefix of the field names, without the trailing dot
+	 * @return The fields below the given prefix
+	 */
+	public Map<String, String> subtree(String prefix) {
+		return new SubtreeView(prefix, false);
+	}
+
+	/**
+	 * Returns the fields whose names start with the given prefix, followed by
+	 * a dot. Unlike {@link #subtree(String)}, the keys of the returned map are
+	 * the complete names of the fields, i.e. they include the prefix.
+	 *
+	 * @param prefix
+	 *            The prefix of the field names, without the trailing dot
+	 * @return The fields below the given prefix
+	 */
+	public Map<String, String> getFields(String prefix) {
+		return new SubtreeView(prefix, true);
 	}
 
 	/**
@@ -140,7 +242,12 @@ public class FcpMessage implements Iterable<String> {
 	 */
 	@Override
 	public Iterator<String> iterator() {
-		return fields.keySet().iterator();
+		return new FieldIterator<String>() {
+			@Override
+			String get(int index) {
+				return fieldNames[index];
+			}
+		};
 	}
 
 	public InputStream getPayloadInputStream() {
@@ -170,36 +277,349 @@ public class FcpMessage implements Iterable<String> {
 	 *             if an I/O error occurs
 	 */
 	public void write(OutputStream outputStream) throws IOException {
-		writeLine(outputStream, name);
-		for (Entry<String, String> fieldEntry : fields.entrySet()) {
-			writeLine(outputStream, fieldEntry.getKey() + "=" + fieldEntry.getValue());
+		InputStream payloadInputStream = getPayloadInputStream();
+		ByteBufferPool byteBufferPool = ByteBufferPool.getDefault();
+		ByteBuffer pooledBuffer = byteBufferPool.acquire();
+		try {
+			ByteBuffer headerBuffer = encodeHeader(pooledBuffer, payloadInputStream != null);
+			outputStream.write(headerBuffer.array(), headerBuffer.arrayOffset(), headerBuffer.position());
+		} finally {
+			byteBufferPool.release(pooledBuffer);
 		}
 		if (payloadInputStream != null) {
-			writeLine(outputStream, "Data");
 			FcpUtils.copy(payloadInputStream, outputStream);
-		} else {
-			writeLine(outputStream, "EndMessage");
 		}
 		outputStream.flush();
 	}
 
+	//
+	// PACKAGE-PRIVATE METHODS
+	//
+
+	/**
+	 * Returns the number of times a field of this message has been set. Typed
+	 * messages use this to notice that the fields they parsed have changed.
+	 *
+	 * @return The modification count of this message
+	 */
+	int getModificationCount() {
+		return modificationCount;
+	}
+
+	/**
+	 * Encodes the name and the fields of this message into the given buffer,
+	 * followed by “Data” if a payload follows, or “EndMessage” if it does not.
+	 * If the buffer is too small, a larger buffer is used instead.
+	 *
+	 * @param buffer
+	 *            The buffer to encode the message into
+	 * @param payloadFollows
+	 *            {@code true} if the payload is written after the message,
+	 *            {@code false} otherwise
+	 * @return The buffer containing the encoded message
+	 */
+	ByteBuffer encodeHeader(ByteBuffer buffer, boolean payloadFollows) {
+		ByteBuffer targetBuffer = FcpMessageEncoder.putMessageName(buffer, name);
+		for (int index = 0; index < fieldCount; index++) {
+			targetBuffer = FcpMessageEncoder.putField(targetBuffer, fieldNames[index], fieldValues[index]);
+		}
+		return FcpMessageEncoder.putTerminator(targetBuffer, payloadFollows);
+	}
+
+	/**
+	 * Returns the parts that make up the payload of this message, in order.
+	 * Connections use this to recognize parts that can be sent more
+	 * efficiently than by reading them, such as
+	 * {@link net.pterodactylus.fcp.io.FilePayloadInputStream}s.
+	 *
+	 * @return The parts of the payload, or an empty list if this message does
+	 *         not have a payload
+	 */
+	List<InputStream> getPayloadParts() {
+		InputStream payloadInputStream = getPayloadInputStream();
+		return (payloadInputStream == null) ? Collections.emptyList() : Collections.singletonList(payloadInputStream);
+	}
+
 	//
 	// PRIVATE METHODS
 	//
 
 	/**
-	 * Writes the given line (followed by {@link #LINEFEED} to the given output
-	 * stream, using UTF-8 as encoding.
+	 * Returns the index of the field with the given name.
 	 *
-	 * @param outputStream
-	 *            The output stream to write to
-	 * @param line
-	 *            The line to write
-	 * @throws IOException
-	 *             if an I/O error occurs
+	 * @param field
+	 *            The name of the field
+	 * @return The index of the field, or {@code -1} if there is no such field
 	 */
-	private void writeLine(OutputStream outputStream, String line) throws IOException {
-		outputStream.write((line + LINEFEED).getBytes("UTF-8"));
+	private int indexOf(Object field) {
+		if (field == null) {
+			return -1;
+		}
+		if (fieldIndices != null) {
+			Integer index = fieldIndices.get(field);
+			return (index == null) ? -1 : index;
+		}
+		int hash = field.hashCode();
+		for (int index = 0; index < fieldCount; index++) {
+			if ((fieldNameHashes[index] == hash) && field.equals(fieldNames[index])) {
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the subtree for the given prefix. The prefix index is built if
+	 * it does not exist yet or if fields have been added since it was built;
+	 * the index itself is never modified.
+	 *
+	 * @param prefix
+	 *            The prefix of the field names, without the trailing dot
+	 * @return The subtree of the prefix
+	 */
+	private Subtree getSubtree(String prefix) {
+		PrefixIndex currentPrefixIndex = prefixIndex;
+		if ((currentPrefixIndex == null) || (currentPrefixIndex.fieldCount != fieldCount)) {
+			currentPrefixIndex = new PrefixIndex();
+			prefixIndex = currentPrefixIndex;
+		}
+		Subtree subtree = currentPrefixIndex.subtrees.get(prefix);
+		return (subtree == null) ? Subtree.EMPTY : subtree;
+	}
+
+	/**
+	 * Returns the complete name of the field with the given name below the
+	 * given prefix.
+	 *
+	 * @param prefix
+	 *            The prefix of the field names, without the trailing dot
+	 * @param key
+	 *            The name of the field, either relative to the prefix or
+	 *            complete
+	 * @param fullName
+	 *            {@code true} if the key is the complete name of the field,
+	 *            {@code false} if it is relative to the prefix
+	 * @return The complete name of the field, or {@code null} if the key can
+	 *         not belong to a field below the prefix
+	 */
+	private static String getFieldName(String prefix, Object key, boolean fullName) {
+		if (!(key instanceof String)) {
+			return null;
+		}
+		String name = (String) key;
+		if (!fullName) {
+			return prefix + "." + name;
+		}
+		if ((name.length() > prefix.length()) && name.startsWith(prefix) && (name.charAt(prefix.length()) == '.')) {
+			return name;
+		}
+		return null;
+	}
+
+	/**
+	 * Iterates over the fields in the order in which they were first set.
+	 *
+	 * @param <T>
+	 *            The type of the returned elements
+	 */
+	private abstract class FieldIterator<T> implements Iterator<T> {
+
+		/** The index of the next field. */
+		private int nextIndex;
+
+		@Override
+		public boolean hasNext() {
+			return nextIndex < fieldCount;
+		}
+
+		@Override
+		public T next() {
+			if (nextIndex >= fieldCount) {
+				throw new NoSuchElementException();
+			}
+			return get(nextIndex++);
+		}
+
+		/**
+		 * Returns the element for the field with the given index.
+		 *
+		 * @param index
+		 *            The index of the field
+		 * @return The element for the field
+		 */
+		abstract T get(int index);
+
+	}
+
+	/**
+	 * Read-only map view of the fields.
+	 */
+	private class FieldsView extends AbstractMap<String, String> {
+
+		/** The entry set. */
+		private final Set<Entry<String, String>> entrySet = new AbstractSet<Entry<String, String>>() {
+			@Override
+			public Iterator<Entry<String, String>> iterator() {
+				return new FieldIterator<Entry<String, String>>() {
+					@Override
+					Entry<String, String> get(int index) {
+						return new SimpleImmutableEntry<>(fieldNames[index], fieldValues[index]);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return fieldCount;
+			}
+		};
+
+		@Override
+		public int size() {
+			return fieldCount;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return indexOf(key) != -1;
+		}
+
+		@Override
+		public String get(Object key) {
+			int index = indexOf(key);
+			return (index == -1) ? null : fieldValues[index];
+		}
+
+		@Override
+		public Set<Entry<String, String>> entrySet() {
+			return entrySet;
+		}
+
+	}
+
+	/**
+	 * The fields of a message by dotted name prefix. A prefix index is not
+	 * modified after it has been created.
+	 */
+	private class PrefixIndex {
+
+		/** The number of fields of the message when the index was created. */
+		private final int fieldCount;
+
+		/** The subtrees by prefix. */
+		private final Map<String, Subtree> subtrees = new HashMap<>();
+
+		private PrefixIndex() {
+			fieldCount = FcpMessage.this.fieldCount;
+			for (int index = 0; index < fieldCount; index++) {
+				String fieldName = fieldNames[index];
+				for (int dot = fieldName.indexOf('.'); dot != -1; dot = fieldName.indexOf('.', dot + 1)) {
+					subtrees.computeIfAbsent(fieldName.substring(0, dot), prefix -> new Subtree()).add(index, fieldName.substring(dot + 1));
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * The fields below a prefix. A subtree is only modified while its
+	 * {@link PrefixIndex} is created.
+	 */
+	private static class Subtree {
+
+		/** The subtree without fields. */
+		private static final Subtree EMPTY = new Subtree();
+
+		/** The indices of the fields. */
+		private int[] fieldIndices = new int[0];
+
+		/** The names of the fields, without the prefix. */
+		private String[] relativeNames = new String[0];
+
+		/** The number of fields. */
+		private int size;
+
+		private void add(int fieldIndex, String relativeName) {
+			if (size == fieldIndices.length) {
+				int newCapacity = Math.max(INITIAL_FIELD_CAPACITY, size * 2);
+				fieldIndices = Arrays.copyOf(fieldIndices, newCapacity);
+				relativeNames = Arrays.copyOf(relativeNames, newCapacity);
+			}
+			fieldIndices[size] = fieldIndex;
+			relativeNames[size] = relativeName;
+			size++;
+		}
+
+	}
+
+	/**
+	 * Read-only map view of the fields below a prefix.
+	 */
+	private class SubtreeView extends AbstractMap<String, String> {
+
+		/** The prefix of the field names, without the trailing dot. */
+		private final String prefix;
+
+		/** Whether the keys are the complete names of the fields. */
+		private final boolean fullNames;
+
+		/** The entry set. */
+		private final Set<Entry<String, String>> entrySet = new AbstractSet<Entry<String, String>>() {
+			@Override
+			public Iterator<Entry<String, String>> iterator() {
+				Subtree subtree = getSubtree(prefix);
+				return new Iterator<Entry<String, String>>() {
+					private int nextIndex;
+
+					@Override
+					public boolean hasNext() {
+						return nextIndex < subtree.size;
+					}
+
+					@Override
+					public Entry<String, String> next() {
+						if (nextIndex >= subtree.size) {
+							throw new NoSuchElementException();
+						}
+						int index = nextIndex++;
+						int fieldIndex = subtree.fieldIndices[index];
+						return new SimpleImmutableEntry<>(fullNames ? fieldNames[fieldIndex] : subtree.relativeNames[index], fieldValues[fieldIndex]);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return SubtreeView.this.size();
+			}
+		};
+
+		private SubtreeView(String prefix, boolean fullNames) {
+			this.prefix = prefix;
+			this.fullNames = fullNames;
+		}
+
+		@Override
+		public int size() {
+			return getSubtree(prefix).size;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return indexOf(getFieldName(prefix, key, fullNames)) != -1;
+		}
+
+		@Override
+		public String get(Object key) {
+			int index = indexOf(getFieldName(prefix, key, fullNames));
+			return (index == -1) ? null : fieldValues[index];
+		}
+
+		@Override
+		public Set<Entry<String, String>> entrySet() {
+			return entrySet;
+		}
+
 	}
 
 }
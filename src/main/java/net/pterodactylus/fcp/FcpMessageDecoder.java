@@ -0,0 +1,46 @@
+package net.pterodactylus.fcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Turns a received {@link FcpMessage} into a message object. Decoders for
+ * message types this library does not know can be registered using
+ * {@link FcpConnection#registerMessageDecoder(String, FcpMessageDecoder,
+ * java.util.function.Consumer)}.
+ *
+ * @param <T> The type of the decoded message
+ */
+@FunctionalInterface
+public interface FcpMessageDecoder<T> {
+
+	/**
+	 * Decodes the given message. If the message carries a payload, the
+	 * decoder must read it using the given payload reader.
+	 *
+	 * @param fcpMessage The received message
+	 * @param payloadReader The reader for the payload of the message
+	 * @return The decoded message
+	 * @throws IOException if the payload can not be read
+	 */
+	T decode(FcpMessage fcpMessage, PayloadReader payloadReader) throws IOException;
+
+	/**
+	 * Reads the payload of the message that is being decoded.
+	 */
+	@FunctionalInterface
+	interface PayloadReader {
+
+		/**
+		 * Reads the payload of the message that is being decoded.
+		 *
+		 * @param dataLength The length of the payload, usually taken from the
+		 * “DataLength” field of the message
+		 * @return An input stream containing the payload
+		 * @throws IOException if an I/O error occurs
+		 */
+		InputStream readPayload(long dataLength) throws IOException;
+
+	}
+
+}
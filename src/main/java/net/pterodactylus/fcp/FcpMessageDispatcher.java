@@ -0,0 +1,260 @@
+package net.pterodactylus.fcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * Turns received {@link FcpMessage}s into the corresponding message objects
+ * and notifies the listeners of an {@link FcpListenerManager}. The handler
+ * for a message is looked up by the message’s name in a table that contains
+ * all message types known to this library and can be extended using
+ * {@link #registerMessageDecoder(String, FcpMessageDecoder, Consumer)}.
+ * Messages without a handler are forwarded to
+ * {@link FcpListenerManager#fireMessageReceived(FcpMessage)}.
+ * <p>
+ * Messages known to this library are only decoded if a listener is
+ * {@link FcpListenerManager#hasListeners(MessageType) interested} in them;
+ * otherwise they are dropped, and their payload is discarded.
+ * <p>
+ * If a {@link ProgressCoalescer} is set, “SimpleProgress” messages are handed
+ * to it instead of being dispatched right away. The dispatcher must only be
+ * used from the thread that dispatches the messages of a connection.
+ */
+class FcpMessageDispatcher {
+
+	/** The handlers for the messages known to this library. */
+	private static final Map<String, MessageHandler> builtInHandlers = createBuiltInHandlers();
+
+	/** The messages that end a request, and that flush its progress. */
+	private static final Set<String> terminalMessages = new HashSet<>(Arrays.asList(
+			MessageType.DataFound.getMessageName(), MessageType.GetFailed.getMessageName(),
+			MessageType.PutSuccessful.getMessageName(), MessageType.PutFailed.getMessageName()));
+
+	/** The listener manager to notify. */
+	private final FcpListenerManager fcpListenerManager;
+
+	/** The handlers, by message name. */
+	private final Map<String, MessageHandler> handlers = new ConcurrentHashMap<>(builtInHandlers);
+
+	/** The coalescer for progress messages. */
+	private volatile ProgressCoalescer progressCoalescer;
+
+	/**
+	 * Creates a new message dispatcher.
+	 *
+	 * @param fcpListenerManager
+	 *            The listener manager to notify
+	 */
+	FcpMessageDispatcher(FcpListenerManager fcpListenerManager) {
+		this.fcpListenerManager = fcpListenerManager;
+	}
+
+	/**
+	 * Sets the coalescer for “SimpleProgress” messages.
+	 *
+	 * @param progressCoalescer
+	 *            The progress coalescer, or {@code null} to dispatch all
+	 *            progress messages
+	 */
+	void setProgressCoalescer(ProgressCoalescer progressCoalescer) {
+		this.progressCoalescer = progressCoalescer;
+	}
+
+	/**
+	 * Delivers the waiting progress of the progress coalescer if it is due.
+	 * This is used by connections whose dispatching thread can not run tasks
+	 * handed to it by the coalescer.
+	 */
+	void flushDueProgress() {
+		ProgressCoalescer progressCoalescer = this.progressCoalescer;
+		if (progressCoalescer != null) {
+			progressCoalescer.flushIfDue();
+		}
+	}
+
+	/**
+	 * Registers a decoder for messages with the given name. Received messages
+	 * with this name are decoded by the given decoder and handed to the given
+	 * consumer instead of the listeners. A decoder registered for a message
+	 * type known to this library replaces the built-in handling.
+	 *
+	 * @param messageName
+	 *            The name of the message
+	 * @param messageDecoder
+	 *            The decoder for the message
+	 * @param messageConsumer
+	 *            The consumer for the decoded message
+	 * @param <T>
+	 *            The type of the decoded message
+	 */
+	<T> void registerMessageDecoder(String messageName, FcpMessageDecoder<? extends T> messageDecoder, Consumer<? super T> messageConsumer) {
+		handlers.put(messageName, (fcpListenerManager, fcpMessage, payloadSource) ->
+				messageConsumer.accept(messageDecoder.decode(fcpMessage, dataLength -> payloadSource.getPayload(fcpMessage, dataLength))));
+	}
+
+	/**
+	 * Dispatches the given message.
+	 *
+	 * @param fcpMessage
+	 *            The received message
+	 * @param payloadSource
+	 *            The source of the message’s payload
+	 * @throws IOException
+	 *             if the payload can not be read
+	 */
+	void dispatch(FcpMessage fcpMessage, PayloadSource payloadSource) throws IOException {
+		MessageHandler messageHandler = handlers.get(fcpMessage.getName());
+		if (messageHandler == null) {
+			if (fcpListenerManager.hasListeners(MessageType.UnknownMessage)) {
+				fcpListenerManager.fireMessageReceived(fcpMessage);
+			}
+			return;
+		}
+		ProgressCoalescer progressCoalescer = this.progressCoalescer;
+		if ((progressCoalescer != null) && (messageHandler == builtInHandlers.get(fcpMessage.getName()))) {
+			String identifier = fcpMessage.getField("Identifier");
+			if (identifier != null) {
+				if (fcpMessage.getName().equals(MessageType.SimpleProgress.getMessageName())) {
+					if (fcpListenerManager.hasListeners(MessageType.SimpleProgress)) {
+						progressCoalescer.coalesce(identifier, () -> fcpListenerManager.fireReceivedSimpleProgress(new SimpleProgress(fcpMessage)));
+					}
+					return;
+				}
+				if (terminalMessages.contains(fcpMessage.getName())) {
+					progressCoalescer.flush(identifier);
+				}
+			}
+		}
+		messageHandler.handle(fcpListenerManager, fcpMessage, payloadSource);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private static Map<String, MessageHandler> createBuiltInHandlers() {
+		Map<String, MessageHandler> handlers = new HashMap<>();
+		addHandler(handlers, MessageType.SimpleProgress, SimpleProgress::new, FcpListenerManager::fireReceivedSimpleProgress);
+		addHandler(handlers, MessageType.ProtocolError, ProtocolError::new, FcpListenerManager::fireReceivedProtocolError);
+		addHandler(handlers, MessageType.PersistentGet, PersistentGet::new, FcpListenerManager::fireReceivedPersistentGet);
+		addHandler(handlers, MessageType.PersistentPut, PersistentPut::new, FcpListenerManager::fireReceivedPersistentPut);
+		addHandler(handlers, MessageType.PersistentPutDir, PersistentPutDir::new, FcpListenerManager::fireReceivedPersistentPutDir);
+		addHandler(handlers, MessageType.URIGenerated, URIGenerated::new, FcpListenerManager::fireReceivedURIGenerated);
+		addHandler(handlers, MessageType.EndListPersistentRequests, EndListPersistentRequests::new, FcpListenerManager::fireReceivedEndListPersistentRequests);
+		addHandler(handlers, MessageType.Peer, Peer::new, FcpListenerManager::fireReceivedPeer);
+		addHandler(handlers, MessageType.PeerNote, PeerNote::new, FcpListenerManager::fireReceivedPeerNote);
+		addHandler(handlers, MessageType.StartedCompression, StartedCompression::new, FcpListenerManager::fireReceivedStartedCompression);
+		addHandler(handlers, MessageType.FinishedCompression, FinishedCompression::new, FcpListenerManager::fireReceivedFinishedCompression);
+		addHandler(handlers, MessageType.GetFailed, GetFailed::new, FcpListenerManager::fireReceivedGetFailed);
+		addHandler(handlers, MessageType.PutFetchable, PutFetchable::new, FcpListenerManager::fireReceivedPutFetchable);
+		addHandler(handlers, MessageType.PutSuccessful, PutSuccessful::new, FcpListenerManager::fireReceivedPutSuccessful);
+		addHandler(handlers, MessageType.PutFailed, PutFailed::new, FcpListenerManager::fireReceivedPutFailed);
+		addHandler(handlers, MessageType.DataFound, DataFound::new, FcpListenerManager::fireReceivedDataFound);
+		addHandler(handlers, MessageType.SubscribedUSKUpdate, SubscribedUSKUpdate::new, FcpListenerManager::fireReceivedSubscribedUSKUpdate);
+		addHandler(handlers, MessageType.SubscribedUSK, SubscribedUSK::new, FcpListenerManager::fireReceivedSubscribedUSK);
+		addHandler(handlers, MessageType.IdentifierCollision, IdentifierCollision::new, FcpListenerManager::fireReceivedIdentifierCollision);
+		handlers.put("AllData", (fcpListenerManager, fcpMessage, payloadSource) -> {
+			long dataLength = FcpUtils.safeParseLong(fcpMessage.getField("DataLength"));
+			if (!fcpListenerManager.hasListeners(MessageType.AllData)) {
+				payloadSource.discardPayload(fcpMessage, dataLength);
+				return;
+			}
+			InputStream payloadInputStream = payloadSource.getPayload(fcpMessage, dataLength);
+			fcpListenerManager.fireReceivedAllData(new AllData(fcpMessage, payloadInputStream));
+		});
+		addHandler(handlers, MessageType.EndListPeerNotes, EndListPeerNotes::new, FcpListenerManager::fireReceivedEndListPeerNotes);
+		addHandler(handlers, MessageType.EndListPeers, EndListPeers::new, FcpListenerManager::fireReceivedEndListPeers);
+		addHandler(handlers, MessageType.SSKKeypair, SSKKeypair::new, FcpListenerManager::fireReceivedSSKKeypair);
+		addHandler(handlers, MessageType.PeerRemoved, PeerRemoved::new, FcpListenerManager::fireReceivedPeerRemoved);
+		addHandler(handlers, MessageType.PersistentRequestModified, PersistentRequestModified::new, FcpListenerManager::fireReceivedPersistentRequestModified);
+		addHandler(handlers, MessageType.PersistentRequestRemoved, PersistentRequestRemoved::new, FcpListenerManager::fireReceivedPersistentRequestRemoved);
+		addHandler(handlers, MessageType.UnknownPeerNoteType, UnknownPeerNoteType::new, FcpListenerManager::fireReceivedUnknownPeerNoteType);
+		addHandler(handlers, MessageType.UnknownNodeIdentifier, UnknownNodeIdentifier::new, FcpListenerManager::fireReceivedUnknownNodeIdentifier);
+		handlers.put("FCPPluginReply", (fcpListenerManager, fcpMessage, payloadSource) -> {
+			long dataLength = FcpUtils.safeParseLong(fcpMessage.getField("DataLength"), 0);
+			if (!fcpListenerManager.hasListeners(MessageType.FCPPluginReply)) {
+				payloadSource.discardPayload(fcpMessage, dataLength);
+				return;
+			}
+			InputStream payloadInputStream = payloadSource.getPayload(fcpMessage, dataLength);
+			fcpListenerManager.fireReceivedFCPPluginReply(new FCPPluginReply(fcpMessage, payloadInputStream));
+		});
+		addHandler(handlers, MessageType.PluginInfo, PluginInfo::new, FcpListenerManager::fireReceivedPluginInfo);
+		addHandler(handlers, MessageType.PluginRemoved, PluginRemoved::new, FcpListenerManager::fireReceivedPluginRemoved);
+		addHandler(handlers, MessageType.NodeData, NodeData::new, FcpListenerManager::fireReceivedNodeData);
+		addHandler(handlers, MessageType.TestDDAReply, TestDDAReply::new, FcpListenerManager::fireReceivedTestDDAReply);
+		addHandler(handlers, MessageType.TestDDAComplete, TestDDAComplete::new, FcpListenerManager::fireReceivedTestDDAComplete);
+		addHandler(handlers, MessageType.ConfigData, ConfigData::new, FcpListenerManager::fireReceivedConfigData);
+		addHandler(handlers, MessageType.NodeHello, NodeHello::new, FcpListenerManager::fireReceivedNodeHello);
+		addHandler(handlers, MessageType.CloseConnectionDuplicateClientName, CloseConnectionDuplicateClientName::new, FcpListenerManager::fireReceivedCloseConnectionDuplicateClientName);
+		addHandler(handlers, MessageType.SentFeed, SentFeed::new, FcpListenerManager::fireReceivedSentFeed);
+		addHandler(handlers, MessageType.ReceivedBookmarkFeed, ReceivedBookmarkFeed::new, FcpListenerManager::fireReceivedBookmarkFeed);
+		return unmodifiableMap(handlers);
+	}
+
+	private static <T> void addHandler(Map<String, MessageHandler> handlers, MessageType messageType, Function<FcpMessage, T> messageDecoder, BiConsumer<FcpListenerManager, T> fireMethod) {
+		handlers.put(messageType.getMessageName(), (fcpListenerManager, fcpMessage, payloadSource) -> {
+			if (fcpListenerManager.hasListeners(messageType)) {
+				fireMethod.accept(fcpListenerManager, messageDecoder.apply(fcpMessage));
+			}
+		});
+	}
+
+	/**
+	 * Decodes a message and notifies the listeners.
+	 */
+	private interface MessageHandler {
+
+		void handle(FcpListenerManager fcpListenerManager, FcpMessage fcpMessage, PayloadSource payloadSource) throws IOException;
+
+	}
+
+	/**
+	 * Delivers the payload of a received message.
+	 */
+	interface PayloadSource {
+
+		/**
+		 * Returns an input stream containing the payload of the message that
+		 * is currently being dispatched.
+		 *
+		 * @param fcpMessage
+		 *            The message that is being dispatched
+		 * @param dataLength
+		 *            The length of the payload, or {@code -1} if it is unknown
+		 * @return An input stream containing the payload
+		 * @throws IOException
+		 *             if an I/O error occurs
+		 */
+		InputStream getPayload(FcpMessage fcpMessage, long dataLength) throws IOException;
+
+		/**
+		 * Consumes the payload of the message that is currently being
+		 * dispatched without handing it to anybody. This is used when no
+		 * listener is interested in the message.
+		 *
+		 * @param fcpMessage
+		 *            The message that is being dispatched
+		 * @param dataLength
+		 *            The length of the payload, or {@code -1} if it is unknown
+		 * @throws IOException
+		 *             if an I/O error occurs
+		 */
+		default void discardPayload(FcpMessage fcpMessage, long dataLength) throws IOException {
+			getPayload(fcpMessage, dataLength).close();
+		}
+
+	}
+
+}
@@ -0,0 +1,193 @@
+package net.pterodactylus.fcp;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Encodes the names and fields of messages directly into a
+ * {@link ByteBuffer}. Message and field names are encoded once and kept in a
+ * cache; values are encoded character by character, so encoding a message
+ * does not create any intermediate strings or arrays. A buffer that is too
+ * small is replaced by a larger one, so callers have to continue with the
+ * buffer returned by the encoding methods.
+ */
+final class FcpMessageEncoder {
+
+	/** The maximum number of cached names. */
+	private static final int MAX_CACHED_NAMES = 4096;
+
+	/** The encoded line break. */
+	private static final byte[] LINEFEED = { '\r', '\n' };
+
+	/** The encoded terminator for messages with a payload. */
+	private static final byte[] DATA = "Data\r\n".getBytes(UTF_8);
+
+	/** The encoded terminator for messages without a payload. */
+	private static final byte[] END_MESSAGE = "EndMessage\r\n".getBytes(UTF_8);
+
+	/** The encoded names, by name. */
+	private static final Map<String, byte[]> encodedNames = new ConcurrentHashMap<>();
+
+	private FcpMessageEncoder() {
+		/* static methods only. */
+	}
+
+	/**
+	 * Returns the encoded form of the given message or field name.
+	 *
+	 * @param name
+	 *            The name to encode
+	 * @return The UTF-8 encoded name
+	 */
+	static byte[] encodeName(String name) {
+		byte[] encodedName = encodedNames.get(name);
+		if (encodedName == null) {
+			encodedName = name.getBytes(UTF_8);
+			if (encodedNames.size() < MAX_CACHED_NAMES) {
+				encodedNames.put(name, encodedName);
+			}
+		}
+		return encodedName;
+	}
+
+	/**
+	 * Writes the name of a message, followed by a line break.
+	 *
+	 * @param buffer
+	 *            The buffer to write to
+	 * @param messageName
+	 *            The name of the message
+	 * @return The buffer containing the encoded name
+	 */
+	static ByteBuffer putMessageName(ByteBuffer buffer, String messageName) {
+		return putBytes(putBytes(buffer, encodeName(messageName)), LINEFEED);
+	}
+
+	/**
+	 * Writes a field, followed by a line break.
+	 *
+	 * @param buffer
+	 *            The buffer to write to
+	 * @param fieldName
+	 *            The name of the field
+	 * @param fieldValue
+	 *            The value of the field
+	 * @return The buffer containing the encoded field
+	 */
+	static ByteBuffer putField(ByteBuffer buffer, String fieldName, String fieldValue) {
+		return putField(buffer, encodeName(fieldName), fieldValue);
+	}
+
+	/**
+	 * Writes a field with an already encoded name, followed by a line break.
+	 *
+	 * @param buffer
+	 *            The buffer to write to
+	 * @param encodedFieldName
+	 *            The UTF-8 encoded name of the field
+	 * @param fieldValue
+	 *            The value of the field
+	 * @return The buffer containing the encoded field
+	 */
+	static ByteBuffer putField(ByteBuffer buffer, byte[] encodedFieldName, String fieldValue) {
+		ByteBuffer targetBuffer = ensureRemaining(buffer, encodedFieldName.length + 1 + fieldValue.length() * 3 + LINEFEED.length);
+		targetBuffer.put(encodedFieldName);
+		targetBuffer.put((byte) '=');
+		putString(targetBuffer, fieldValue);
+		targetBuffer.put(LINEFEED);
+		return targetBuffer;
+	}
+
+	/**
+	 * Writes the terminator of a message.
+	 *
+	 * @param buffer
+	 *            The buffer to write to
+	 * @param payloadFollows
+	 *            {@code true} to write “Data”, {@code false} to write
+	 *            “EndMessage”
+	 * @return The buffer containing the terminator
+	 */
+	static ByteBuffer putTerminator(ByteBuffer buffer, boolean payloadFollows) {
+		return putBytes(buffer, payloadFollows ? DATA : END_MESSAGE);
+	}
+
+	/**
+	 * Writes the given bytes.
+	 *
+	 * @param buffer
+	 *            The buffer to write to
+	 * @param bytes
+	 *            The bytes to write
+	 * @return The buffer containing the bytes
+	 */
+	static ByteBuffer putBytes(ByteBuffer buffer, byte[] bytes) {
+		ByteBuffer targetBuffer = ensureRemaining(buffer, bytes.length);
+		targetBuffer.put(bytes);
+		return targetBuffer;
+	}
+
+	/**
+	 * Returns a buffer with at least the given number of remaining bytes. If
+	 * the given buffer is too small, a larger buffer containing the bytes
+	 * written so far is returned.
+	 *
+	 * @param buffer
+	 *            The buffer being written to
+	 * @param required
+	 *            The number of bytes that will be written
+	 * @return A buffer with enough remaining bytes
+	 */
+	static ByteBuffer ensureRemaining(ByteBuffer buffer, int required) {
+		if (buffer.remaining() >= required) {
+			return buffer;
+		}
+		ByteBuffer largerBuffer = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + required));
+		buffer.flip();
+		largerBuffer.put(buffer);
+		return largerBuffer;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Encodes the given string as UTF-8. The buffer must have room for three
+	 * bytes per character; unpaired surrogates are replaced by ‘?’, as
+	 * {@link String#getBytes(java.nio.charset.Charset)} does.
+	 *
+	 * @param buffer
+	 *            The buffer to write to
+	 * @param value
+	 *            The string to encode
+	 */
+	private static void putString(ByteBuffer buffer, String value) {
+		int length = value.length();
+		for (int index = 0; index < length; index++) {
+			char character = value.charAt(index);
+			if (character < 0x80) {
+				buffer.put((byte) character);
+			} else if (character < 0x800) {
+				buffer.put((byte) (0xc0 | (character >> 6)));
+				buffer.put((byte) (0x80 | (character & 0x3f)));
+			} else if (Character.isHighSurrogate(character) && ((index + 1) < length) && Character.isLowSurrogate(value.charAt(index + 1))) {
+				int codePoint = Character.toCodePoint(character, value.charAt(++index));
+				buffer.put((byte) (0xf0 | (codePoint >> 18)));
+				buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+				buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+				buffer.put((byte) (0x80 | (codePoint & 0x3f)));
+			} else if (Character.isSurrogate(character)) {
+				buffer.put((byte) '?');
+			} else {
+				buffer.put((byte) (0xe0 | (character >> 12)));
+				buffer.put((byte) (0x80 | ((character >> 6) & 0x3f)));
+				buffer.put((byte) (0x80 | (character & 0x3f)));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,49 @@
+package net.pterodactylus.fcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads {@link FcpMessage}s from the stream of bytes sent by a node. A reader
+ * only frames messages, i.e. it recognizes the message name, the fields, and
+ * the end marker; it does not interpret the messages it reads.
+ * <p>
+ * If a message is terminated by “Data” instead of “EndMessage” its payload
+ * directly follows the end marker, and it has to be consumed from
+ * {@link #getPayloadInputStream()} before the next message can be read.
+ *
+ * @see BufferedFcpMessageReader
+ */
+public interface FcpMessageReader {
+
+	/**
+	 * Reads the next message.
+	 *
+	 * @return The next message, or {@code null} if the end of the stream has
+	 * been reached
+	 * @throws IOException if an I/O error occurs
+	 */
+	FcpMessage readMessage() throws IOException;
+
+	/**
+	 * Returns an input stream that delivers the bytes following the last
+	 * message read by {@link #readMessage()}. Closing the returned stream
+	 * does not close the underlying stream.
+	 *
+	 * @return An input stream for the payload of the last message
+	 */
+	InputStream getPayloadInputStream();
+
+	/**
+	 * Returns whether the last message read by {@link #readMessage()} was
+	 * terminated by “Data”, i.e. whether a payload follows it. The default
+	 * implementation returns {@code false}.
+	 *
+	 * @return {@code true} if a payload follows the last message,
+	 * {@code false} otherwise
+	 */
+	default boolean isPayloadFollowing() {
+		return false;
+	}
+
+}
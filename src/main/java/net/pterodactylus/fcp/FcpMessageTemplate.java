@@ -0,0 +1,172 @@
+package net.pterodactylus.fcp;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Creates messages that only differ in a few fields, such as many
+ * “ClientGet” messages that only differ in their “Identifier” and “URI”. The
+ * name and the constant fields of the messages are encoded once when the
+ * template is created; sending a message created by the template only
+ * encodes the values of the variable fields.
+ * <p>
+ * Templates are immutable and can be shared between threads.
+ *
+ * <pre>
+ * FcpMessageTemplate template = new FcpMessageTemplate(new ClientGet("", ""), "Identifier", "URI");
+ * fcpConnection.sendMessage(template.create("request-1", "CHK@…"));
+ * </pre>
+ */
+public class FcpMessageTemplate {
+
+	/** The name of the messages. */
+	private final String name;
+
+	/** The names of the constant fields. */
+	private final String[] constantFieldNames;
+
+	/** The values of the constant fields. */
+	private final String[] constantFieldValues;
+
+	/** The encoded name and constant fields. */
+	private final byte[] encodedConstantPart;
+
+	/** The names of the variable fields. */
+	private final String[] variableFieldNames;
+
+	/** The encoded names of the variable fields. */
+	private final byte[][] encodedVariableFieldNames;
+
+	/**
+	 * Creates a new template. All fields of the given message except the
+	 * variable fields are copied into the template; later changes to the
+	 * message do not change the template. The payload of the message is
+	 * ignored.
+	 *
+	 * @param fcpMessage
+	 *            The message to use as template
+	 * @param variableFieldNames
+	 *            The names of the fields that are given when a message is
+	 *            created
+	 */
+	public FcpMessageTemplate(FcpMessage fcpMessage, String... variableFieldNames) {
+		this.name = fcpMessage.getName();
+		this.variableFieldNames = variableFieldNames.clone();
+		List<String> variableFieldNameList = Arrays.asList(this.variableFieldNames);
+		int constantFieldCount = 0;
+		for (String field : fcpMessage) {
+			if (!variableFieldNameList.contains(field)) {
+				constantFieldCount++;
+			}
+		}
+		constantFieldNames = new String[constantFieldCount];
+		constantFieldValues = new String[constantFieldCount];
+		ByteBuffer buffer = FcpMessageEncoder.putMessageName(ByteBuffer.allocate(1024), name);
+		int index = 0;
+		for (String field : fcpMessage) {
+			if (!variableFieldNameList.contains(field)) {
+				constantFieldNames[index] = field;
+				constantFieldValues[index] = fcpMessage.getField(field);
+				buffer = FcpMessageEncoder.putField(buffer, field, constantFieldValues[index]);
+				index++;
+			}
+		}
+		encodedConstantPart = Arrays.copyOf(buffer.array(), buffer.position());
+		encodedVariableFieldNames = new byte[variableFieldNames.length][];
+		for (int variableIndex = 0; variableIndex < variableFieldNames.length; variableIndex++) {
+			encodedVariableFieldNames[variableIndex] = FcpMessageEncoder.encodeName(variableFieldNames[variableIndex]);
+		}
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the name of the messages created by this template.
+	 *
+	 * @return The name of the messages
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the names of the fields whose values are given when a message
+	 * is created.
+	 *
+	 * @return The names of the variable fields
+	 */
+	public List<String> getVariableFieldNames() {
+		return Collections.unmodifiableList(Arrays.asList(variableFieldNames));
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Creates a new message with the constant fields of this template and the
+	 * given values for the variable fields. The message can be changed like
+	 * any other message; once it has been changed, it is encoded completely
+	 * when it is sent.
+	 *
+	 * @param variableFieldValues
+	 *            The values of the variable fields, in the order of
+	 *            {@link #getVariableFieldNames()}
+	 * @return The new message
+	 * @throws IllegalArgumentException
+	 *             if the number of values does not match the number of
+	 *             variable fields
+	 */
+	public FcpMessage create(String... variableFieldValues) {
+		if (variableFieldValues.length != variableFieldNames.length) {
+			throw new IllegalArgumentException("expected " + variableFieldNames.length + " values but got " + variableFieldValues.length);
+		}
+		return new TemplateMessage(this, variableFieldValues);
+	}
+
+	/**
+	 * A message created by a template.
+	 */
+	private static class TemplateMessage extends FcpMessage {
+
+		/** The template of this message. */
+		private final FcpMessageTemplate template;
+
+		/** The values of the variable fields. */
+		private final String[] variableFieldValues;
+
+		/** The modification count after all fields were set. */
+		private final int initialModificationCount;
+
+		private TemplateMessage(FcpMessageTemplate template, String[] variableFieldValues) {
+			super(template.name);
+			this.template = template;
+			this.variableFieldValues = variableFieldValues.clone();
+			for (int index = 0; index < template.constantFieldNames.length; index++) {
+				setField(template.constantFieldNames[index], template.constantFieldValues[index]);
+			}
+			for (int index = 0; index < template.variableFieldNames.length; index++) {
+				setField(template.variableFieldNames[index], this.variableFieldValues[index]);
+			}
+			initialModificationCount = getModificationCount();
+		}
+
+		@Override
+		ByteBuffer encodeHeader(ByteBuffer buffer, boolean payloadFollows) {
+			if (getModificationCount() != initialModificationCount) {
+				return super.encodeHeader(buffer, payloadFollows);
+			}
+			ByteBuffer targetBuffer = FcpMessageEncoder.putBytes(buffer, template.encodedConstantPart);
+			for (int index = 0; index < variableFieldValues.length; index++) {
+				targetBuffer = FcpMessageEncoder.putField(targetBuffer, template.encodedVariableFieldNames[index], variableFieldValues[index]);
+			}
+			return FcpMessageEncoder.putTerminator(targetBuffer, payloadFollows);
+		}
+
+	}
+
+}
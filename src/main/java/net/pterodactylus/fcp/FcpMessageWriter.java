@@ -0,0 +1,201 @@
+package net.pterodactylus.fcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Writes queued messages to an output stream on its own thread. All messages
+ * that are queued while the previous batch is being written are encoded into
+ * a single buffer, which is written to the output stream with one call and
+ * flushed once, so many small messages cost only a few writes on the
+ * underlying socket.
+ */
+class FcpMessageWriter implements Runnable {
+
+	/** The size after which the buffer is written even if the batch continues. */
+	private static final int MAX_BUFFER_SIZE = 1 << 16;
+
+	/** Marker that wakes up the writer thread after {@link #close(Throwable)}. */
+	private static final OutgoingMessages STOP = new OutgoingMessages(emptyList());
+
+	/** The output stream to write to. */
+	private final OutputStream outputStream;
+
+	/** Called when writing fails. */
+	private final Consumer<? super Throwable> errorHandler;
+
+	/** Messages waiting to be written. */
+	private final BlockingQueue<OutgoingMessages> outgoingMessages = new LinkedBlockingQueue<>();
+
+	/** The buffer that messages are encoded into. */
+	private ByteBuffer buffer = ByteBuffer.allocate(MAX_BUFFER_SIZE);
+
+	/** The buffer for copying payloads. */
+	private final byte[] payloadBuffer = new byte[MAX_BUFFER_SIZE];
+
+	/** Whether this writer has been closed. */
+	private volatile boolean closed;
+
+	/** The reason this writer was closed. */
+	private volatile Throwable closeCause;
+
+	/**
+	 * Creates a new message writer.
+	 *
+	 * @param outputStream
+	 *            The output stream to write to
+	 * @param errorHandler
+	 *            Called with the exception if writing fails
+	 */
+	FcpMessageWriter(OutputStream outputStream, Consumer<? super Throwable> errorHandler) {
+		this.outputStream = outputStream;
+		this.errorHandler = errorHandler;
+	}
+
+	/**
+	 * Queues the given messages for writing.
+	 *
+	 * @param fcpMessages
+	 *            The messages to write
+	 * @return A future that is completed once all messages have been written
+	 */
+	CompletableFuture<Void> enqueue(Collection<? extends FcpMessage> fcpMessages) {
+		OutgoingMessages messages = new OutgoingMessages(new ArrayList<>(fcpMessages));
+		outgoingMessages.add(messages);
+		if (closed) {
+			failOutgoingMessages();
+		}
+		return messages.completion;
+	}
+
+	/**
+	 * Stops the writer. Messages that have not been written yet are failed.
+	 *
+	 * @param throwable
+	 *            The reason for closing the writer, may be {@code null}
+	 */
+	void close(Throwable throwable) {
+		closeCause = throwable;
+		closed = true;
+		outgoingMessages.add(STOP);
+	}
+
+	@Override
+	public void run() {
+		List<OutgoingMessages> batch = new ArrayList<>();
+		try {
+			while (!closed) {
+				batch.add(outgoingMessages.take());
+				outgoingMessages.drainTo(batch);
+				if (closed) {
+					break;
+				}
+				writeBatch(batch);
+				for (OutgoingMessages messages : batch) {
+					messages.completion.complete(null);
+				}
+				batch.clear();
+			}
+		} catch (InterruptedException ie1) {
+			closed = true;
+		} catch (IOException | RuntimeException e) {
+			closed = true;
+			for (OutgoingMessages messages : batch) {
+				messages.completion.completeExceptionally(e);
+			}
+			batch.clear();
+			errorHandler.accept(e);
+		}
+		for (OutgoingMessages messages : batch) {
+			messages.completion.completeExceptionally(new IOException("connection is closed", closeCause));
+		}
+		failOutgoingMessages();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void writeBatch(List<OutgoingMessages> batch) throws IOException {
+		buffer.clear();
+		for (OutgoingMessages messages : batch) {
+			for (FcpMessage fcpMessage : messages.fcpMessages) {
+				InputStream payloadInputStream = fcpMessage.getPayloadInputStream();
+				buffer = fcpMessage.encodeHeader(buffer, payloadInputStream != null);
+				if (payloadInputStream != null) {
+					for (InputStream payloadPart : fcpMessage.getPayloadParts()) {
+						writePayload(payloadPart);
+					}
+				}
+				if (buffer.position() >= MAX_BUFFER_SIZE) {
+					writeBuffer();
+				}
+			}
+		}
+		writeBuffer();
+		outputStream.flush();
+	}
+
+	private void writePayload(InputStream payloadInputStream) throws IOException {
+		int read;
+		while ((read = payloadInputStream.read(payloadBuffer)) != -1) {
+			if (read > buffer.remaining()) {
+				writeBuffer();
+			}
+			if ((buffer.position() == 0) && (read == payloadBuffer.length)) {
+				/* large payloads bypass the batch buffer. */
+				outputStream.write(payloadBuffer, 0, read);
+			} else {
+				buffer.put(payloadBuffer, 0, read);
+			}
+		}
+	}
+
+	private void writeBuffer() throws IOException {
+		if (buffer.position() > 0) {
+			outputStream.write(buffer.array(), 0, buffer.position());
+		}
+		if (buffer.capacity() > MAX_BUFFER_SIZE) {
+			/* do not keep buffers grown by very large messages. */
+			buffer = ByteBuffer.allocate(MAX_BUFFER_SIZE);
+		} else {
+			buffer.clear();
+		}
+	}
+
+	private void failOutgoingMessages() {
+		OutgoingMessages messages;
+		while ((messages = outgoingMessages.poll()) != null) {
+			messages.completion.completeExceptionally(new IOException("connection is closed", closeCause));
+		}
+	}
+
+	/**
+	 * Messages that were queued together.
+	 */
+	private static class OutgoingMessages {
+
+		/** The messages to write. */
+		private final List<? extends FcpMessage> fcpMessages;
+
+		/** Completed once all messages have been written. */
+		private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+		private OutgoingMessages(List<? extends FcpMessage> fcpMessages) {
+			this.fcpMessages = fcpMessages;
+		}
+
+	}
+
+}
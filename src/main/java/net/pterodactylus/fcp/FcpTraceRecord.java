@@ -0,0 +1,180 @@
+package net.pterodactylus.fcp;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A message as it was sent to or received from the node, with the time it
+ * was traced. The framed message contains the name, the fields, and the
+ * terminating “Data” or “EndMessage” line exactly as they appear on the
+ * wire; payloads are not recorded.
+ *
+ * @see FcpTracer
+ */
+public class FcpTraceRecord {
+
+	/** The logger. */
+	private static final Logger logger = Logger.getLogger(FcpTraceRecord.class.getName());
+
+	/**
+	 * Whether a message was sent or received.
+	 */
+	public enum Direction {
+
+		/** The message was sent to the node. */
+		sent,
+
+		/** The message was received from the node. */
+		received
+
+	}
+
+	/** Whether the message was sent or received. */
+	private final Direction direction;
+
+	/** The time the message was traced, in milliseconds since the epoch. */
+	private final long timestamp;
+
+	/** The value of {@link System#nanoTime()} when the message was traced. */
+	private final long nanoTime;
+
+	/** The name of the message. */
+	private final String messageName;
+
+	/** The encoded message. */
+	private final byte[] framedMessage;
+
+	/**
+	 * Creates a new trace record.
+	 *
+	 * @param direction
+	 *            Whether the message was sent or received
+	 * @param timestamp
+	 *            The time the message was traced, in milliseconds since the
+	 *            epoch
+	 * @param nanoTime
+	 *            The value of {@link System#nanoTime()} when the message was
+	 *            traced
+	 * @param messageName
+	 *            The name of the message
+	 * @param framedMessage
+	 *            The encoded message
+	 */
+	public FcpTraceRecord(Direction direction, long timestamp, long nanoTime, String messageName, byte[] framedMessage) {
+		this.direction = direction;
+		this.timestamp = timestamp;
+		this.nanoTime = nanoTime;
+		this.messageName = messageName;
+		this.framedMessage = framedMessage.clone();
+	}
+
+	/**
+	 * Creates a trace record for the given message, using the current time.
+	 *
+	 * @param direction
+	 *            Whether the message was sent or received
+	 * @param fcpMessage
+	 *            The message
+	 * @param payloadFollows
+	 *            Whether a payload follows the message
+	 * @return The trace record
+	 */
+	static FcpTraceRecord create(Direction direction, FcpMessage fcpMessage, boolean payloadFollows) {
+		long timestamp = System.currentTimeMillis();
+		long nanoTime = System.nanoTime();
+		ByteBuffer buffer = fcpMessage.encodeHeader(ByteBuffer.allocate(256), payloadFollows);
+		return new FcpTraceRecord(direction, timestamp, nanoTime, fcpMessage.getName(), Arrays.copyOf(buffer.array(), buffer.position()));
+	}
+
+	/**
+	 * Hands the given message to the given tracer if the tracer is
+	 * interested in it. Exceptions thrown by the tracer are logged and do not
+	 * affect the connection.
+	 *
+	 * @param tracer
+	 *            The tracer, or {@code null} if tracing is disabled
+	 * @param direction
+	 *            Whether the message was sent or received
+	 * @param fcpMessage
+	 *            The message
+	 * @param payloadFollows
+	 *            Whether a payload follows the message
+	 */
+	static void trace(FcpTracer tracer, Direction direction, FcpMessage fcpMessage, boolean payloadFollows) {
+		if (tracer == null) {
+			return;
+		}
+		try {
+			if (tracer.isTraced(direction, fcpMessage.getName())) {
+				tracer.trace(create(direction, fcpMessage, payloadFollows));
+			}
+		} catch (RuntimeException re1) {
+			logger.log(Level.WARNING, "tracer failed", re1);
+		}
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns whether the message was sent or received.
+	 *
+	 * @return The direction of the message
+	 */
+	public Direction getDirection() {
+		return direction;
+	}
+
+	/**
+	 * Returns the time the message was traced.
+	 *
+	 * @return The time the message was traced, in milliseconds since the
+	 *         epoch
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Returns the value of {@link System#nanoTime()} when the message was
+	 * traced, for measuring the time between messages.
+	 *
+	 * @return The nano time of the trace
+	 */
+	public long getNanoTime() {
+		return nanoTime;
+	}
+
+	/**
+	 * Returns the name of the message.
+	 *
+	 * @return The name of the message
+	 */
+	public String getMessageName() {
+		return messageName;
+	}
+
+	/**
+	 * Returns the message as it appears on the wire, without its payload.
+	 *
+	 * @return The encoded message
+	 */
+	public byte[] getFramedMessage() {
+		return framedMessage.clone();
+	}
+
+	//
+	// OBJECT METHODS
+	//
+
+	@Override
+	public String toString() {
+		return timestamp + " " + direction + " " + new String(framedMessage, UTF_8);
+	}
+
+}
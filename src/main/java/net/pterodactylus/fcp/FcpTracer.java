@@ -0,0 +1,41 @@
+package net.pterodactylus.fcp;
+
+/**
+ * Hook that records the messages exchanged with the node. A connection
+ * without a tracer, which is the default, does not spend any work on
+ * tracing; with a tracer, the connection first asks
+ * {@link #isTraced(FcpTraceRecord.Direction, String)} and only encodes a
+ * message into an {@link FcpTraceRecord} if the tracer is interested in it.
+ * <p>
+ * Tracers are called on the threads that send and receive messages and
+ * should return quickly.
+ *
+ * @see FilteringFcpTracer
+ * @see DefaultFcpConnection#setTracer(FcpTracer)
+ * @see NioFcpConnection#setTracer(FcpTracer)
+ */
+public interface FcpTracer {
+
+	/**
+	 * Returns whether the given message should be traced. The default
+	 * implementation traces all messages.
+	 *
+	 * @param direction
+	 *            Whether the message was sent or received
+	 * @param messageName
+	 *            The name of the message
+	 * @return {@code true} to trace the message, {@code false} to skip it
+	 */
+	default boolean isTraced(FcpTraceRecord.Direction direction, String messageName) {
+		return true;
+	}
+
+	/**
+	 * Records a message.
+	 *
+	 * @param traceRecord
+	 *            The trace record of the message
+	 */
+	void trace(FcpTraceRecord traceRecord);
+
+}
@@ -21,10 +21,16 @@ import java.io.Closeable;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 
+import net.pterodactylus.fcp.io.ByteBufferPool;
+
 import static java.lang.String.format;
 import static java.lang.String.join;
 import static java.lang.System.currentTimeMillis;
@@ -38,6 +44,9 @@ import static java.util.stream.Collectors.joining;
  */
 public class FcpUtils {
 
+	/** Marker returned by {@link #parseInt(String, int, int)} for invalid values. */
+	private static final long INVALID_INT = Long.MIN_VALUE;
+
 	/** Counter for unique identifiers. */
 	private static AtomicLong counter = new AtomicLong();
 
@@ -60,7 +69,35 @@ public class FcpUtils {
 	 *             if a value can not be converted to a number
 	 */
 	public static int[] decodeMultiIntegerField(String field) throws NumberFormatException {
-		return stream(field.split(";")).mapToInt(Integer::parseInt).toArray();
+		/* like String.split(), ignore trailing empty values. */
+		int end = field.length();
+		while ((end > 0) && (field.charAt(end - 1) == ';')) {
+			end--;
+		}
+		if ((end == 0) && (field.length() > 0)) {
+			return new int[0];
+		}
+		int valueCount = 1;
+		for (int index = 0; index < end; index++) {
+			if (field.charAt(index) == ';') {
+				valueCount++;
+			}
+		}
+		int[] values = new int[valueCount];
+		int valueIndex = 0;
+		int start = 0;
+		for (int index = 0; index <= end; index++) {
+			if ((index == end) || (field.charAt(index) == ';')) {
+				long value = parseInt(field, start, index);
+				if (value == INVALID_INT) {
+					/* let Integer.parseInt() create the exception. */
+					Integer.parseInt(field.substring(start, index));
+				}
+				values[valueIndex++] = (int) value;
+				start = index + 1;
+			}
+		}
+		return values;
 	}
 
 	/**
@@ -110,11 +147,11 @@ public class FcpUtils {
 	 * @return The parsed int, or <code>defaultValue</code>
 	 */
 	public static int safeParseInt(String value, int defaultValue) {
-		try {
-			return Integer.parseInt(value);
-		} catch (NumberFormatException nfe1) {
+		if (value == null) {
 			return defaultValue;
 		}
+		long parsedValue = parseInt(value, 0, value.length());
+		return (parsedValue == INVALID_INT) ? defaultValue : (int) parsedValue;
 	}
 
 	/**
@@ -140,11 +177,35 @@ public class FcpUtils {
 	 * @return The parsed long, or <code>defaultValue</code>
 	 */
 	public static long safeParseLong(String value, long defaultValue) {
-		try {
-			return Long.parseLong(value);
-		} catch (NumberFormatException nfe1) {
+		if ((value == null) || value.isEmpty()) {
 			return defaultValue;
 		}
+		int index = 0;
+		boolean negative = false;
+		char firstCharacter = value.charAt(0);
+		if ((firstCharacter == '-') || (firstCharacter == '+')) {
+			if (value.length() == 1) {
+				return defaultValue;
+			}
+			negative = firstCharacter == '-';
+			index++;
+		}
+		/* accumulate negatively so that Long.MIN_VALUE can be parsed. */
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		long multiplicationLimit = limit / 10;
+		long result = 0;
+		for (; index < value.length(); index++) {
+			int digit = value.charAt(index) - '0';
+			if ((digit < 0) || (digit > 9) || (result < multiplicationLimit)) {
+				return defaultValue;
+			}
+			result *= 10;
+			if (result < (limit + digit)) {
+				return defaultValue;
+			}
+			result -= digit;
+		}
+		return negative ? result : -result;
 	}
 
 	/**
@@ -212,7 +273,13 @@ public class FcpUtils {
 	 *             if an I/O error occurs
 	 */
 	public static void copy(InputStream source, OutputStream destination, long length) throws IOException {
-		copy(source, destination, length, 1 << 16);
+		ByteBufferPool byteBufferPool = ByteBufferPool.getDefault();
+		ByteBuffer buffer = byteBufferPool.acquire();
+		try {
+			copy(source, destination, length, buffer.array());
+		} finally {
+			byteBufferPool.release(buffer);
+		}
 	}
 
 	/**
@@ -234,8 +301,56 @@ public class FcpUtils {
 	 *             if an I/O error occurs
 	 */
 	public static void copy(InputStream source, OutputStream destination, long length, int bufferSize) throws IOException {
+		copy(source, destination, length, new byte[bufferSize]);
+	}
+
+	/**
+	 * Waits for the given future to complete. If the future completed
+	 * exceptionally, its cause is rethrown as an {@link IOException}.
+	 *
+	 * @param future
+	 *            The future to wait for
+	 * @throws IOException
+	 *             if the future completed exceptionally, or the current
+	 *             thread was interrupted while waiting
+	 */
+	public static void await(Future<?> future) throws IOException {
+		try {
+			future.get();
+		} catch (InterruptedException ie1) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting");
+		} catch (ExecutionException ee1) {
+			if (ee1.getCause() instanceof IOException) {
+				throw (IOException) ee1.getCause();
+			}
+			throw new IOException(ee1.getCause());
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Copies <code>length</code> bytes from the source input stream to the
+	 * destination output stream using the given buffer.
+	 *
+	 * @param source
+	 *            The input stream to read from
+	 * @param destination
+	 *            The output stream to write to
+	 * @param length
+	 *            The number of bytes to copy, or {@code -1} to copy until the
+	 *            end of the stream
+	 * @param buffer
+	 *            The buffer to copy with
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private static void copy(InputStream source, OutputStream destination, long length, byte[] buffer) throws IOException {
+		int bufferSize = buffer.length;
 		long remaining = length;
-		byte[] buffer = new byte[bufferSize];
 		int read = 0;
 		while ((remaining == -1) || (remaining > 0)) {
 			read = source.read(buffer, 0, ((remaining > bufferSize) || (remaining == -1)) ? bufferSize : (int) remaining);
@@ -252,4 +367,45 @@ public class FcpUtils {
 		}
 	}
 
+	/**
+	 * Parses the decimal integer in the given range of the given string
+	 * without throwing an exception if the range does not contain a valid
+	 * integer.
+	 *
+	 * @param value
+	 *            The string containing the integer
+	 * @param start
+	 *            The index of the first character of the integer
+	 * @param end
+	 *            The index after the last character of the integer
+	 * @return The parsed integer, or {@link #INVALID_INT} if the range does
+	 *         not contain a valid integer
+	 */
+	private static long parseInt(String value, int start, int end) {
+		if (start == end) {
+			return INVALID_INT;
+		}
+		boolean negative = false;
+		char firstCharacter = value.charAt(start);
+		if ((firstCharacter == '-') || (firstCharacter == '+')) {
+			if ((end - start) == 1) {
+				return INVALID_INT;
+			}
+			negative = firstCharacter == '-';
+			start++;
+		}
+		long result = 0;
+		for (int index = start; index < end; index++) {
+			int digit = value.charAt(index) - '0';
+			if ((digit < 0) || (digit > 9)) {
+				return INVALID_INT;
+			}
+			result = result * 10 + digit;
+			if (result > (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE)) {
+				return INVALID_INT;
+			}
+		}
+		return negative ? -result : result;
+	}
+
 }
@@ -0,0 +1,261 @@
+package net.pterodactylus.fcp;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Resolves the encoded names of fields (and messages) to canonical
+ * {@link String}s, so that decoding the same names over and over does not
+ * create a new string for every line. The dictionary is prebuilt with the
+ * message and field names used by the message classes of this library and
+ * learns every other name it sees, up to a maximum size.
+ * <p>
+ * Lookups do not lock and do not allocate; the dictionary can be shared
+ * between any number of connections.
+ */
+public class FieldNameDictionary {
+
+	/** The default maximum number of names. */
+	public static final int DEFAULT_MAX_SIZE = 4096;
+
+	/** The message names the dictionary is prebuilt with. */
+	private static final String[] KNOWN_MESSAGE_NAMES = {
+			"AllData", "CloseConnectionDuplicateClientName", "ConfigData", "DataFound", "EndListPeerNotes",
+			"EndListPeers", "EndListPersistentRequests", "FCPPluginReply", "FinishedCompression", "GetFailed",
+			"IdentifierCollision", "NodeData", "NodeHello", "Peer", "PeerNote", "PeerRemoved", "PersistentGet",
+			"PersistentPut", "PersistentPutDir", "PersistentRequestModified", "PersistentRequestRemoved", "PluginInfo",
+			"PluginRemoved", "ProtocolError", "PutFailed", "PutFetchable", "PutSuccessful", "ReceivedBookmarkFeed",
+			"SSKKeypair", "SentFeed", "SimpleProgress", "StartedCompression", "SubscribedUSK", "SubscribedUSKUpdate",
+			"TestDDAComplete", "TestDDAReply", "URIGenerated", "UnknownNodeIdentifier", "UnknownPeerNoteType",
+	};
+
+	/** The field names the dictionary is prebuilt with. */
+	private static final String[] KNOWN_FIELD_NAMES = {
+			"BinaryBlob", "Build", "ClientToken", "Code", "CodeDescription", "Codec", "Codecs", "CompatibilityMode",
+			"CompletionTime", "CompressedSize", "CompressionCodecs", "ConnectionIdentifier", "ContentToWrite", "Count",
+			"DataLength", "Description", "Directory", "DontCompress", "DontPoll", "Edition", "ExpectedDataLength",
+			"ExpectedMetadata.ContentType", "ExpectedURI", "ExtBuild", "ExtRevision", "ExtraDescription", "FCPVersion",
+			"Failed", "Fatal", "FatallyFailed", "Filename", "FinalizedExpected", "FinalizedTotal", "Global",
+			"HasAnActiveLink", "Identifier", "Identity", "IgnoreUSKDatehints", "InsertURI", "IsTalkable", "LastProgress",
+			"LongVersion", "MaxRetries", "Metadata.ContentType", "MinSuccessFetchBlocks", "Name", "NewKnownGood", "Node",
+			"NodeIdentifier", "NodeLanguage", "NodeStatus", "NoteText", "OriginUri", "OriginalSize", "PeerNoteType",
+			"Persistence", "PluginName", "PriorityClass", "PriorityClassProgress", "PrivateURI", "PutDirType",
+			"ReadDirectoryAllowed", "ReadFilename", "RealTime", "RealTimeFlag", "RedirectURI", "RequestURI", "Required",
+			"ReturnType", "Revision", "ShortCodeDescription", "SparsePoll", "SplitfileCryptoKey", "Started",
+			"StartupTime", "Succeeded", "TargetFilename", "TargetURI", "TempFilename", "Testnet", "Total", "URI",
+			"UploadFrom", "Verbosity", "Version", "WriteDirectoryAllowed", "WriteFilename", "ark.number",
+			"ark.privURI", "ark.pubURI", "auth.negTypes", "dsaGroup.b", "dsaGroup.g", "dsaGroup.p", "dsaGroup.q",
+			"dsaPrivKey.x", "dsaPubKey.y", "identity", "lastGoodVersion", "location", "myName", "opennet",
+			"physical.udp", "seed", "sig", "testnet", "version", "volatile.status", "volatile.averagePingTime",
+			"volatile.lastRoutingBackoffReason", "volatile.routingBackoffPercent", "volatile.totalBytesIn",
+			"volatile.totalBytesOut", "volatile.percentTimeRoutableConnection", "metadata.routableConnectionCheckCount",
+			"metadata.timeLastConnected", "metadata.timeLastReceivedPacket", "metadata.timeLastRoutable",
+			"metadata.timeLastSuccess", "metadata.detected.udp", "metadata.hadRoutableConnectionCount",
+	};
+
+	/** The shared default dictionary. */
+	private static final FieldNameDictionary defaultDictionary = new FieldNameDictionary(DEFAULT_MAX_SIZE);
+
+	/** The maximum number of names. */
+	private final int maxSize;
+
+	/** The hash table, using open addressing with linear probing. */
+	private volatile AtomicReferenceArray<Name> table;
+
+	/** The number of names in the table. */
+	private volatile int size;
+
+	/** The number of lookups that found a name. */
+	private final LongAdder hits = new LongAdder();
+
+	/** The number of lookups that did not find a name. */
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Creates a new dictionary that is prebuilt with the message and field
+	 * names known to this library.
+	 *
+	 * @param maxSize
+	 *            The maximum number of names to store
+	 */
+	public FieldNameDictionary(int maxSize) {
+		this.maxSize = maxSize;
+		table = new AtomicReferenceArray<>(tableSizeFor(Math.min(KNOWN_MESSAGE_NAMES.length + KNOWN_FIELD_NAMES.length, maxSize)));
+		addAll(KNOWN_MESSAGE_NAMES);
+		addAll(KNOWN_FIELD_NAMES);
+	}
+
+	/**
+	 * Returns the dictionary that is shared by all connections.
+	 *
+	 * @return The default dictionary
+	 */
+	public static FieldNameDictionary getDefault() {
+		return defaultDictionary;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the number of lookups that found the name in this dictionary.
+	 *
+	 * @return The number of hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of lookups that did not find the name in this
+	 * dictionary and had to create a new string.
+	 *
+	 * @return The number of misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of names in this dictionary.
+	 *
+	 * @return The number of names
+	 */
+	public int size() {
+		return size;
+	}
+
+	//
+	// PACKAGE-PRIVATE METHODS
+	//
+
+	/**
+	 * Returns the canonical string for the UTF-8 encoded name in the given
+	 * range of the buffer.
+	 *
+	 * @param buffer
+	 *            The buffer containing the encoded name
+	 * @param start
+	 *            The index of the first byte of the name
+	 * @param end
+	 *            The index after the last byte of the name
+	 * @return The decoded name
+	 */
+	String resolve(byte[] buffer, int start, int end) {
+		int hash = hash(buffer, start, end);
+		AtomicReferenceArray<Name> table = this.table;
+		int mask = table.length() - 1;
+		for (int index = hash & mask; ; index = (index + 1) & mask) {
+			Name name = table.get(index);
+			if (name == null) {
+				break;
+			}
+			if ((name.hash == hash) && name.matches(buffer, start, end)) {
+				hits.increment();
+				return name.name;
+			}
+		}
+		misses.increment();
+		String decodedName = new String(buffer, start, end - start, UTF_8);
+		if (size < maxSize) {
+			byte[] encodedName = new byte[end - start];
+			System.arraycopy(buffer, start, encodedName, 0, encodedName.length);
+			add(new Name(encodedName, hash, decodedName));
+		}
+		return decodedName;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void addAll(String[] names) {
+		for (String name : names) {
+			byte[] encodedName = name.getBytes(UTF_8);
+			add(new Name(encodedName, hash(encodedName, 0, encodedName.length), name));
+		}
+	}
+
+	private synchronized void add(Name name) {
+		if (size >= maxSize) {
+			return;
+		}
+		AtomicReferenceArray<Name> table = this.table;
+		if ((size + 1) * 2 > table.length()) {
+			AtomicReferenceArray<Name> newTable = new AtomicReferenceArray<>(table.length() * 2);
+			for (int index = 0; index < table.length(); index++) {
+				Name existingName = table.get(index);
+				if (existingName != null) {
+					insert(newTable, existingName);
+				}
+			}
+			this.table = table = newTable;
+		}
+		if (insert(table, name)) {
+			size++;
+		}
+	}
+
+	private static boolean insert(AtomicReferenceArray<Name> table, Name name) {
+		int mask = table.length() - 1;
+		for (int index = name.hash & mask; ; index = (index + 1) & mask) {
+			Name existingName = table.get(index);
+			if (existingName == null) {
+				table.set(index, name);
+				return true;
+			}
+			if ((existingName.hash == name.hash) && existingName.matches(name.encodedName, 0, name.encodedName.length)) {
+				return false;
+			}
+		}
+	}
+
+	private static int hash(byte[] buffer, int start, int end) {
+		int hash = 0;
+		for (int index = start; index < end; index++) {
+			hash = 31 * hash + (buffer[index] & 0xff);
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	private static int tableSizeFor(int names) {
+		int tableSize = 16;
+		while (tableSize < names * 2) {
+			tableSize *= 2;
+		}
+		return tableSize;
+	}
+
+	/**
+	 * A name with its encoded form.
+	 */
+	private static class Name {
+
+		private final byte[] encodedName;
+		private final int hash;
+		private final String name;
+
+		private Name(byte[] encodedName, int hash, String name) {
+			this.encodedName = encodedName;
+			this.hash = hash;
+			this.name = name;
+		}
+
+		private boolean matches(byte[] buffer, int start, int end) {
+			if ((end - start) != encodedName.length) {
+				return false;
+			}
+			for (int index = 0; index < encodedName.length; index++) {
+				if (buffer[start + index] != encodedName[index]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
+}
@@ -18,10 +18,14 @@
 package net.pterodactylus.fcp;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 
+import net.pterodactylus.fcp.io.FilePayloadInputStream;
+
 import static net.pterodactylus.fcp.UploadFrom.direct;
 import static net.pterodactylus.fcp.UploadFrom.disk;
 import static net.pterodactylus.fcp.UploadFrom.redirect;
@@ -59,6 +63,24 @@ public class FileEntry {
 		return directFileEntry;
 	}
 
+	/**
+	 * Creates a new file entry for a local file that should be transmitted to
+	 * the node in the payload of the message. The file is not read until the
+	 * message is sent; connections that support it transfer the file straight
+	 * into the socket.
+	 *
+	 * @param name        The name of the file
+	 * @param contentType The content type of the file, or <code>null</code> to let the
+	 *                    node auto-detect it
+	 * @param path        The local file
+	 * @return A file entry
+	 * @throws IOException if the size of the file can not be determined
+	 */
+	public static FileEntry createDirectFileEntry(String name, String contentType, Path path) throws IOException {
+		FilePayloadInputStream filePayloadInputStream = new FilePayloadInputStream(path);
+		return createDirectFileEntry(name, contentType, filePayloadInputStream.getLength(), filePayloadInputStream);
+	}
+
 	/**
 	 * Creates a new file entry for a file that should be uploaded from disk.
 	 *
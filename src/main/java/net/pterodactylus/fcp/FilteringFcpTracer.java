@@ -0,0 +1,110 @@
+package net.pterodactylus.fcp;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link FcpTracer} that only hands some of the messages to another tracer:
+ * messages can be restricted to a set of message names, and of the remaining
+ * messages only one in {@link #getSampleInterval() N} is traced. Messages
+ * that are skipped are not encoded at all.
+ */
+public class FilteringFcpTracer implements FcpTracer {
+
+	/** The tracer that records the traced messages. */
+	private final FcpTracer tracer;
+
+	/** The number of messages per traced message. */
+	private volatile int sampleInterval = 1;
+
+	/** The names of the traced messages, or {@code null} to trace all. */
+	private volatile Set<String> messageNames;
+
+	/** The number of messages that passed the message name filter. */
+	private final AtomicLong matchingMessages = new AtomicLong();
+
+	/**
+	 * Creates a new filtering tracer that traces all messages until
+	 * configured otherwise.
+	 *
+	 * @param tracer
+	 *            The tracer that records the traced messages
+	 */
+	public FilteringFcpTracer(FcpTracer tracer) {
+		this.tracer = tracer;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the number of messages of which one is traced.
+	 *
+	 * @return The sample interval
+	 */
+	public int getSampleInterval() {
+		return sampleInterval;
+	}
+
+	/**
+	 * Sets the number of messages of which one is traced. An interval of
+	 * {@code 1}, which is the default, traces every message.
+	 *
+	 * @param sampleInterval
+	 *            The sample interval
+	 */
+	public void setSampleInterval(int sampleInterval) {
+		if (sampleInterval < 1) {
+			throw new IllegalArgumentException("sample interval must be positive");
+		}
+		this.sampleInterval = sampleInterval;
+	}
+
+	/**
+	 * Returns the names of the messages that are traced.
+	 *
+	 * @return The names of the traced messages, or {@code null} if messages
+	 *         are not filtered by name
+	 */
+	public Set<String> getMessageNames() {
+		return messageNames;
+	}
+
+	/**
+	 * Restricts tracing to the messages with the given names.
+	 *
+	 * @param messageNames
+	 *            The names of the traced messages, or {@code null} to trace
+	 *            messages regardless of their name
+	 */
+	public void setMessageNames(Collection<String> messageNames) {
+		this.messageNames = (messageNames == null) ? null : Collections.unmodifiableSet(new HashSet<>(messageNames));
+	}
+
+	//
+	// FCPTRACER METHODS
+	//
+
+	@Override
+	public boolean isTraced(FcpTraceRecord.Direction direction, String messageName) {
+		Set<String> messageNames = this.messageNames;
+		if ((messageNames != null) && !messageNames.contains(messageName)) {
+			return false;
+		}
+		if (!tracer.isTraced(direction, messageName)) {
+			return false;
+		}
+		int sampleInterval = this.sampleInterval;
+		return (sampleInterval == 1) || ((matchingMessages.getAndIncrement() % sampleInterval) == 0);
+	}
+
+	@Override
+	public void trace(FcpTraceRecord traceRecord) {
+		tracer.trace(traceRecord);
+	}
+
+}
@@ -19,8 +19,6 @@ package net.pterodactylus.fcp;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 
 /**
  * The “GetFailed” message signals the client that a {@link ClientGet} request
@@ -48,7 +46,7 @@ public class GetFailed extends BaseMessage implements Identifiable {
 	 *         could not be parsed
 	 */
 	public int getCode() {
-		return FcpUtils.safeParseInt(getField("Code"));
+		return getParsedFields(Fields::new).code;
 	}
 
 	/**
@@ -68,7 +66,7 @@ public class GetFailed extends BaseMessage implements Identifiable {
 	 *         <code>false</code> if it is on the client-local queue
 	 */
 	public boolean isGlobal() {
-		return Boolean.valueOf(getField("Global"));
+		return getParsedFields(Fields::new).global;
 	}
 
 	/**
@@ -105,7 +103,7 @@ public class GetFailed extends BaseMessage implements Identifiable {
 	 *         not be parsed
 	 */
 	public long getExpectedDataLength() {
-		return FcpUtils.safeParseLong(getField("ExpectedDataLength"));
+		return getParsedFields(Fields::new).expectedDataLength;
 	}
 
 	/**
@@ -128,7 +126,7 @@ public class GetFailed extends BaseMessage implements Identifiable {
 	 *         finalized, <code>false</code> otherwise
 	 */
 	public boolean isFinalizedExpected() {
-		return Boolean.valueOf(getField("FinalizedExpected"));
+		return getParsedFields(Fields::new).finalizedExpected;
 	}
 
 	/**
@@ -150,7 +148,7 @@ public class GetFailed extends BaseMessage implements Identifiable {
 	 *         <code>false</code> otherwise
 	 */
 	public boolean isFatal() {
-		return Boolean.valueOf(getField("Fatal"));
+		return getParsedFields(Fields::new).fatal;
 	}
 
 	/**
@@ -161,17 +159,13 @@ public class GetFailed extends BaseMessage implements Identifiable {
 	 * @return A list of complex error codes
 	 */
 	public int[] getComplexErrorCodes() {
-		Map<String, String> allFields = getFields();
 		List<Integer> errorCodeList = new ArrayList<Integer>();
-		for (Entry<String, String> field : allFields.entrySet()) {
-			String fieldKey = field.getKey();
-			if (fieldKey.startsWith("Errors.")) {
-				int nextDot = fieldKey.indexOf('.', 7);
-				if (nextDot > -1) {
-					int errorCode = FcpUtils.safeParseInt(fieldKey.substring(7, nextDot));
-					if (errorCode != -1) {
-						errorCodeList.add(errorCode);
-					}
+		for (String fieldKey : subtree("Errors").keySet()) {
+			int nextDot = fieldKey.indexOf('.');
+			if (nextDot > -1) {
+				int errorCode = FcpUtils.safeParseInt(fieldKey.substring(0, nextDot));
+				if (errorCode != -1) {
+					errorCodeList.add(errorCode);
 				}
 			}
 		}
@@ -208,4 +202,25 @@ public class GetFailed extends BaseMessage implements Identifiable {
 		return FcpUtils.safeParseInt(getField("Errors." + errorCode + ".Count"));
 	}
 
+	/**
+	 * The parsed numeric and boolean fields of a “GetFailed” message.
+	 */
+	private static class Fields {
+
+		private final int code;
+		private final boolean global;
+		private final long expectedDataLength;
+		private final boolean finalizedExpected;
+		private final boolean fatal;
+
+		private Fields(FcpMessage fcpMessage) {
+			code = FcpUtils.safeParseInt(fcpMessage.getField("Code"));
+			global = Boolean.parseBoolean(fcpMessage.getField("Global"));
+			expectedDataLength = FcpUtils.safeParseLong(fcpMessage.getField("ExpectedDataLength"));
+			finalizedExpected = Boolean.parseBoolean(fcpMessage.getField("FinalizedExpected"));
+			fatal = Boolean.parseBoolean(fcpMessage.getField("Fatal"));
+		}
+
+	}
+
 }
@@ -0,0 +1,79 @@
+package net.pterodactylus.fcp;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Determines the {@link MessageType}s a listener is interested in. Listeners
+ * that extend {@link FcpAdapter} are interested in the types whose methods
+ * they override; all other listeners are interested in all types. The
+ * interests are determined once per listener class.
+ */
+final class ListenerInterests {
+
+	/** The interests, by listener class. */
+	private static final ClassValue<Set<MessageType>> interests = new ClassValue<Set<MessageType>>() {
+
+		@Override
+		protected Set<MessageType> computeValue(Class<?> listenerClass) {
+			return Collections.unmodifiableSet(findInterests(listenerClass));
+		}
+
+	};
+
+	private ListenerInterests() {
+		/* static methods only. */
+	}
+
+	/**
+	 * Returns the types of messages the given listener is interested in.
+	 *
+	 * @param fcpListener
+	 *            The listener
+	 * @return The message types the listener is interested in
+	 */
+	static Set<MessageType> getMessageTypes(FcpListener fcpListener) {
+		return interests.get(fcpListener.getClass());
+	}
+
+	/**
+	 * Returns whether the given listener is interested in messages of the
+	 * given type.
+	 *
+	 * @param fcpListener
+	 *            The listener
+	 * @param messageType
+	 *            The type of the message
+	 * @return {@code true} if the listener is interested in the message type,
+	 *         {@code false} otherwise
+	 */
+	static boolean isInterested(FcpListener fcpListener, MessageType messageType) {
+		return getMessageTypes(fcpListener).contains(messageType);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private static EnumSet<MessageType> findInterests(Class<?> listenerClass) {
+		if (!FcpAdapter.class.isAssignableFrom(listenerClass)) {
+			return EnumSet.allOf(MessageType.class);
+		}
+		EnumSet<MessageType> messageTypes = EnumSet.noneOf(MessageType.class);
+		for (MessageType messageType : MessageType.values()) {
+			try {
+				Method listenerMethod = listenerClass.getMethod(messageType.getListenerMethodName(), FcpConnection.class, messageType.getEventClass());
+				if (listenerMethod.getDeclaringClass() != FcpAdapter.class) {
+					messageTypes.add(messageType);
+				}
+			} catch (NoSuchMethodException nsme1) {
+				/* can not happen, FcpAdapter implements all methods. */
+				messageTypes.add(messageType);
+			}
+		}
+		return messageTypes;
+	}
+
+}
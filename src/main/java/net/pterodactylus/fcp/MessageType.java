@@ -0,0 +1,205 @@
+package net.pterodactylus.fcp;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The types of events an {@link FcpListener} can be notified about: one type
+ * for every message known to this library, one for unknown messages, and one
+ * for the connection being closed. Each type corresponds to one method of
+ * {@link FcpListener}.
+ */
+public enum MessageType {
+
+	/** The “NodeHello” message. */
+	NodeHello("NodeHello", NodeHello.class, "receivedNodeHello"),
+
+	/** The “CloseConnectionDuplicateClientName” message. */
+	CloseConnectionDuplicateClientName("CloseConnectionDuplicateClientName", CloseConnectionDuplicateClientName.class, "receivedCloseConnectionDuplicateClientName"),
+
+	/** The “SSKKeypair” message. */
+	SSKKeypair("SSKKeypair", SSKKeypair.class, "receivedSSKKeypair"),
+
+	/** The “Peer” message. */
+	Peer("Peer", Peer.class, "receivedPeer"),
+
+	/** The “EndListPeers” message. */
+	EndListPeers("EndListPeers", EndListPeers.class, "receivedEndListPeers"),
+
+	/** The “PeerNote” message. */
+	PeerNote("PeerNote", PeerNote.class, "receivedPeerNote"),
+
+	/** The “EndListPeerNotes” message. */
+	EndListPeerNotes("EndListPeerNotes", EndListPeerNotes.class, "receivedEndListPeerNotes"),
+
+	/** The “PeerRemoved” message. */
+	PeerRemoved("PeerRemoved", PeerRemoved.class, "receivedPeerRemoved"),
+
+	/** The “NodeData” message. */
+	NodeData("NodeData", NodeData.class, "receivedNodeData"),
+
+	/** The “TestDDAReply” message. */
+	TestDDAReply("TestDDAReply", TestDDAReply.class, "receivedTestDDAReply"),
+
+	/** The “TestDDAComplete” message. */
+	TestDDAComplete("TestDDAComplete", TestDDAComplete.class, "receivedTestDDAComplete"),
+
+	/** The “PersistentGet” message. */
+	PersistentGet("PersistentGet", PersistentGet.class, "receivedPersistentGet"),
+
+	/** The “PersistentPut” message. */
+	PersistentPut("PersistentPut", PersistentPut.class, "receivedPersistentPut"),
+
+	/** The “EndListPersistentRequests” message. */
+	EndListPersistentRequests("EndListPersistentRequests", EndListPersistentRequests.class, "receivedEndListPersistentRequests"),
+
+	/** The “URIGenerated” message. */
+	URIGenerated("URIGenerated", URIGenerated.class, "receivedURIGenerated"),
+
+	/** The “DataFound” message. */
+	DataFound("DataFound", DataFound.class, "receivedDataFound"),
+
+	/** The “AllData” message. */
+	AllData("AllData", AllData.class, "receivedAllData"),
+
+	/** The “SimpleProgress” message. */
+	SimpleProgress("SimpleProgress", SimpleProgress.class, "receivedSimpleProgress"),
+
+	/** The “StartedCompression” message. */
+	StartedCompression("StartedCompression", StartedCompression.class, "receivedStartedCompression"),
+
+	/** The “FinishedCompression” message. */
+	FinishedCompression("FinishedCompression", FinishedCompression.class, "receivedFinishedCompression"),
+
+	/** The “UnknownPeerNoteType” message. */
+	UnknownPeerNoteType("UnknownPeerNoteType", UnknownPeerNoteType.class, "receivedUnknownPeerNoteType"),
+
+	/** The “UnknownNodeIdentifier” message. */
+	UnknownNodeIdentifier("UnknownNodeIdentifier", UnknownNodeIdentifier.class, "receivedUnknownNodeIdentifier"),
+
+	/** The “ConfigData” message. */
+	ConfigData("ConfigData", ConfigData.class, "receivedConfigData"),
+
+	/** The “GetFailed” message. */
+	GetFailed("GetFailed", GetFailed.class, "receivedGetFailed"),
+
+	/** The “PutFailed” message. */
+	PutFailed("PutFailed", PutFailed.class, "receivedPutFailed"),
+
+	/** The “IdentifierCollision” message. */
+	IdentifierCollision("IdentifierCollision", IdentifierCollision.class, "receivedIdentifierCollision"),
+
+	/** The “PersistentPutDir” message. */
+	PersistentPutDir("PersistentPutDir", PersistentPutDir.class, "receivedPersistentPutDir"),
+
+	/** The “PersistentRequestRemoved” message. */
+	PersistentRequestRemoved("PersistentRequestRemoved", PersistentRequestRemoved.class, "receivedPersistentRequestRemoved"),
+
+	/** The “SubscribedUSK” message. */
+	SubscribedUSK("SubscribedUSK", SubscribedUSK.class, "receivedSubscribedUSK"),
+
+	/** The “SubscribedUSKUpdate” message. */
+	SubscribedUSKUpdate("SubscribedUSKUpdate", SubscribedUSKUpdate.class, "receivedSubscribedUSKUpdate"),
+
+	/** The “PluginInfo” message. */
+	PluginInfo("PluginInfo", PluginInfo.class, "receivedPluginInfo"),
+
+	/** The “PluginRemoved” message. */
+	PluginRemoved("PluginRemoved", PluginRemoved.class, "receivedPluginRemoved"),
+
+	/** The “FCPPluginReply” message. */
+	FCPPluginReply("FCPPluginReply", FCPPluginReply.class, "receivedFCPPluginReply"),
+
+	/** The “PersistentRequestModified” message. */
+	PersistentRequestModified("PersistentRequestModified", PersistentRequestModified.class, "receivedPersistentRequestModified"),
+
+	/** The “PutSuccessful” message. */
+	PutSuccessful("PutSuccessful", PutSuccessful.class, "receivedPutSuccessful"),
+
+	/** The “PutFetchable” message. */
+	PutFetchable("PutFetchable", PutFetchable.class, "receivedPutFetchable"),
+
+	/** The “SentFeed” message. */
+	SentFeed("SentFeed", SentFeed.class, "receivedSentFeed"),
+
+	/** The “ReceivedBookmarkFeed” message. */
+	ReceivedBookmarkFeed("ReceivedBookmarkFeed", ReceivedBookmarkFeed.class, "receivedBookmarkFeed"),
+
+	/** The “ProtocolError” message. */
+	ProtocolError("ProtocolError", ProtocolError.class, "receivedProtocolError"),
+
+	/** Any message that is not known to this library. */
+	UnknownMessage(null, FcpMessage.class, "receivedMessage"),
+
+	/** The connection to the node was closed. */
+	ConnectionClosed(null, Throwable.class, "connectionClosed");
+
+	/** The message types by message name. */
+	private static final Map<String, MessageType> messageTypesByName = new HashMap<>();
+
+	static {
+		for (MessageType messageType : values()) {
+			if (messageType.messageName != null) {
+				messageTypesByName.put(messageType.messageName, messageType);
+			}
+		}
+	}
+
+	/** The name of the message, or {@code null}. */
+	private final String messageName;
+
+	/** The type of the object handed to the listener. */
+	private final Class<?> eventClass;
+
+	/** The name of the listener method. */
+	private final String listenerMethodName;
+
+	MessageType(String messageName, Class<?> eventClass, String listenerMethodName) {
+		this.messageName = messageName;
+		this.eventClass = eventClass;
+		this.listenerMethodName = listenerMethodName;
+	}
+
+	/**
+	 * Returns the name of the message as sent by the node.
+	 *
+	 * @return The name of the message, or {@code null} for
+	 *         {@link #UnknownMessage} and {@link #ConnectionClosed}
+	 */
+	public String getMessageName() {
+		return messageName;
+	}
+
+	/**
+	 * Returns the type of the object that is handed to the listener method.
+	 *
+	 * @return The type of the event object
+	 */
+	public Class<?> getEventClass() {
+		return eventClass;
+	}
+
+	/**
+	 * Returns the name of the {@link FcpListener} method that is called for
+	 * this type.
+	 *
+	 * @return The name of the listener method
+	 */
+	public String getListenerMethodName() {
+		return listenerMethodName;
+	}
+
+	/**
+	 * Returns the type of the message with the given name.
+	 *
+	 * @param messageName
+	 *            The name of the message
+	 * @return The type of the message, or {@link #UnknownMessage} if the
+	 *         message is not known to this library
+	 */
+	public static MessageType forMessageName(String messageName) {
+		MessageType messageType = messageTypesByName.get(messageName);
+		return (messageType == null) ? UnknownMessage : messageType;
+	}
+
+}
@@ -0,0 +1,661 @@
+package net.pterodactylus.fcp;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.pterodactylus.fcp.io.FilePayloadInputStream;
+import net.pterodactylus.fcp.io.SpillManager;
+
+import static java.nio.channels.SelectionKey.OP_READ;
+import static java.nio.channels.SelectionKey.OP_WRITE;
+import static java.util.Collections.singletonList;
+
+/**
+ * {@link FcpConnection} implementation that uses a non-blocking
+ * {@link SocketChannel}. Reading, framing, and writing is performed by an
+ * {@link FcpEventLoop} which can be shared between many connections, so
+ * idle connections do not tie up a thread each.
+ * <p>
+ * Listeners are notified on the event loop’s thread. When
+ * {@link #sendMessage(FcpMessage)} is called from a listener, the message is
+ * queued and the method returns immediately, and write errors are only
+ * logged; from any other thread it waits until the message has been
+ * written. Payload input streams of sent messages
+ * are read on the event loop’s thread and should not block.
+ */
+public class NioFcpConnection implements FcpConnection {
+
+	/** Logger. */
+	private static final Logger logger = Logger.getLogger(NioFcpConnection.class.getName());
+
+	/** The initial size of the read buffer. */
+	private static final int READ_BUFFER_SIZE = 8192;
+
+	/** The initial size of the buffer for outgoing names and fields. */
+	private static final int HEADER_BUFFER_SIZE = 8192;
+
+	/** The size of the buffer for outgoing payloads. */
+	private static final int PAYLOAD_BUFFER_SIZE = 1 << 16;
+
+	/** Listener management. */
+	private final FcpListenerManager fcpListenerManager = new FcpListenerManager(this);
+
+	/** Dispatches received messages to the listeners. */
+	private final FcpMessageDispatcher messageDispatcher = new FcpMessageDispatcher(fcpListenerManager);
+
+	/** The sinks for payloads of “AllData” messages. */
+	private final PayloadSinkRegistry payloadSinkRegistry = new PayloadSinkRegistry();
+
+	/** The event loop performing the I/O. */
+	private final FcpEventLoop eventLoop;
+
+	/** The address of the node. */
+	private final InetAddress address;
+
+	/** The port number of the node’s FCP port. */
+	private final int port;
+
+	/** The handler of the current connection. */
+	private ConnectionHandler connectionHandler;
+
+	/** The spill manager for received payloads. */
+	private volatile SpillManager spillManager = SpillManager.getDefault();
+
+	/** The tracer for sent and received messages, or {@code null}. */
+	private volatile FcpTracer tracer;
+
+	/**
+	 * Creates a new FCP connection to the Freenet node running on the given
+	 * host, listening on the given port.
+	 *
+	 * @param eventLoop
+	 *            The event loop to perform the I/O
+	 * @param host
+	 *            The hostname of the Freenet node
+	 * @param port
+	 *            The port number of the node’s FCP port
+	 * @throws UnknownHostException
+	 *             if <code>host</code> can not be resolved
+	 */
+	public NioFcpConnection(FcpEventLoop eventLoop, String host, int port) throws UnknownHostException {
+		this(eventLoop, InetAddress.getByName(host), port);
+	}
+
+	/**
+	 * Creates a new FCP connection to the Freenet node running at the given
+	 * address, listening on the given port.
+	 *
+	 * @param eventLoop
+	 *            The event loop to perform the I/O
+	 * @param address
+	 *            The address of the Freenet node
+	 * @param port
+	 *            The port number of the node’s FCP port
+	 */
+	public NioFcpConnection(FcpEventLoop eventLoop, InetAddress address, int port) {
+		this.eventLoop = eventLoop;
+		this.address = address;
+		this.port = port;
+	}
+
+	//
+	// LISTENER MANAGEMENT
+	//
+
+	@Override
+	public void addFcpListener(FcpListener fcpListener) {
+		fcpListenerManager.addListener(fcpListener);
+	}
+
+	@Override
+	public void removeFcpListener(FcpListener fcpListener) {
+		fcpListenerManager.removeListener(fcpListener);
+	}
+
+	@Override
+	public void addFcpListener(String identifier, FcpListener fcpListener) {
+		fcpListenerManager.addListener(identifier, fcpListener);
+	}
+
+	@Override
+	public void removeFcpListener(String identifier, FcpListener fcpListener) {
+		fcpListenerManager.removeListener(identifier, fcpListener);
+	}
+
+	@Override
+	public boolean addPayloadSink(String identifier, PayloadSink payloadSink) {
+		payloadSinkRegistry.add(identifier, payloadSink);
+		return true;
+	}
+
+	@Override
+	public void removePayloadSink(String identifier) {
+		payloadSinkRegistry.remove(identifier);
+	}
+
+	@Override
+	public <T> boolean registerMessageDecoder(String messageName, FcpMessageDecoder<? extends T> messageDecoder, Consumer<? super T> messageConsumer) {
+		messageDispatcher.registerMessageDecoder(messageName, messageDecoder, messageConsumer);
+		return true;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Sets the spill manager that decides whether received payloads are kept
+	 * in memory or stored in temporary files. Unless set, the
+	 * {@link SpillManager#getDefault() default spill manager} is used.
+	 *
+	 * @param spillManager
+	 *            The spill manager for received payloads
+	 */
+	public void setSpillManager(SpillManager spillManager) {
+		this.spillManager = spillManager;
+	}
+
+	/**
+	 * Sets the coalescer for “SimpleProgress” messages. Without a coalescer,
+	 * which is the default, every progress message is handed to the
+	 * listeners. Coalesced progress is delivered on the event loop.
+	 *
+	 * @param progressCoalescer
+	 *            The progress coalescer, or {@code null} to deliver every
+	 *            progress message
+	 */
+	public void setProgressCoalescer(ProgressCoalescer progressCoalescer) {
+		if (progressCoalescer != null) {
+			progressCoalescer.setDispatchExecutor(eventLoop::execute);
+		}
+		messageDispatcher.setProgressCoalescer(progressCoalescer);
+	}
+
+	/**
+	 * Sets the tracer that records the messages sent to and received from the
+	 * node. Without a tracer, which is the default, messages are not traced.
+	 *
+	 * @param tracer
+	 *            The tracer, or {@code null} to disable tracing
+	 */
+	public void setTracer(FcpTracer tracer) {
+		this.tracer = tracer;
+	}
+
+	@Override
+	public synchronized boolean isClosed() {
+		return connectionHandler == null;
+	}
+
+	//
+	// ACTIONS
+	//
+
+	@Override
+	public synchronized void connect() throws IOException, IllegalStateException {
+		if (connectionHandler != null) {
+			throw new IllegalStateException("already connected, disconnect first");
+		}
+		logger.info("connecting to " + address + ":" + port + "…");
+		SocketChannel socketChannel = SocketChannel.open(new InetSocketAddress(address, port));
+		try {
+			socketChannel.configureBlocking(false);
+			ConnectionHandler newConnectionHandler = new ConnectionHandler(socketChannel);
+			newConnectionHandler.selectionKey = eventLoop.register(socketChannel, OP_READ, newConnectionHandler);
+			connectionHandler = newConnectionHandler;
+		} catch (IOException ioe1) {
+			FcpUtils.close(socketChannel);
+			throw ioe1;
+		}
+	}
+
+	@Override
+	@Deprecated
+	public void disconnect() {
+		close();
+	}
+
+	@Override
+	public void close() {
+		ConnectionHandler currentConnectionHandler;
+		synchronized (this) {
+			currentConnectionHandler = connectionHandler;
+		}
+		handleDisconnect(currentConnectionHandler, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * When called from a listener, i.e. on the event loop’s thread, the
+	 * message is only queued, and an error that occurs while writing it is
+	 * logged instead of thrown. Listeners that need to know whether the
+	 * message was written should use {@link #enqueueMessage(FcpMessage)}.
+	 */
+	@Override
+	public void sendMessage(FcpMessage fcpMessage) throws IOException {
+		sendMessages(singletonList(fcpMessage));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * When called from a listener, i.e. on the event loop’s thread, the
+	 * messages are only queued, and an error that occurs while writing them
+	 * is logged instead of thrown. Listeners that need to know whether the
+	 * messages were written should use {@link #enqueueMessages(Collection)}.
+	 */
+	@Override
+	public void sendMessages(Collection<? extends FcpMessage> fcpMessages) throws IOException {
+		CompletableFuture<Void> completion = enqueueMessages(fcpMessages);
+		if (eventLoop.inEventLoop() && !completion.isDone()) {
+			completion.whenComplete((result, throwable) -> {
+				if (throwable != null) {
+					logger.log(Level.WARNING, "could not send messages queued from listener", throwable);
+				}
+			});
+			return;
+		}
+		FcpUtils.await(completion);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Consecutive messages without payload are encoded into a single buffer.
+	 */
+	@Override
+	public CompletableFuture<Void> enqueueMessages(Collection<? extends FcpMessage> fcpMessages) {
+		ConnectionHandler currentConnectionHandler;
+		synchronized (this) {
+			currentConnectionHandler = connectionHandler;
+		}
+		CompletableFuture<Void> completion = new CompletableFuture<>();
+		if (currentConnectionHandler == null) {
+			completion.completeExceptionally(new IOException("connection is closed"));
+			return completion;
+		}
+		FcpTracer tracer = this.tracer;
+		boolean logMessages = logger.isLoggable(Level.FINE);
+		if ((tracer != null) || logMessages) {
+			for (FcpMessage fcpMessage : fcpMessages) {
+				FcpTraceRecord.trace(tracer, FcpTraceRecord.Direction.sent, fcpMessage, fcpMessage.getPayloadInputStream() != null);
+				if (logMessages) {
+					logger.log(Level.FINE, "sending message: {0}", fcpMessage.getName());
+				}
+			}
+		}
+		try {
+			return currentConnectionHandler.enqueue(fcpMessages);
+		} catch (RuntimeException e) {
+			completion.completeExceptionally(e);
+			return completion;
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Handles a disconnect from the node.
+	 *
+	 * @param disconnectedHandler
+	 *            The handler of the connection that was disconnected
+	 * @param throwable
+	 *            The exception that caused the disconnect, or
+	 *            <code>null</code> if there was no exception
+	 */
+	private synchronized void handleDisconnect(ConnectionHandler disconnectedHandler, Throwable throwable) {
+		if ((disconnectedHandler == null) || (disconnectedHandler != connectionHandler)) {
+			return;
+		}
+		connectionHandler = null;
+		disconnectedHandler.close(throwable);
+		payloadSinkRegistry.closeAll();
+		fcpListenerManager.fireConnectionClosed(throwable);
+	}
+
+	/**
+	 * A message waiting to be written to the node.
+	 */
+	private static class OutgoingMessage {
+
+		/** The messages whose names and fields are written. */
+		private final List<FcpMessage> fcpMessages;
+
+		/** Whether the payload of the last message follows its fields. */
+		private final boolean payloadFollows;
+
+		/** The parts of the payload of the last message. */
+		private final Iterator<InputStream> payloadParts;
+
+		/** The encoded names and fields, or {@code null} if not yet encoded. */
+		private ByteBuffer header;
+
+		/** Completed once the message has been written. */
+		private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+		/** The payload part that is currently being written. */
+		private InputStream currentPayloadPart;
+
+		private OutgoingMessage(List<FcpMessage> fcpMessages, boolean payloadFollows, List<InputStream> payloadParts) {
+			this.fcpMessages = fcpMessages;
+			this.payloadFollows = payloadFollows;
+			this.payloadParts = payloadParts.iterator();
+		}
+
+		/**
+		 * Writes as much of this message as the channel accepts. The names and
+		 * fields of the messages are encoded into the given header buffer when
+		 * this method is called for the first time. Payload parts that are
+		 * {@link FilePayloadInputStream}s are transferred directly from the
+		 * file to the channel.
+		 *
+		 * @param socketChannel
+		 *            The channel to write to
+		 * @param headerBuffer
+		 *            The buffer to encode the names and fields into; it must
+		 *            not be used for anything else until this message has been
+		 *            written
+		 * @param payloadBuffer
+		 *            The buffer for payload bytes, holding bytes of this
+		 *            message that have not been written yet
+		 * @return {@code true} if the message has been written completely,
+		 *         {@code false} if the channel could not accept all of it
+		 * @throws IOException
+		 *             if an I/O error occurs
+		 */
+		private boolean writeTo(SocketChannel socketChannel, ByteBuffer headerBuffer, ByteBuffer payloadBuffer) throws IOException {
+			if (header == null) {
+				header = headerBuffer;
+				header.clear();
+				for (int index = 0; index < fcpMessages.size(); index++) {
+					boolean lastMessage = index == (fcpMessages.size() - 1);
+					header = fcpMessages.get(index).encodeHeader(header, lastMessage && payloadFollows);
+				}
+				header.flip();
+			}
+			if (header.hasRemaining()) {
+				socketChannel.write(header);
+				if (header.hasRemaining()) {
+					return false;
+				}
+			}
+			while (true) {
+				if (payloadBuffer.hasRemaining()) {
+					socketChannel.write(payloadBuffer);
+					if (payloadBuffer.hasRemaining()) {
+						return false;
+					}
+				}
+				if (currentPayloadPart == null) {
+					if (!payloadParts.hasNext()) {
+						return true;
+					}
+					currentPayloadPart = payloadParts.next();
+				}
+				if (currentPayloadPart instanceof FilePayloadInputStream) {
+					FilePayloadInputStream filePayloadInputStream = (FilePayloadInputStream) currentPayloadPart;
+					filePayloadInputStream.transferTo(socketChannel);
+					if (filePayloadInputStream.getRemaining() > 0) {
+						return false;
+					}
+					currentPayloadPart = null;
+					continue;
+				}
+				payloadBuffer.clear();
+				int read = currentPayloadPart.read(payloadBuffer.array(), 0, payloadBuffer.capacity());
+				if (read == -1) {
+					payloadBuffer.limit(0);
+					currentPayloadPart = null;
+				} else {
+					payloadBuffer.limit(read);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Performs the I/O of a single connection to the node. Apart from
+	 * {@link #enqueue(Collection)} and {@link #close(Throwable)}, all methods
+	 * are only called on the event loop thread.
+	 */
+	private class ConnectionHandler implements FcpEventLoop.EventHandler {
+
+		/** The channel to the node. */
+		private final SocketChannel socketChannel;
+
+		/** Messages waiting to be written. */
+		private final Queue<OutgoingMessage> outgoingMessages = new ConcurrentLinkedQueue<>();
+
+		/** The buffer for the names and fields of outgoing messages. */
+		private final ByteBuffer headerBuffer = ByteBuffer.allocate(HEADER_BUFFER_SIZE);
+
+		/** The buffer for outgoing payloads. */
+		private final ByteBuffer payloadBuffer = ByteBuffer.allocate(PAYLOAD_BUFFER_SIZE);
+
+		/** The parser for incoming lines. */
+		private final FcpLineParser lineParser = new FcpLineParser();
+
+		/** The selection key of the channel. */
+		private volatile SelectionKey selectionKey;
+
+		/** Whether this connection has been closed. */
+		private volatile boolean closed;
+
+		/** The buffer for incoming bytes. */
+		private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+		/** Whether the last line was terminated by ‘\r’. */
+		private boolean skipLinefeed;
+
+		/** The message whose payload is currently being received. */
+		private FcpMessage payloadMessage;
+
+		/** Collects the payload of {@link #payloadMessage}. */
+		private PayloadCollector payloadCollector;
+
+		private ConnectionHandler(SocketChannel socketChannel) {
+			this.socketChannel = socketChannel;
+			payloadBuffer.limit(0);
+		}
+
+		/**
+		 * Queues the given messages for writing.
+		 *
+		 * @param fcpMessages
+		 *            The messages to write
+		 * @return A future that is completed once all messages were written
+		 */
+		private CompletableFuture<Void> enqueue(Collection<? extends FcpMessage> fcpMessages) {
+			List<OutgoingMessage> newOutgoingMessages = new ArrayList<>();
+			List<FcpMessage> headerMessages = new ArrayList<>();
+			for (FcpMessage fcpMessage : fcpMessages) {
+				headerMessages.add(fcpMessage);
+				if (fcpMessage.getPayloadInputStream() != null) {
+					newOutgoingMessages.add(new OutgoingMessage(headerMessages, true, fcpMessage.getPayloadParts()));
+					headerMessages = new ArrayList<>();
+				}
+			}
+			if (!headerMessages.isEmpty() || newOutgoingMessages.isEmpty()) {
+				newOutgoingMessages.add(new OutgoingMessage(headerMessages, false, Collections.emptyList()));
+			}
+			outgoingMessages.addAll(newOutgoingMessages);
+			if (closed) {
+				failOutgoingMessages(null);
+			} else {
+				eventLoop.execute(this::writeOutgoingMessages);
+			}
+			return newOutgoingMessages.get(newOutgoingMessages.size() - 1).completion;
+		}
+
+		/**
+		 * Closes the channel and fails all messages that have not been written.
+		 *
+		 * @param throwable
+		 *            The cause of the disconnect, may be {@code null}
+		 */
+		private void close(Throwable throwable) {
+			closed = true;
+			FcpUtils.close(socketChannel);
+			failOutgoingMessages(throwable);
+			eventLoop.execute(this::discardPayload);
+		}
+
+		@Override
+		public void readable() {
+			try {
+				if ((payloadCollector != null) && payloadCollector.hasPayloadSink() && (readBuffer.position() == 0) && !skipLinefeed) {
+					if (payloadCollector.transferFrom(socketChannel)) {
+						dispatchPayloadMessage();
+					}
+					return;
+				}
+				int read = socketChannel.read(readBuffer);
+				if (read == -1) {
+					handleDisconnect(this, new EOFException());
+					return;
+				}
+				readBuffer.flip();
+				processInput();
+				readBuffer.compact();
+				if (!readBuffer.hasRemaining()) {
+					ByteBuffer largerReadBuffer = ByteBuffer.allocate(readBuffer.capacity() * 2);
+					readBuffer.flip();
+					largerReadBuffer.put(readBuffer);
+					readBuffer = largerReadBuffer;
+				}
+			} catch (IOException | RuntimeException e) {
+				handleDisconnect(this, e);
+			}
+		}
+
+		@Override
+		public void writable() {
+			writeOutgoingMessages();
+		}
+
+		@Override
+		public void closed() {
+			handleDisconnect(this, new IOException("event loop was closed"));
+		}
+
+		/**
+		 * Frames messages from the bytes in {@link #readBuffer}, collects
+		 * payloads, and dispatches completed messages.
+		 *
+		 * @throws IOException
+		 *             if an I/O error occurs
+		 */
+		private void processInput() throws IOException {
+			byte[] buffer = readBuffer.array();
+			while (!closed) {
+				if (payloadCollector != null) {
+					if (skipLinefeed && readBuffer.hasRemaining()) {
+						if (buffer[readBuffer.position()] == '\n') {
+							readBuffer.position(readBuffer.position() + 1);
+						}
+						skipLinefeed = false;
+					}
+					if (!payloadCollector.consume(readBuffer)) {
+						return;
+					}
+					dispatchPayloadMessage();
+					continue;
+				}
+				int lineStart = readBuffer.position();
+				int lineEnd = lineStart;
+				while ((lineEnd < readBuffer.limit()) && (buffer[lineEnd] != '\n') && (buffer[lineEnd] != '\r')) {
+					lineEnd++;
+				}
+				if (lineEnd == readBuffer.limit()) {
+					return;
+				}
+				skipLinefeed = buffer[lineEnd] == '\r';
+				readBuffer.position(lineEnd + 1);
+				FcpMessage fcpMessage = lineParser.parseLine(buffer, lineStart, lineEnd);
+				if (fcpMessage == null) {
+					continue;
+				}
+				FcpTraceRecord.trace(tracer, FcpTraceRecord.Direction.received, fcpMessage, lineParser.isPayloadFollowing());
+				if (lineParser.isPayloadFollowing()) {
+					payloadMessage = fcpMessage;
+					payloadCollector = new PayloadCollector(FcpUtils.safeParseLong(fcpMessage.getField("DataLength"), 0), payloadSinkRegistry.take(fcpMessage), spillManager);
+				} else {
+					dispatch(fcpMessage, new ByteArrayInputStream(new byte[0]));
+				}
+			}
+		}
+
+		private void dispatchPayloadMessage() throws IOException {
+			InputStream payloadInputStream = payloadCollector.getInputStream();
+			FcpMessage fcpMessage = payloadMessage;
+			payloadCollector = null;
+			payloadMessage = null;
+			dispatch(fcpMessage, payloadInputStream);
+		}
+
+		private void dispatch(FcpMessage fcpMessage, InputStream payloadInputStream) throws IOException {
+			logger.log(Level.FINE, "received message: {0}", fcpMessage.getName());
+			messageDispatcher.dispatch(fcpMessage, (message, dataLength) -> payloadInputStream);
+		}
+
+		private void writeOutgoingMessages() {
+			if (closed) {
+				return;
+			}
+			try {
+				OutgoingMessage outgoingMessage;
+				while ((outgoingMessage = outgoingMessages.peek()) != null) {
+					if (!outgoingMessage.writeTo(socketChannel, headerBuffer, payloadBuffer)) {
+						selectionKey.interestOps(OP_READ | OP_WRITE);
+						return;
+					}
+					outgoingMessages.remove();
+					outgoingMessage.completion.complete(null);
+				}
+				selectionKey.interestOps(OP_READ);
+			} catch (IOException | RuntimeException e) {
+				handleDisconnect(this, e);
+			}
+		}
+
+		private void failOutgoingMessages(Throwable throwable) {
+			OutgoingMessage outgoingMessage;
+			while ((outgoingMessage = outgoingMessages.poll()) != null) {
+				outgoingMessage.completion.completeExceptionally(new IOException("connection is closed", throwable));
+			}
+		}
+
+		private void discardPayload() {
+			if (payloadCollector != null) {
+				payloadCollector.discard();
+				payloadCollector = null;
+				payloadMessage = null;
+			}
+		}
+
+	}
+
+}
@@ -38,6 +38,16 @@ public class NodeData extends BaseMessage {
 		nodeRef = new NodeRef(receivedMessage);
 	}
 
+	/**
+	 * Returns the identifier of the request this message answers, if the
+	 * request had one.
+	 *
+	 * @return The identifier of the request, or {@code null}
+	 */
+	public String getIdentifier() {
+		return getField("Identifier");
+	}
+
 	/**
 	 * Returns the noderef of the node.
 	 *
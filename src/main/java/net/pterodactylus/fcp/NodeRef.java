@@ -20,6 +20,9 @@ package net.pterodactylus.fcp;
 /**
  * A reference for a node. The noderef contains all data that is necessary to
  * establish a trusted and secure connection to the node.
+ * <p>
+ * Node references are mutable; {@link Peer#getNodeRef()} therefore creates
+ * a new node reference on every call.
  *
  * @author David ‘Bombe’ Roden &lt;bombe@freenetproject.org&gt;
  */
@@ -88,10 +91,10 @@ public class NodeRef {
 		physicalUDP = fromMessage.getField("physical.udp");
 		ark = new ARK(fromMessage.getField("ark.pubURI"), fromMessage.getField("ark.privURI"), fromMessage.getField("ark.number"));
 		dsaPublicKey = fromMessage.getField("dsaPubKey.y");
-		dsaGroup = new DSAGroup(fromMessage.getField("dsaGroup.b"), fromMessage.getField("dsaGroup.p"), fromMessage.getField("dsaGroup.q"));
+		dsaGroup = SharedValues.share(new DSAGroup(fromMessage.getField("dsaGroup.b"), fromMessage.getField("dsaGroup.p"), fromMessage.getField("dsaGroup.q")));
 		negotiationTypes = FcpUtils.decodeMultiIntegerField(fromMessage.getField("auth.negTypes"));
-		version = new Version(fromMessage.getField("version"));
-		lastGoodVersion = new Version(fromMessage.getField("lastGoodVersion"));
+		version = SharedValues.share(new Version(fromMessage.getField("version")));
+		lastGoodVersion = SharedValues.share(new Version(fromMessage.getField("lastGoodVersion")));
 		testnet = Boolean.valueOf(fromMessage.getField("testnet"));
 		signature = fromMessage.getField("sig");
 	}
@@ -0,0 +1,226 @@
+package net.pterodactylus.fcp;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+import net.pterodactylus.fcp.io.SpillManager;
+import net.pterodactylus.fcp.io.TempInputStream;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Collects the payload of a message that arrives in chunks, e.g. from a
+ * non-blocking channel. Payloads are kept in memory if the
+ * {@link SpillManager} allows it, otherwise they are written to a spill file.
+ * If a {@link PayloadSink} is given, the payload is transferred into the sink
+ * instead.
+ */
+class PayloadCollector {
+
+	/** The number of bytes that are still missing. */
+	private long remaining;
+
+	/** The in-memory buffer, or {@code null} if a file is used. */
+	private final ByteBuffer memoryBuffer;
+
+	/** The temporary file, or {@code null} if the memory buffer is used. */
+	private final File tempFile;
+
+	/** The channel writing to {@link #tempFile}. */
+	private final FileChannel fileChannel;
+
+	/** The sink for the payload, or {@code null} if the payload is collected. */
+	private final PayloadSink payloadSink;
+
+	/** The spill manager that accounts the collected payload. */
+	private final SpillManager spillManager;
+
+	/**
+	 * Creates a new payload collector.
+	 *
+	 * @param length
+	 *            The length of the payload
+	 * @throws IOException
+	 *             if the temporary file can not be created
+	 */
+	PayloadCollector(long length) throws IOException {
+		this(length, null, SpillManager.getDefault());
+	}
+
+	/**
+	 * Creates a new payload collector.
+	 *
+	 * @param length
+	 *            The length of the payload
+	 * @param payloadSink
+	 *            The sink to transfer the payload into, or {@code null} to
+	 *            collect the payload
+	 * @param spillManager
+	 *            The spill manager that decides whether the payload is kept
+	 *            in memory
+	 * @throws IOException
+	 *             if the temporary file can not be created
+	 */
+	PayloadCollector(long length, PayloadSink payloadSink, SpillManager spillManager) throws IOException {
+		remaining = length;
+		this.payloadSink = payloadSink;
+		this.spillManager = spillManager;
+		if (payloadSink != null) {
+			memoryBuffer = null;
+			tempFile = null;
+			fileChannel = null;
+		} else if ((length <= spillManager.getMaxLengthMemory()) && spillManager.reserveMemory(length)) {
+			memoryBuffer = ByteBuffer.allocate((int) length);
+			tempFile = null;
+			fileChannel = null;
+		} else {
+			memoryBuffer = null;
+			tempFile = spillManager.createSpillFile();
+			fileChannel = FileChannel.open(tempFile.toPath(), WRITE);
+		}
+	}
+
+	/**
+	 * Moves as many bytes from the given buffer as belong to the payload.
+	 *
+	 * @param buffer
+	 *            The buffer to take bytes from
+	 * @return {@code true} if the payload is complete, {@code false} if more
+	 *         bytes are required
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	boolean consume(ByteBuffer buffer) throws IOException {
+		int length = (int) Math.min(remaining, buffer.remaining());
+		ByteBuffer payloadBytes = buffer.duplicate();
+		payloadBytes.limit(payloadBytes.position() + length);
+		if (payloadSink != null) {
+			ReadableByteChannel bufferChannel = new ByteBufferChannel(payloadBytes);
+			while (payloadBytes.hasRemaining()) {
+				if (payloadSink.transferFrom(bufferChannel, payloadBytes.remaining()) <= 0) {
+					throw new IOException("payload sink did not accept data");
+				}
+			}
+		} else if (memoryBuffer != null) {
+			memoryBuffer.put(payloadBytes);
+		} else {
+			while (payloadBytes.hasRemaining()) {
+				fileChannel.write(payloadBytes);
+			}
+		}
+		buffer.position(buffer.position() + length);
+		remaining -= length;
+		return remaining == 0;
+	}
+
+	/**
+	 * Returns whether the payload is transferred into a {@link PayloadSink}.
+	 *
+	 * @return {@code true} if the payload is transferred into a sink,
+	 *         {@code false} if it is collected
+	 */
+	boolean hasPayloadSink() {
+		return payloadSink != null;
+	}
+
+	/**
+	 * Transfers bytes of the payload from the given channel directly into the
+	 * payload sink. This method must only be called if
+	 * {@link #hasPayloadSink()} returns {@code true}.
+	 *
+	 * @param source
+	 *            The channel to read from
+	 * @return {@code true} if the payload is complete, {@code false} if more
+	 *         bytes are required
+	 * @throws IOException
+	 *             if an I/O error occurs, or the channel has reached its end
+	 */
+	boolean transferFrom(ReadableByteChannel source) throws IOException {
+		long transferred = payloadSink.transferFrom(source, remaining);
+		if (transferred == -1) {
+			throw new EOFException("payload ended " + remaining + " bytes early");
+		}
+		remaining -= transferred;
+		return remaining == 0;
+	}
+
+	/**
+	 * Returns an input stream containing the collected payload. If the
+	 * payload was transferred into a sink, the sink is closed and an empty
+	 * input stream is returned. This method
+	 * must only be called once the payload is complete.
+	 *
+	 * @return An input stream containing the payload
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	InputStream getInputStream() throws IOException {
+		if (payloadSink != null) {
+			payloadSink.close();
+			return new ByteArrayInputStream(new byte[0]);
+		}
+		if (memoryBuffer != null) {
+			/* the temp input stream takes over the reservation. */
+			return new TempInputStream(memoryBuffer.array(), spillManager);
+		}
+		fileChannel.close();
+		return new TempInputStream(tempFile, spillManager);
+	}
+
+	/**
+	 * Discards an incomplete payload.
+	 */
+	void discard() {
+		FcpUtils.close(payloadSink);
+		if (memoryBuffer != null) {
+			spillManager.releaseMemory(memoryBuffer.capacity());
+		}
+		if (fileChannel != null) {
+			FcpUtils.close(fileChannel);
+			tempFile.delete();
+		}
+	}
+
+	/**
+	 * Channel that reads the remaining bytes of a buffer.
+	 */
+	private static class ByteBufferChannel implements ReadableByteChannel {
+
+		private final ByteBuffer source;
+
+		private ByteBufferChannel(ByteBuffer source) {
+			this.source = source;
+		}
+
+		@Override
+		public int read(ByteBuffer destination) {
+			if (!source.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(source.remaining(), destination.remaining());
+			ByteBuffer bytes = source.duplicate();
+			bytes.limit(bytes.position() + count);
+			destination.put(bytes);
+			source.position(source.position() + count);
+			return count;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+			/* nothing to close. */
+		}
+
+	}
+
+}
@@ -0,0 +1,157 @@
+package net.pterodactylus.fcp;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Destination for the payload of an {@link AllData} message. When a sink is
+ * registered for a request using {@link FcpConnection#addPayloadSink(String,
+ * PayloadSink)}, the connection transfers the payload from the socket into
+ * the sink, without storing it in a temporary file or in memory first; the
+ * {@link AllData} message that is dispatched afterwards has an empty payload.
+ */
+public interface PayloadSink extends Closeable {
+
+	/**
+	 * Transfers up to {@code count} bytes from the given channel into this
+	 * sink.
+	 *
+	 * @param source The channel to read from
+	 * @param count The maximum number of bytes to transfer
+	 * @return The number of bytes that were transferred, which can be
+	 * {@code 0} if a non-blocking channel has no data available, or
+	 * {@code -1} if the channel has reached its end
+	 * @throws IOException if an I/O error occurs
+	 */
+	long transferFrom(ReadableByteChannel source, long count) throws IOException;
+
+	/**
+	 * Transfers exactly {@code length} bytes from the given blocking channel
+	 * into this sink.
+	 *
+	 * @param source The channel to read from
+	 * @param length The number of bytes to transfer
+	 * @throws IOException if an I/O error occurs, or the channel ends before
+	 * {@code length} bytes have been transferred
+	 */
+	default void transferCompletelyFrom(ReadableByteChannel source, long length) throws IOException {
+		long remaining = length;
+		while (remaining > 0) {
+			long transferred = transferFrom(source, remaining);
+			if (transferred == -1) {
+				throw new EOFException("payload ended " + remaining + " bytes early");
+			}
+			remaining -= transferred;
+		}
+	}
+
+	/**
+	 * Called once the payload has been transferred completely, or when the
+	 * transfer was aborted. The default implementation does nothing.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	@Override
+	default void close() throws IOException {
+	}
+
+	/**
+	 * Returns a sink that writes the payload to the given channel. The
+	 * channel is not closed by the sink.
+	 *
+	 * @param target The channel to write to; must be in blocking mode
+	 * @return A sink writing to the given channel
+	 */
+	static PayloadSink toChannel(WritableByteChannel target) {
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		return (source, count) -> {
+			buffer.clear();
+			if (count < buffer.capacity()) {
+				buffer.limit((int) count);
+			}
+			int read = source.read(buffer);
+			if (read <= 0) {
+				return read;
+			}
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				target.write(buffer);
+			}
+			return read;
+		};
+	}
+
+	/**
+	 * Returns a sink that writes the payload to the given output stream. The
+	 * output stream is not closed by the sink.
+	 *
+	 * @param outputStream The output stream to write to
+	 * @return A sink writing to the given output stream
+	 */
+	static PayloadSink toOutputStream(OutputStream outputStream) {
+		return toChannel(Channels.newChannel(outputStream));
+	}
+
+	/**
+	 * Returns a sink that writes the payload to the given file, using
+	 * {@link FileChannel#transferFrom(ReadableByteChannel, long, long)}. An
+	 * existing file is overwritten. The file is closed when the sink is
+	 * closed.
+	 *
+	 * @param path The file to write to
+	 * @return A sink writing to the given file
+	 * @throws IOException if the file can not be opened
+	 */
+	static PayloadSink toFile(Path path) throws IOException {
+		FileChannel fileChannel = FileChannel.open(path, CREATE, WRITE, TRUNCATE_EXISTING);
+		return new PayloadSink() {
+
+			private long position;
+
+			@Override
+			public long transferFrom(ReadableByteChannel source, long count) throws IOException {
+				boolean[] endOfStream = new boolean[1];
+				ReadableByteChannel trackingSource = new ReadableByteChannel() {
+					@Override
+					public int read(ByteBuffer buffer) throws IOException {
+						int read = source.read(buffer);
+						endOfStream[0] |= (read == -1);
+						return read;
+					}
+
+					@Override
+					public boolean isOpen() {
+						return source.isOpen();
+					}
+
+					@Override
+					public void close() throws IOException {
+						source.close();
+					}
+				};
+				long transferred = fileChannel.transferFrom(trackingSource, position, count);
+				position += transferred;
+				return ((transferred == 0) && endOfStream[0]) ? -1 : transferred;
+			}
+
+			@Override
+			public void close() throws IOException {
+				fileChannel.close();
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,65 @@
+package net.pterodactylus.fcp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the {@link PayloadSink}s that were registered for the {@link AllData}
+ * messages of a connection.
+ */
+class PayloadSinkRegistry {
+
+	/** The registered sinks, by identifier. */
+	private final Map<String, PayloadSink> payloadSinks = new ConcurrentHashMap<>();
+
+	/**
+	 * Registers the given sink for the request with the given identifier,
+	 * replacing a sink that was registered before.
+	 *
+	 * @param identifier
+	 *            The identifier of the request
+	 * @param payloadSink
+	 *            The sink for the payload
+	 */
+	void add(String identifier, PayloadSink payloadSink) {
+		payloadSinks.put(identifier, payloadSink);
+	}
+
+	/**
+	 * Removes the sink for the request with the given identifier.
+	 *
+	 * @param identifier
+	 *            The identifier of the request
+	 */
+	void remove(String identifier) {
+		payloadSinks.remove(identifier);
+	}
+
+	/**
+	 * Removes and returns the sink for the payload of the given message.
+	 *
+	 * @param fcpMessage
+	 *            The received message
+	 * @return The sink for the payload, or {@code null} if the message is not
+	 *         an “AllData” message or no sink is registered for it
+	 */
+	PayloadSink take(FcpMessage fcpMessage) {
+		if (!"AllData".equals(fcpMessage.getName())) {
+			return null;
+		}
+		String identifier = fcpMessage.getField("Identifier");
+		return (identifier == null) ? null : payloadSinks.remove(identifier);
+	}
+
+	/**
+	 * Removes and closes all registered sinks.
+	 */
+	void closeAll() {
+		List<PayloadSink> closedPayloadSinks = new ArrayList<>(payloadSinks.values());
+		payloadSinks.clear();
+		closedPayloadSinks.forEach(FcpUtils::close);
+	}
+
+}
@@ -17,10 +17,7 @@
 
 package net.pterodactylus.fcp;
 
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
 
 /**
  * The “Peer” reply by the node contains information about a peer.
@@ -41,6 +38,13 @@ public class Peer extends BaseMessage implements Identifiable {
 
 	/**
 	 * Returns a collection of fields as a node reference.
+	 * <p>
+	 * As {@link NodeRef} is mutable, the node reference is not cached: every
+	 * call allocates a new node reference, so that changes to it do not
+	 * affect this peer or other callers. Only the field values are shared;
+	 * the usually shared values are interned while the message is parsed.
+	 * Callers that need the node reference repeatedly should keep the
+	 * returned instance.
 	 *
 	 * @return The node reference contained within this message
 	 */
@@ -88,7 +92,7 @@ public class Peer extends BaseMessage implements Identifiable {
 	 *         <code>false</code> if the peer is a darknet peer
 	 */
 	public boolean isOpennet() {
-		return Boolean.valueOf(getField("opennet"));
+		return getParsedFields(Fields::new).opennet;
 	}
 
 	/**
@@ -98,7 +102,7 @@ public class Peer extends BaseMessage implements Identifiable {
 	 *         otherwise
 	 */
 	public boolean isSeed() {
-		return Boolean.valueOf(getField("seed"));
+		return getParsedFields(Fields::new).seed;
 	}
 
 	/**
@@ -116,7 +120,11 @@ public class Peer extends BaseMessage implements Identifiable {
 	 * @return The DSA group of the peer
 	 */
 	public DSAGroup getDSAGroup() {
-		return new DSAGroup(getField("dsaGroup.g"), getField("dsaGroup.p"), getField("dsaGroup.q"));
+		Fields fields = getParsedFields(Fields::new);
+		if (fields.dsaGroup == null) {
+			fields.dsaGroup = SharedValues.share(new DSAGroup(getField("dsaGroup.g"), getField("dsaGroup.p"), getField("dsaGroup.q")));
+		}
+		return fields.dsaGroup;
 	}
 
 	/**
@@ -126,7 +134,11 @@ public class Peer extends BaseMessage implements Identifiable {
 	 * @return The last good version of the peer
 	 */
 	public Version getLastGoodVersion() {
-		return new Version(getField("lastGoodVersion"));
+		Fields fields = getParsedFields(Fields::new);
+		if (fields.lastGoodVersion == null) {
+			fields.lastGoodVersion = SharedValues.share(new Version(getField("lastGoodVersion")));
+		}
+		return fields.lastGoodVersion;
 	}
 
 	/**
@@ -135,7 +147,11 @@ public class Peer extends BaseMessage implements Identifiable {
 	 * @return The ARK of the peer
 	 */
 	public ARK getARK() {
-		return new ARK(getField("ark.pubURI"), getField("ark.privURI"), getField("ark.number"));
+		Fields fields = getParsedFields(Fields::new);
+		if (fields.ark == null) {
+			fields.ark = new ARK(getField("ark.pubURI"), getField("ark.privURI"), getField("ark.number"));
+		}
+		return fields.ark;
 	}
 
 	/**
@@ -166,7 +182,12 @@ public class Peer extends BaseMessage implements Identifiable {
 	 *             if the field can not be parsed
 	 */
 	public double getLocation() throws NumberFormatException {
-		return Double.valueOf(getField("location"));
+		Fields fields = getParsedFields(Fields::new);
+		if (Double.isNaN(fields.location)) {
+			/* let Double.valueOf() create the exception. */
+			return Double.valueOf(getField("location"));
+		}
+		return fields.location;
 	}
 
 	/**
@@ -176,7 +197,7 @@ public class Peer extends BaseMessage implements Identifiable {
 	 *         <code>false</code> otherwise
 	 */
 	public boolean isTestnet() {
-		return Boolean.valueOf(getField("testnet"));
+		return getParsedFields(Fields::new).testnet;
 	}
 
 	/**
@@ -185,7 +206,11 @@ public class Peer extends BaseMessage implements Identifiable {
 	 * @return The version of the peer
 	 */
 	public Version getVersion() {
-		return new Version(getField("version"));
+		Fields fields = getParsedFields(Fields::new);
+		if (fields.version == null) {
+			fields.version = SharedValues.share(new Version(getField("version")));
+		}
+		return fields.version;
 	}
 
 	/**
@@ -194,7 +219,12 @@ public class Peer extends BaseMessage implements Identifiable {
 	 * @return The supported negotiation types
 	 */
 	public int[] getNegotiationTypes() {
-		return FcpUtils.decodeMultiIntegerField(getField("auth.negTypes"));
+		int[] negotiationTypes = getParsedFields(Fields::new).negotiationTypes;
+		if (negotiationTypes == null) {
+			/* let decodeMultiIntegerField() create the exception. */
+			return FcpUtils.decodeMultiIntegerField(getField("auth.negTypes"));
+		}
+		return negotiationTypes.clone();
 	}
 
 	/**
@@ -203,13 +233,7 @@ public class Peer extends BaseMessage implements Identifiable {
 	 * @return All volatile files
 	 */
 	public Map<String, String> getVolatileFields() {
-		Map<String, String> volatileFields = new HashMap<String, String>();
-		for (Entry<String, String> field : getFields().entrySet()) {
-			if (field.getKey().startsWith("volatile.")) {
-				volatileFields.put(field.getKey(), field.getValue());
-			}
-		}
-		return Collections.unmodifiableMap(volatileFields);
+		return getFields("volatile");
 	}
 
 	/**
@@ -233,13 +257,7 @@ public class Peer extends BaseMessage implements Identifiable {
 	 * @return All volatile files
 	 */
 	public Map<String, String> getMetadataFields() {
-		Map<String, String> metadataFields = new HashMap<String, String>();
-		for (Entry<String, String> field : getFields().entrySet()) {
-			if (field.getKey().startsWith("metadata.")) {
-				metadataFields.put(field.getKey(), field.getValue());
-			}
-		}
-		return Collections.unmodifiableMap(metadataFields);
+		return getFields("metadata");
 	}
 
 	/**
@@ -257,4 +275,52 @@ public class Peer extends BaseMessage implements Identifiable {
 		return getField("metadata." + field);
 	}
 
+	/**
+	 * The parsed numeric and boolean fields of a “Peer” message, and the
+	 * objects derived from its fields, which are created on first use.
+	 */
+	private static class Fields {
+
+		private final boolean opennet;
+		private final boolean seed;
+		private final boolean testnet;
+		private final double location;
+		private final int[] negotiationTypes;
+		private volatile ARK ark;
+		private volatile DSAGroup dsaGroup;
+		private volatile Version version;
+		private volatile Version lastGoodVersion;
+
+		private Fields(FcpMessage fcpMessage) {
+			opennet = Boolean.parseBoolean(fcpMessage.getField("opennet"));
+			seed = Boolean.parseBoolean(fcpMessage.getField("seed"));
+			testnet = Boolean.parseBoolean(fcpMessage.getField("testnet"));
+			location = parseLocation(fcpMessage.getField("location"));
+			negotiationTypes = parseNegotiationTypes(fcpMessage.getField("auth.negTypes"));
+		}
+
+		private static double parseLocation(String location) {
+			if (location == null) {
+				return Double.NaN;
+			}
+			try {
+				return Double.parseDouble(location);
+			} catch (NumberFormatException nfe1) {
+				return Double.NaN;
+			}
+		}
+
+		private static int[] parseNegotiationTypes(String negotiationTypes) {
+			if (negotiationTypes == null) {
+				return null;
+			}
+			try {
+				return FcpUtils.decodeMultiIntegerField(negotiationTypes);
+			} catch (NumberFormatException nfe1) {
+				return null;
+			}
+		}
+
+	}
+
 }
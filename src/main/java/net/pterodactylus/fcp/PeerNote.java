@@ -42,6 +42,16 @@ public class PeerNote extends BaseMessage {
 		super(receivedMessage);
 	}
 
+	/**
+	 * Returns the identifier of the request this message answers, if the
+	 * request had one.
+	 *
+	 * @return The identifier of the request, or {@code null}
+	 */
+	public String getIdentifier() {
+		return getField("Identifier");
+	}
+
 	/**
 	 * Returns the identifier of the node this note belongs to.
 	 *
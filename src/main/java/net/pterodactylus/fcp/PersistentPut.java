@@ -51,7 +51,7 @@ public class PersistentPut extends BaseMessage implements Identifiable {
 	 *         could not be parsed
 	 */
 	public long getDataLength() {
-		return FcpUtils.safeParseLong(getField("DataLength"));
+		return getParsedFields(Fields::new).dataLength;
 	}
 
 	/**
@@ -61,7 +61,7 @@ public class PersistentPut extends BaseMessage implements Identifiable {
 	 *         <code>false</code> otherwise
 	 */
 	public boolean isGlobal() {
-		return Boolean.valueOf(getField("Global"));
+		return getParsedFields(Fields::new).global;
 	}
 
 	/**
@@ -83,7 +83,7 @@ public class PersistentPut extends BaseMessage implements Identifiable {
 	 *         number of retries could not be parsed
 	 */
 	public int getMaxRetries() {
-		return FcpUtils.safeParseInt(getField("MaxRetries"));
+		return getParsedFields(Fields::new).maxRetries;
 	}
 
 	/**
@@ -111,7 +111,7 @@ public class PersistentPut extends BaseMessage implements Identifiable {
 	 *         priority could not be parsed
 	 */
 	public Priority getPriority() {
-		return Priority.values()[FcpUtils.safeParseInt(getField("PriorityClass"), Priority.unknown.ordinal())];
+		return Priority.values()[getParsedFields(Fields::new).priorityClass];
 	}
 
 	/**
@@ -121,7 +121,7 @@ public class PersistentPut extends BaseMessage implements Identifiable {
 	 *         otherwise
 	 */
 	public boolean isStarted() {
-		return Boolean.valueOf(getField("Started"));
+		return getParsedFields(Fields::new).started;
 	}
 
 	/**
@@ -188,7 +188,7 @@ public class PersistentPut extends BaseMessage implements Identifiable {
 	}
 
 	public boolean isBinaryBlob() {
-		return Boolean.parseBoolean(getField("BinaryBlob"));
+		return getParsedFields(Fields::new).binaryBlob;
 	}
 
 	/**
@@ -201,7 +201,7 @@ public class PersistentPut extends BaseMessage implements Identifiable {
 	}
 
 	public boolean isDontCompress() {
-		return Boolean.parseBoolean(getField("DontCompress"));
+		return getParsedFields(Fields::new).dontCompress;
 	}
 
 	/**
@@ -214,7 +214,7 @@ public class PersistentPut extends BaseMessage implements Identifiable {
 	}
 
 	public boolean isRealTime() {
-		return Boolean.parseBoolean(getField("RealTime"));
+		return getParsedFields(Fields::new).realTime;
 	}
 
 	/**
@@ -226,4 +226,31 @@ public class PersistentPut extends BaseMessage implements Identifiable {
 		return getField("SplitfileCryptoKey");
 	}
 
+	/**
+	 * The parsed numeric and boolean fields of a “PersistentPut” message.
+	 */
+	private static class Fields {
+
+		private final long dataLength;
+		private final boolean global;
+		private final int maxRetries;
+		private final int priorityClass;
+		private final boolean started;
+		private final boolean binaryBlob;
+		private final boolean dontCompress;
+		private final boolean realTime;
+
+		private Fields(FcpMessage fcpMessage) {
+			dataLength = FcpUtils.safeParseLong(fcpMessage.getField("DataLength"));
+			global = Boolean.parseBoolean(fcpMessage.getField("Global"));
+			maxRetries = FcpUtils.safeParseInt(fcpMessage.getField("MaxRetries"));
+			priorityClass = FcpUtils.safeParseInt(fcpMessage.getField("PriorityClass"), Priority.unknown.ordinal());
+			started = Boolean.parseBoolean(fcpMessage.getField("Started"));
+			binaryBlob = Boolean.parseBoolean(fcpMessage.getField("BinaryBlob"));
+			dontCompress = Boolean.parseBoolean(fcpMessage.getField("DontCompress"));
+			realTime = Boolean.parseBoolean(fcpMessage.getField("RealTime"));
+		}
+
+	}
+
 }
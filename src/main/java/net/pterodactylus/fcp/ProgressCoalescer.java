@@ -0,0 +1,229 @@
+package net.pterodactylus.fcp;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Coalesces the “SimpleProgress” messages of a connection so that listeners
+ * only see the newest progress of every request, at most once per interval.
+ * With {@link WatchGlobal} enabled, the node sends a progress message for
+ * every block of every global request; most of them are outdated before a
+ * listener could do anything useful with them.
+ * <p>
+ * A received progress replaces any progress for the same identifier that
+ * has not been delivered yet. One interval after the first of them arrived,
+ * the given executor hands the delivery of the waiting progress back to the
+ * connection, which delivers it between two dispatched messages, so
+ * listeners are never notified on the executor’s thread, and never on two
+ * threads at once. The messages that end a request (“DataFound”, “GetFailed”,
+ * “PutSuccessful”, and “PutFailed”) are not delayed; the waiting progress of
+ * their request is delivered right before them, so listeners still see all
+ * messages of a request in order.
+ * <p>
+ * A coalescer must not be shared between connections.
+ *
+ * @see DefaultFcpConnection#setProgressCoalescer(ProgressCoalescer)
+ * @see NioFcpConnection#setProgressCoalescer(ProgressCoalescer)
+ */
+public class ProgressCoalescer {
+
+	/** The logger. */
+	private static final Logger logger = Logger.getLogger(ProgressCoalescer.class.getName());
+
+	/** The executor that schedules the delivery of waiting progress. */
+	private final ScheduledExecutorService executor;
+
+	/** The minimum interval between two deliveries, in nanoseconds. */
+	private final long interval;
+
+	/** The waiting deliveries, by identifier. */
+	private final Map<String, Runnable> pendingDeliveries = new LinkedHashMap<>();
+
+	/** Whether a delivery of the waiting progress has been scheduled. */
+	private boolean flushScheduled;
+
+	/** Whether the interval has passed and waiting progress is due. */
+	private boolean flushDue;
+
+	/** The lock guarding the waiting deliveries. */
+	private final Object lock = new Object();
+
+	/** Runs tasks on the thread that dispatches the connection’s messages. */
+	private volatile Executor dispatchExecutor;
+
+	/** The number of received progress messages. */
+	private final LongAdder receivedCount = new LongAdder();
+
+	/** The number of delivered progress messages. */
+	private final LongAdder deliveredCount = new LongAdder();
+
+	/**
+	 * Creates a new progress coalescer.
+	 *
+	 * @param executor
+	 *            The executor that schedules the delivery of waiting
+	 *            progress
+	 * @param interval
+	 *            The minimum interval between two deliveries of progress for
+	 *            the same request
+	 * @param timeUnit
+	 *            The unit of the interval
+	 */
+	public ProgressCoalescer(ScheduledExecutorService executor, long interval, TimeUnit timeUnit) {
+		if (interval < 0) {
+			throw new IllegalArgumentException("interval must not be negative");
+		}
+		this.executor = executor;
+		this.interval = timeUnit.toNanos(interval);
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the number of progress messages that have been received.
+	 *
+	 * @return The number of received progress messages
+	 */
+	public long getReceivedCount() {
+		return receivedCount.sum();
+	}
+
+	/**
+	 * Returns the number of progress messages that have been delivered to the
+	 * listeners.
+	 *
+	 * @return The number of delivered progress messages
+	 */
+	public long getDeliveredCount() {
+		return deliveredCount.sum();
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Delivers all waiting progress immediately, on the calling thread. This
+	 * method should only be called on the thread that dispatches the
+	 * messages of the connection, e.g. from a listener.
+	 */
+	public void flush() {
+		List<Runnable> deliveries;
+		synchronized (lock) {
+			deliveries = new ArrayList<>(pendingDeliveries.values());
+			pendingDeliveries.clear();
+			flushScheduled = false;
+			flushDue = false;
+		}
+		deliveries.forEach(this::deliver);
+	}
+
+	//
+	// PACKAGE-PRIVATE METHODS
+	//
+
+	/**
+	 * Sets the executor that runs tasks on the thread that dispatches the
+	 * messages of the connection. Without a dispatch executor, due progress
+	 * is only delivered by {@link #flushIfDue()}.
+	 *
+	 * @param dispatchExecutor
+	 *            The executor of the dispatching thread, or {@code null}
+	 */
+	void setDispatchExecutor(Executor dispatchExecutor) {
+		this.dispatchExecutor = dispatchExecutor;
+	}
+
+	/**
+	 * Delivers all waiting progress if the interval since the first of them
+	 * arrived has passed. This method must only be called on the thread that
+	 * dispatches the messages of the connection.
+	 */
+	void flushIfDue() {
+		synchronized (lock) {
+			if (!flushDue) {
+				return;
+			}
+		}
+		flush();
+	}
+
+	/**
+	 * Stores the delivery of a received progress, replacing the waiting
+	 * delivery for the same identifier.
+	 *
+	 * @param identifier
+	 *            The identifier of the request
+	 * @param delivery
+	 *            The delivery of the progress to the listeners
+	 */
+	void coalesce(String identifier, Runnable delivery) {
+		receivedCount.increment();
+		synchronized (lock) {
+			pendingDeliveries.put(identifier, delivery);
+			if (!flushScheduled) {
+				flushScheduled = true;
+				executor.schedule(this::markFlushDue, interval, TimeUnit.NANOSECONDS);
+			}
+		}
+	}
+
+	/**
+	 * Delivers the waiting progress for the given identifier. When this
+	 * method returns, no earlier progress for the request is delivered
+	 * anymore. This method must only be called on the thread that dispatches
+	 * the messages of the connection.
+	 *
+	 * @param identifier
+	 *            The identifier of the request
+	 */
+	void flush(String identifier) {
+		Runnable delivery;
+		synchronized (lock) {
+			delivery = pendingDeliveries.remove(identifier);
+		}
+		if (delivery != null) {
+			deliver(delivery);
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void markFlushDue() {
+		synchronized (lock) {
+			flushDue = true;
+		}
+		Executor dispatchExecutor = this.dispatchExecutor;
+		if (dispatchExecutor == null) {
+			return;
+		}
+		try {
+			dispatchExecutor.execute(this::flushIfDue);
+		} catch (RejectedExecutionException ree1) {
+			logger.log(Level.FINE, "could not hand due progress to dispatching thread", ree1);
+		}
+	}
+
+	private void deliver(Runnable delivery) {
+		deliveredCount.increment();
+		try {
+			delivery.run();
+		} catch (RuntimeException re1) {
+			logger.log(Level.WARNING, "error while delivering progress", re1);
+		}
+	}
+
+}
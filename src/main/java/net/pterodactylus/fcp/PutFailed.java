@@ -19,8 +19,6 @@ package net.pterodactylus.fcp;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 
 /**
  * The “PutFailed” message signals the client that a {@link ClientPut} request
@@ -126,17 +124,13 @@ public class PutFailed extends BaseMessage implements Identifiable {
 	 * @return A list of complex error codes
 	 */
 	public int[] getComplexErrorCodes() {
-		Map<String, String> allFields = getFields();
 		List<Integer> errorCodeList = new ArrayList<Integer>();
-		for (Entry<String, String> field : allFields.entrySet()) {
-			String fieldKey = field.getKey();
-			if (fieldKey.startsWith("Errors.")) {
-				int nextDot = fieldKey.indexOf('.', 7);
-				if (nextDot > -1) {
-					int errorCode = FcpUtils.safeParseInt(fieldKey.substring(7, nextDot));
-					if (errorCode != -1) {
-						errorCodeList.add(errorCode);
-					}
+		for (String fieldKey : subtree("Errors").keySet()) {
+			int nextDot = fieldKey.indexOf('.');
+			if (nextDot > -1) {
+				int errorCode = FcpUtils.safeParseInt(fieldKey.substring(0, nextDot));
+				if (errorCode != -1) {
+					errorCodeList.add(errorCode);
 				}
 			}
 		}
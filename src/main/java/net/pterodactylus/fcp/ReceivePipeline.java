@@ -0,0 +1,345 @@
+package net.pterodactylus.fcp;
+
+import java.io.Closeable;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decodes received messages and notifies listeners on an {@link Executor}
+ * instead of the thread that reads from the socket, so that a slow listener
+ * does not stall the connection.
+ * <p>
+ * Messages are distributed over a number of stripes by their “Identifier”
+ * field. The messages of a stripe are processed one after the other, so all
+ * messages for the same request are delivered in the order in which they
+ * were received, while messages for different requests can be processed in
+ * parallel. Messages without an identifier, such as “NodeHello” or
+ * “EndListPersistentRequests”, are processed once all messages received
+ * before them have been processed, and before any message received after
+ * them.
+ * <p>
+ * At most {@link #getCapacity()} messages can be waiting; when the pipeline
+ * is full, the reading thread waits, which in turn makes the node wait.
+ * <p>
+ * If the executor rejects a stripe, e.g. because it has been shut down, the
+ * messages waiting in that stripe are dropped and their payloads are closed.
+ *
+ * @see DefaultFcpConnection#setReceivePipeline(ReceivePipeline)
+ */
+public class ReceivePipeline {
+
+	/** The logger. */
+	private static final Logger logger = Logger.getLogger(ReceivePipeline.class.getName());
+
+	/** The default number of stripes. */
+	public static final int DEFAULT_STRIPE_COUNT = 16;
+
+	/** The default capacity. */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/** The executor that processes the messages. */
+	private final Executor executor;
+
+	/** The stripes. */
+	private final Stripe[] stripes;
+
+	/** The maximum number of waiting messages. */
+	private final int capacity;
+
+	/** The permits for waiting messages. */
+	private final Semaphore permits;
+
+	/** The number of messages that are waiting or being processed. */
+	private final AtomicInteger queueDepth = new AtomicInteger();
+
+	/** The lock guarding the state of all stripes. */
+	private final Object lock = new Object();
+
+	/**
+	 * Creates a new receive pipeline with {@link #DEFAULT_STRIPE_COUNT}
+	 * stripes and a capacity of {@link #DEFAULT_CAPACITY} messages.
+	 *
+	 * @param executor
+	 *            The executor that processes the messages
+	 */
+	public ReceivePipeline(Executor executor) {
+		this(executor, DEFAULT_STRIPE_COUNT, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new receive pipeline.
+	 *
+	 * @param executor
+	 *            The executor that processes the messages
+	 * @param stripeCount
+	 *            The number of stripes, i.e. the maximum number of messages
+	 *            that are processed in parallel
+	 * @param capacity
+	 *            The maximum number of waiting messages
+	 */
+	public ReceivePipeline(Executor executor, int stripeCount, int capacity) {
+		if ((stripeCount < 1) || (capacity < 1)) {
+			throw new IllegalArgumentException("stripe count and capacity must be positive");
+		}
+		this.executor = executor;
+		this.capacity = capacity;
+		this.permits = new Semaphore(capacity);
+		stripes = new Stripe[stripeCount];
+		for (int index = 0; index < stripeCount; index++) {
+			stripes[index] = new Stripe();
+		}
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the maximum number of waiting messages.
+	 *
+	 * @return The capacity of this pipeline
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the number of messages that have been handed to this pipeline
+	 * but have not been processed completely.
+	 *
+	 * @return The number of waiting messages
+	 */
+	public int getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	//
+	// PACKAGE-PRIVATE METHODS
+	//
+
+	/**
+	 * Hands a task to this pipeline. Tasks with the same identifier are run
+	 * in the order in which they were submitted; a task without an identifier
+	 * runs after all tasks submitted before it, and before all tasks submitted
+	 * after it.
+	 *
+	 * @param identifier
+	 *            The identifier of the message, or {@code null}
+	 * @param task
+	 *            The task to run
+	 * @param waitForCapacity
+	 *            {@code true} to wait while the pipeline is full,
+	 *            {@code false} to exceed the capacity instead
+	 * @throws InterruptedIOException
+	 *             if the thread is interrupted while waiting
+	 */
+	void submit(String identifier, Runnable task, boolean waitForCapacity) throws InterruptedIOException {
+		submit(identifier, task, null, waitForCapacity);
+	}
+
+	/**
+	 * Hands a task to this pipeline. Tasks with the same identifier are run
+	 * in the order in which they were submitted; a task without an identifier
+	 * runs after all tasks submitted before it, and before all tasks submitted
+	 * after it. If the task is dropped instead of being run, the given payload
+	 * is closed.
+	 *
+	 * @param identifier
+	 *            The identifier of the message, or {@code null}
+	 * @param task
+	 *            The task to run
+	 * @param payload
+	 *            The payload of the message, or {@code null}
+	 * @param waitForCapacity
+	 *            {@code true} to wait while the pipeline is full,
+	 *            {@code false} to exceed the capacity instead
+	 * @throws InterruptedIOException
+	 *             if the thread is interrupted while waiting
+	 */
+	void submit(String identifier, Runnable task, Closeable payload, boolean waitForCapacity) throws InterruptedIOException {
+		boolean permitAcquired = false;
+		if (waitForCapacity) {
+			try {
+				permits.acquire();
+				permitAcquired = true;
+			} catch (InterruptedException ie1) {
+				throw new InterruptedIOException("interrupted while waiting for receive pipeline");
+			}
+		}
+		queueDepth.incrementAndGet();
+		Entry entry = new Entry(task, payload, permitAcquired, (identifier == null) ? stripes.length : 1);
+		synchronized (lock) {
+			if (identifier == null) {
+				for (Stripe stripe : stripes) {
+					stripe.entries.add(entry);
+					scheduleIfNecessary(stripe);
+				}
+			} else {
+				Stripe stripe = stripes[stripeIndex(identifier, stripes.length)];
+				stripe.entries.add(entry);
+				scheduleIfNecessary(stripe);
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of the stripe for the given identifier.
+	 *
+	 * @param identifier
+	 *            The identifier of a message
+	 * @param stripeCount
+	 *            The number of stripes
+	 * @return The index of the stripe
+	 */
+	static int stripeIndex(String identifier, int stripeCount) {
+		int hashCode = identifier.hashCode();
+		return ((hashCode ^ (hashCode >>> 16)) & 0x7fffffff) % stripeCount;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void scheduleIfNecessary(Stripe stripe) {
+		if (!stripe.scheduled && !stripe.waitingAtBarrier && !stripe.entries.isEmpty()) {
+			stripe.scheduled = true;
+			try {
+				executor.execute(stripe);
+			} catch (RejectedExecutionException ree1) {
+				logger.log(Level.WARNING, "executor rejected received messages, dropping them", ree1);
+				stripe.scheduled = false;
+				dropEntries(stripe);
+			}
+		}
+	}
+
+	/**
+	 * Drops all entries of the given stripe. An entry without identifier
+	 * counts as reached by the stripe, so it is still run by the last stripe
+	 * that reaches it, unless that is a stripe whose entries are dropped. Must
+	 * be called while holding {@link #lock}.
+	 *
+	 * @param stripe
+	 *            The stripe whose entries to drop
+	 */
+	private void dropEntries(Stripe stripe) {
+		boolean barrierDropped = false;
+		Entry entry;
+		while ((entry = stripe.entries.poll()) != null) {
+			if (--entry.remainingStripes == 0) {
+				FcpUtils.close(entry.payload);
+				finishEntry(entry);
+				barrierDropped |= entry.barrier;
+			}
+		}
+		if (barrierDropped) {
+			releaseBarrier();
+		}
+	}
+
+	private void runEntry(Entry entry) {
+		try {
+			entry.task.run();
+		} catch (RuntimeException re1) {
+			logger.log(Level.WARNING, "error while processing received message", re1);
+		} finally {
+			finishEntry(entry);
+		}
+	}
+
+	private void finishEntry(Entry entry) {
+		queueDepth.decrementAndGet();
+		if (entry.permitAcquired) {
+			permits.release();
+		}
+	}
+
+	private void releaseBarrier() {
+		synchronized (lock) {
+			for (Stripe stripe : stripes) {
+				if (stripe.waitingAtBarrier) {
+					stripe.waitingAtBarrier = false;
+					scheduleIfNecessary(stripe);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A message waiting to be processed.
+	 */
+	private static class Entry {
+
+		/** The task to run. */
+		private final Runnable task;
+
+		/** The payload to close if the task is dropped, or {@code null}. */
+		private final Closeable payload;
+
+		/** Whether a permit has to be released after the task has run. */
+		private final boolean permitAcquired;
+
+		/** Whether all stripes have to reach this entry before it runs. */
+		private final boolean barrier;
+
+		/** The number of stripes that have not reached this entry yet. */
+		private int remainingStripes;
+
+		private Entry(Runnable task, Closeable payload, boolean permitAcquired, int remainingStripes) {
+			this.task = task;
+			this.payload = payload;
+			this.permitAcquired = permitAcquired;
+			this.barrier = remainingStripes > 1;
+			this.remainingStripes = remainingStripes;
+		}
+
+	}
+
+	/**
+	 * A serial queue of messages.
+	 */
+	private class Stripe implements Runnable {
+
+		/** The waiting entries. */
+		private final Queue<Entry> entries = new ArrayDeque<>();
+
+		/** Whether this stripe has been handed to the executor. */
+		private boolean scheduled;
+
+		/** Whether this stripe waits for other stripes to reach a barrier. */
+		private boolean waitingAtBarrier;
+
+		@Override
+		public void run() {
+			while (true) {
+				Entry entry;
+				synchronized (lock) {
+					entry = entries.poll();
+					if (entry == null) {
+						scheduled = false;
+						return;
+					}
+					if (--entry.remainingStripes > 0) {
+						/* a barrier that other stripes have not reached yet. */
+						waitingAtBarrier = true;
+						scheduled = false;
+						return;
+					}
+				}
+				runEntry(entry);
+				if (entry.barrier) {
+					releaseBarrier();
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,80 @@
+package net.pterodactylus.fcp;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Canonicalizes values that are identical across many messages, such as the
+ * DSA group and the versions of peers, so that a list of thousands of peers
+ * holds only one copy of each value. Values are held weakly and disappear
+ * once no message refers to them anymore.
+ */
+final class SharedValues {
+
+	/** The fields of “Peer” and “NodeData” messages that are usually shared. */
+	private static final Set<String> SHARED_NODE_FIELDS = new HashSet<>(Arrays.asList(
+			"dsaGroup.b", "dsaGroup.g", "dsaGroup.p", "dsaGroup.q", "version", "lastGoodVersion", "auth.negTypes",
+			"opennet", "seed", "testnet", "volatile.status", "volatile.lastRoutingBackoffReason"
+	));
+
+	/** The canonical strings. */
+	private static final Interner<String> strings = Interners.newWeakInterner();
+
+	/** The canonical DSA groups. */
+	private static final Interner<DSAGroup> dsaGroups = Interners.newWeakInterner();
+
+	/** The canonical versions. */
+	private static final Interner<Version> versions = Interners.newWeakInterner();
+
+	private SharedValues() {
+		/* static methods only. */
+	}
+
+	/**
+	 * Returns the canonical instance of the value of a field if the field is
+	 * usually shared between messages of the given name, and the value
+	 * itself otherwise. This is used while a received message is parsed so
+	 * that the message never has to be changed afterwards.
+	 *
+	 * @param messageName
+	 *            The name of the message the field belongs to
+	 * @param field
+	 *            The name of the field
+	 * @param value
+	 *            The value of the field
+	 * @return The value to store in the message
+	 */
+	static String share(String messageName, String field, String value) {
+		if ((messageName.equals("Peer") || messageName.equals("NodeData")) && SHARED_NODE_FIELDS.contains(field)) {
+			return strings.intern(value);
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the canonical instance of the given DSA group.
+	 *
+	 * @param dsaGroup
+	 *            The DSA group
+	 * @return The canonical DSA group
+	 */
+	static DSAGroup share(DSAGroup dsaGroup) {
+		return dsaGroups.intern(dsaGroup);
+	}
+
+	/**
+	 * Returns the canonical instance of the given version.
+	 *
+	 * @param version
+	 *            The version
+	 * @return The canonical version
+	 */
+	static Version share(Version version) {
+		return versions.intern(version);
+	}
+
+}
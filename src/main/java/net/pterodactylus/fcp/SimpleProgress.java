@@ -42,7 +42,7 @@ public class SimpleProgress extends BaseMessage implements Identifiable {
 	 * @return The total number of blocks
 	 */
 	public int getTotal() {
-		return FcpUtils.safeParseInt(getField("Total"));
+		return getParsedFields(Fields::new).total;
 	}
 
 	/**
@@ -54,7 +54,7 @@ public class SimpleProgress extends BaseMessage implements Identifiable {
 	 * @return The number of required blocks
 	 */
 	public int getRequired() {
-		return FcpUtils.safeParseInt(getField("Required"));
+		return getParsedFields(Fields::new).required;
 	}
 
 	/**
@@ -63,7 +63,7 @@ public class SimpleProgress extends BaseMessage implements Identifiable {
 	 * @return The number of failed blocks
 	 */
 	public int getFailed() {
-		return FcpUtils.safeParseInt(getField("Failed"));
+		return getParsedFields(Fields::new).failed;
 	}
 
 	/**
@@ -73,7 +73,7 @@ public class SimpleProgress extends BaseMessage implements Identifiable {
 	 * @return The number of fatally failed blocks
 	 */
 	public int getFatallyFailed() {
-		return FcpUtils.safeParseInt(getField("FatallyFailed"));
+		return getParsedFields(Fields::new).fatallyFailed;
 	}
 
 	/**
@@ -82,7 +82,7 @@ public class SimpleProgress extends BaseMessage implements Identifiable {
 	 * @return The number of succeeded blocks
 	 */
 	public int getSucceeded() {
-		return FcpUtils.safeParseInt(getField("Succeeded"));
+		return getParsedFields(Fields::new).succeeded;
 	}
 
 	/**
@@ -95,15 +95,28 @@ public class SimpleProgress extends BaseMessage implements Identifiable {
 	 *         finalized, <code>false</code> otherwise
 	 */
 	public boolean isFinalizedTotal() {
-		return Boolean.valueOf(getField("FinalizedTotal"));
+		return getParsedFields(Fields::new).finalizedTotal;
 	}
 
+	/**
+	 * Returns the time of the last progress of the request.
+	 *
+	 * @return The time of the last progress (in milliseconds since Jan 1, 1970
+	 *         UTC), or <code>-1</code> if the time could not be parsed
+	 */
 	public long getLastProgress() {
-		return Long.valueOf(getField("LastProgress"));
+		return getParsedFields(Fields::new).lastProgress;
 	}
 
+	/**
+	 * Returns the minimum number of blocks that have to be fetched
+	 * successfully.
+	 *
+	 * @return The minimum number of blocks, or <code>-1</code> if the number
+	 *         could not be parsed
+	 */
 	public int getMinSuccessFetchBlocks() {
-		return Integer.valueOf(getField("MinSuccessFetchBlocks"));
+		return getParsedFields(Fields::new).minSuccessFetchBlocks;
 	}
 
 	/**
@@ -116,4 +129,31 @@ public class SimpleProgress extends BaseMessage implements Identifiable {
 		return getField("Identifier");
 	}
 
+	/**
+	 * The parsed numeric fields of a “SimpleProgress” message.
+	 */
+	private static class Fields {
+
+		private final int total;
+		private final int required;
+		private final int failed;
+		private final int fatallyFailed;
+		private final int succeeded;
+		private final boolean finalizedTotal;
+		private final long lastProgress;
+		private final int minSuccessFetchBlocks;
+
+		private Fields(FcpMessage fcpMessage) {
+			total = FcpUtils.safeParseInt(fcpMessage.getField("Total"));
+			required = FcpUtils.safeParseInt(fcpMessage.getField("Required"));
+			failed = FcpUtils.safeParseInt(fcpMessage.getField("Failed"));
+			fatallyFailed = FcpUtils.safeParseInt(fcpMessage.getField("FatallyFailed"));
+			succeeded = FcpUtils.safeParseInt(fcpMessage.getField("Succeeded"));
+			finalizedTotal = Boolean.parseBoolean(fcpMessage.getField("FinalizedTotal"));
+			lastProgress = FcpUtils.safeParseLong(fcpMessage.getField("LastProgress"));
+			minSuccessFetchBlocks = FcpUtils.safeParseInt(fcpMessage.getField("MinSuccessFetchBlocks"));
+		}
+
+	}
+
 }
@@ -17,6 +17,7 @@
 
 package net.pterodactylus.fcp;
 
+import java.util.Objects;
 import java.util.StringTokenizer;
 
 /**
@@ -123,6 +124,27 @@ public class Version {
 		return buildNumber;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(Object object) {
+		if (!(object instanceof Version)) {
+			return false;
+		}
+		Version version = (Version) object;
+		return Objects.equals(nodeName, version.nodeName) && Objects.equals(treeVersion, version.treeVersion)
+				&& Objects.equals(protocolVersion, version.protocolVersion) && (buildNumber == version.buildNumber);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode() {
+		return Objects.hash(nodeName, treeVersion, protocolVersion, buildNumber);
+	}
+
 	/**
 	 * @see java.lang.Object#toString()
 	 */
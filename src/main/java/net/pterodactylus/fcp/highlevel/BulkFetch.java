@@ -0,0 +1,313 @@
+package net.pterodactylus.fcp.highlevel;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fetches a large number of keys over the connection of a {@link FcpClient},
+ * keeping a bounded number of requests in flight. Every result is handed to a
+ * consumer as soon as its request has finished, so the results of a bulk
+ * fetch never have to be kept in memory at the same time. Redirects are
+ * followed the same way {@link FcpClient#getURI(String, boolean)} follows
+ * them.
+ * <p>
+ * The consumer is called from the thread that notifies the connection’s
+ * listeners; it must not block, and it must consume the {@link
+ * GetResult#getInputStream() input stream} of the result before it returns.
+ * Requests the node rejects with a “ProtocolError”, e.g. because of an
+ * invalid URI, are counted as failed requests, just like “GetFailed”
+ * messages. If a request fails with any other exception, e.g. because the
+ * connection was lost, or if the iterator of the URIs throws an exception,
+ * no more requests are started and the bulk fetch fails with that exception
+ * once the requests in flight have finished.
+ *
+ * <pre>
+ * BulkFetch bulkFetch = new BulkFetch(fcpClient);
+ * bulkFetch.setMaxRequestsInFlight(64);
+ * BulkFetchStatistics statistics = bulkFetch.fetch(uris, (uri, getResult) -&gt; …);
+ * </pre>
+ *
+ * A bulk fetch can only be started once.
+ */
+public class BulkFetch {
+
+	/** The logger. */
+	private static final Logger logger = Logger.getLogger(BulkFetch.class.getName());
+
+	/** The default maximum number of requests in flight. */
+	public static final int DEFAULT_MAX_REQUESTS_IN_FLIGHT = 16;
+
+	/** The client to fetch the keys with. */
+	private final FcpClient fcpClient;
+
+	/** The maximum number of requests in flight. */
+	private volatile int maxRequestsInFlight = DEFAULT_MAX_REQUESTS_IN_FLIGHT;
+
+	/** Whether to filter the fetched data. */
+	private volatile boolean filterData = true;
+
+	/** The future for the final statistics. */
+	private final CompletableFuture<BulkFetchStatistics> completion = new CompletableFuture<>();
+
+	/** The lock guarding the state of the bulk fetch. */
+	private final Object lock = new Object();
+
+	/** The URIs that still have to be fetched. */
+	private Iterator<String> uris;
+
+	/** The consumer of the results. */
+	private BiConsumer<String, GetResult> resultConsumer;
+
+	/** Whether requests are currently being started. */
+	private boolean startingRequests;
+
+	/** Whether the iterator of the URIs has no more URIs. */
+	private boolean urisExhausted;
+
+	/** The exception that stopped the bulk fetch. */
+	private Throwable failure;
+
+	/** The time the bulk fetch was started, from {@link System#nanoTime()}. */
+	private long startTime;
+
+	/** Whether all requests have finished. */
+	private boolean finished;
+
+	/** The time the bulk fetch finished, from {@link System#nanoTime()}. */
+	private long endTime;
+
+	/** The number of requests in flight. */
+	private int requestsInFlight;
+
+	/** The number of started requests. */
+	private long startedCount;
+
+	/** The number of successful requests. */
+	private long succeededCount;
+
+	/** The number of failed requests. */
+	private long failedCount;
+
+	/** The number of redirected requests. */
+	private long redirectedCount;
+
+	/** The number of fetched bytes. */
+	private long byteCount;
+
+	/** The number of failed requests, by error code. */
+	private final Map<Integer, Long> errorCodeCounts = new HashMap<>();
+
+	/** The number of requests rejected by the node, by protocol error code. */
+	private final Map<Integer, Long> protocolErrorCodeCounts = new HashMap<>();
+
+	/**
+	 * Creates a new bulk fetch.
+	 *
+	 * @param fcpClient
+	 *            The client to fetch the keys with
+	 */
+	public BulkFetch(FcpClient fcpClient) {
+		this.fcpClient = fcpClient;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Sets the maximum number of requests that are in flight at the same
+	 * time. Defaults to {@value #DEFAULT_MAX_REQUESTS_IN_FLIGHT}.
+	 *
+	 * @param maxRequestsInFlight
+	 *            The maximum number of requests in flight
+	 */
+	public void setMaxRequestsInFlight(int maxRequestsInFlight) {
+		if (maxRequestsInFlight < 1) {
+			throw new IllegalArgumentException("maxRequestsInFlight must be positive");
+		}
+		this.maxRequestsInFlight = maxRequestsInFlight;
+	}
+
+	/**
+	 * Sets whether the fetched data is run through Freenet’s content filter.
+	 * Defaults to {@code true}.
+	 *
+	 * @param filterData
+	 *            {@code true} to filter the fetched data, {@code false}
+	 *            otherwise
+	 */
+	public void setFilterData(boolean filterData) {
+		this.filterData = filterData;
+	}
+
+	/**
+	 * Returns the current statistics of this bulk fetch.
+	 *
+	 * @return The current statistics
+	 */
+	public BulkFetchStatistics getStatistics() {
+		synchronized (lock) {
+			long elapsedNanos = (uris == null) ? 0 : (finished ? endTime : System.nanoTime()) - startTime;
+			return new BulkFetchStatistics(startedCount, succeededCount, failedCount, redirectedCount, byteCount, errorCodeCounts, protocolErrorCodeCounts, elapsedNanos);
+		}
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Fetches all given URIs and waits until all requests have finished.
+	 *
+	 * @param uris
+	 *            The URIs to fetch
+	 * @param resultConsumer
+	 *            The consumer of the results, receiving the URI and the result
+	 *            of every request
+	 * @return The final statistics
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws FcpException
+	 *             if an FCP error occurs
+	 */
+	public BulkFetchStatistics fetch(Iterable<String> uris, BiConsumer<String, GetResult> resultConsumer) throws IOException, FcpException {
+		return FcpClient.await(fetchAsync(uris.iterator(), resultConsumer));
+	}
+
+	/**
+	 * Starts fetching the given URIs. The URIs are taken from the iterator
+	 * only when a request can be started, so the iterator may produce the
+	 * URIs lazily, e.g. from a {@link java.util.stream.Stream#iterator()
+	 * stream}.
+	 *
+	 * @param uris
+	 *            The URIs to fetch
+	 * @param resultConsumer
+	 *            The consumer of the results, receiving the URI and the result
+	 *            of every request
+	 * @return A future for the final statistics, completed once all requests
+	 *         have finished
+	 * @throws IllegalStateException
+	 *             if this bulk fetch has already been started
+	 */
+	public CompletableFuture<BulkFetchStatistics> fetchAsync(Iterator<String> uris, BiConsumer<String, GetResult> resultConsumer) {
+		synchronized (lock) {
+			if (this.uris != null) {
+				throw new IllegalStateException("bulk fetch has already been started");
+			}
+			this.uris = uris;
+			this.resultConsumer = resultConsumer;
+			startTime = System.nanoTime();
+		}
+		startRequests();
+		return completion;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Starts requests until the maximum number of requests is in flight. If
+	 * requests are already being started, e.g. because a request finished
+	 * while this method starts requests, the running invocation will start
+	 * the additional requests.
+	 */
+	private void startRequests() {
+		synchronized (lock) {
+			if (startingRequests) {
+				return;
+			}
+			startingRequests = true;
+		}
+		while (true) {
+			String uri;
+			synchronized (lock) {
+				try {
+					if ((failure != null) || (requestsInFlight >= maxRequestsInFlight) || !hasMoreUris()) {
+						startingRequests = false;
+						break;
+					}
+					uri = uris.next();
+				} catch (RuntimeException re1) {
+					logger.log(Level.WARNING, "could not get next URI", re1);
+					if (failure == null) {
+						failure = re1;
+					}
+					startingRequests = false;
+					break;
+				}
+				requestsInFlight++;
+				startedCount++;
+			}
+			fcpClient.getURIAsync(uri, filterData).whenComplete((getResult, throwable) -> requestFinished(uri, getResult, throwable));
+		}
+		completeIfFinished();
+	}
+
+	private void requestFinished(String uri, GetResult getResult, Throwable throwable) {
+		GetResult result = getResult;
+		synchronized (lock) {
+			requestsInFlight--;
+			if (throwable != null) {
+				Throwable cause = ((throwable instanceof CompletionException) && (throwable.getCause() != null)) ? throwable.getCause() : throwable;
+				if (cause instanceof FcpProtocolException) {
+					protocolErrorCodeCounts.merge(((FcpProtocolException) cause).getCode(), 1L, Long::sum);
+				} else if (failure == null) {
+					failure = cause;
+				}
+				result = new GetResult().success(false).exception(cause);
+			}
+			if (result.isSuccess()) {
+				succeededCount++;
+				byteCount += result.getContentLength();
+			} else {
+				failedCount++;
+				if (result.getException() == null) {
+					errorCodeCounts.merge(result.getErrorCode(), 1L, Long::sum);
+				}
+			}
+			if (result.getRealUri() != null) {
+				redirectedCount++;
+			}
+		}
+		try {
+			resultConsumer.accept(uri, result);
+		} catch (RuntimeException re1) {
+			logger.log(Level.WARNING, "error while consuming result for " + uri, re1);
+		}
+		startRequests();
+	}
+
+	private boolean hasMoreUris() {
+		if (!urisExhausted && !uris.hasNext()) {
+			urisExhausted = true;
+		}
+		return !urisExhausted;
+	}
+
+	private void completeIfFinished() {
+		Throwable failure;
+		synchronized (lock) {
+			if (startingRequests || (requestsInFlight > 0) || ((this.failure == null) && !urisExhausted) || finished) {
+				return;
+			}
+			finished = true;
+			endTime = System.nanoTime();
+			failure = this.failure;
+		}
+		if (failure != null) {
+			completion.completeExceptionally(failure);
+		} else {
+			completion.complete(getStatistics());
+		}
+	}
+
+}
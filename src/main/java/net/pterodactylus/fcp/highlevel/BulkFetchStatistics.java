@@ -0,0 +1,200 @@
+package net.pterodactylus.fcp.highlevel;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The statistics of a {@link BulkFetch} at a certain point in time.
+ */
+public class BulkFetchStatistics {
+
+	/** The number of started requests. */
+	private final long startedCount;
+
+	/** The number of successful requests. */
+	private final long succeededCount;
+
+	/** The number of failed requests. */
+	private final long failedCount;
+
+	/** The number of requests that followed at least one redirect. */
+	private final long redirectedCount;
+
+	/** The number of fetched bytes. */
+	private final long byteCount;
+
+	/** The number of failed requests, by error code. */
+	private final Map<Integer, Long> errorCodeCounts;
+
+	/** The number of requests rejected by the node, by protocol error code. */
+	private final Map<Integer, Long> protocolErrorCodeCounts;
+
+	/** The time since the bulk fetch was started, in nanoseconds. */
+	private final long elapsedNanos;
+
+	/**
+	 * Creates new statistics.
+	 *
+	 * @param startedCount
+	 *            The number of started requests
+	 * @param succeededCount
+	 *            The number of successful requests
+	 * @param failedCount
+	 *            The number of failed requests
+	 * @param redirectedCount
+	 *            The number of requests that followed at least one redirect
+	 * @param byteCount
+	 *            The number of fetched bytes
+	 * @param errorCodeCounts
+	 *            The number of failed requests, by error code
+	 * @param protocolErrorCodeCounts
+	 *            The number of requests rejected by the node, by protocol
+	 *            error code
+	 * @param elapsedNanos
+	 *            The time since the bulk fetch was started, in nanoseconds
+	 */
+	BulkFetchStatistics(long startedCount, long succeededCount, long failedCount, long redirectedCount, long byteCount, Map<Integer, Long> errorCodeCounts, Map<Integer, Long> protocolErrorCodeCounts, long elapsedNanos) {
+		this.startedCount = startedCount;
+		this.succeededCount = succeededCount;
+		this.failedCount = failedCount;
+		this.redirectedCount = redirectedCount;
+		this.byteCount = byteCount;
+		this.errorCodeCounts = Collections.unmodifiableMap(new TreeMap<>(errorCodeCounts));
+		this.protocolErrorCodeCounts = Collections.unmodifiableMap(new TreeMap<>(protocolErrorCodeCounts));
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the number of requests that have been started.
+	 *
+	 * @return The number of started requests
+	 */
+	public long getStartedCount() {
+		return startedCount;
+	}
+
+	/**
+	 * Returns the number of requests that have finished.
+	 *
+	 * @return The number of finished requests
+	 */
+	public long getFinishedCount() {
+		return succeededCount + failedCount;
+	}
+
+	/**
+	 * Returns the number of requests that have finished successfully.
+	 *
+	 * @return The number of successful requests
+	 */
+	public long getSucceededCount() {
+		return succeededCount;
+	}
+
+	/**
+	 * Returns the number of requests that have failed, either with an error
+	 * code or with an exception.
+	 *
+	 * @return The number of failed requests
+	 */
+	public long getFailedCount() {
+		return failedCount;
+	}
+
+	/**
+	 * Returns the number of finished requests that followed at least one
+	 * redirect.
+	 *
+	 * @return The number of redirected requests
+	 */
+	public long getRedirectedCount() {
+		return redirectedCount;
+	}
+
+	/**
+	 * Returns the number of bytes fetched by the successful requests.
+	 *
+	 * @return The number of fetched bytes
+	 */
+	public long getByteCount() {
+		return byteCount;
+	}
+
+	/**
+	 * Returns the number of requests that failed with a “GetFailed” message,
+	 * by the error code of the message.
+	 *
+	 * @return The number of failed requests, by error code
+	 */
+	public Map<Integer, Long> getErrorCodeCounts() {
+		return errorCodeCounts;
+	}
+
+	/**
+	 * Returns the number of requests that the node rejected with a
+	 * “ProtocolError” message, e.g. because of an invalid URI, by the code of
+	 * the protocol error.
+	 *
+	 * @return The number of rejected requests, by protocol error code
+	 */
+	public Map<Integer, Long> getProtocolErrorCodeCounts() {
+		return protocolErrorCodeCounts;
+	}
+
+	/**
+	 * Returns the time since the bulk fetch was started, or the duration of
+	 * the bulk fetch once it has finished.
+	 *
+	 * @return The elapsed time, in milliseconds
+	 */
+	public long getElapsedMillis() {
+		return elapsedNanos / 1_000_000;
+	}
+
+	/**
+	 * Returns the average number of finished requests per second.
+	 *
+	 * @return The number of finished requests per second
+	 */
+	public double getRequestsPerSecond() {
+		return perSecond(getFinishedCount());
+	}
+
+	/**
+	 * Returns the average number of fetched bytes per second.
+	 *
+	 * @return The number of fetched bytes per second
+	 */
+	public double getBytesPerSecond() {
+		return perSecond(byteCount);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private double perSecond(long count) {
+		if (elapsedNanos == 0) {
+			return 0;
+		}
+		return count * 1_000_000_000.0 / elapsedNanos;
+	}
+
+	//
+	// OBJECT METHODS
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return String.format("%d started, %d succeeded, %d failed (%s, protocol errors %s), %d redirected, %d bytes in %d ms (%.1f requests/s, %.0f bytes/s)", startedCount, succeededCount, failedCount, errorCodeCounts, protocolErrorCodeCounts, redirectedCount, byteCount, getElapsedMillis(), getRequestsPerSecond(), getBytesPerSecond());
+	}
+
+}
@@ -23,6 +23,8 @@ import net.pterodactylus.fcp.AddPeer.Visibility;
 import net.pterodactylus.fcp.AllData;
 import net.pterodactylus.fcp.ClientGet;
 import net.pterodactylus.fcp.ClientHello;
+import net.pterodactylus.fcp.ClientPut;
+import net.pterodactylus.fcp.ClientPutComplexDir;
 import net.pterodactylus.fcp.CloseConnectionDuplicateClientName;
 import net.pterodactylus.fcp.ConfigData;
 import net.pterodactylus.fcp.DataFound;
@@ -36,10 +38,13 @@ import net.pterodactylus.fcp.FcpAdapter;
 import net.pterodactylus.fcp.FcpConnection;
 import net.pterodactylus.fcp.FcpListener;
 import net.pterodactylus.fcp.FcpMessage;
+import net.pterodactylus.fcp.FcpUtils;
+import net.pterodactylus.fcp.FileEntry;
 import net.pterodactylus.fcp.GenerateSSK;
 import net.pterodactylus.fcp.GetConfig;
 import net.pterodactylus.fcp.GetFailed;
 import net.pterodactylus.fcp.GetNode;
+import net.pterodactylus.fcp.GetRequestStatus;
 import net.pterodactylus.fcp.ListPeerNotes;
 import net.pterodactylus.fcp.ListPeers;
 import net.pterodactylus.fcp.ListPersistentRequests;
@@ -49,42 +54,81 @@ import net.pterodactylus.fcp.ModifyPeerNote;
 import net.pterodactylus.fcp.NodeData;
 import net.pterodactylus.fcp.NodeHello;
 import net.pterodactylus.fcp.NodeRef;
+import net.pterodactylus.fcp.PayloadSink;
 import net.pterodactylus.fcp.Peer;
 import net.pterodactylus.fcp.PeerNote;
 import net.pterodactylus.fcp.PeerNoteType;
 import net.pterodactylus.fcp.PeerRemoved;
 import net.pterodactylus.fcp.PersistentGet;
 import net.pterodactylus.fcp.PersistentPut;
+import net.pterodactylus.fcp.PersistentPutDir;
+import net.pterodactylus.fcp.PersistentRequestRemoved;
 import net.pterodactylus.fcp.ProtocolError;
+import net.pterodactylus.fcp.PutFailed;
+import net.pterodactylus.fcp.PutSuccessful;
 import net.pterodactylus.fcp.RemovePeer;
 import net.pterodactylus.fcp.SSKKeypair;
 import net.pterodactylus.fcp.SimpleProgress;
+import net.pterodactylus.fcp.SubscribeFeeds;
+import net.pterodactylus.fcp.SubscribeUSK;
+import net.pterodactylus.fcp.SubscribedUSK;
+import net.pterodactylus.fcp.URIGenerated;
 import net.pterodactylus.fcp.UnknownNodeIdentifier;
+import net.pterodactylus.fcp.UnsubscribeUSK;
+import net.pterodactylus.fcp.WatchFeeds;
 import net.pterodactylus.fcp.WatchGlobal;
 
+import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetAddress;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toMap;
 
 /**
  * High-level FCP client that hides the details of the underlying FCP
  * implementation.
+ * <p>
+ * Most operations are available in two forms: a blocking method that returns
+ * the result once the node has replied, and a method ending in “Async” that
+ * returns a {@link CompletableFuture} right after the request has been
+ * handed to the connection. The futures are completed on the thread that
+ * notifies the connection’s listeners, so a single thread can keep any
+ * number of requests in flight. Stages that are added to a future without an
+ * executor run on that thread, too, and must not block; blocking methods of
+ * this client must not be called from them.
+ * <p>
+ * If {@link #setAutoReconnect(ScheduledExecutorService, long, long, TimeUnit)
+ * automatic reconnects} are enabled, the client reconnects to the node after
+ * the connection was lost and resumes its session: it identifies itself with
+ * the same name, so that its persistent requests stay attached to it,
+ * restores the subscriptions made through this client, and asks the node for
+ * the status of every persistent request that was still running.
  *
  * @author David ‘Bombe’ Roden &lt;bombe@freenetproject.org&gt;
  */
@@ -108,6 +152,48 @@ public class FcpClient implements Closeable {
 	/** The listener for “connection closed” events. */
 	private FcpListener connectionClosedListener;
 
+	/** The listener that tracks the state of the session. */
+	private final FcpListener sessionTracker = new SessionTracker();
+
+	/** Whether the session tracker has been added to the connection. */
+	private boolean sessionTracked;
+
+	/** The name of the client, used when resuming the session. */
+	private volatile String clientName;
+
+	/** Whether the client was disconnected on purpose. */
+	private volatile boolean disconnectRequested;
+
+	/** Whether the node closed the connection because the name is in use. */
+	private volatile boolean clientNameTaken;
+
+	/** The executor for reconnect attempts, {@code null} if disabled. */
+	private volatile ScheduledExecutorService reconnectExecutor;
+
+	/** The delay before the first reconnect attempt. */
+	private volatile long initialReconnectDelay;
+
+	/** The maximum delay between two reconnect attempts. */
+	private volatile long maximumReconnectDelay;
+
+	/** The unit of the reconnect delays. */
+	private volatile TimeUnit reconnectTimeUnit;
+
+	/** Whether reconnect attempts are currently scheduled. */
+	private final AtomicBoolean reconnecting = new AtomicBoolean();
+
+	/** The running persistent requests, mapped to whether they are global. */
+	private final Map<String, Boolean> persistentRequests = new ConcurrentHashMap<>();
+
+	/** The USK subscriptions, by identifier. */
+	private final Map<String, SubscribeUSK> uskSubscriptions = new ConcurrentHashMap<>();
+
+	/** The identifiers of the feed subscriptions. */
+	private final Set<String> feedSubscriptions = ConcurrentHashMap.newKeySet();
+
+	/** Whether the client is watching feeds. */
+	private volatile boolean watchingFeeds;
+
 	/**
 	 * Creates an FCP client with the given name.
 	 *
@@ -199,6 +285,7 @@ public class FcpClient implements Closeable {
 			public void connectionClosed(FcpConnection fcpConnection, Throwable throwable) {
 				FcpClient.this.connected = false;
 				fcpClientListenerManager.fireFcpClientDisconnected();
+				startReconnecting();
 			}
 		};
 		fcpConnection.addFcpListener(connectionClosedListener);
@@ -271,6 +358,61 @@ public class FcpClient implements Closeable {
 		return fcpConnection;
 	}
 
+	/**
+	 * Enables automatic reconnects. Once the connection to the node is lost
+	 * without {@link #disconnect()} having been called, the client tries to
+	 * reconnect, starting after the initial delay and doubling the delay
+	 * after every failed attempt up to the maximum delay. After reconnecting,
+	 * the session is resumed and {@link FcpClientListener#fcpClientReconnected(FcpClient)}
+	 * is fired. Operations that were running when the connection was lost
+	 * fail as before, and operations started while the client is
+	 * reconnecting fail because the client is not connected. The client stops
+	 * reconnecting if the node closes the connection because another client
+	 * connected with the same name.
+	 * <p>
+	 * Persistent requests are only tracked after this method has been called,
+	 * so it should be called before connecting.
+	 *
+	 * @param executor
+	 *            The executor that runs the reconnect attempts, or
+	 *            {@code null} to disable automatic reconnects
+	 * @param initialDelay
+	 *            The delay before the first reconnect attempt
+	 * @param maximumDelay
+	 *            The maximum delay between two reconnect attempts
+	 * @param timeUnit
+	 *            The unit of the delays
+	 * @throws IllegalArgumentException
+	 *             if the initial delay is not positive, or the maximum delay
+	 *             is smaller than the initial delay
+	 */
+	public void setAutoReconnect(ScheduledExecutorService executor, long initialDelay, long maximumDelay, TimeUnit timeUnit) throws IllegalArgumentException {
+		if ((initialDelay <= 0) || (maximumDelay < initialDelay)) {
+			throw new IllegalArgumentException("delays must be positive and the maximum delay must not be smaller than the initial delay");
+		}
+		synchronized (syncObject) {
+			if (!sessionTracked) {
+				fcpConnection.addFcpListener(sessionTracker);
+				sessionTracked = true;
+			}
+			initialReconnectDelay = initialDelay;
+			maximumReconnectDelay = maximumDelay;
+			reconnectTimeUnit = timeUnit;
+			reconnectExecutor = executor;
+		}
+	}
+
+	/**
+	 * Returns the identifiers of the running persistent requests this client
+	 * knows about. Persistent requests are only tracked while automatic
+	 * reconnects are enabled.
+	 *
+	 * @return The identifiers of the running persistent requests
+	 */
+	public Set<String> getRunningPersistentRequests() {
+		return Collections.unmodifiableSet(new HashSet<>(persistentRequests.keySet()));
+	}
+
 	//
 	// ACTIONS
 	//
@@ -288,7 +430,10 @@ public class FcpClient implements Closeable {
 	public void connect(final String name) throws IOException, FcpException {
 		checkConnected(false);
 		connected = true;
-		new ExtendedFcpAdapter() {
+		clientName = name;
+		disconnectRequested = false;
+		clientNameTaken = false;
+		await(new ExtendedFcpAdapter<Void>() {
 
 			/**
 			 * {@inheritDoc}
@@ -312,7 +457,7 @@ public class FcpClient implements Closeable {
 				FcpClient.this.nodeHello = nodeHello;
 				complete();
 			}
-		}.execute();
+		}.execute());
 	}
 
 	/**
@@ -346,16 +491,110 @@ public class FcpClient implements Closeable {
 	 *             if an FCP error occurs
 	 */
 	public GetResult getURI(final String uri, final boolean filterData) throws IOException, FcpException {
+		return getURI(uri, filterData, null);
+	}
+
+	/**
+	 * Retrieves the file with the given URI into the given sink. The
+	 * retrieved data will be run through Freenet’s content filter.
+	 *
+	 * @param uri
+	 *            The URI to get
+	 * @param payloadSink
+	 *            The sink for the retrieved data
+	 * @return The result of the get request
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws FcpException
+	 *             if an FCP error occurs
+	 * @see #getURI(String, boolean, PayloadSink)
+	 */
+	public GetResult getURI(final String uri, final PayloadSink payloadSink) throws IOException, FcpException {
+		return getURI(uri, true, payloadSink);
+	}
+
+	/**
+	 * Retrieves the file with the given URI into the given sink. If the
+	 * connection supports {@link FcpConnection#addPayloadSink(String,
+	 * PayloadSink) payload sinks}, the data is transferred from the node into
+	 * the sink without being stored anywhere else first; otherwise it is
+	 * copied into the sink once it has been received. The sink is closed
+	 * once the request has finished. The {@link GetResult#getInputStream()
+	 * input stream} of the result is {@code null} if a sink is given.
+	 *
+	 * @param uri
+	 *            The URI to get
+	 * @param filterData
+	 *            {@code true} to filter the retrieved data, {@code false}
+	 *            otherwise
+	 * @param payloadSink
+	 *            The sink for the retrieved data, or {@code null} to return
+	 *            the data as input stream
+	 * @return The result of the get request
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws FcpException
+	 *             if an FCP error occurs
+	 */
+	public GetResult getURI(final String uri, final boolean filterData, final PayloadSink payloadSink) throws IOException, FcpException {
 		checkConnected(true);
-		final GetResult getResult = new GetResult();
-		new ExtendedFcpAdapter() {
+		return await(getURIAsync(uri, filterData, payloadSink));
+	}
 
-			@SuppressWarnings("synthetic-access")
-			private final String identifier = createIdentifier("client-get");
+	/**
+	 * Starts retrieving the file with the given URI. The retrieved data will
+	 * be run through Freenet’s content filter.
+	 *
+	 * @param uri
+	 *            The URI to get
+	 * @return A future for the result of the get request
+	 * @see #getURI(String)
+	 */
+	public CompletableFuture<GetResult> getURIAsync(String uri) {
+		return getURIAsync(uri, true);
+	}
+
+	/**
+	 * Starts retrieving the file with the given URI.
+	 *
+	 * @param uri
+	 *            The URI to get
+	 * @param filterData
+	 *            {@code true} to filter the retrieved data, {@code false}
+	 *            otherwise
+	 * @return A future for the result of the get request
+	 * @see #getURI(String, boolean)
+	 */
+	public CompletableFuture<GetResult> getURIAsync(String uri, boolean filterData) {
+		return getURIAsync(uri, filterData, null);
+	}
+
+	/**
+	 * Starts retrieving the file with the given URI into the given sink.
+	 *
+	 * @param uri
+	 *            The URI to get
+	 * @param filterData
+	 *            {@code true} to filter the retrieved data, {@code false}
+	 *            otherwise
+	 * @param payloadSink
+	 *            The sink for the retrieved data, or {@code null} to return
+	 *            the data as input stream
+	 * @return A future for the result of the get request
+	 * @see #getURI(String, boolean, PayloadSink)
+	 */
+	public CompletableFuture<GetResult> getURIAsync(final String uri, final boolean filterData, final PayloadSink payloadSink) {
+		final GetResult getResult = new GetResult();
+		final String identifier = createIdentifier("client-get");
+		final AtomicBoolean payloadSinkRegistered = new AtomicBoolean();
+		CompletableFuture<GetResult> result = new ExtendedFcpAdapter<GetResult>(identifier) {
 
 			@Override
 			@SuppressWarnings("synthetic-access")
 			public void run() throws IOException {
+				if (payloadSink != null) {
+					payloadSinkRegistered.set(fcpConnection.addPayloadSink(identifier, payloadSink));
+				}
 				ClientGet clientGet = new ClientGet(uri, identifier);
 				clientGet.setFilterData(filterData);
 				sendMessage(clientGet);
@@ -370,17 +609,17 @@ public class FcpClient implements Closeable {
 					/* redirect! */
 					String newUri = getFailed.getRedirectURI();
 					getResult.realUri(newUri);
-					try {
-						ClientGet clientGet = new ClientGet(newUri, identifier);
-						clientGet.setFilterData(filterData);
-						fcpConnection.sendMessage(clientGet);
-					} catch (IOException ioe1) {
-						getResult.success(false).exception(ioe1);
-						complete();
-					}
+					ClientGet clientGet = new ClientGet(newUri, identifier);
+					clientGet.setFilterData(filterData);
+					fcpConnection.enqueueMessage(clientGet).whenComplete((ignored, throwable) -> {
+						if (throwable != null) {
+							getResult.success(false).exception(unwrap(throwable));
+							complete(getResult);
+						}
+					});
 				} else {
 					getResult.success(false).errorCode(getFailed.getCode());
-					complete();
+					complete(getResult);
 				}
 			}
 
@@ -389,12 +628,27 @@ public class FcpClient implements Closeable {
 				if (!allData.getIdentifier().equals(identifier)) {
 					return;
 				}
-				getResult.success(true).contentType(allData.getContentType()).contentLength(allData.getDataLength()).inputStream(allData.getPayloadInputStream());
-				complete();
+				getResult.success(true).contentType(allData.getContentType()).contentLength(allData.getDataLength());
+				if (payloadSink == null) {
+					getResult.inputStream(allData.getPayloadInputStream());
+				} else if (!payloadSinkRegistered.get()) {
+					try {
+						payloadSink.transferCompletelyFrom(Channels.newChannel(allData.getPayloadInputStream()), allData.getDataLength());
+					} catch (IOException ioe1) {
+						getResult.success(false).exception(ioe1);
+					}
+				}
+				complete(getResult);
 			}
 
 		}.execute();
-		return getResult;
+		if (payloadSink != null) {
+			result.whenComplete((ignored, throwable) -> {
+				fcpConnection.removePayloadSink(identifier);
+				FcpUtils.close(payloadSink);
+			});
+		}
+		return result;
 	}
 
 	/**
@@ -402,6 +656,7 @@ public class FcpClient implements Closeable {
 	 */
 	public void disconnect() {
 		synchronized (syncObject) {
+			disconnectRequested = true;
 			fcpConnection.close();
 			syncObject.notifyAll();
 		}
@@ -430,6 +685,312 @@ public class FcpClient implements Closeable {
 	 */
 	public void detach() {
 		fcpConnection.removeFcpListener(connectionClosedListener);
+		fcpConnection.removeFcpListener(sessionTracker);
+	}
+
+	//
+	// INSERTS
+	//
+
+	/**
+	 * Inserts the given data.
+	 *
+	 * @param uri
+	 *            The URI to insert the data to, e.g. “CHK@”
+	 * @param data
+	 *            The data to insert
+	 * @param putOptions
+	 *            The options of the insert
+	 * @return The result of the insert
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws FcpException
+	 *             if an FCP error occurs
+	 */
+	public PutResult putData(String uri, byte[] data, PutOptions putOptions) throws IOException, FcpException {
+		return await(putDataAsync(uri, data, putOptions));
+	}
+
+	/**
+	 * Starts inserting the given data.
+	 *
+	 * @param uri
+	 *            The URI to insert the data to, e.g. “CHK@”
+	 * @param data
+	 *            The data to insert
+	 * @param putOptions
+	 *            The options of the insert
+	 * @return A future for the result of the insert
+	 * @see #putData(String, byte[], PutOptions)
+	 */
+	public CompletableFuture<PutResult> putDataAsync(String uri, byte[] data, PutOptions putOptions) {
+		return putStreamAsync(uri, new ByteArrayInputStream(data), data.length, putOptions);
+	}
+
+	/**
+	 * Inserts the data of the given stream. The stream is read while the
+	 * message is being sent to the node; it is not buffered.
+	 *
+	 * @param uri
+	 *            The URI to insert the data to, e.g. “CHK@”
+	 * @param inputStream
+	 *            The stream containing the data to insert
+	 * @param length
+	 *            The number of bytes to insert from the stream
+	 * @param putOptions
+	 *            The options of the insert
+	 * @return The result of the insert
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws FcpException
+	 *             if an FCP error occurs
+	 */
+	public PutResult putStream(String uri, InputStream inputStream, long length, PutOptions putOptions) throws IOException, FcpException {
+		return await(putStreamAsync(uri, inputStream, length, putOptions));
+	}
+
+	/**
+	 * Starts inserting the data of the given stream. The stream is read while
+	 * the message is being sent to the node; it is not buffered.
+	 *
+	 * @param uri
+	 *            The URI to insert the data to, e.g. “CHK@”
+	 * @param inputStream
+	 *            The stream containing the data to insert
+	 * @param length
+	 *            The number of bytes to insert from the stream
+	 * @param putOptions
+	 *            The options of the insert
+	 * @return A future for the result of the insert
+	 * @see #putStream(String, InputStream, long, PutOptions)
+	 */
+	public CompletableFuture<PutResult> putStreamAsync(String uri, InputStream inputStream, long length, PutOptions putOptions) {
+		String identifier = createIdentifier("client-put");
+		ClientPut clientPut = createClientPut(uri, identifier, putOptions);
+		clientPut.setDataLength(length);
+		clientPut.setPayloadInputStream(inputStream);
+		return put(identifier, clientPut, putOptions);
+	}
+
+	/**
+	 * Inserts the given file. The file is read while the message is being sent
+	 * to the node; it is not buffered.
+	 *
+	 * @param uri
+	 *            The URI to insert the file to, e.g. “CHK@”
+	 * @param file
+	 *            The file to insert
+	 * @param putOptions
+	 *            The options of the insert
+	 * @return The result of the insert
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws FcpException
+	 *             if an FCP error occurs
+	 */
+	public PutResult putFile(String uri, Path file, PutOptions putOptions) throws IOException, FcpException {
+		return await(putFileAsync(uri, file, putOptions));
+	}
+
+	/**
+	 * Starts inserting the given file. The file is read while the message is
+	 * being sent to the node; it is not buffered.
+	 *
+	 * @param uri
+	 *            The URI to insert the file to, e.g. “CHK@”
+	 * @param file
+	 *            The file to insert
+	 * @param putOptions
+	 *            The options of the insert
+	 * @return A future for the result of the insert
+	 * @see #putFile(String, Path, PutOptions)
+	 */
+	public CompletableFuture<PutResult> putFileAsync(String uri, Path file, PutOptions putOptions) {
+		String identifier = createIdentifier("client-put");
+		ClientPut clientPut = createClientPut(uri, identifier, putOptions);
+		try {
+			clientPut.setData(file);
+		} catch (IOException ioe1) {
+			return failedFuture(ioe1);
+		}
+		return put(identifier, clientPut, putOptions);
+	}
+
+	/**
+	 * Inserts all files below the given directory as a single site. The files
+	 * are read one after the other while the message is being sent to the
+	 * node; they are not buffered.
+	 *
+	 * @param uri
+	 *            The URI to insert the directory to, e.g. “CHK@” or
+	 *            “USK@…/site/1”
+	 * @param directory
+	 *            The directory to insert
+	 * @param putOptions
+	 *            The options of the insert
+	 * @return The result of the insert
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws FcpException
+	 *             if an FCP error occurs
+	 */
+	public PutResult putDirectory(String uri, Path directory, PutOptions putOptions) throws IOException, FcpException {
+		return await(putDirectoryAsync(uri, directory, putOptions));
+	}
+
+	/**
+	 * Starts inserting all files below the given directory as a single site.
+	 * The names of the files are their paths relative to the directory,
+	 * separated by “/”.
+	 *
+	 * @param uri
+	 *            The URI to insert the directory to, e.g. “CHK@” or
+	 *            “USK@…/site/1”
+	 * @param directory
+	 *            The directory to insert
+	 * @param putOptions
+	 *            The options of the insert
+	 * @return A future for the result of the insert
+	 * @see #putDirectory(String, Path, PutOptions)
+	 */
+	public CompletableFuture<PutResult> putDirectoryAsync(String uri, Path directory, PutOptions putOptions) {
+		String identifier = createIdentifier("client-put-dir");
+		ClientPutComplexDir clientPutComplexDir = new ClientPutComplexDir(identifier, uri);
+		if (putOptions.getPriority() != null) {
+			clientPutComplexDir.setPriority(putOptions.getPriority());
+		}
+		clientPutComplexDir.setEarlyEncode(putOptions.isEarlyEncode());
+		clientPutComplexDir.setGetCHKOnly(putOptions.isGetCHKOnly());
+		if (putOptions.getDefaultName() != null) {
+			clientPutComplexDir.setDefaultName(putOptions.getDefaultName());
+		}
+		try (Stream<Path> paths = Files.walk(directory)) {
+			List<Path> files = paths.filter(Files::isRegularFile).sorted().collect(toList());
+			for (Path file : files) {
+				clientPutComplexDir.addFileEntry(FileEntry.createDirectFileEntry(getRelativeName(directory, file), null, file));
+			}
+		} catch (IOException ioe1) {
+			return failedFuture(ioe1);
+		}
+		return put(identifier, clientPutComplexDir, putOptions);
+	}
+
+	//
+	// SUBSCRIPTIONS
+	//
+
+	/**
+	 * Enables or disables the delivery of feeds to this client. The setting
+	 * is restored when the session is resumed after a reconnect.
+	 *
+	 * @param enabled
+	 *            {@code true} to watch feeds, {@code false} to stop watching
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws FcpException
+	 *             if an FCP error occurs
+	 */
+	public void watchFeeds(boolean enabled) throws IOException, FcpException {
+		checkConnected(true);
+		watchingFeeds = enabled;
+		await(fcpConnection.enqueueMessage(new WatchFeeds(enabled)));
+	}
+
+	/**
+	 * Subscribes to the feeds of the node. The subscription is restored when
+	 * the session is resumed after a reconnect.
+	 *
+	 * @return The identifier of the subscription
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws FcpException
+	 *             if an FCP error occurs
+	 */
+	public String subscribeFeeds() throws IOException, FcpException {
+		checkConnected(true);
+		String identifier = createIdentifier("subscribe-feeds");
+		feedSubscriptions.add(identifier);
+		await(fcpConnection.enqueueMessage(new SubscribeFeeds(identifier)));
+		return identifier;
+	}
+
+	/**
+	 * Subscribes to updates of the given USK. Updates are delivered to the
+	 * {@link #addFcpListener(FcpListener) FCP listeners} as
+	 * {@link net.pterodactylus.fcp.SubscribedUSKUpdate} messages. The
+	 * subscription is restored when the session is resumed after a reconnect.
+	 *
+	 * @param uri
+	 *            The USK to subscribe to
+	 * @return The identifier of the subscription
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws FcpException
+	 *             if an FCP error occurs
+	 */
+	public String subscribeUSK(String uri) throws IOException, FcpException {
+		SubscribeUSK subscribeUSK = new SubscribeUSK(uri, createIdentifier("subscribe-usk"));
+		await(subscribeUSKAsync(subscribeUSK));
+		return subscribeUSK.getIdentifier();
+	}
+
+	/**
+	 * Sends the given USK subscription and waits for the node to confirm it.
+	 *
+	 * @param subscribeUSK
+	 *            The USK subscription
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws FcpException
+	 *             if an FCP error occurs
+	 * @see #subscribeUSK(String)
+	 */
+	public void subscribeUSK(SubscribeUSK subscribeUSK) throws IOException, FcpException {
+		await(subscribeUSKAsync(subscribeUSK));
+	}
+
+	/**
+	 * Starts the given USK subscription. The returned future is completed once
+	 * the node has confirmed the subscription.
+	 *
+	 * @param subscribeUSK
+	 *            The USK subscription
+	 * @return A future that is completed once the subscription is confirmed
+	 * @see #subscribeUSK(String)
+	 */
+	public CompletableFuture<Void> subscribeUSKAsync(final SubscribeUSK subscribeUSK) {
+		return new ExtendedFcpAdapter<Void>(subscribeUSK.getIdentifier()) {
+
+			@Override
+			public void run() throws IOException {
+				sendMessage(subscribeUSK);
+			}
+
+			@Override
+			@SuppressWarnings("synthetic-access")
+			public void receivedSubscribedUSK(FcpConnection fcpConnection, SubscribedUSK subscribedUSK) {
+				uskSubscriptions.put(subscribeUSK.getIdentifier(), subscribeUSK);
+				complete();
+			}
+		}.execute();
+	}
+
+	/**
+	 * Cancels the USK subscription with the given identifier. The
+	 * subscription is not restored after a reconnect anymore, even if
+	 * cancelling it fails.
+	 *
+	 * @param identifier
+	 *            The identifier of the subscription
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws FcpException
+	 *             if an FCP error occurs
+	 */
+	public void unsubscribeUSK(String identifier) throws IOException, FcpException {
+		uskSubscriptions.remove(identifier);
+		checkConnected(true);
+		await(fcpConnection.enqueueMessage(new UnsubscribeUSK(identifier)));
 	}
 
 	//
@@ -450,12 +1011,23 @@ public class FcpClient implements Closeable {
 	 *             if an FCP error occurs
 	 */
 	public Collection<Peer> getPeers(final boolean withMetadata, final boolean withVolatile) throws IOException, FcpException {
-		final Set<Peer> peers = Collections.synchronizedSet(new HashSet<Peer>());
-		new ExtendedFcpAdapter() {
+		return await(getPeersAsync(withMetadata, withVolatile));
+	}
 
-			/** The ID of the “ListPeers” request. */
-			@SuppressWarnings("synthetic-access")
-			private String identifier = createIdentifier("list-peers");
+	/**
+	 * Starts requesting all peers that the node has.
+	 *
+	 * @param withMetadata
+	 *            <code>true</code> to include peer metadata
+	 * @param withVolatile
+	 *            <code>true</code> to include volatile peer data
+	 * @return A future for a set containing the node’s peers
+	 * @see #getPeers(boolean, boolean)
+	 */
+	public CompletableFuture<Collection<Peer>> getPeersAsync(final boolean withMetadata, final boolean withVolatile) {
+		final Set<Peer> peers = Collections.synchronizedSet(new HashSet<Peer>());
+		final String identifier = createIdentifier("list-peers");
+		return new ExtendedFcpAdapter<Collection<Peer>>(identifier) {
 
 			/**
 			 * {@inheritDoc}
@@ -482,11 +1054,10 @@ public class FcpClient implements Closeable {
 			@Override
 			public void receivedEndListPeers(FcpConnection fcpConnection, EndListPeers endListPeers) {
 				if (endListPeers.getIdentifier().equals(identifier)) {
-					complete();
+					complete(peers);
 				}
 			}
 		}.execute();
-		return peers;
 	}
 
 	/**
@@ -573,21 +1144,33 @@ public class FcpClient implements Closeable {
 	 *             if an FCP error occurs
 	 */
 	public void addPeer(NodeRef nodeRef, Trust trust, Visibility visibility) throws IOException, FcpException {
-		addPeer(new AddPeer(trust, visibility, nodeRef));
+		addPeer(new AddPeer(trust, visibility, createIdentifier("add-peer"), nodeRef));
 	}
 
 	/**
-	 * Adds a peer, reading the noderef from the given URL.
+	 * Starts adding the peer defined by the noderef to the node.
 	 *
-	 * @param url
-	 *            The URL to read the noderef from
-	 * @throws IOException
-	 *             if an I/O error occurs
+	 * @param nodeRef
+	 *            The noderef that defines the new peer
+	 * @return A future that is completed once the peer has been added
+	 * @see #addPeer(NodeRef, Trust, Visibility)
+	 */
+	public CompletableFuture<Void> addPeerAsync(NodeRef nodeRef, Trust trust, Visibility visibility) {
+		return addPeerAsync(new AddPeer(trust, visibility, createIdentifier("add-peer"), nodeRef));
+	}
+
+	/**
+	 * Adds a peer, reading the noderef from the given URL.
+	 *
+	 * @param url
+	 *            The URL to read the noderef from
+	 * @throws IOException
+	 *             if an I/O error occurs
 	 * @throws FcpException
 	 *             if an FCP error occurs
 	 */
 	public void addPeer(URL url, Trust trust, Visibility visibility) throws IOException, FcpException {
-		addPeer(new AddPeer(trust, visibility, url));
+		addPeer(new AddPeer(trust, visibility, createIdentifier("add-peer"), url));
 	}
 
 	/**
@@ -603,7 +1186,7 @@ public class FcpClient implements Closeable {
 	 *             if an FCP error occurs
 	 */
 	public void addPeer(String file, Trust trust, Visibility visibility) throws IOException, FcpException {
-		addPeer(new AddPeer(trust, visibility, file));
+		addPeer(new AddPeer(trust, visibility, createIdentifier("add-peer"), file));
 	}
 
 	/**
@@ -620,7 +1203,20 @@ public class FcpClient implements Closeable {
 	 *             if an FCP error occurs
 	 */
 	private void addPeer(final AddPeer addPeer) throws IOException, FcpException {
-		new ExtendedFcpAdapter() {
+		await(addPeerAsync(addPeer));
+	}
+
+	/**
+	 * Sends the given {@link AddPeer} message to the node without waiting for
+	 * the reply.
+	 *
+	 * @param addPeer
+	 *            The “AddPeer” message
+	 * @return A future that is completed once the peer has been added
+	 */
+	private CompletableFuture<Void> addPeerAsync(final AddPeer addPeer) {
+		final String identifier = addPeer.getField("Identifier");
+		return new ExtendedFcpAdapter<Void>(identifier) {
 
 			/**
 			 * {@inheritDoc}
@@ -688,9 +1284,23 @@ public class FcpClient implements Closeable {
 	 * @throws FcpException if an FCP error occurs
 	 */
 	public void modifyPeer(Peer peer, Consumer<ModifyPeer> modifyPeerConsumer) throws IOException, FcpException {
-		ModifyPeer modifyPeer = new ModifyPeer(createIdentifier("modify-peer"), peer.getIdentifier());
+		await(modifyPeerAsync(peer, modifyPeerConsumer));
+	}
+
+	/**
+	 * Starts modifying the given peer.
+	 *
+	 * @param peer The peer to modify
+	 * @param modifyPeerConsumer A lambda that modifies a {@link ModifyPeer}
+	 * 		object to change the peer’s configuration
+	 * @return A future that is completed once the peer has been modified
+	 * @see #modifyPeer(Peer, Consumer)
+	 */
+	public CompletableFuture<Void> modifyPeerAsync(Peer peer, Consumer<ModifyPeer> modifyPeerConsumer) {
+		String identifier = createIdentifier("modify-peer");
+		ModifyPeer modifyPeer = new ModifyPeer(identifier, peer.getIdentifier());
 		modifyPeerConsumer.accept(modifyPeer);
-		new ExtendedFcpAdapter() {
+		return new ExtendedFcpAdapter<Void>(identifier) {
 
 			/**
 			 * {@inheritDoc}
@@ -722,7 +1332,20 @@ public class FcpClient implements Closeable {
 	 *             if an FCP error occurs
 	 */
 	public void removePeer(final Peer peer) throws IOException, FcpException {
-		new ExtendedFcpAdapter() {
+		await(removePeerAsync(peer));
+	}
+
+	/**
+	 * Starts removing the given peer.
+	 *
+	 * @param peer
+	 *            The peer to remove
+	 * @return A future that is completed once the peer has been removed
+	 * @see #removePeer(Peer)
+	 */
+	public CompletableFuture<Void> removePeerAsync(final Peer peer) {
+		final String identifier = createIdentifier("remove-peer");
+		return new ExtendedFcpAdapter<Void>(identifier) {
 
 			/**
 			 * {@inheritDoc}
@@ -730,7 +1353,7 @@ public class FcpClient implements Closeable {
 			@Override
 			@SuppressWarnings("synthetic-access")
 			public void run() throws IOException {
-				sendMessage(new RemovePeer(createIdentifier("remove-peer"), peer.getIdentity()));
+				sendMessage(new RemovePeer(identifier, peer.getIdentity()));
 			}
 
 			/**
@@ -768,8 +1391,21 @@ public class FcpClient implements Closeable {
 	 *             if an FCP error occurs
 	 */
 	public PeerNote getPeerNote(final Peer peer) throws IOException, FcpException {
+		return await(getPeerNoteAsync(peer));
+	}
+
+	/**
+	 * Starts requesting the peer note of the given peer.
+	 *
+	 * @param peer
+	 *            The peer to get the note for
+	 * @return A future for the peer’s note
+	 * @see #getPeerNote(Peer)
+	 */
+	public CompletableFuture<PeerNote> getPeerNoteAsync(final Peer peer) {
 		final AtomicReference<PeerNote> objectWrapper = new AtomicReference<PeerNote>();
-		new ExtendedFcpAdapter() {
+		final String identifier = createIdentifier("list-peer-notes");
+		return new ExtendedFcpAdapter<PeerNote>(identifier) {
 
 			/**
 			 * {@inheritDoc}
@@ -777,7 +1413,7 @@ public class FcpClient implements Closeable {
 			@Override
 			@SuppressWarnings("synthetic-access")
 			public void run() throws IOException {
-				sendMessage(new ListPeerNotes(peer.getIdentity()));
+				sendMessage(new ListPeerNotes(identifier, peer.getIdentity()));
 			}
 
 			/**
@@ -785,7 +1421,7 @@ public class FcpClient implements Closeable {
 			 */
 			@Override
 			public void receivedPeerNote(FcpConnection fcpConnection, PeerNote peerNote) {
-				if (peerNote.getNodeIdentifier().equals(peer.getIdentity())) {
+				if (isReply(peerNote.getIdentifier()) && peerNote.getNodeIdentifier().equals(peer.getIdentity())) {
 					objectWrapper.set(peerNote);
 				}
 			}
@@ -795,10 +1431,11 @@ public class FcpClient implements Closeable {
 			 */
 			@Override
 			public void receivedEndListPeerNotes(FcpConnection fcpConnection, EndListPeerNotes endListPeerNotes) {
-				complete();
+				if (isReply(endListPeerNotes.getIdentifier())) {
+					complete(objectWrapper.get());
+				}
 			}
 		}.execute();
-		return objectWrapper.get();
 	}
 
 	/**
@@ -814,28 +1451,23 @@ public class FcpClient implements Closeable {
 	 *             if an FCP error occurs
 	 */
 	public void modifyPeerNote(final Peer peer, final String noteText) throws IOException, FcpException {
-		modifyPeerNote(peer, noteText, 1);
+		await(modifyPeerNoteAsync(peer, noteText));
 	}
 
 	/**
-	 * Replaces the peer note for the given peer.
+	 * Starts replacing the private darknet comment peer note for the given
+	 * peer.
 	 *
 	 * @param peer
 	 *            The peer
 	 * @param noteText
 	 *            The new base64-encoded note text
-	 * @param noteType
-	 *            The type of the note (currently only <code>1</code> is
-	 *            allowed)
-	 * @throws IOException
-	 *             if an I/O error occurs
-	 * @throws FcpException
-	 *             if an FCP error occurs
-	 * @deprecated Use {@link #modifyPeerNote(Peer, String)} instead
+	 * @return A future that is completed once the note has been replaced
+	 * @see #modifyPeerNote(Peer, String)
 	 */
-	@Deprecated
-	public void modifyPeerNote(final Peer peer, final String noteText, final int noteType) throws IOException, FcpException {
-		new ExtendedFcpAdapter() {
+	public CompletableFuture<Void> modifyPeerNoteAsync(final Peer peer, final String noteText) {
+		final String identifier = createIdentifier("modify-peer-note");
+		return new ExtendedFcpAdapter<Void>(identifier) {
 
 			/**
 			 * {@inheritDoc}
@@ -843,7 +1475,7 @@ public class FcpClient implements Closeable {
 			@Override
 			@SuppressWarnings("synthetic-access")
 			public void run() throws IOException {
-				ModifyPeerNote modifyPeerNote = new ModifyPeerNote(createIdentifier("modify-peer-note"), peer.getIdentity());
+				ModifyPeerNote modifyPeerNote = new ModifyPeerNote(identifier, peer.getIdentity());
 				modifyPeerNote.setNoteText(noteText);
 				modifyPeerNote.setPeerNoteType(PeerNoteType.PRIVATE_DARKNET_COMMENT);
 				sendMessage(modifyPeerNote);
@@ -861,6 +1493,27 @@ public class FcpClient implements Closeable {
 		}.execute();
 	}
 
+	/**
+	 * Replaces the peer note for the given peer.
+	 *
+	 * @param peer
+	 *            The peer
+	 * @param noteText
+	 *            The new base64-encoded note text
+	 * @param noteType
+	 *            The type of the note (currently only <code>1</code> is
+	 *            allowed)
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws FcpException
+	 *             if an FCP error occurs
+	 * @deprecated Use {@link #modifyPeerNote(Peer, String)} instead
+	 */
+	@Deprecated
+	public void modifyPeerNote(final Peer peer, final String noteText, final int noteType) throws IOException, FcpException {
+		modifyPeerNote(peer, noteText);
+	}
+
 	//
 	// KEY GENERATION
 	//
@@ -875,8 +1528,18 @@ public class FcpClient implements Closeable {
 	 *             if an FCP error occurs
 	 */
 	public SSKKeypair generateKeyPair() throws IOException, FcpException {
-		final AtomicReference<SSKKeypair> sskKeypairWrapper = new AtomicReference<SSKKeypair>();
-		new ExtendedFcpAdapter() {
+		return await(generateKeyPairAsync());
+	}
+
+	/**
+	 * Starts generating a new SSK key pair.
+	 *
+	 * @return A future for the generated key pair
+	 * @see #generateKeyPair()
+	 */
+	public CompletableFuture<SSKKeypair> generateKeyPairAsync() {
+		final String identifier = createIdentifier("generate-ssk");
+		return new ExtendedFcpAdapter<SSKKeypair>(identifier) {
 
 			/**
 			 * {@inheritDoc}
@@ -884,7 +1547,7 @@ public class FcpClient implements Closeable {
 			@Override
 			@SuppressWarnings("synthetic-access")
 			public void run() throws IOException {
-				sendMessage(new GenerateSSK());
+				sendMessage(new GenerateSSK(identifier));
 			}
 
 			/**
@@ -892,11 +1555,11 @@ public class FcpClient implements Closeable {
 			 */
 			@Override
 			public void receivedSSKKeypair(FcpConnection fcpConnection, SSKKeypair sskKeypair) {
-				sskKeypairWrapper.set(sskKeypair);
-				complete();
+				if ((sskKeypair.getIdentifier() == null) || sskKeypair.getIdentifier().equals(identifier)) {
+					complete(sskKeypair);
+				}
 			}
 		}.execute();
-		return sskKeypairWrapper.get();
 	}
 
 	//
@@ -951,8 +1614,22 @@ public class FcpClient implements Closeable {
 	 *             if an FCP error occurs
 	 */
 	public Collection<Request> getRequests(boolean includeGlobalRequests) throws IOException, FcpException {
+		return await(getRequestsAsync(includeGlobalRequests));
+	}
+
+	/**
+	 * Starts requesting all currently visible persistent requests.
+	 *
+	 * @param includeGlobalRequests
+	 *            <code>true</code> to also return requests from the global queue,
+	 *            <code>false</code> to only show requests from the
+	 *            client-local queue
+	 * @return A future for all requests
+	 * @see #getRequests(boolean)
+	 */
+	public CompletableFuture<Collection<Request>> getRequestsAsync(boolean includeGlobalRequests) {
 		final Map<String, Request> requests = Collections.synchronizedMap(new HashMap<String, Request>());
-		new ExtendedFcpAdapter() {
+		return new ExtendedFcpAdapter<Collection<Request>>() {
 
 			/**
 			 * {@inheritDoc}
@@ -1048,10 +1725,9 @@ public class FcpClient implements Closeable {
 			 */
 			@Override
 			public void receivedEndListPersistentRequests(FcpConnection fcpConnection, EndListPersistentRequests endListPersistentRequests) {
-				complete();
+				complete(requests.values());
 			}
 		}.execute();
-		return requests.values();
 	}
 
 	/**
@@ -1071,6 +1747,20 @@ public class FcpClient implements Closeable {
 		return sendPluginMessage(pluginClass, parameters, 0, null);
 	}
 
+	/**
+	 * Sends a message to a plugin without waiting for the response.
+	 *
+	 * @param pluginClass
+	 *            The name of the plugin class
+	 * @param parameters
+	 *            The parameters for the plugin
+	 * @return A future for the responses from the plugin
+	 * @see #sendPluginMessage(String, Map)
+	 */
+	public CompletableFuture<Map<String, String>> sendPluginMessageAsync(String pluginClass, Map<String, String> parameters) {
+		return sendPluginMessageAsync(pluginClass, parameters, 0, null);
+	}
+
 	/**
 	 * Sends a message to a plugin and waits for the response.
 	 *
@@ -1091,11 +1781,29 @@ public class FcpClient implements Closeable {
 	 *             if an I/O error occurs
 	 */
 	public Map<String, String> sendPluginMessage(final String pluginClass, final Map<String, String> parameters, final long dataLength, final InputStream dataInputStream) throws IOException, FcpException {
-		final Map<String, String> pluginReplies = Collections.synchronizedMap(new HashMap<String, String>());
-		new ExtendedFcpAdapter() {
+		return await(sendPluginMessageAsync(pluginClass, parameters, dataLength, dataInputStream));
+	}
 
-			@SuppressWarnings("synthetic-access")
-			private final String identifier = createIdentifier("FCPPluginMessage");
+	/**
+	 * Sends a message to a plugin without waiting for the response.
+	 *
+	 * @param pluginClass
+	 *            The name of the plugin class
+	 * @param parameters
+	 *            The parameters for the plugin
+	 * @param dataLength
+	 *            The length of the optional data stream, or {@code 0} if there
+	 *            is no optional data stream
+	 * @param dataInputStream
+	 *            The input stream for the payload, or {@code null} if there is
+	 *            no payload
+	 * @return A future for the responses from the plugin
+	 * @see #sendPluginMessage(String, Map, long, InputStream)
+	 */
+	public CompletableFuture<Map<String, String>> sendPluginMessageAsync(final String pluginClass, final Map<String, String> parameters, final long dataLength, final InputStream dataInputStream) {
+		final Map<String, String> pluginReplies = Collections.synchronizedMap(new HashMap<String, String>());
+		final String identifier = createIdentifier("FCPPluginMessage");
+		return new ExtendedFcpAdapter<Map<String, String>>(identifier) {
 
 			@Override
 			@SuppressWarnings("synthetic-access")
@@ -1121,11 +1829,10 @@ public class FcpClient implements Closeable {
 					return;
 				}
 				pluginReplies.putAll(fcpPluginReply.getReplies());
-				complete();
+				complete(pluginReplies);
 			}
 
 		}.execute();
-		return pluginReplies;
 	}
 
 	//
@@ -1148,13 +1855,29 @@ public class FcpClient implements Closeable {
 	 *             if an I/O error occurs
 	 */
 	public NodeData getNodeInformation(final Boolean giveOpennetRef, final Boolean withPrivate, final Boolean withVolatile) throws IOException, FcpException {
-		final AtomicReference<NodeData> nodeDataWrapper = new AtomicReference<NodeData>();
-		new ExtendedFcpAdapter() {
+		return await(getNodeInformationAsync(giveOpennetRef, withPrivate, withVolatile));
+	}
+
+	/**
+	 * Starts requesting information about the node.
+	 *
+	 * @param giveOpennetRef
+	 *            Whether to return the OpenNet reference
+	 * @param withPrivate
+	 *            Whether to return private node data
+	 * @param withVolatile
+	 *            Whether to return volatile node data
+	 * @return A future for the node information
+	 * @see #getNodeInformation(Boolean, Boolean, Boolean)
+	 */
+	public CompletableFuture<NodeData> getNodeInformationAsync(final Boolean giveOpennetRef, final Boolean withPrivate, final Boolean withVolatile) {
+		final String identifier = createIdentifier("get-node");
+		return new ExtendedFcpAdapter<NodeData>(identifier) {
 
 			@Override
 			@SuppressWarnings("synthetic-access")
 			public void run() throws IOException {
-				GetNode getNodeMessage = new GetNode(giveOpennetRef, withPrivate, withVolatile);
+				GetNode getNodeMessage = new GetNode(identifier, giveOpennetRef, withPrivate, withVolatile);
 				sendMessage(getNodeMessage);
 			}
 
@@ -1163,11 +1886,11 @@ public class FcpClient implements Closeable {
 			 */
 			@Override
 			public void receivedNodeData(FcpConnection fcpConnection, NodeData nodeData) {
-				nodeDataWrapper.set(nodeData);
-				complete();
+				if (isReply(nodeData.getIdentifier())) {
+					complete(nodeData);
+				}
 			}
 		}.execute();
-		return nodeDataWrapper.get();
 	}
 
 	//
@@ -1175,11 +1898,16 @@ public class FcpClient implements Closeable {
 	//
 
 	public Map<String, String> getConfig() throws IOException, FcpException {
+		return await(getConfigAsync());
+	}
+
+	public CompletableFuture<Map<String, String>> getConfigAsync() {
 		Map<String, String> results = new HashMap<>();
-		new ExtendedFcpAdapter() {
+		String identifier = createIdentifier("get-config");
+		return new ExtendedFcpAdapter<Map<String, String>>(identifier) {
 			@Override
 			public void run() throws IOException {
-				GetConfig getConfig = new GetConfig(createIdentifier("get-config"));
+				GetConfig getConfig = new GetConfig(identifier);
 				getConfig.setWithCurrent(true);
 				getConfig.setWithDefaults(true);
 				getConfig.setWithShortDescription(true);
@@ -1193,6 +1921,9 @@ public class FcpClient implements Closeable {
 
 			@Override
 			public void receivedConfigData(FcpConnection fcpConnection, ConfigData configData) {
+				if (!isReply(configData.getIdentifier())) {
+					return;
+				}
 				results.putAll(filterByResponseType(configData, "current"));
 				results.putAll(filterByResponseType(configData, "default"));
 				results.putAll(filterByResponseType(configData, "shortDescription"));
@@ -1201,34 +1932,79 @@ public class FcpClient implements Closeable {
 				results.putAll(filterByResponseType(configData, "dataType"));
 				results.putAll(filterByResponseType(configData, "sortOrder"));
 				results.putAll(filterByResponseType(configData, "forceWriteFlag"));
-				complete();
+				complete(results);
 			}
 
 			private Map<String, String> filterByResponseType(ConfigData configData, String responseType) {
-				return configData.getFields().entrySet().stream()
-					.filter(e -> e.getKey().startsWith(responseType + "."))
-					.collect(toMap(Entry::getKey, Entry::getValue));
+				return configData.getFields(responseType);
 			}
 		}.execute();
-		return results;
 	}
 
 	public void modifyConfig(Map<String, String> options) throws IOException, FcpException {
-		new ExtendedFcpAdapter() {
+		await(modifyConfigAsync(options));
+	}
+
+	public CompletableFuture<Void> modifyConfigAsync(Map<String, String> options) {
+		String identifier = createIdentifier("modify-config");
+		return new ExtendedFcpAdapter<Void>(identifier) {
 			@Override
 			public void run() throws IOException {
-				ModifyConfig modifyConfig = new ModifyConfig();
+				ModifyConfig modifyConfig = new ModifyConfig(identifier);
 				options.forEach(modifyConfig::setOption);
 				sendMessage(modifyConfig);
 			}
 
 			@Override
 			public void receivedConfigData(FcpConnection fcpConnection, ConfigData configData) {
-				complete();
+				if (isReply(configData.getIdentifier())) {
+					complete();
+				}
 			}
 		}.execute();
 	}
 
+	//
+	// PACKAGE-PRIVATE METHODS
+	//
+
+	/**
+	 * Waits for the given future to complete and returns its result. The
+	 * exception the future was completed with is rethrown.
+	 *
+	 * @param future
+	 *            The future to wait for
+	 * @return The result of the future
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws FcpException
+	 *             if an FCP error occurs
+	 */
+	static <T> T await(CompletableFuture<T> future) throws IOException, FcpException {
+		while (true) {
+			try {
+				return future.get();
+			} catch (InterruptedException ie1) {
+				/* ignore, we’ll loop. */
+			} catch (ExecutionException ee1) {
+				Throwable cause = ee1.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				if (cause instanceof FcpException) {
+					throw (FcpException) cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new FcpException(cause);
+			}
+		}
+	}
+
 	//
 	// PRIVATE METHODS
 	//
@@ -1258,6 +2034,227 @@ public class FcpClient implements Closeable {
 		}
 	}
 
+	/**
+	 * Creates a “ClientPut” message for data sent in its payload.
+	 *
+	 * @param uri
+	 *            The URI to insert the data to
+	 * @param identifier
+	 *            The identifier of the request
+	 * @param putOptions
+	 *            The options of the insert
+	 * @return The “ClientPut” message
+	 */
+	private static ClientPut createClientPut(String uri, String identifier, PutOptions putOptions) {
+		ClientPut clientPut = new ClientPut(uri, identifier);
+		if (putOptions.getContentType() != null) {
+			clientPut.setMetadataContentType(putOptions.getContentType());
+		}
+		if (putOptions.getPriority() != null) {
+			clientPut.setPriority(putOptions.getPriority());
+		}
+		clientPut.setEarlyEncode(putOptions.isEarlyEncode());
+		clientPut.setGetCHKOnly(putOptions.isGetCHKOnly());
+		return clientPut;
+	}
+
+	/**
+	 * Sends the given insert message and waits for its result without
+	 * blocking.
+	 *
+	 * @param identifier
+	 *            The identifier of the request
+	 * @param putMessage
+	 *            The message that starts the insert
+	 * @param putOptions
+	 *            The options of the insert
+	 * @return A future for the result of the insert
+	 */
+	private CompletableFuture<PutResult> put(String identifier, FcpMessage putMessage, PutOptions putOptions) {
+		PutResult putResult = new PutResult();
+		return new ExtendedFcpAdapter<PutResult>(identifier) {
+
+			@Override
+			public void run() throws IOException {
+				sendMessage(putMessage);
+			}
+
+			@Override
+			public void receivedURIGenerated(FcpConnection fcpConnection, URIGenerated uriGenerated) {
+				if (!identifier.equals(uriGenerated.getIdentifier())) {
+					return;
+				}
+				putResult.uri(uriGenerated.getURI());
+				if (putOptions.getUriGeneratedConsumer() != null) {
+					putOptions.getUriGeneratedConsumer().accept(uriGenerated.getURI());
+				}
+			}
+
+			@Override
+			public void receivedPutSuccessful(FcpConnection fcpConnection, PutSuccessful putSuccessful) {
+				if (identifier.equals(putSuccessful.getIdentifier())) {
+					complete(putResult.success(true).uri(putSuccessful.getURI()));
+				}
+			}
+
+			@Override
+			public void receivedPutFailed(FcpConnection fcpConnection, PutFailed putFailed) {
+				if (!identifier.equals(putFailed.getIdentifier())) {
+					return;
+				}
+				if (putFailed.getExpectedURI() != null) {
+					putResult.uri(putFailed.getExpectedURI());
+				}
+				complete(putResult.success(false).errorCode(putFailed.getCode()).errorDescription(putFailed.getCodeDescription()).fatal(putFailed.isFatal()));
+			}
+
+		}.execute();
+	}
+
+	/**
+	 * Returns the name of the given file relative to the given directory,
+	 * using “/” as separator.
+	 *
+	 * @param directory
+	 *            The directory
+	 * @param file
+	 *            The file below the directory
+	 * @return The relative name of the file
+	 */
+	private static String getRelativeName(Path directory, Path file) {
+		StringBuilder name = new StringBuilder();
+		for (Path element : directory.relativize(file)) {
+			if (name.length() > 0) {
+				name.append('/');
+			}
+			name.append(element.toString());
+		}
+		return name.toString();
+	}
+
+	/**
+	 * Returns a future that has been completed with the given exception.
+	 *
+	 * @param throwable
+	 *            The exception to complete the future with
+	 * @return The completed future
+	 */
+	private static <T> CompletableFuture<T> failedFuture(Throwable throwable) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		future.completeExceptionally(throwable);
+		return future;
+	}
+
+	/**
+	 * Starts reconnecting to the node, unless automatic reconnects are
+	 * disabled, the client was disconnected on purpose, or reconnect attempts
+	 * are already scheduled.
+	 */
+	private void startReconnecting() {
+		if (canReconnect() && reconnecting.compareAndSet(false, true)) {
+			scheduleReconnect(initialReconnectDelay);
+		}
+	}
+
+	/**
+	 * Returns whether the client may try to reconnect to the node.
+	 *
+	 * @return {@code true} if the client may reconnect, {@code false}
+	 *         otherwise
+	 */
+	private boolean canReconnect() {
+		return (reconnectExecutor != null) && (clientName != null) && !disconnectRequested && !clientNameTaken;
+	}
+
+	/**
+	 * Schedules a reconnect attempt.
+	 *
+	 * @param delay
+	 *            The delay before the attempt
+	 */
+	private void scheduleReconnect(long delay) {
+		ScheduledExecutorService executor = reconnectExecutor;
+		if ((executor == null) || !canReconnect()) {
+			reconnecting.set(false);
+			return;
+		}
+		try {
+			executor.schedule(() -> reconnect(delay), delay, reconnectTimeUnit);
+		} catch (RejectedExecutionException ree1) {
+			reconnecting.set(false);
+		}
+	}
+
+	/**
+	 * Tries to reconnect to the node and resume the session. If the attempt
+	 * fails, the next attempt is scheduled with twice the delay.
+	 *
+	 * @param delay
+	 *            The delay before this attempt
+	 */
+	private void reconnect(long delay) {
+		if (!canReconnect() || connected) {
+			reconnecting.set(false);
+			return;
+		}
+		resumeSession().whenComplete((result, throwable) -> {
+			if (throwable == null) {
+				reconnecting.set(false);
+				fcpClientListenerManager.fireFcpClientReconnected();
+			} else {
+				setDisconnected();
+				fcpConnection.close();
+				scheduleReconnect(Math.min(delay * 2, maximumReconnectDelay));
+			}
+		});
+	}
+
+	/**
+	 * Connects the underlying connection and resumes the session. All
+	 * messages are sent at once, without waiting for the node’s replies: the
+	 * “ClientHello” with the same name, “WatchGlobal”, the feed and USK
+	 * subscriptions, and a “GetRequestStatus” for every running persistent
+	 * request. The replies to the latter are delivered to the
+	 * {@link #addFcpListener(FcpListener) FCP listeners}.
+	 *
+	 * @return A future that is completed once the node has answered the
+	 *         “ClientHello”
+	 */
+	private CompletableFuture<Void> resumeSession() {
+		connected = true;
+		return new ExtendedFcpAdapter<Void>() {
+
+			@Override
+			@SuppressWarnings("synthetic-access")
+			public void run() throws IOException {
+				fcpConnection.connect();
+				sendMessage(new ClientHello(clientName));
+				sendMessage(new WatchGlobal(true));
+				if (watchingFeeds) {
+					sendMessage(new WatchFeeds(true));
+				}
+				for (String identifier : feedSubscriptions) {
+					sendMessage(new SubscribeFeeds(identifier));
+				}
+				for (SubscribeUSK subscribeUSK : uskSubscriptions.values()) {
+					sendMessage(subscribeUSK);
+				}
+				for (Entry<String, Boolean> persistentRequest : persistentRequests.entrySet()) {
+					GetRequestStatus getRequestStatus = new GetRequestStatus(persistentRequest.getKey());
+					getRequestStatus.setGlobal(persistentRequest.getValue());
+					sendMessage(getRequestStatus);
+				}
+			}
+
+			@Override
+			@SuppressWarnings("synthetic-access")
+			public void receivedNodeHello(FcpConnection fcpConnection, NodeHello nodeHello) {
+				FcpClient.this.nodeHello = nodeHello;
+				complete();
+			}
+		}.execute();
+	}
+
 	/**
 	 * Tells the client that it is now disconnected. This method is called by
 	 * {@link ExtendedFcpAdapter} only.
@@ -1267,62 +2264,173 @@ public class FcpClient implements Closeable {
 	}
 
 	/**
-	 * Implementation of an {@link FcpListener} that can store an
-	 * {@link FcpException} and wait for the arrival of a certain command.
+	 * Returns the exception that is wrapped in the given
+	 * {@link CompletionException}.
+	 *
+	 * @param throwable
+	 *            The exception a future was completed with
+	 * @return The unwrapped exception
+	 */
+	private static Throwable unwrap(Throwable throwable) {
+		if ((throwable instanceof CompletionException) && (throwable.getCause() != null)) {
+			return throwable.getCause();
+		}
+		return throwable;
+	}
+
+	/**
+	 * {@link FcpListener} that keeps track of the running persistent requests
+	 * so that their status can be requested after a reconnect.
+	 */
+	private class SessionTracker extends FcpAdapter {
+
+		@Override
+		public void receivedPersistentGet(FcpConnection fcpConnection, PersistentGet persistentGet) {
+			trackRequest(persistentGet.getIdentifier(), persistentGet.isGlobal());
+		}
+
+		@Override
+		public void receivedPersistentPut(FcpConnection fcpConnection, PersistentPut persistentPut) {
+			trackRequest(persistentPut.getIdentifier(), persistentPut.isGlobal());
+		}
+
+		@Override
+		public void receivedPersistentPutDir(FcpConnection fcpConnection, PersistentPutDir persistentPutDir) {
+			trackRequest(persistentPutDir.getIdentifier(), persistentPutDir.isGlobal());
+		}
+
+		@Override
+		public void receivedDataFound(FcpConnection fcpConnection, DataFound dataFound) {
+			forgetRequest(dataFound.getIdentifier());
+		}
+
+		@Override
+		public void receivedAllData(FcpConnection fcpConnection, AllData allData) {
+			forgetRequest(allData.getIdentifier());
+		}
+
+		@Override
+		public void receivedGetFailed(FcpConnection fcpConnection, GetFailed getFailed) {
+			forgetRequest(getFailed.getIdentifier());
+		}
+
+		@Override
+		public void receivedPutSuccessful(FcpConnection fcpConnection, PutSuccessful putSuccessful) {
+			forgetRequest(putSuccessful.getIdentifier());
+		}
+
+		@Override
+		public void receivedPutFailed(FcpConnection fcpConnection, PutFailed putFailed) {
+			forgetRequest(putFailed.getIdentifier());
+		}
+
+		@Override
+		public void receivedPersistentRequestRemoved(FcpConnection fcpConnection, PersistentRequestRemoved persistentRequestRemoved) {
+			forgetRequest(persistentRequestRemoved.getIdentifier());
+		}
+
+		@Override
+		public void receivedProtocolError(FcpConnection fcpConnection, ProtocolError protocolError) {
+			forgetRequest(protocolError.getIdentifier());
+		}
+
+		@Override
+		@SuppressWarnings("synthetic-access")
+		public void receivedCloseConnectionDuplicateClientName(FcpConnection fcpConnection, CloseConnectionDuplicateClientName closeConnectionDuplicateClientName) {
+			clientNameTaken = true;
+		}
+
+		@SuppressWarnings("synthetic-access")
+		private void trackRequest(String identifier, boolean global) {
+			if (identifier != null) {
+				persistentRequests.put(identifier, global);
+			}
+		}
+
+		@SuppressWarnings("synthetic-access")
+		private void forgetRequest(String identifier) {
+			if (identifier != null) {
+				persistentRequests.remove(identifier);
+			}
+		}
+
+	}
+
+	/**
+	 * Implementation of an {@link FcpListener} that completes a
+	 * {@link CompletableFuture} once a certain command has arrived, or
+	 * completes it exceptionally with an {@link FcpException} or an
+	 * {@link IOException}. The listener is removed from the connection once
+	 * the future has been completed.
 	 *
+	 * @param <T>
+	 *            The type of the result
 	 * @author David ‘Bombe’ Roden &lt;bombe@freenetproject.org&gt;
 	 */
-	private abstract class ExtendedFcpAdapter extends FcpAdapter {
+	private abstract class ExtendedFcpAdapter<T> extends FcpAdapter {
 
-		/** The count down latch used to wait for completion. */
-		private final CountDownLatch completionLatch = new CountDownLatch(1);
+		/** The future for the result. */
+		private final CompletableFuture<T> result = new CompletableFuture<>();
 
-		/** The FCP exception, if any. */
-		protected FcpException fcpException;
+		/** The identifier of the request, or {@code null} to receive all messages. */
+		private final String requestIdentifier;
 
 		/**
-		 * Creates a new extended FCP adapter.
+		 * Creates a new extended FCP adapter that receives all messages.
 		 */
 		public ExtendedFcpAdapter() {
-			/* do nothing. */
+			this(null);
 		}
 
 		/**
-		 * Executes the FCP commands in {@link #run()}, wrapping the execution
-		 * and catching exceptions.
+		 * Creates a new extended FCP adapter that only receives
+		 * {@link net.pterodactylus.fcp.Identifiable} messages for the request
+		 * with the given identifier.
 		 *
-		 * @throws IOException
-		 *             if an I/O error occurs
-		 * @throws FcpException
-		 *             if an FCP error occurs
+		 * @param requestIdentifier
+		 *            The identifier of the request, or {@code null} to receive
+		 *            all messages
+		 */
+		public ExtendedFcpAdapter(String requestIdentifier) {
+			this.requestIdentifier = requestIdentifier;
+		}
+
+		/**
+		 * Registers this adapter and executes the FCP commands in
+		 * {@link #run()}. This method does not wait for the reply. Cancelling
+		 * the returned future removes this adapter from the connection.
+		 *
+		 * @return The future for the result
 		 */
 		@SuppressWarnings("synthetic-access")
-		public void execute() throws IOException, FcpException {
-			checkConnected(true);
-			fcpConnection.addFcpListener(this);
-			try {
-				run();
-				while (true) {
-					try {
-						completionLatch.await();
-						break;
-					} catch (InterruptedException ie1) {
-						/* ignore, we’ll loop. */
-					}
-				}
-			} catch (IOException ioe1) {
-				setDisconnected();
-				throw ioe1;
-			} finally {
-				fcpConnection.removeFcpListener(this);
+		public CompletableFuture<T> execute() {
+			if (!connected) {
+				result.completeExceptionally(new FcpException("Client is not connected."));
+				return result;
+			}
+			if (requestIdentifier != null) {
+				fcpConnection.addFcpListener(requestIdentifier, this);
+			} else {
+				fcpConnection.addFcpListener(this);
 			}
-			if (fcpException != null) {
+			result.whenComplete((value, throwable) -> {
+				if (requestIdentifier != null) {
+					fcpConnection.removeFcpListener(requestIdentifier, this);
+				} else {
+					fcpConnection.removeFcpListener(this);
+				}
+				Throwable cause = unwrap(throwable);
 				// FORGIVE ME: this should be a property of the exception, “close connection after this”
-				if (!(fcpException instanceof FcpProtocolException)) {
+				if ((cause instanceof IOException) || ((cause instanceof FcpException) && !(cause instanceof FcpProtocolException))) {
 					setDisconnected();
 				}
-				throw fcpException;
+			});
+			try {
+				run();
+			} catch (IOException | RuntimeException e1) {
+				result.completeExceptionally(e1);
 			}
+			return result;
 		}
 
 		/**
@@ -1333,15 +2441,37 @@ public class FcpClient implements Closeable {
 		 */
 		public abstract void run() throws IOException;
 
-		protected void sendMessage(FcpMessage fcpMessage) throws IOException {
-			fcpConnection.sendMessage(fcpMessage);
+		/**
+		 * Hands the given message to the connection. If the message can not
+		 * be sent, the result is completed with the exception.
+		 *
+		 * @param fcpMessage
+		 *            The message to send
+		 */
+		@SuppressWarnings("synthetic-access")
+		protected void sendMessage(FcpMessage fcpMessage) {
+			fcpConnection.enqueueMessage(fcpMessage).whenComplete((ignored, throwable) -> {
+				if (throwable != null) {
+					result.completeExceptionally(unwrap(throwable));
+				}
+			});
 		}
 
 		/**
-		 * Signals completion of the command processing.
+		 * Signals completion of the command processing without a result.
 		 */
 		protected void complete() {
-			completionLatch.countDown();
+			result.complete(null);
+		}
+
+		/**
+		 * Signals completion of the command processing.
+		 *
+		 * @param value
+		 *            The result of the command
+		 */
+		protected void complete(T value) {
+			result.complete(value);
 		}
 
 		/**
@@ -1349,8 +2479,7 @@ public class FcpClient implements Closeable {
 		 */
 		@Override
 		public void connectionClosed(FcpConnection fcpConnection, Throwable throwable) {
-			fcpException = new FcpException("Connection closed", throwable);
-			completionLatch.countDown();
+			result.completeExceptionally(new FcpException("Connection closed", throwable));
 		}
 
 		/**
@@ -1358,17 +2487,34 @@ public class FcpClient implements Closeable {
 		 */
 		@Override
 		public void receivedCloseConnectionDuplicateClientName(FcpConnection fcpConnection, CloseConnectionDuplicateClientName closeConnectionDuplicateClientName) {
-			fcpException = new FcpException("Connection closed, duplicate client name");
-			completionLatch.countDown();
+			result.completeExceptionally(new FcpException("Connection closed, duplicate client name"));
 		}
 
 		/**
-		 * {@inheritDoc}
+		 * Returns whether a message with the given identifier may be a reply
+		 * to this request. The node does not send an identifier with every
+		 * reply, so messages without an identifier are accepted by every
+		 * request, as are all messages for adapters without an identifier.
+		 *
+		 * @param identifier
+		 *            The identifier of the message, or {@code null}
+		 * @return {@code true} if the message may be a reply to this
+		 *         request, {@code false} if it belongs to another request
+		 */
+		protected boolean isReply(String identifier) {
+			return (identifier == null) || (requestIdentifier == null) || identifier.equals(requestIdentifier);
+		}
+
+		/**
+		 * Fails the request if the protocol error may belong to it.
+		 *
+		 * @see #isReply(String)
 		 */
 		@Override
 		public void receivedProtocolError(FcpConnection fcpConnection, ProtocolError protocolError) {
-			fcpException = FcpProtocolException.from(protocolError);
-			completionLatch.countDown();
+			if (isReply(protocolError.getIdentifier())) {
+				result.completeExceptionally(FcpProtocolException.from(protocolError));
+			}
 		}
 
 	}
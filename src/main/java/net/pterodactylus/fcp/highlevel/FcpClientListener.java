@@ -34,4 +34,15 @@ public interface FcpClientListener extends EventListener {
 	 */
 	public void fcpClientDisconnected(FcpClient fcpClient);
 
+	/**
+	 * Notifies a listener that the given FCP client has automatically
+	 * reconnected to the node and resumed its session.
+	 *
+	 * @param fcpClient
+	 *            The FCP client that was reconnected
+	 * @see FcpClient#setAutoReconnect(java.util.concurrent.ScheduledExecutorService, long, long, java.util.concurrent.TimeUnit)
+	 */
+	default void fcpClientReconnected(FcpClient fcpClient) {
+	}
+
 }
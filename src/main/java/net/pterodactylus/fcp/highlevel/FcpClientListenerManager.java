@@ -59,6 +59,17 @@ public class FcpClientListenerManager {
 		}
 	}
 
+	/**
+	 * Notifies all listeners that the FCP client was reconnected.
+	 *
+	 * @see FcpClientListener#fcpClientReconnected(FcpClient)
+	 */
+	public void fireFcpClientReconnected() {
+		for (FcpClientListener fcpClientListener : getListeners()) {
+			fcpClientListener.fcpClientReconnected(getSource());
+		}
+	}
+
 	public void addListener(FcpClientListener fcpClientListener) {
 		listeners.add(fcpClientListener);
 	}
@@ -0,0 +1,982 @@
+package net.pterodactylus.fcp.highlevel;
+
+import net.pterodactylus.fcp.AddPeer.Trust;
+import net.pterodactylus.fcp.AddPeer.Visibility;
+import net.pterodactylus.fcp.FcpListener;
+import net.pterodactylus.fcp.ModifyPeer;
+import net.pterodactylus.fcp.NodeData;
+import net.pterodactylus.fcp.NodeRef;
+import net.pterodactylus.fcp.PayloadSink;
+import net.pterodactylus.fcp.Peer;
+import net.pterodactylus.fcp.PeerNote;
+import net.pterodactylus.fcp.SSKKeypair;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Spreads requests over a number of {@link FcpClient}s, each with its own
+ * connection, to one or more nodes. The pool offers the operations of
+ * {@link FcpClient}; every operation is executed by one of the clients of
+ * the pool, chosen according to the {@link LoadBalancing load balancing} of
+ * the pool.
+ * <p>
+ * Operations that concern a node rather than a key, like managing peers and
+ * their notes, plugin messages, the node information, the configuration,
+ * and listing requests, are all executed on the primary node of the pool,
+ * by its healthy client with the fewest outstanding operations. Peers
+ * returned by the pool therefore always belong to the node that later
+ * operations on them are sent to. The primary node is the first node given
+ * to {@link #FcpClientPool(int, InetSocketAddress...)}; a pool created from
+ * a collection of clients can not tell which clients share a node, so only
+ * its first client counts as the primary node. Use {@link #getClients()}
+ * to address any other node.
+ * <p>
+ * Requests are hashed by their URI. The URI of a CHK insert, or of an
+ * insert that names the key type only, is not known before the node has
+ * computed it; these inserts use the healthy client with the fewest
+ * outstanding operations.
+ * <p>
+ * A client is healthy while it is connected and its last health check did
+ * not fail. Unhealthy clients are not used as long as there is a healthy
+ * client.
+ *
+ * <pre>
+ * FcpClientPool fcpClientPool = new FcpClientPool(4, new InetSocketAddress("localhost", 9481));
+ * fcpClientPool.setLoadBalancing(FcpClientPool.LoadBalancing.consistentHashing);
+ * fcpClientPool.connect("MyApplication");
+ * </pre>
+ */
+public class FcpClientPool implements Closeable {
+
+	/** The logger. */
+	private static final Logger logger = Logger.getLogger(FcpClientPool.class.getName());
+
+	/** The number of points on the hash ring per client. */
+	private static final int VIRTUAL_NODES_PER_CLIENT = 64;
+
+	/** The hash function for consistent hashing. */
+	private static final HashFunction hashFunction = Hashing.murmur3_32();
+
+	/**
+	 * The strategies for choosing the client that executes an operation.
+	 */
+	public enum LoadBalancing {
+
+		/** Use the healthy client with the fewest outstanding operations. */
+		leastOutstandingRequests,
+
+		/**
+		 * Choose the client by the hash of the key of the operation, so that
+		 * operations for the same key use the same client. Operations
+		 * without a key use the healthy client with the fewest outstanding
+		 * operations.
+		 */
+		consistentHashing
+
+	}
+
+	/** The clients of this pool. */
+	private final List<PooledClient> pooledClients = new ArrayList<>();
+
+	/** The clients by their positions on the hash ring. */
+	private final NavigableMap<Integer, PooledClient> hashRing = new TreeMap<>();
+
+	/** The load balancing. */
+	private volatile LoadBalancing loadBalancing = LoadBalancing.leastOutstandingRequests;
+
+	/** The scheduled health check, if any. */
+	private ScheduledFuture<?> healthCheck;
+
+	/**
+	 * Creates a pool with the given number of connections to each of the
+	 * given nodes.
+	 *
+	 * @param connectionsPerNode
+	 *            The number of connections to every node
+	 * @param nodeAddresses
+	 *            The addresses of the nodes’ FCP ports
+	 */
+	public FcpClientPool(int connectionsPerNode, InetSocketAddress... nodeAddresses) {
+		this(createClients(connectionsPerNode, nodeAddresses), connectionsPerNode);
+	}
+
+	/**
+	 * Creates a pool of the given clients. The clients are connected by
+	 * {@link #connect(String)}, unless they are already connected. The first
+	 * client executes the operations for the primary node.
+	 *
+	 * @param fcpClients
+	 *            The clients of the pool
+	 */
+	public FcpClientPool(Collection<FcpClient> fcpClients) {
+		this(fcpClients, 1);
+	}
+
+	private FcpClientPool(Collection<FcpClient> fcpClients, int primaryClientCount) {
+		if (fcpClients.isEmpty()) {
+			throw new IllegalArgumentException("pool needs at least one client");
+		}
+		int index = 0;
+		for (FcpClient fcpClient : fcpClients) {
+			PooledClient pooledClient = new PooledClient(fcpClient, index, index < primaryClientCount);
+			index++;
+			pooledClients.add(pooledClient);
+			for (int virtualNode = 0; virtualNode < VIRTUAL_NODES_PER_CLIENT; virtualNode++) {
+				hashRing.put(hashFunction.hashString(pooledClient.index + "-" + virtualNode, UTF_8).asInt(), pooledClient);
+			}
+		}
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the clients of this pool.
+	 *
+	 * @return The clients of this pool
+	 */
+	public List<FcpClient> getClients() {
+		List<FcpClient> fcpClients = new ArrayList<>();
+		pooledClients.forEach(pooledClient -> fcpClients.add(pooledClient.fcpClient));
+		return Collections.unmodifiableList(fcpClients);
+	}
+
+	/**
+	 * Returns the number of operations that are currently executed by the
+	 * given client of this pool.
+	 *
+	 * @param fcpClient
+	 *            The client
+	 * @return The number of outstanding operations of the client
+	 */
+	public int getOutstandingRequests(FcpClient fcpClient) {
+		return pooledClients.stream().filter(pooledClient -> pooledClient.fcpClient == fcpClient).mapToInt(pooledClient -> pooledClient.outstandingRequests.get()).sum();
+	}
+
+	/**
+	 * Returns whether the given client of this pool is healthy.
+	 *
+	 * @param fcpClient
+	 *            The client
+	 * @return {@code true} if the client is healthy, {@code false} otherwise
+	 */
+	public boolean isHealthy(FcpClient fcpClient) {
+		return pooledClients.stream().anyMatch(pooledClient -> (pooledClient.fcpClient == fcpClient) && pooledClient.isHealthy());
+	}
+
+	/**
+	 * Sets the load balancing of this pool. Defaults to
+	 * {@link LoadBalancing#leastOutstandingRequests}.
+	 *
+	 * @param loadBalancing
+	 *            The load balancing
+	 */
+	public void setLoadBalancing(LoadBalancing loadBalancing) {
+		this.loadBalancing = loadBalancing;
+	}
+
+	/**
+	 * Enables health checks of idle clients. Every interval, each client
+	 * without outstanding operations requests the node information; if the
+	 * node does not answer within the timeout, the client is considered
+	 * unhealthy, the check is cancelled, and the client is checked again in
+	 * the next round. A client becomes healthy again once the node answers a
+	 * check.
+	 *
+	 * @param executor
+	 *            The executor that runs the health checks
+	 * @param interval
+	 *            The interval between two health checks
+	 * @param timeout
+	 *            The time the node has to answer a health check
+	 * @param timeUnit
+	 *            The unit of interval and timeout
+	 */
+	public synchronized void setHealthCheck(ScheduledExecutorService executor, long interval, long timeout, TimeUnit timeUnit) {
+		if (healthCheck != null) {
+			healthCheck.cancel(false);
+		}
+		healthCheck = executor.scheduleWithFixedDelay(() -> checkHealth(executor, timeout, timeUnit), interval, interval, timeUnit);
+	}
+
+	/**
+	 * Adds an FCP listener to the connections of all clients.
+	 *
+	 * @param fcpListener
+	 *            The FCP listener to add
+	 */
+	public void addFcpListener(FcpListener fcpListener) {
+		pooledClients.forEach(pooledClient -> pooledClient.fcpClient.addFcpListener(fcpListener));
+	}
+
+	/**
+	 * Removes an FCP listener from the connections of all clients.
+	 *
+	 * @param fcpListener
+	 *            The FCP listener to remove
+	 */
+	public void removeFcpListener(FcpListener fcpListener) {
+		pooledClients.forEach(pooledClient -> pooledClient.fcpClient.removeFcpListener(fcpListener));
+	}
+
+	/**
+	 * Adds an FCP client listener to all clients.
+	 *
+	 * @param fcpClientListener
+	 *            The FCP client listener to add
+	 */
+	public void addFcpClientListener(FcpClientListener fcpClientListener) {
+		pooledClients.forEach(pooledClient -> pooledClient.fcpClient.addFcpClientListener(fcpClientListener));
+	}
+
+	/**
+	 * Removes an FCP client listener from all clients.
+	 *
+	 * @param fcpClientListener
+	 *            The FCP client listener to remove
+	 */
+	public void removeFcpClientListener(FcpClientListener fcpClientListener) {
+		pooledClients.forEach(pooledClient -> pooledClient.fcpClient.removeFcpClientListener(fcpClientListener));
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Connects all clients that are not connected yet. Every client uses the
+	 * given name followed by “-” and its index in the pool, as the node only
+	 * allows one connection per client name.
+	 *
+	 * @param name
+	 *            The name of the clients
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws FcpException
+	 *             if an FCP error occurs
+	 */
+	public void connect(String name) throws IOException, FcpException {
+		for (PooledClient pooledClient : pooledClients) {
+			if (!pooledClient.fcpClient.isConnected()) {
+				pooledClient.fcpClient.connect(name + "-" + pooledClient.index);
+			}
+		}
+	}
+
+	/**
+	 * Returns whether at least one client of this pool is healthy.
+	 *
+	 * @return {@code true} if at least one client is healthy, {@code false}
+	 *         otherwise
+	 */
+	public boolean isConnected() {
+		return pooledClients.stream().anyMatch(PooledClient::isHealthy);
+	}
+
+	/**
+	 * Disconnects all clients and stops the health checks.
+	 */
+	public void disconnect() {
+		synchronized (this) {
+			if (healthCheck != null) {
+				healthCheck.cancel(false);
+				healthCheck = null;
+			}
+		}
+		pooledClients.forEach(pooledClient -> pooledClient.fcpClient.disconnect());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() {
+		disconnect();
+	}
+
+	/**
+	 * @see FcpClient#getURI(String)
+	 */
+	public GetResult getURI(String uri) throws IOException, FcpException {
+		return execute(uri, fcpClient -> fcpClient.getURI(uri));
+	}
+
+	/**
+	 * @see FcpClient#getURI(String, boolean)
+	 */
+	public GetResult getURI(String uri, boolean filterData) throws IOException, FcpException {
+		return execute(uri, fcpClient -> fcpClient.getURI(uri, filterData));
+	}
+
+	/**
+	 * @see FcpClient#getURI(String, PayloadSink)
+	 */
+	public GetResult getURI(String uri, PayloadSink payloadSink) throws IOException, FcpException {
+		return execute(uri, fcpClient -> fcpClient.getURI(uri, payloadSink));
+	}
+
+	/**
+	 * @see FcpClient#getURI(String, boolean, PayloadSink)
+	 */
+	public GetResult getURI(String uri, boolean filterData, PayloadSink payloadSink) throws IOException, FcpException {
+		return execute(uri, fcpClient -> fcpClient.getURI(uri, filterData, payloadSink));
+	}
+
+	/**
+	 * @see FcpClient#getURIAsync(String)
+	 */
+	public CompletableFuture<GetResult> getURIAsync(String uri) {
+		return executeAsync(uri, fcpClient -> fcpClient.getURIAsync(uri));
+	}
+
+	/**
+	 * @see FcpClient#getURIAsync(String, boolean)
+	 */
+	public CompletableFuture<GetResult> getURIAsync(String uri, boolean filterData) {
+		return executeAsync(uri, fcpClient -> fcpClient.getURIAsync(uri, filterData));
+	}
+
+	/**
+	 * @see FcpClient#getURIAsync(String, boolean, PayloadSink)
+	 */
+	public CompletableFuture<GetResult> getURIAsync(String uri, boolean filterData, PayloadSink payloadSink) {
+		return executeAsync(uri, fcpClient -> fcpClient.getURIAsync(uri, filterData, payloadSink));
+	}
+
+	/**
+	 * @see FcpClient#putData(String, byte[], PutOptions)
+	 */
+	public PutResult putData(String uri, byte[] data, PutOptions putOptions) throws IOException, FcpException {
+		return execute(getInsertKey(uri), fcpClient -> fcpClient.putData(uri, data, putOptions));
+	}
+
+	/**
+	 * @see FcpClient#putDataAsync(String, byte[], PutOptions)
+	 */
+	public CompletableFuture<PutResult> putDataAsync(String uri, byte[] data, PutOptions putOptions) {
+		return executeAsync(getInsertKey(uri), fcpClient -> fcpClient.putDataAsync(uri, data, putOptions));
+	}
+
+	/**
+	 * @see FcpClient#putStream(String, InputStream, long, PutOptions)
+	 */
+	public PutResult putStream(String uri, InputStream inputStream, long length, PutOptions putOptions) throws IOException, FcpException {
+		return execute(getInsertKey(uri), fcpClient -> fcpClient.putStream(uri, inputStream, length, putOptions));
+	}
+
+	/**
+	 * @see FcpClient#putStreamAsync(String, InputStream, long, PutOptions)
+	 */
+	public CompletableFuture<PutResult> putStreamAsync(String uri, InputStream inputStream, long length, PutOptions putOptions) {
+		return executeAsync(getInsertKey(uri), fcpClient -> fcpClient.putStreamAsync(uri, inputStream, length, putOptions));
+	}
+
+	/**
+	 * @see FcpClient#putFile(String, Path, PutOptions)
+	 */
+	public PutResult putFile(String uri, Path file, PutOptions putOptions) throws IOException, FcpException {
+		return execute(getInsertKey(uri), fcpClient -> fcpClient.putFile(uri, file, putOptions));
+	}
+
+	/**
+	 * @see FcpClient#putFileAsync(String, Path, PutOptions)
+	 */
+	public CompletableFuture<PutResult> putFileAsync(String uri, Path file, PutOptions putOptions) {
+		return executeAsync(getInsertKey(uri), fcpClient -> fcpClient.putFileAsync(uri, file, putOptions));
+	}
+
+	/**
+	 * @see FcpClient#putDirectory(String, Path, PutOptions)
+	 */
+	public PutResult putDirectory(String uri, Path directory, PutOptions putOptions) throws IOException, FcpException {
+		return execute(getInsertKey(uri), fcpClient -> fcpClient.putDirectory(uri, directory, putOptions));
+	}
+
+	/**
+	 * @see FcpClient#putDirectoryAsync(String, Path, PutOptions)
+	 */
+	public CompletableFuture<PutResult> putDirectoryAsync(String uri, Path directory, PutOptions putOptions) {
+		return executeAsync(getInsertKey(uri), fcpClient -> fcpClient.putDirectoryAsync(uri, directory, putOptions));
+	}
+
+	/**
+	 * @see FcpClient#getPeers(boolean, boolean)
+	 */
+	public Collection<Peer> getPeers(boolean withMetadata, boolean withVolatile) throws IOException, FcpException {
+		return executeOnPrimaryNode(fcpClient -> fcpClient.getPeers(withMetadata, withVolatile));
+	}
+
+	/**
+	 * @see FcpClient#getPeersAsync(boolean, boolean)
+	 */
+	public CompletableFuture<Collection<Peer>> getPeersAsync(boolean withMetadata, boolean withVolatile) {
+		return executeOnPrimaryNodeAsync(fcpClient -> fcpClient.getPeersAsync(withMetadata, withVolatile));
+	}
+
+	/**
+	 * @see FcpClient#getDarknetPeers(boolean, boolean)
+	 */
+	public Collection<Peer> getDarknetPeers(boolean withMetadata, boolean withVolatile) throws IOException, FcpException {
+		return executeOnPrimaryNode(fcpClient -> fcpClient.getDarknetPeers(withMetadata, withVolatile));
+	}
+
+	/**
+	 * @see FcpClient#getOpennetPeers(boolean, boolean)
+	 */
+	public Collection<Peer> getOpennetPeers(boolean withMetadata, boolean withVolatile) throws IOException, FcpException {
+		return executeOnPrimaryNode(fcpClient -> fcpClient.getOpennetPeers(withMetadata, withVolatile));
+	}
+
+	/**
+	 * @see FcpClient#getSeedPeers(boolean, boolean)
+	 */
+	public Collection<Peer> getSeedPeers(boolean withMetadata, boolean withVolatile) throws IOException, FcpException {
+		return executeOnPrimaryNode(fcpClient -> fcpClient.getSeedPeers(withMetadata, withVolatile));
+	}
+
+	/**
+	 * @see FcpClient#addPeer(Peer, Trust, Visibility)
+	 */
+	public void addPeer(Peer peer, Trust trust, Visibility visibility) throws IOException, FcpException {
+		executeOnPrimaryNode(fcpClient -> {
+			fcpClient.addPeer(peer, trust, visibility);
+			return null;
+		});
+	}
+
+	/**
+	 * @see FcpClient#addPeer(NodeRef, Trust, Visibility)
+	 */
+	public void addPeer(NodeRef nodeRef, Trust trust, Visibility visibility) throws IOException, FcpException {
+		executeOnPrimaryNode(fcpClient -> {
+			fcpClient.addPeer(nodeRef, trust, visibility);
+			return null;
+		});
+	}
+
+	/**
+	 * @see FcpClient#addPeer(URL, Trust, Visibility)
+	 */
+	public void addPeer(URL url, Trust trust, Visibility visibility) throws IOException, FcpException {
+		executeOnPrimaryNode(fcpClient -> {
+			fcpClient.addPeer(url, trust, visibility);
+			return null;
+		});
+	}
+
+	/**
+	 * @see FcpClient#addPeer(String, Trust, Visibility)
+	 */
+	public void addPeer(String file, Trust trust, Visibility visibility) throws IOException, FcpException {
+		executeOnPrimaryNode(fcpClient -> {
+			fcpClient.addPeer(file, trust, visibility);
+			return null;
+		});
+	}
+
+	/**
+	 * @see FcpClient#addPeerAsync(NodeRef, Trust, Visibility)
+	 */
+	public CompletableFuture<Void> addPeerAsync(NodeRef nodeRef, Trust trust, Visibility visibility) {
+		return executeOnPrimaryNodeAsync(fcpClient -> fcpClient.addPeerAsync(nodeRef, trust, visibility));
+	}
+
+	/**
+	 * @see FcpClient#modifyPeer(Peer, Consumer)
+	 */
+	public void modifyPeer(Peer peer, Consumer<ModifyPeer> modifyPeerConsumer) throws IOException, FcpException {
+		executeOnPrimaryNode(fcpClient -> {
+			fcpClient.modifyPeer(peer, modifyPeerConsumer);
+			return null;
+		});
+	}
+
+	/**
+	 * @see FcpClient#modifyPeerAsync(Peer, Consumer)
+	 */
+	public CompletableFuture<Void> modifyPeerAsync(Peer peer, Consumer<ModifyPeer> modifyPeerConsumer) {
+		return executeOnPrimaryNodeAsync(fcpClient -> fcpClient.modifyPeerAsync(peer, modifyPeerConsumer));
+	}
+
+	/**
+	 * @see FcpClient#removePeer(Peer)
+	 */
+	public void removePeer(Peer peer) throws IOException, FcpException {
+		executeOnPrimaryNode(fcpClient -> {
+			fcpClient.removePeer(peer);
+			return null;
+		});
+	}
+
+	/**
+	 * @see FcpClient#removePeerAsync(Peer)
+	 */
+	public CompletableFuture<Void> removePeerAsync(Peer peer) {
+		return executeOnPrimaryNodeAsync(fcpClient -> fcpClient.removePeerAsync(peer));
+	}
+
+	/**
+	 * @see FcpClient#getPeerNote(Peer)
+	 */
+	public PeerNote getPeerNote(Peer peer) throws IOException, FcpException {
+		return executeOnPrimaryNode(fcpClient -> fcpClient.getPeerNote(peer));
+	}
+
+	/**
+	 * @see FcpClient#getPeerNoteAsync(Peer)
+	 */
+	public CompletableFuture<PeerNote> getPeerNoteAsync(Peer peer) {
+		return executeOnPrimaryNodeAsync(fcpClient -> fcpClient.getPeerNoteAsync(peer));
+	}
+
+	/**
+	 * @see FcpClient#modifyPeerNote(Peer, String)
+	 */
+	public void modifyPeerNote(Peer peer, String noteText) throws IOException, FcpException {
+		executeOnPrimaryNode(fcpClient -> {
+			fcpClient.modifyPeerNote(peer, noteText);
+			return null;
+		});
+	}
+
+	/**
+	 * @see FcpClient#modifyPeerNoteAsync(Peer, String)
+	 */
+	public CompletableFuture<Void> modifyPeerNoteAsync(Peer peer, String noteText) {
+		return executeOnPrimaryNodeAsync(fcpClient -> fcpClient.modifyPeerNoteAsync(peer, noteText));
+	}
+
+	/**
+	 * @see FcpClient#generateKeyPair()
+	 */
+	public SSKKeypair generateKeyPair() throws IOException, FcpException {
+		return execute(null, FcpClient::generateKeyPair);
+	}
+
+	/**
+	 * @see FcpClient#generateKeyPairAsync()
+	 */
+	public CompletableFuture<SSKKeypair> generateKeyPairAsync() {
+		return executeAsync(null, FcpClient::generateKeyPairAsync);
+	}
+
+	/**
+	 * @see FcpClient#getGetRequests(boolean)
+	 */
+	public Collection<Request> getGetRequests(boolean includeGlobalRequests) throws IOException, FcpException {
+		return executeOnPrimaryNode(fcpClient -> fcpClient.getGetRequests(includeGlobalRequests));
+	}
+
+	/**
+	 * @see FcpClient#getPutRequests(boolean)
+	 */
+	public Collection<Request> getPutRequests(boolean includeGlobalRequests) throws IOException, FcpException {
+		return executeOnPrimaryNode(fcpClient -> fcpClient.getPutRequests(includeGlobalRequests));
+	}
+
+	/**
+	 * @see FcpClient#getRequests(boolean)
+	 */
+	public Collection<Request> getRequests(boolean includeGlobalRequests) throws IOException, FcpException {
+		return executeOnPrimaryNode(fcpClient -> fcpClient.getRequests(includeGlobalRequests));
+	}
+
+	/**
+	 * @see FcpClient#getRequestsAsync(boolean)
+	 */
+	public CompletableFuture<Collection<Request>> getRequestsAsync(boolean includeGlobalRequests) {
+		return executeOnPrimaryNodeAsync(fcpClient -> fcpClient.getRequestsAsync(includeGlobalRequests));
+	}
+
+	/**
+	 * @see FcpClient#sendPluginMessage(String, Map)
+	 */
+	public Map<String, String> sendPluginMessage(String pluginClass, Map<String, String> parameters) throws IOException, FcpException {
+		return executeOnPrimaryNode(fcpClient -> fcpClient.sendPluginMessage(pluginClass, parameters));
+	}
+
+	/**
+	 * @see FcpClient#sendPluginMessage(String, Map, long, InputStream)
+	 */
+	public Map<String, String> sendPluginMessage(String pluginClass, Map<String, String> parameters, long dataLength, InputStream dataInputStream) throws IOException, FcpException {
+		return executeOnPrimaryNode(fcpClient -> fcpClient.sendPluginMessage(pluginClass, parameters, dataLength, dataInputStream));
+	}
+
+	/**
+	 * @see FcpClient#sendPluginMessageAsync(String, Map)
+	 */
+	public CompletableFuture<Map<String, String>> sendPluginMessageAsync(String pluginClass, Map<String, String> parameters) {
+		return executeOnPrimaryNodeAsync(fcpClient -> fcpClient.sendPluginMessageAsync(pluginClass, parameters));
+	}
+
+	/**
+	 * @see FcpClient#sendPluginMessageAsync(String, Map, long, InputStream)
+	 */
+	public CompletableFuture<Map<String, String>> sendPluginMessageAsync(String pluginClass, Map<String, String> parameters, long dataLength, InputStream dataInputStream) {
+		return executeOnPrimaryNodeAsync(fcpClient -> fcpClient.sendPluginMessageAsync(pluginClass, parameters, dataLength, dataInputStream));
+	}
+
+	/**
+	 * @see FcpClient#getNodeInformation(Boolean, Boolean, Boolean)
+	 */
+	public NodeData getNodeInformation(Boolean giveOpennetRef, Boolean withPrivate, Boolean withVolatile) throws IOException, FcpException {
+		return executeOnPrimaryNode(fcpClient -> fcpClient.getNodeInformation(giveOpennetRef, withPrivate, withVolatile));
+	}
+
+	/**
+	 * @see FcpClient#getNodeInformationAsync(Boolean, Boolean, Boolean)
+	 */
+	public CompletableFuture<NodeData> getNodeInformationAsync(Boolean giveOpennetRef, Boolean withPrivate, Boolean withVolatile) {
+		return executeOnPrimaryNodeAsync(fcpClient -> fcpClient.getNodeInformationAsync(giveOpennetRef, withPrivate, withVolatile));
+	}
+
+	/**
+	 * @see FcpClient#getConfig()
+	 */
+	public Map<String, String> getConfig() throws IOException, FcpException {
+		return executeOnPrimaryNode(FcpClient::getConfig);
+	}
+
+	/**
+	 * @see FcpClient#getConfigAsync()
+	 */
+	public CompletableFuture<Map<String, String>> getConfigAsync() {
+		return executeOnPrimaryNodeAsync(FcpClient::getConfigAsync);
+	}
+
+	/**
+	 * @see FcpClient#modifyConfig(Map)
+	 */
+	public void modifyConfig(Map<String, String> options) throws IOException, FcpException {
+		executeOnPrimaryNode(fcpClient -> {
+			fcpClient.modifyConfig(options);
+			return null;
+		});
+	}
+
+	/**
+	 * @see FcpClient#modifyConfigAsync(Map)
+	 */
+	public CompletableFuture<Void> modifyConfigAsync(Map<String, String> options) {
+		return executeOnPrimaryNodeAsync(fcpClient -> fcpClient.modifyConfigAsync(options));
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Executes a blocking operation on the client selected for the given key.
+	 *
+	 * @param key
+	 *            The key of the operation, or {@code null}
+	 * @param operation
+	 *            The operation
+	 * @return The result of the operation
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws FcpException
+	 *             if an FCP error occurs
+	 */
+	private <T> T execute(String key, ClientOperation<T> operation) throws IOException, FcpException {
+		return executeOn(selectClient(key), operation);
+	}
+
+	/**
+	 * Executes a blocking operation on a client of the primary node.
+	 *
+	 * @param operation
+	 *            The operation
+	 * @return The result of the operation
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws FcpException
+	 *             if an FCP error occurs
+	 */
+	private <T> T executeOnPrimaryNode(ClientOperation<T> operation) throws IOException, FcpException {
+		return executeOn(selectLeastLoadedClient(pooledClient -> pooledClient.primary), operation);
+	}
+
+	/**
+	 * Executes a blocking operation on the given client.
+	 *
+	 * @param pooledClient
+	 *            The client
+	 * @param operation
+	 *            The operation
+	 * @return The result of the operation
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws FcpException
+	 *             if an FCP error occurs
+	 */
+	private <T> T executeOn(PooledClient pooledClient, ClientOperation<T> operation) throws IOException, FcpException {
+		pooledClient.outstandingRequests.incrementAndGet();
+		try {
+			return operation.execute(pooledClient.fcpClient);
+		} finally {
+			pooledClient.outstandingRequests.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Starts an asynchronous operation on the client selected for the given
+	 * key. The operation is not outstanding anymore once the returned future
+	 * is done; cancelling the returned future cancels the operation.
+	 *
+	 * @param key
+	 *            The key of the operation, or {@code null}
+	 * @param operation
+	 *            The operation
+	 * @return The future of the operation
+	 */
+	private <T> CompletableFuture<T> executeAsync(String key, Function<FcpClient, CompletableFuture<T>> operation) {
+		return executeOnAsync(selectClient(key), operation);
+	}
+
+	/**
+	 * Starts an asynchronous operation on a client of the primary node.
+	 *
+	 * @param operation
+	 *            The operation
+	 * @return The future of the operation
+	 */
+	private <T> CompletableFuture<T> executeOnPrimaryNodeAsync(Function<FcpClient, CompletableFuture<T>> operation) {
+		return executeOnAsync(selectLeastLoadedClient(pooledClient -> pooledClient.primary), operation);
+	}
+
+	/**
+	 * Starts an asynchronous operation on the given client. If the operation
+	 * can not even be started, the returned future fails and the operation
+	 * does not count as outstanding.
+	 *
+	 * @param pooledClient
+	 *            The client
+	 * @param operation
+	 *            The operation
+	 * @return The future of the operation
+	 */
+	private <T> CompletableFuture<T> executeOnAsync(PooledClient pooledClient, Function<FcpClient, CompletableFuture<T>> operation) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		pooledClient.outstandingRequests.incrementAndGet();
+		CompletableFuture<T> clientResult;
+		try {
+			clientResult = operation.apply(pooledClient.fcpClient);
+		} catch (RuntimeException re1) {
+			pooledClient.outstandingRequests.decrementAndGet();
+			result.completeExceptionally(re1);
+			return result;
+		}
+		clientResult.whenComplete((value, throwable) -> {
+			pooledClient.outstandingRequests.decrementAndGet();
+			if (throwable != null) {
+				result.completeExceptionally(throwable);
+			} else {
+				result.complete(value);
+			}
+		});
+		result.whenComplete((value, throwable) -> {
+			if (result.isCancelled()) {
+				clientResult.cancel(false);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns the key for consistent hashing of an insert to the given URI.
+	 * CHK URIs and URIs that consist of the key type only, like
+	 * {@code SSK@}, do not identify the inserted content and do not yield a
+	 * key.
+	 *
+	 * @param uri
+	 *            The URI of the insert
+	 * @return The key of the insert, or {@code null} if the URI does not
+	 *         identify the inserted content
+	 */
+	private static String getInsertKey(String uri) {
+		int keyTypeEnd = uri.indexOf('@');
+		if ((keyTypeEnd == -1) || (keyTypeEnd == uri.length() - 1) || uri.startsWith("CHK@")) {
+			return null;
+		}
+		return uri;
+	}
+
+	/**
+	 * Selects the client for an operation with the given key. If no client
+	 * is healthy, the selection is made among all clients; the operation
+	 * will then fail in the selected client.
+	 *
+	 * @param key
+	 *            The key of the operation, or {@code null}
+	 * @return The selected client
+	 */
+	private PooledClient selectClient(String key) {
+		if ((key != null) && (loadBalancing == LoadBalancing.consistentHashing)) {
+			int hash = hashFunction.hashString(key, UTF_8).asInt();
+			for (PooledClient pooledClient : hashRing.tailMap(hash, true).values()) {
+				if (pooledClient.isHealthy()) {
+					return pooledClient;
+				}
+			}
+			for (PooledClient pooledClient : hashRing.headMap(hash, false).values()) {
+				if (pooledClient.isHealthy()) {
+					return pooledClient;
+				}
+			}
+		}
+		return selectLeastLoadedClient(pooledClient -> true);
+	}
+
+	/**
+	 * Selects the healthy client with the fewest outstanding operations
+	 * among the given candidates. If no candidate is healthy, the first
+	 * candidate is selected; the operation will then fail in it.
+	 *
+	 * @param candidate
+	 *            The predicate for the clients to choose from
+	 * @return The selected client
+	 */
+	private PooledClient selectLeastLoadedClient(Predicate<PooledClient> candidate) {
+		PooledClient selectedClient = null;
+		PooledClient firstCandidate = null;
+		for (PooledClient pooledClient : pooledClients) {
+			if (!candidate.test(pooledClient)) {
+				continue;
+			}
+			if (firstCandidate == null) {
+				firstCandidate = pooledClient;
+			}
+			if (!pooledClient.isHealthy()) {
+				continue;
+			}
+			if ((selectedClient == null) || (pooledClient.outstandingRequests.get() < selectedClient.outstandingRequests.get())) {
+				selectedClient = pooledClient;
+			}
+		}
+		return (selectedClient != null) ? selectedClient : firstCandidate;
+	}
+
+	/**
+	 * Checks the health of all connected clients without outstanding
+	 * operations.
+	 *
+	 * @param executor
+	 *            The executor for the timeouts
+	 * @param timeout
+	 *            The time the node has to answer
+	 * @param timeUnit
+	 *            The unit of the timeout
+	 */
+	private void checkHealth(ScheduledExecutorService executor, long timeout, TimeUnit timeUnit) {
+		for (PooledClient pooledClient : pooledClients) {
+			if (!pooledClient.fcpClient.isConnected() || (pooledClient.outstandingRequests.get() > 0)) {
+				continue;
+			}
+			if (!pooledClient.healthCheckPending.compareAndSet(false, true)) {
+				continue;
+			}
+			CompletableFuture<NodeData> nodeData = pooledClient.fcpClient.getNodeInformationAsync(false, false, false);
+			ScheduledFuture<?> timeoutCheck = executor.schedule(() -> {
+				if (!nodeData.isDone()) {
+					logger.log(Level.WARNING, "client {0} did not answer health check", pooledClient.index);
+					pooledClient.healthy = false;
+					/* removes the client’s listener and allows the next check. */
+					nodeData.cancel(false);
+				}
+			}, timeout, timeUnit);
+			nodeData.whenComplete((result, throwable) -> {
+				timeoutCheck.cancel(false);
+				pooledClient.healthy = (throwable == null);
+				pooledClient.healthCheckPending.set(false);
+			});
+		}
+	}
+
+	private static List<FcpClient> createClients(int connectionsPerNode, InetSocketAddress... nodeAddresses) {
+		List<FcpClient> fcpClients = new ArrayList<>();
+		for (InetSocketAddress nodeAddress : nodeAddresses) {
+			for (int connection = 0; connection < connectionsPerNode; connection++) {
+				fcpClients.add(new FcpClient(nodeAddress.getAddress(), nodeAddress.getPort()));
+			}
+		}
+		return fcpClients;
+	}
+
+	/**
+	 * A blocking operation of a client.
+	 *
+	 * @param <T>
+	 *            The type of the result
+	 */
+	private interface ClientOperation<T> {
+
+		T execute(FcpClient fcpClient) throws IOException, FcpException;
+
+	}
+
+	/**
+	 * A client of the pool and its state.
+	 */
+	private static class PooledClient {
+
+		/** The client. */
+		private final FcpClient fcpClient;
+
+		/** The index of the client in the pool. */
+		private final int index;
+
+		/** Whether the client is connected to the primary node. */
+		private final boolean primary;
+
+		/** The number of outstanding operations. */
+		private final AtomicInteger outstandingRequests = new AtomicInteger();
+
+		/** Whether the last health check succeeded. */
+		private volatile boolean healthy = true;
+
+		/** Whether a health check is waiting for the node’s answer. */
+		private final AtomicBoolean healthCheckPending = new AtomicBoolean();
+
+		private PooledClient(FcpClient fcpClient, int index, boolean primary) {
+			this.fcpClient = fcpClient;
+			this.index = index;
+			this.primary = primary;
+		}
+
+		private boolean isHealthy() {
+			return healthy && fcpClient.isConnected();
+		}
+
+	}
+
+}
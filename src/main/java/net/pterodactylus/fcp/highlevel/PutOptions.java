@@ -0,0 +1,169 @@
+package net.pterodactylus.fcp.highlevel;
+
+import net.pterodactylus.fcp.Priority;
+
+import java.util.function.Consumer;
+
+/**
+ * The options of an insert started by one of the put methods of
+ * {@link FcpClient}. Options that are not set are left to the node’s
+ * defaults.
+ */
+public class PutOptions {
+
+	/** The content type of the data, or {@code null} to let the node decide. */
+	private String contentType;
+
+	/** The priority of the insert, or {@code null} for the default priority. */
+	private Priority priority;
+
+	/** Whether to generate the final URI early. */
+	private boolean earlyEncode;
+
+	/** Whether to only generate the CHK without inserting the data. */
+	private boolean getCHKOnly;
+
+	/** The name of the default file of a directory insert. */
+	private String defaultName;
+
+	/** The consumer of the URI generated by the node. */
+	private Consumer<String> uriGeneratedConsumer;
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the content type of the data.
+	 *
+	 * @return The content type of the data, or {@code null} to let the node
+	 *         decide
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * Sets the content type of the data. It is ignored for directory inserts.
+	 *
+	 * @param contentType
+	 *            The content type of the data, or {@code null} to let the node
+	 *            decide
+	 */
+	public void setContentType(String contentType) {
+		this.contentType = contentType;
+	}
+
+	/**
+	 * Returns the priority of the insert.
+	 *
+	 * @return The priority of the insert, or {@code null} for the default
+	 *         priority
+	 */
+	public Priority getPriority() {
+		return priority;
+	}
+
+	/**
+	 * Sets the priority of the insert.
+	 *
+	 * @param priority
+	 *            The priority of the insert, or {@code null} for the default
+	 *            priority
+	 */
+	public void setPriority(Priority priority) {
+		this.priority = priority;
+	}
+
+	/**
+	 * Returns whether the node should generate the final URI as early as
+	 * possible.
+	 *
+	 * @return {@code true} to generate the final URI early, {@code false}
+	 *         otherwise
+	 */
+	public boolean isEarlyEncode() {
+		return earlyEncode;
+	}
+
+	/**
+	 * Sets whether the node should generate the final URI as early as
+	 * possible, long before the data is completely fetchable. The URI is
+	 * handed to the {@link #setUriGeneratedConsumer(Consumer) URI generated
+	 * consumer}.
+	 *
+	 * @param earlyEncode
+	 *            {@code true} to generate the final URI early, {@code false}
+	 *            otherwise
+	 */
+	public void setEarlyEncode(boolean earlyEncode) {
+		this.earlyEncode = earlyEncode;
+	}
+
+	/**
+	 * Returns whether the node should only generate the CHK of the data
+	 * without inserting it.
+	 *
+	 * @return {@code true} to only generate the CHK, {@code false} to insert
+	 *         the data
+	 */
+	public boolean isGetCHKOnly() {
+		return getCHKOnly;
+	}
+
+	/**
+	 * Sets whether the node should only generate the CHK of the data without
+	 * inserting it.
+	 *
+	 * @param getCHKOnly
+	 *            {@code true} to only generate the CHK, {@code false} to
+	 *            insert the data
+	 */
+	public void setGetCHKOnly(boolean getCHKOnly) {
+		this.getCHKOnly = getCHKOnly;
+	}
+
+	/**
+	 * Returns the name of the file that is returned when the directory itself
+	 * is requested.
+	 *
+	 * @return The name of the default file, or {@code null} for none
+	 */
+	public String getDefaultName() {
+		return defaultName;
+	}
+
+	/**
+	 * Sets the name of the file that is returned when the directory itself is
+	 * requested. It is only used for directory inserts.
+	 *
+	 * @param defaultName
+	 *            The name of the default file, or {@code null} for none
+	 */
+	public void setDefaultName(String defaultName) {
+		this.defaultName = defaultName;
+	}
+
+	/**
+	 * Returns the consumer of the URI generated by the node.
+	 *
+	 * @return The consumer of the generated URI, or {@code null}
+	 */
+	public Consumer<String> getUriGeneratedConsumer() {
+		return uriGeneratedConsumer;
+	}
+
+	/**
+	 * Sets the consumer that receives the URI as soon as the node has
+	 * generated it, before the insert has finished. The consumer is called
+	 * from the thread that notifies the connection’s listeners and must not
+	 * block.
+	 *
+	 * @param uriGeneratedConsumer
+	 *            The consumer of the generated URI, or {@code null}
+	 */
+	public void setUriGeneratedConsumer(Consumer<String> uriGeneratedConsumer) {
+		this.uriGeneratedConsumer = uriGeneratedConsumer;
+	}
+
+}
@@ -0,0 +1,147 @@
+package net.pterodactylus.fcp.highlevel;
+
+/**
+ * A put result encapsulates the result of one of the put methods of
+ * {@link FcpClient}, like {@link GetResult} does for get requests.
+ */
+public class PutResult {
+
+	/** Whether the insert was successful. */
+	private boolean success;
+
+	/** The URI of the inserted data. */
+	private String uri;
+
+	/** The error code, if an error occured. */
+	private int errorCode;
+
+	/** The description of the error, if an error occured. */
+	private String errorDescription;
+
+	/** Whether the error is fatal. */
+	private boolean fatal;
+
+	/**
+	 * Returns whether the insert was successful.
+	 *
+	 * @return {@code true} if the insert was successful, {@code false}
+	 *         otherwise
+	 */
+	public boolean isSuccess() {
+		return success;
+	}
+
+	/**
+	 * Sets whether the insert was successful.
+	 *
+	 * @param success
+	 *            {@code true} if the insert was successful, {@code false}
+	 *            otherwise
+	 * @return This result, to allow method chaining
+	 */
+	PutResult success(boolean success) {
+		this.success = success;
+		return this;
+	}
+
+	/**
+	 * Returns the URI of the inserted data. If the insert failed, this is
+	 * the URI the data would have been inserted to, if the node knows it.
+	 *
+	 * @return The URI of the inserted data, or {@code null}
+	 */
+	public String getUri() {
+		return uri;
+	}
+
+	/**
+	 * Sets the URI of the inserted data.
+	 *
+	 * @param uri
+	 *            The URI of the inserted data
+	 * @return This result, to allow method chaining
+	 */
+	PutResult uri(String uri) {
+		this.uri = uri;
+		return this;
+	}
+
+	/**
+	 * Returns the error code of the insert. The error code is the error code
+	 * that is transferred in FCP’s “PutFailed” message. The error code is not
+	 * valid if {@link #isSuccess()} is {@code true}.
+	 *
+	 * @return The error code of the insert
+	 */
+	public int getErrorCode() {
+		return errorCode;
+	}
+
+	/**
+	 * Sets the error code of the insert.
+	 *
+	 * @param errorCode
+	 *            The error code of the insert
+	 * @return This result, to allow method chaining
+	 */
+	PutResult errorCode(int errorCode) {
+		this.errorCode = errorCode;
+		return this;
+	}
+
+	/**
+	 * Returns the description of the error.
+	 *
+	 * @return The description of the error, or {@code null}
+	 */
+	public String getErrorDescription() {
+		return errorDescription;
+	}
+
+	/**
+	 * Sets the description of the error.
+	 *
+	 * @param errorDescription
+	 *            The description of the error
+	 * @return This result, to allow method chaining
+	 */
+	PutResult errorDescription(String errorDescription) {
+		this.errorDescription = errorDescription;
+		return this;
+	}
+
+	/**
+	 * Returns whether the error is fatal, i.e. whether retrying the insert is
+	 * pointless.
+	 *
+	 * @return {@code true} if the error is fatal, {@code false} otherwise
+	 */
+	public boolean isFatal() {
+		return fatal;
+	}
+
+	/**
+	 * Sets whether the error is fatal.
+	 *
+	 * @param fatal
+	 *            {@code true} if the error is fatal, {@code false} otherwise
+	 * @return This result, to allow method chaining
+	 */
+	PutResult fatal(boolean fatal) {
+		this.fatal = fatal;
+		return this;
+	}
+
+	//
+	// OBJECT METHODS
+	//
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return getClass().getName() + "[success=" + success + ",uri=" + uri + ",errorCode=" + errorCode + ",errorDescription=" + errorDescription + ",fatal=" + fatal + "]";
+	}
+
+}
@@ -0,0 +1,151 @@
+package net.pterodactylus.fcp.io;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps heap {@link ByteBuffer}s of a fixed size for reuse, so that encoding
+ * messages and copying payloads do not allocate a new buffer every time.
+ * Buffers are handed out by {@link #acquire()} and must be handed back using
+ * {@link #release(ByteBuffer)} once they are not used anymore; at most
+ * {@link #getMaxPooledBuffers()} released buffers are kept.
+ * <p>
+ * A pool can be shared between any number of threads.
+ */
+public class ByteBufferPool {
+
+	/** The default size of the buffers. */
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+	/** The default maximum number of pooled buffers. */
+	public static final int DEFAULT_MAX_POOLED_BUFFERS = 16;
+
+	/** The default pool. */
+	private static final ByteBufferPool defaultPool = new ByteBufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED_BUFFERS);
+
+	/** The size of the buffers. */
+	private final int bufferSize;
+
+	/** The maximum number of pooled buffers. */
+	private final int maxPooledBuffers;
+
+	/** The buffers that can be reused. */
+	private final Queue<ByteBuffer> pooledBuffers = new ConcurrentLinkedQueue<>();
+
+	/** The number of buffers in {@link #pooledBuffers}. */
+	private final AtomicInteger pooledBufferCount = new AtomicInteger();
+
+	/** The number of buffers that had to be allocated. */
+	private final LongAdder allocationCount = new LongAdder();
+
+	/**
+	 * Creates a new buffer pool.
+	 *
+	 * @param bufferSize
+	 *            The size of the buffers
+	 * @param maxPooledBuffers
+	 *            The maximum number of buffers to keep for reuse
+	 */
+	public ByteBufferPool(int bufferSize, int maxPooledBuffers) {
+		if ((bufferSize < 1) || (maxPooledBuffers < 0)) {
+			throw new IllegalArgumentException("buffer size must be positive and number of buffers must not be negative");
+		}
+		this.bufferSize = bufferSize;
+		this.maxPooledBuffers = maxPooledBuffers;
+	}
+
+	/**
+	 * Returns the pool that is used unless configured otherwise.
+	 *
+	 * @return The default pool
+	 */
+	public static ByteBufferPool getDefault() {
+		return defaultPool;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the size of the buffers of this pool.
+	 *
+	 * @return The size of the buffers
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Returns the maximum number of buffers this pool keeps for reuse.
+	 *
+	 * @return The maximum number of pooled buffers
+	 */
+	public int getMaxPooledBuffers() {
+		return maxPooledBuffers;
+	}
+
+	/**
+	 * Returns the number of buffers that are currently kept for reuse.
+	 *
+	 * @return The number of pooled buffers
+	 */
+	public int getPooledBufferCount() {
+		return pooledBufferCount.get();
+	}
+
+	/**
+	 * Returns the number of buffers this pool had to allocate because no
+	 * pooled buffer was available.
+	 *
+	 * @return The number of allocated buffers
+	 */
+	public long getAllocationCount() {
+		return allocationCount.sum();
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Returns a cleared buffer of {@link #getBufferSize()} bytes, reusing a
+	 * pooled buffer if possible.
+	 *
+	 * @return A buffer
+	 */
+	public ByteBuffer acquire() {
+		ByteBuffer buffer = pooledBuffers.poll();
+		if (buffer == null) {
+			allocationCount.increment();
+			return ByteBuffer.allocate(bufferSize);
+		}
+		pooledBufferCount.decrementAndGet();
+		return buffer;
+	}
+
+	/**
+	 * Hands a buffer back to this pool. Buffers that were not acquired from a
+	 * pool of the same buffer size are ignored, as are buffers exceeding the
+	 * maximum number of pooled buffers. The buffer must not be used after it
+	 * has been released.
+	 *
+	 * @param buffer
+	 *            The buffer to release
+	 */
+	public void release(ByteBuffer buffer) {
+		if ((buffer.capacity() != bufferSize) || !buffer.hasArray() || buffer.isReadOnly()) {
+			return;
+		}
+		if (pooledBufferCount.incrementAndGet() > maxPooledBuffers) {
+			pooledBufferCount.decrementAndGet();
+			return;
+		}
+		buffer.clear();
+		pooledBuffers.add(buffer);
+	}
+
+}
@@ -0,0 +1,163 @@
+package net.pterodactylus.fcp.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Input stream for a payload that is stored in a local file. Connections
+ * that write to a {@link java.nio.channels.SocketChannel} recognize this
+ * stream and send the file using {@link FileChannel#transferTo(long, long,
+ * WritableByteChannel)}, which lets the operating system copy the file to the
+ * socket without passing it through the Java heap. Everybody else can use it
+ * as a normal input stream.
+ * <p>
+ * The file is opened when the payload is first read and closed once it has
+ * been read completely, or when this stream is closed.
+ */
+public class FilePayloadInputStream extends InputStream {
+
+	/** The file to read. */
+	private final Path path;
+
+	/** The length of the payload. */
+	private final long length;
+
+	/** The channel of the file, opened on first access. */
+	private FileChannel fileChannel;
+
+	/** The number of bytes that have been read or transferred. */
+	private long position;
+
+	/** Whether this stream has been closed. */
+	private boolean closed;
+
+	/**
+	 * Creates a new input stream for the complete content of the given file.
+	 *
+	 * @param path The file to read
+	 * @throws IOException if the size of the file can not be determined
+	 */
+	public FilePayloadInputStream(Path path) throws IOException {
+		this.path = path;
+		this.length = Files.size(path);
+	}
+
+	/**
+	 * Returns the length of the payload, i.e. the size of the file at the
+	 * time this stream was created.
+	 *
+	 * @return The length of the payload
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * Returns the number of bytes that have not been read or transferred yet.
+	 *
+	 * @return The number of remaining bytes
+	 */
+	public synchronized long getRemaining() {
+		return length - position;
+	}
+
+	/**
+	 * Transfers remaining bytes of the payload to the given channel. A
+	 * blocking channel usually accepts all bytes at once, a non-blocking
+	 * channel may accept only some of them; call {@link #getRemaining()} to
+	 * check whether the payload has been transferred completely.
+	 *
+	 * @param target The channel to transfer the payload to
+	 * @return The number of bytes that were transferred
+	 * @throws IOException if an I/O error occurs, or the file is shorter than
+	 * expected
+	 */
+	public synchronized long transferTo(WritableByteChannel target) throws IOException {
+		if (position == length) {
+			return 0;
+		}
+		FileChannel fileChannel = getFileChannel();
+		long transferred = fileChannel.transferTo(position, length - position, target);
+		if ((transferred == 0) && (position >= fileChannel.size())) {
+			throw new EOFException("file is shorter than " + length + " bytes: " + path);
+		}
+		advance(transferred);
+		return transferred;
+	}
+
+	@Override
+	public synchronized int read() throws IOException {
+		byte[] singleByte = new byte[1];
+		return (read(singleByte, 0, 1) == -1) ? -1 : (singleByte[0] & 0xff);
+	}
+
+	@Override
+	public synchronized int read(byte[] bytes, int offset, int count) throws IOException {
+		if (count == 0) {
+			return 0;
+		}
+		if (position == length) {
+			return -1;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, (int) Math.min(count, length - position));
+		int read = getFileChannel().read(buffer, position);
+		if (read == -1) {
+			throw new EOFException("file is shorter than " + length + " bytes: " + path);
+		}
+		advance(read);
+		return read;
+	}
+
+	@Override
+	public synchronized long skip(long count) {
+		long skipped = Math.max(0, Math.min(count, length - position));
+		position += skipped;
+		return skipped;
+	}
+
+	@Override
+	public synchronized int available() {
+		return (int) Math.min(Integer.MAX_VALUE, length - position);
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		closed = true;
+		position = length;
+		if (fileChannel != null) {
+			fileChannel.close();
+			fileChannel = null;
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private FileChannel getFileChannel() throws IOException {
+		if (closed) {
+			throw new IOException("stream is closed");
+		}
+		if (fileChannel == null) {
+			fileChannel = FileChannel.open(path, READ);
+		}
+		return fileChannel;
+	}
+
+	private void advance(long count) throws IOException {
+		position += count;
+		if (position == length) {
+			fileChannel.close();
+			fileChannel = null;
+		}
+	}
+
+}
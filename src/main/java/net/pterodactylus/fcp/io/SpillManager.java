@@ -0,0 +1,371 @@
+package net.pterodactylus.fcp.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decides whether payloads are kept in memory or spilled to disk. All
+ * {@link TempInputStream}s that share a spill manager keep at most
+ * {@link #getMemoryBudget()} bytes in memory in total; a single payload is
+ * only kept in memory if it is not longer than {@link #getMaxLengthMemory()}.
+ * Payloads that do not fit are written to files in the spill directory.
+ * <p>
+ * A spill manager can be shared between any number of connections. Unless a
+ * connection is configured otherwise, it uses the {@link #getDefault()
+ * default spill manager}.
+ * <p>
+ * Memory and spill files are released when the stream holding them is
+ * closed. Streams that are never closed are tracked using phantom
+ * references; once such a stream has been garbage collected, its memory is
+ * released, its spill file is deleted, and the leak is logged and counted.
+ * If a dedicated spill directory is configured, spill files left behind by
+ * earlier runs are deleted when the spill manager is created.
+ */
+public class SpillManager {
+
+	/** The logger. */
+	private static final Logger logger = Logger.getLogger(SpillManager.class.getName());
+
+	/** The prefix of all spill files. */
+	private static final String SPILL_FILE_PREFIX = "fcp-spill-";
+
+	/** The suffix of all spill files. */
+	private static final String SPILL_FILE_SUFFIX = ".bin";
+
+	/** The default memory budget. */
+	public static final long DEFAULT_MEMORY_BUDGET = 16 << 20;
+
+	/** The default spill manager. */
+	private static final SpillManager defaultSpillManager = new SpillManager();
+
+	/** The maximum number of bytes to keep in memory. */
+	private final long memoryBudget;
+
+	/** The maximum length of a single payload that is kept in memory. */
+	private final long maxLengthMemory;
+
+	/** The directory for spill files, or {@code null} for the default temp directory. */
+	private final Path spillDirectory;
+
+	/** The number of bytes currently held in memory. */
+	private final AtomicLong bytesInMemory = new AtomicLong();
+
+	/** The number of bytes currently held in spill files. */
+	private final AtomicLong bytesOnDisk = new AtomicLong();
+
+	/** The number of allocations that were released without being closed. */
+	private final AtomicLong leakCount = new AtomicLong();
+
+	/** The allocations that have not been released yet. */
+	private final Set<Allocation> allocations = ConcurrentHashMap.newKeySet();
+
+	/** The queue of allocations whose owners have become unreachable. */
+	private final ReferenceQueue<Object> unreachableOwners = new ReferenceQueue<>();
+
+	/**
+	 * Creates a new spill manager with a budget of
+	 * {@link #DEFAULT_MEMORY_BUDGET} bytes that keeps payloads of up to
+	 * {@link TempInputStream#MAX_LENGTH_MEMORY} bytes in memory and spills to
+	 * the default temp directory.
+	 */
+	public SpillManager() {
+		this(DEFAULT_MEMORY_BUDGET, TempInputStream.MAX_LENGTH_MEMORY, null);
+	}
+
+	/**
+	 * Creates a new spill manager. If a spill directory is given, it should
+	 * be used by this spill manager only; spill files in it that are older
+	 * than the running JVM are deleted.
+	 *
+	 * @param memoryBudget    The maximum number of bytes to keep in memory
+	 * @param maxLengthMemory The maximum length of a single payload that is
+	 *                        kept in memory
+	 * @param spillDirectory  The directory for spill files, or {@code null}
+	 *                        to use the default temp directory
+	 */
+	public SpillManager(long memoryBudget, long maxLengthMemory, Path spillDirectory) {
+		this.memoryBudget = memoryBudget;
+		this.maxLengthMemory = maxLengthMemory;
+		this.spillDirectory = spillDirectory;
+		if (spillDirectory != null) {
+			sweepStaleSpillFiles();
+		}
+	}
+
+	/**
+	 * Returns the spill manager that is used unless another one is
+	 * configured.
+	 *
+	 * @return The default spill manager
+	 */
+	public static SpillManager getDefault() {
+		return defaultSpillManager;
+	}
+
+	//
+	// ACCESSORS
+	//
+
+	/**
+	 * Returns the maximum number of bytes to keep in memory.
+	 *
+	 * @return The memory budget
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * Returns the maximum length of a single payload that is kept in memory.
+	 *
+	 * @return The maximum length of an in-memory payload
+	 */
+	public long getMaxLengthMemory() {
+		return maxLengthMemory;
+	}
+
+	/**
+	 * Returns the directory for spill files.
+	 *
+	 * @return The spill directory, or {@code null} if the default temp
+	 * directory is used
+	 */
+	public Path getSpillDirectory() {
+		return spillDirectory;
+	}
+
+	/**
+	 * Returns the number of payload bytes that are currently held in memory.
+	 *
+	 * @return The number of bytes in memory
+	 */
+	public long getBytesInMemory() {
+		releaseUnreachableAllocations();
+		return bytesInMemory.get();
+	}
+
+	/**
+	 * Returns the number of payload bytes that are currently held in spill
+	 * files.
+	 *
+	 * @return The number of bytes on disk
+	 */
+	public long getBytesOnDisk() {
+		releaseUnreachableAllocations();
+		return bytesOnDisk.get();
+	}
+
+	/**
+	 * Returns the number of streams that were garbage collected without
+	 * being closed.
+	 *
+	 * @return The number of leaked streams
+	 */
+	public long getLeakCount() {
+		releaseUnreachableAllocations();
+		return leakCount.get();
+	}
+
+	//
+	// ACTIONS
+	//
+
+	/**
+	 * Reserves memory for a payload of the given length. If keeping the
+	 * payload in memory would exceed the memory budget, nothing is reserved.
+	 * Callers are expected to check the length of the payload against
+	 * {@link #getMaxLengthMemory()} before.
+	 *
+	 * @param length The length of the payload
+	 * @return {@code true} if the memory was reserved and the payload should
+	 * be kept in memory, {@code false} if it should be spilled to disk
+	 */
+	public boolean reserveMemory(long length) {
+		if (length < 0) {
+			return false;
+		}
+		releaseUnreachableAllocations();
+		while (true) {
+			long currentBytesInMemory = bytesInMemory.get();
+			if ((currentBytesInMemory + length) > memoryBudget) {
+				return false;
+			}
+			if (bytesInMemory.compareAndSet(currentBytesInMemory, currentBytesInMemory + length)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Releases memory that was reserved using {@link #reserveMemory(long)}.
+	 *
+	 * @param length The number of bytes to release
+	 */
+	public void releaseMemory(long length) {
+		bytesInMemory.addAndGet(-length);
+	}
+
+	/**
+	 * Creates a new, empty spill file in the spill directory. The caller is
+	 * responsible for deleting the file unless it is handed to a
+	 * {@link TempInputStream}.
+	 *
+	 * @return The new spill file
+	 * @throws IOException if the file can not be created
+	 */
+	public File createSpillFile() throws IOException {
+		releaseUnreachableAllocations();
+		if (spillDirectory == null) {
+			return File.createTempFile(SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX);
+		}
+		Files.createDirectories(spillDirectory);
+		return Files.createTempFile(spillDirectory, SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX).toFile();
+	}
+
+	/**
+	 * Deletes all spill files from the spill directory that were created
+	 * before the running JVM was started. Nothing happens if no spill
+	 * directory is configured.
+	 *
+	 * @return The number of deleted files
+	 */
+	public int sweepStaleSpillFiles() {
+		if ((spillDirectory == null) || !Files.isDirectory(spillDirectory)) {
+			return 0;
+		}
+		long startTime = ManagementFactory.getRuntimeMXBean().getStartTime();
+		int deletedFiles = 0;
+		try (DirectoryStream<Path> spillFiles = Files.newDirectoryStream(spillDirectory, SPILL_FILE_PREFIX + "*" + SPILL_FILE_SUFFIX)) {
+			for (Path spillFile : spillFiles) {
+				if (Files.getLastModifiedTime(spillFile).toMillis() < startTime) {
+					Files.deleteIfExists(spillFile);
+					deletedFiles++;
+				}
+			}
+		} catch (IOException ioe1) {
+			logger.log(Level.WARNING, "could not sweep spill directory " + spillDirectory, ioe1);
+		}
+		if (deletedFiles > 0) {
+			logger.info("deleted " + deletedFiles + " stale spill files from " + spillDirectory);
+		}
+		return deletedFiles;
+	}
+
+	//
+	// PACKAGE-PRIVATE METHODS
+	//
+
+	/**
+	 * Tracks memory that was reserved for the given owner using
+	 * {@link #reserveMemory(long)}. The memory is released when the returned
+	 * allocation is released, or when the owner becomes unreachable.
+	 *
+	 * @param owner  The owner of the memory
+	 * @param length The number of reserved bytes
+	 * @return The allocation
+	 */
+	Allocation trackMemory(Object owner, long length) {
+		return track(new Allocation(owner, null, length));
+	}
+
+	/**
+	 * Tracks a spill file for the given owner. The file is deleted when the
+	 * returned allocation is released, or when the owner becomes
+	 * unreachable.
+	 *
+	 * @param owner     The owner of the spill file
+	 * @param spillFile The spill file
+	 * @return The allocation
+	 */
+	Allocation trackSpillFile(Object owner, File spillFile) {
+		long length = spillFile.length();
+		bytesOnDisk.addAndGet(length);
+		return track(new Allocation(owner, spillFile, length));
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private Allocation track(Allocation allocation) {
+		allocations.add(allocation);
+		return allocation;
+	}
+
+	private void releaseUnreachableAllocations() {
+		Reference<?> reference;
+		while ((reference = unreachableOwners.poll()) != null) {
+			Allocation allocation = (Allocation) reference;
+			if (allocation.free()) {
+				leakCount.incrementAndGet();
+				if (allocation.spillFile != null) {
+					logger.warning("deleted spill file of unclosed stream: " + allocation.spillFile);
+				} else {
+					logger.fine("released " + allocation.length + " bytes of memory of unclosed stream");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Memory or a spill file that belongs to an owner, usually a
+	 * {@link TempInputStream}.
+	 */
+	class Allocation extends PhantomReference<Object> {
+
+		/** The spill file, or {@code null} if memory was allocated. */
+		private final File spillFile;
+
+		/** The number of allocated bytes. */
+		private final long length;
+
+		/** Whether this allocation has been freed. */
+		private final AtomicBoolean freed = new AtomicBoolean();
+
+		private Allocation(Object owner, File spillFile, long length) {
+			super(owner, unreachableOwners);
+			this.spillFile = spillFile;
+			this.length = length;
+		}
+
+		/**
+		 * Releases the memory or deletes the spill file. Calling this method
+		 * more than once has no effect.
+		 */
+		void release() {
+			free();
+			clear();
+		}
+
+		private boolean free() {
+			if (!freed.compareAndSet(false, true)) {
+				return false;
+			}
+			allocations.remove(this);
+			if (spillFile == null) {
+				bytesInMemory.addAndGet(-length);
+			} else {
+				if (!spillFile.delete() && spillFile.exists()) {
+					logger.warning("could not delete spill file " + spillFile);
+				}
+				bytesOnDisk.addAndGet(-length);
+			}
+			return true;
+		}
+
+	}
+
+}
@@ -12,7 +12,8 @@ import net.pterodactylus.fcp.FcpUtils;
 
 /**
  * This input stream stores the content of another input stream either in a
- * file or in memory, depending on the length of the input stream.
+ * file or in memory, depending on the length of the input stream and the
+ * memory budget of its {@link SpillManager}.
  *
  * @author David ‘Bombe’ Roden &lt;bombe@freenetproject.org&gt;
  */
@@ -38,6 +39,11 @@ public class TempInputStream extends InputStream {
 	 */
 	private final InputStream memoryInputStream;
 
+	/**
+	 * The memory or spill file held by this stream.
+	 */
+	private final SpillManager.Allocation allocation;
+
 	/**
 	 * Creates a new temporary input stream that stores the given input
 	 * stream in a temporary file.
@@ -51,8 +57,9 @@ public class TempInputStream extends InputStream {
 
 	/**
 	 * Creates a new temporary input stream that stores the given input
-	 * stream in memory if it is shorter than {@link #MAX_LENGTH_MEMORY},
-	 * otherwise it is stored in a file.
+	 * stream in memory if it is shorter than {@link #MAX_LENGTH_MEMORY} and
+	 * the memory budget of the {@link SpillManager#getDefault() default spill
+	 * manager} allows it, otherwise it is stored in a file.
 	 *
 	 * @param originalInputStream The original input stream
 	 * @param length              The length of the input stream
@@ -64,8 +71,9 @@ public class TempInputStream extends InputStream {
 
 	/**
 	 * Creates a new temporary input stream that stores the given input
-	 * stream in memory if it is shorter than <code>maxMemoryLength</code>,
-	 * otherwise it is stored in a file.
+	 * stream in memory if it is shorter than <code>maxMemoryLength</code> and
+	 * the memory budget of the {@link SpillManager#getDefault() default spill
+	 * manager} allows it, otherwise it is stored in a file.
 	 *
 	 * @param originalInputStream The original input stream
 	 * @param length              The length of the input stream
@@ -73,31 +81,105 @@ public class TempInputStream extends InputStream {
 	 * @throws IOException if an I/O error occurs
 	 */
 	public TempInputStream(InputStream originalInputStream, long length, long maxMemoryLength) throws IOException {
-		if ((length > -1) && (length <= maxMemoryLength)) {
+		this(originalInputStream, length, maxMemoryLength, SpillManager.getDefault());
+	}
+
+	/**
+	 * Creates a new temporary input stream that stores the given input
+	 * stream in memory if it is not longer than
+	 * {@link SpillManager#getMaxLengthMemory()} and the memory budget of the
+	 * given spill manager allows it, otherwise it is stored in a file in the
+	 * spill manager’s spill directory.
+	 *
+	 * @param originalInputStream The original input stream
+	 * @param length              The length of the input stream
+	 * @param spillManager        The spill manager to account the payload with
+	 * @throws IOException if an I/O error occurs
+	 */
+	public TempInputStream(InputStream originalInputStream, long length, SpillManager spillManager) throws IOException {
+		this(originalInputStream, length, spillManager.getMaxLengthMemory(), spillManager);
+	}
+
+	private TempInputStream(InputStream originalInputStream, long length, long maxMemoryLength, SpillManager spillManager) throws IOException {
+		if ((length > -1) && (length <= maxMemoryLength) && spillManager.reserveMemory(length)) {
 			ByteArrayOutputStream memoryOutputStream = new ByteArrayOutputStream((int) length);
 			try {
 				FcpUtils.copy(originalInputStream, memoryOutputStream, length, (int) length);
+			} catch (IOException ioe1) {
+				spillManager.releaseMemory(length);
+				throw ioe1;
 			} finally {
 				memoryOutputStream.close();
 			}
 			tempFile = null;
 			fileInputStream = null;
 			memoryInputStream = new ByteArrayInputStream(memoryOutputStream.toByteArray());
+			allocation = spillManager.trackMemory(this, length);
 		} else {
-			tempFile = File.createTempFile("temp-", ".bin");
-			tempFile.deleteOnExit();
-			FileOutputStream fileOutputStream = null;
+			tempFile = spillManager.createSpillFile();
 			try {
-				fileOutputStream = new FileOutputStream(tempFile);
-				FcpUtils.copy(originalInputStream, fileOutputStream, length);
+				FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+				try {
+					FcpUtils.copy(originalInputStream, fileOutputStream, length);
+				} finally {
+					FcpUtils.close(fileOutputStream);
+				}
 				fileInputStream = new FileInputStream(tempFile);
-			} finally {
-				FcpUtils.close(fileOutputStream);
+			} catch (IOException ioe1) {
+				tempFile.delete();
+				throw ioe1;
 			}
 			memoryInputStream = null;
+			allocation = spillManager.trackSpillFile(this, tempFile);
 		}
 	}
 
+	/**
+	 * Creates a new temporary input stream that reads from the given data.
+	 * The memory for the data must have been reserved using
+	 * {@link SpillManager#reserveMemory(long)}; the new stream takes over the
+	 * reservation and releases it when it is closed, or when it becomes
+	 * unreachable.
+	 *
+	 * @param reservedData The data to read, whose length has been reserved
+	 * @param spillManager The spill manager the memory was reserved with
+	 */
+	public TempInputStream(byte[] reservedData, SpillManager spillManager) {
+		tempFile = null;
+		fileInputStream = null;
+		memoryInputStream = new ByteArrayInputStream(reservedData);
+		allocation = spillManager.trackMemory(this, reservedData.length);
+	}
+
+	/**
+	 * Creates a new temporary input stream that reads from the given
+	 * temporary file. The file is deleted when this stream is closed, or when
+	 * it becomes unreachable.
+	 *
+	 * @param tempFile The temporary file to read from
+	 * @throws IOException if an I/O error occurs
+	 */
+	public TempInputStream(File tempFile) throws IOException {
+		this(tempFile, SpillManager.getDefault());
+	}
+
+	/**
+	 * Creates a new temporary input stream that reads from the given
+	 * temporary file, which is accounted with the given spill manager. The
+	 * file is deleted when this stream is closed, or when it becomes
+	 * unreachable.
+	 *
+	 * @param tempFile     The temporary file to read from
+	 * @param spillManager The spill manager to account the file with
+	 * @throws IOException if an I/O error occurs
+	 */
+	public TempInputStream(File tempFile, SpillManager spillManager) throws IOException {
+		this.tempFile = tempFile;
+		fileInputStream = new FileInputStream(tempFile);
+		memoryInputStream = null;
+		allocation = spillManager.trackSpillFile(this, tempFile);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -114,12 +196,15 @@ public class TempInputStream extends InputStream {
 	 */
 	@Override
 	public void close() throws IOException {
-		if (memoryInputStream != null) {
-			memoryInputStream.close();
-			return;
+		try {
+			if (memoryInputStream != null) {
+				memoryInputStream.close();
+			} else {
+				fileInputStream.close();
+			}
+		} finally {
+			allocation.release();
 		}
-		tempFile.delete();
-		fileInputStream.close();
 	}
 
 	/**
@@ -34,6 +34,14 @@ public class AllDataTest {
 		assertThat(allData.getDataLength(), equalTo(-1L));
 	}
 
+	@Test
+	public void allDataParsesDataLengthAgainAfterFieldWasChanged() {
+		receivedMessage.setField("DataLength", "1234567");
+		assertThat(allData.getDataLength(), equalTo(1234567L));
+		receivedMessage.setField("DataLength", "2345678");
+		assertThat(allData.getDataLength(), equalTo(2345678L));
+	}
+
 	@Test
 	public void allDataCanParseStartupTimeFromFcpMessage() {
 		receivedMessage.setField("StartupTime", "1234567");
@@ -0,0 +1,127 @@
+package net.pterodactylus.fcp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.aMapWithSize;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class BufferedFcpMessageReaderTest {
+
+	@Test
+	public void messageWithFieldsIsRead() throws IOException {
+		FcpMessage fcpMessage = createReader("NodeHello\nNode=Fred\nVersion=1,2\nEndMessage\n").readMessage();
+		assertThat(fcpMessage.getName(), equalTo("NodeHello"));
+		assertThat(fcpMessage.getFields(), allOf(aMapWithSize(2), hasEntry("Node", "Fred"), hasEntry("Version", "1,2")));
+	}
+
+	@Test
+	public void linesCanBeTerminatedByCarriageReturnAndLinefeed() throws IOException {
+		FcpMessage fcpMessage = createReader("NodeHello\r\nNode=Fred\rVersion=1\r\nEndMessage\r\n").readMessage();
+		assertThat(fcpMessage.getFields(), allOf(aMapWithSize(2), hasEntry("Node", "Fred"), hasEntry("Version", "1")));
+	}
+
+	@Test
+	public void emptyLinesAndSurroundingWhitespaceAreIgnored() throws IOException {
+		FcpMessage fcpMessage = createReader("\n\n  NodeHello \n\n Node=Fred \t\nendmessage\n").readMessage();
+		assertThat(fcpMessage.getName(), equalTo("NodeHello"));
+		assertThat(fcpMessage.getFields(), allOf(aMapWithSize(1), hasEntry("Node", "Fred")));
+	}
+
+	@Test
+	public void linesWithoutEqualsSignAreIgnored() throws IOException {
+		FcpMessage fcpMessage = createReader("NodeHello\nNode=Fred\nGarbage\nEndMessage\n").readMessage();
+		assertThat(fcpMessage.getFields(), allOf(aMapWithSize(1), hasEntry("Node", "Fred")));
+	}
+
+	@Test
+	public void valuesCanContainEqualsSignsAndUtf8() throws IOException {
+		FcpMessage fcpMessage = createReader("Test\nKey=a=b\nName=Grün\nEndMessage\n").readMessage();
+		assertThat(fcpMessage.getFields(), allOf(hasEntry("Key", "a=b"), hasEntry("Name", "Grün")));
+	}
+
+	@Test
+	public void linesLongerThanTheBufferAreRead() throws IOException {
+		StringBuilder longValue = new StringBuilder();
+		for (int index = 0; index < 100; index++) {
+			longValue.append("0123456789");
+		}
+		FcpMessage fcpMessage = new BufferedFcpMessageReader(createInputStream("Test\nKey=" + longValue + "\nEndMessage\n"), 16).readMessage();
+		assertThat(fcpMessage.getField("Key"), equalTo(longValue.toString()));
+	}
+
+	@Test
+	public void consecutiveMessagesAreRead() throws IOException {
+		FcpMessageReader reader = new BufferedFcpMessageReader(createInputStream("First\nA=1\nEndMessage\nSecond\nB=2\nEndMessage\n"), 8);
+		assertThat(reader.readMessage().getField("A"), equalTo("1"));
+		assertThat(reader.readMessage().getField("B"), equalTo("2"));
+		assertThat(reader.readMessage(), nullValue());
+	}
+
+	@Test
+	public void payloadFollowingDataIsAvailableFromPayloadInputStream() throws IOException {
+		FcpMessageReader reader = createReader("AllData\nDataLength=5\nData\nHelloNext\nEndMessage\n");
+		assertThat(reader.readMessage().getName(), equalTo("AllData"));
+		assertThat(readBytes(reader.getPayloadInputStream(), 5), equalTo("Hello"));
+		assertThat(reader.readMessage().getName(), equalTo("Next"));
+	}
+
+	@Test
+	public void linefeedOfCarriageReturnLinefeedIsNotPartOfPayload() throws IOException {
+		FcpMessageReader reader = createReader("AllData\r\nDataLength=5\r\nData\r\nHello");
+		reader.readMessage();
+		assertThat(readBytes(reader.getPayloadInputStream(), 5), equalTo("Hello"));
+	}
+
+	@Test
+	public void unterminatedMessageAtEndOfStreamIsNotReturned() throws IOException {
+		assertThat(createReader("NodeHello\nNode=Fred").readMessage(), nullValue());
+	}
+
+	@Test
+	public void usuallySharedFieldsOfPeersAreSharedWhileParsing() throws IOException {
+		FcpMessageReader reader = createReader("Peer\ndsaGroup.p=shared-prime\nmyName=Peer\nEndMessage\nPeer\ndsaGroup.p=shared-prime\nmyName=Peer\nEndMessage\n");
+		FcpMessage firstPeer = reader.readMessage();
+		FcpMessage secondPeer = reader.readMessage();
+		assertThat(secondPeer.getField("dsaGroup.p"), sameInstance(firstPeer.getField("dsaGroup.p")));
+		assertThat(secondPeer.getField("myName"), not(sameInstance(firstPeer.getField("myName"))));
+	}
+
+	@Test
+	public void fieldsOfOtherMessagesAreNotShared() throws IOException {
+		FcpMessageReader reader = createReader("NodeHello\nversion=1\nEndMessage\nNodeHello\nversion=1\nEndMessage\n");
+		assertThat(reader.readMessage().getField("version"), not(sameInstance(reader.readMessage().getField("version"))));
+	}
+
+	private static FcpMessageReader createReader(String content) {
+		return new BufferedFcpMessageReader(createInputStream(content));
+	}
+
+	private static InputStream createInputStream(String content) {
+		return new ByteArrayInputStream(content.getBytes(UTF_8));
+	}
+
+	private static String readBytes(InputStream inputStream, int length) throws IOException {
+		byte[] bytes = new byte[length];
+		int offset = 0;
+		while (offset < length) {
+			int read = inputStream.read(bytes, offset, length - offset);
+			if (read == -1) {
+				break;
+			}
+			offset += read;
+		}
+		return new String(bytes, 0, offset, UTF_8);
+	}
+
+}
@@ -1,10 +1,15 @@
 package net.pterodactylus.fcp;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.function.Consumer;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static net.pterodactylus.fcp.Persistence.unknown;
@@ -132,6 +137,19 @@ public class ClientPutComplexDirTest {
 		), contains("Tes", "tData")));
 	}
 
+	@Test
+	public void directFileFromPathIsAddedCorrectly() throws IOException {
+		Path file = temporaryFolder.newFile().toPath();
+		Files.write(file, "Test\n".getBytes(UTF_8));
+		clientPutComplexDir.addFileEntry(FileEntry.createDirectFileEntry("file.dat", "text/plain", file));
+		assertThat(clientPutComplexDir, isDataMessage("ClientPutComplexDir", allOf(
+				hasItem("Files.0.Name=file.dat"),
+				hasItem("Files.0.UploadFrom=direct"),
+				hasItem("Files.0.DataLength=5"),
+				hasItem("Files.0.Metadata.ContentType=text/plain")
+		), contains("Test")));
+	}
+
 	@Test
 	public void diskFileEntryIsAddedCorrectly() {
 		clientPutComplexDir.addFileEntry(FileEntry.createDiskFileEntry("file1.dat", "/file/name", "text/plain1"));
@@ -165,4 +183,7 @@ public class ClientPutComplexDirTest {
 
 	private final ClientPutComplexDir clientPutComplexDir = new ClientPutComplexDir("identifier", "uri");
 
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 }
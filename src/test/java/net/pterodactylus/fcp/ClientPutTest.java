@@ -1,17 +1,25 @@
 package net.pterodactylus.fcp;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.function.Consumer;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static net.pterodactylus.fcp.Persistence.connection;
 import static net.pterodactylus.fcp.Priority.interactive;
 import static net.pterodactylus.fcp.UploadFrom.redirect;
 import static net.pterodactylus.fcp.Verbosity.COMPRESSION;
 import static net.pterodactylus.fcp.Verbosity.PROGRESS;
+import static net.pterodactylus.fcp.test.Matchers.isDataMessage;
 import static net.pterodactylus.fcp.test.Matchers.isMessage;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasItem;
 
 /**
@@ -122,10 +130,22 @@ public class ClientPutTest {
 		testThatFieldCanBeSet(cp -> cp.setTargetURI("target-uri"), "TargetURI=target-uri");
 	}
 
+	@Test
+	public void dataCanBeSetFromFile() throws IOException {
+		Path file = temporaryFolder.newFile().toPath();
+		Files.write(file, "Test\nData\n".getBytes(UTF_8));
+		ClientPut clientPut = new ClientPut("upload-uri", "identifier");
+		clientPut.setData(file);
+		assertThat(clientPut, isDataMessage("ClientPut", hasItem("DataLength=10"), contains("Test", "Data")));
+	}
+
 	private void testThatFieldCanBeSet(Consumer<ClientPut> setter, String expectedField) {
 		ClientPut clientPut = new ClientPut("upload-uri", "identifier");
 		setter.accept(clientPut);
 		assertThat(clientPut, isMessage("ClientPut", hasItem(expectedField)));
 	}
 
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 }
@@ -20,14 +20,22 @@ package net.pterodactylus.fcp;
 import net.pterodactylus.fcp.test.LocalServer;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.rules.Timeout;
 
 import java.io.*;
 import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -64,6 +72,46 @@ public class DefaultFcpConnectionTest {
 		}
 	}
 
+	@Test
+	public void multipleMessagesAreSentInOrder() throws Exception {
+		runWithConnection(fcpConnection -> {
+			fcpConnection.sendMessages(Arrays.asList(new FcpMessage("First"), new FcpMessage("Second").put("Test", "yes")));
+		});
+		Socket socket = localServer.getSocket();
+		try (InputStream socketInputStream = socket.getInputStream();
+		     Reader socketReader = new InputStreamReader(socketInputStream, UTF_8);
+		     BufferedReader bufferedReader = new BufferedReader(socketReader)) {
+			List<String> sentLines = new ArrayList<>();
+			String line = bufferedReader.readLine();
+			while (line != null) {
+				sentLines.add(line);
+				line = bufferedReader.readLine();
+			}
+			assertThat(sentLines, contains("First", "EndMessage", "Second", "Test=yes", "EndMessage"));
+		}
+	}
+
+	@Test
+	public void enqueuedMessageIsSent() throws Exception {
+		runWithConnection(fcpConnection -> {
+			fcpConnection.enqueueMessage(new FcpMessage("TestClient")).get();
+		});
+		try (InputStream socketInputStream = localServer.getSocket().getInputStream();
+		     Reader socketReader = new InputStreamReader(socketInputStream, UTF_8);
+		     BufferedReader bufferedReader = new BufferedReader(socketReader)) {
+			assertThat(bufferedReader.readLine(), equalTo("TestClient"));
+			assertThat(bufferedReader.readLine(), equalTo("EndMessage"));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void sendingMessageOnClosedConnectionThrowsException() throws Exception {
+		runWithConnection(fcpConnection -> {
+			fcpConnection.close();
+			fcpConnection.sendMessage(new FcpMessage("Test"));
+		});
+	}
+
 	@Test
 	public void allDataIsDispatchedCorrectly() throws Exception {
 		runWithConnection(fcpConnection -> {
@@ -97,6 +145,223 @@ public class DefaultFcpConnectionTest {
 		});
 	}
 
+	@Test
+	public void allDataPayloadIsTransferredIntoPayloadSink() throws Exception {
+		Path file = temporaryFolder.newFile().toPath();
+		runWithConnection(fcpConnection -> {
+			BlockingQueue<Integer> receivedPayloadLength = new ArrayBlockingQueue<>(1);
+			fcpConnection.addFcpListener(new FcpAdapter() {
+				@Override
+				public void receivedAllData(FcpConnection fcpConnection, AllData allData) {
+					try {
+						receivedPayloadLength.add(allData.getPayloadInputStream().available());
+					} catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			});
+			assertThat(fcpConnection.addPayloadSink("TestRequest", PayloadSink.toFile(file)), equalTo(true));
+			writeMessageToSocket("AllData", "Hello World!".getBytes(UTF_8), "Identifier=TestRequest", "DataLength=12");
+			assertThat(receivedPayloadLength.take(), equalTo(0));
+		});
+		assertThat(new String(Files.readAllBytes(file), UTF_8), equalTo("Hello World!"));
+	}
+
+	@Test
+	public void messagesAreDispatchedThroughReceivePipeline() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "receive-pipeline"));
+		try (DefaultFcpConnection fcpConnection = new DefaultFcpConnection("localhost", localServer.getPort())) {
+			fcpConnection.setReceivePipeline(new ReceivePipeline(executor));
+			fcpConnection.connect();
+			BlockingQueue<String> receivedPayloads = new ArrayBlockingQueue<>(2);
+			fcpConnection.addFcpListener(new FcpAdapter() {
+				@Override
+				public void receivedAllData(FcpConnection fcpConnection, AllData allData) {
+					try (InputStream payload = allData.getPayloadInputStream()) {
+						byte[] buffer = new byte[12];
+						new DataInputStream(payload).readFully(buffer);
+						receivedPayloads.add(Thread.currentThread().getName() + ":" + new String(buffer, UTF_8));
+					} catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+				}
+
+				@Override
+				public void receivedNodeHello(FcpConnection fcpConnection, NodeHello nodeHello) {
+					receivedPayloads.add(Thread.currentThread().getName() + ":" + nodeHello.getVersion());
+				}
+			});
+			try (OutputStream socketOutputStream = localServer.getSocket().getOutputStream()) {
+				socketOutputStream.write("AllData\nIdentifier=TestRequest\nDataLength=12\nData\nHello World!NodeHello\nVersion=Test\nEndMessage\n".getBytes(UTF_8));
+			}
+			assertThat(receivedPayloads.take(), equalTo("receive-pipeline:Hello World!"));
+			assertThat(receivedPayloads.take(), equalTo("receive-pipeline:Test"));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void connectionWithoutDecoderSupportDoesNotRegisterDecoder() {
+		FcpConnection fcpConnection = new FcpConnection() {
+			@Override
+			public void addFcpListener(FcpListener fcpListener) {
+			}
+
+			@Override
+			public void removeFcpListener(FcpListener fcpListener) {
+			}
+
+			@Override
+			public boolean isClosed() {
+				return false;
+			}
+
+			@Override
+			public void connect() {
+			}
+
+			@Override
+			@Deprecated
+			public void disconnect() {
+			}
+
+			@Override
+			public void close() {
+			}
+
+			@Override
+			public void sendMessage(FcpMessage fcpMessage) {
+			}
+		};
+		assertThat(fcpConnection.registerMessageDecoder("NewMessage", (fcpMessage, payloadReader) -> fcpMessage, fcpMessage -> {
+		}), equalTo(false));
+	}
+
+	@Test
+	public void unknownMessageIsDecodedByRegisteredDecoder() throws Exception {
+		runWithConnection(fcpConnection -> {
+			BlockingQueue<String> receivedPayloads = new ArrayBlockingQueue<>(1);
+			fcpConnection.registerMessageDecoder("NewMessage", (fcpMessage, payloadReader) -> {
+				try (InputStream payload = payloadReader.readPayload(Long.parseLong(fcpMessage.getField("DataLength")))) {
+					byte[] buffer = new byte[12];
+					new DataInputStream(payload).readFully(buffer);
+					return fcpMessage.getField("Identifier") + ":" + new String(buffer, UTF_8);
+				}
+			}, receivedPayloads::add);
+			writeMessageToSocket("NewMessage", "Hello World!".getBytes(UTF_8), "Identifier=TestRequest", "DataLength=12");
+			assertThat(receivedPayloads.take(), equalTo("TestRequest:Hello World!"));
+		});
+	}
+
+	@Test
+	public void allDataWithoutInterestedListenerIsSkipped() throws Exception {
+		runWithConnection(fcpConnection -> {
+			BlockingQueue<String> receivedMessages = new ArrayBlockingQueue<>(2);
+			fcpConnection.addFcpListener(new FcpAdapter() {
+				@Override
+				public void receivedNodeHello(FcpConnection fcpConnection, NodeHello nodeHello) {
+					receivedMessages.add(nodeHello.getVersion());
+				}
+			});
+			try (OutputStream socketOutputStream = localServer.getSocket().getOutputStream()) {
+				socketOutputStream.write("AllData\nIdentifier=TestRequest\nDataLength=12\nData\nHello World!NodeHello\nVersion=Test\nEndMessage\n".getBytes(UTF_8));
+			}
+			assertThat(receivedMessages.take(), equalTo("Test"));
+		});
+	}
+
+	@Test
+	public void coalescedProgressIsDeliveredBeforeTerminalMessage() throws Exception {
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+		try (DefaultFcpConnection fcpConnection = new DefaultFcpConnection("localhost", localServer.getPort())) {
+			ProgressCoalescer progressCoalescer = new ProgressCoalescer(executor, 1, TimeUnit.HOURS);
+			fcpConnection.setProgressCoalescer(progressCoalescer);
+			fcpConnection.connect();
+			BlockingQueue<String> receivedMessages = new ArrayBlockingQueue<>(10);
+			fcpConnection.addFcpListener(new FcpAdapter() {
+				@Override
+				public void receivedSimpleProgress(FcpConnection fcpConnection, SimpleProgress simpleProgress) {
+					receivedMessages.add("SimpleProgress:" + simpleProgress.getSucceeded());
+				}
+
+				@Override
+				public void receivedDataFound(FcpConnection fcpConnection, DataFound dataFound) {
+					receivedMessages.add("DataFound");
+				}
+			});
+			try (OutputStream socketOutputStream = localServer.getSocket().getOutputStream()) {
+				for (int succeeded = 1; succeeded <= 3; succeeded++) {
+					socketOutputStream.write(("SimpleProgress\nIdentifier=TestRequest\nSucceeded=" + succeeded + "\nEndMessage\n").getBytes(UTF_8));
+				}
+				socketOutputStream.write("DataFound\nIdentifier=TestRequest\nEndMessage\n".getBytes(UTF_8));
+			}
+			assertThat(receivedMessages.take(), equalTo("SimpleProgress:3"));
+			assertThat(receivedMessages.take(), equalTo("DataFound"));
+			assertThat(progressCoalescer.getReceivedCount(), equalTo(3L));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void coalescedProgressIsDeliveredWithoutFurtherMessages() throws Exception {
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "scheduler"));
+		try (DefaultFcpConnection fcpConnection = new DefaultFcpConnection("localhost", localServer.getPort())) {
+			fcpConnection.setProgressCoalescer(new ProgressCoalescer(executor, 50, TimeUnit.MILLISECONDS));
+			fcpConnection.connect();
+			BlockingQueue<String> receivedMessages = new ArrayBlockingQueue<>(10);
+			fcpConnection.addFcpListener(new FcpAdapter() {
+				@Override
+				public void receivedSimpleProgress(FcpConnection fcpConnection, SimpleProgress simpleProgress) {
+					receivedMessages.add("SimpleProgress:" + simpleProgress.getSucceeded() + ":" + Thread.currentThread().getName());
+				}
+			});
+			OutputStream socketOutputStream = localServer.getSocket().getOutputStream();
+			for (int succeeded = 1; succeeded <= 3; succeeded++) {
+				socketOutputStream.write(("SimpleProgress\nIdentifier=TestRequest\nSucceeded=" + succeeded + "\nEndMessage\n").getBytes(UTF_8));
+			}
+			socketOutputStream.flush();
+			String receivedMessage = receivedMessages.take();
+			assertThat(receivedMessage.startsWith("SimpleProgress:3:"), equalTo(true));
+			assertThat(receivedMessage.endsWith(":scheduler"), equalTo(false));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void receivedMessagesAreTracedWhenFilterMatches() throws Exception {
+		runWithConnection(fcpConnection -> {
+			BlockingQueue<FcpTraceRecord> traceRecords = new ArrayBlockingQueue<>(2);
+			FilteringFcpTracer tracer = new FilteringFcpTracer(traceRecords::add);
+			tracer.setMessageNames(Arrays.asList("NodeHello"));
+			((DefaultFcpConnection) fcpConnection).setTracer(tracer);
+			try (OutputStream socketOutputStream = localServer.getSocket().getOutputStream()) {
+				socketOutputStream.write("ProtocolError\nCode=1\nEndMessage\nNodeHello\nVersion=Test\nEndMessage\n".getBytes(UTF_8));
+			}
+			FcpTraceRecord traceRecord = traceRecords.take();
+			assertThat(traceRecord.getMessageName(), equalTo("NodeHello"));
+			assertThat(traceRecord.getFramedMessage(), equalTo("NodeHello\r\nVersion=Test\r\nEndMessage\r\n".getBytes(UTF_8)));
+		});
+	}
+
+	@Test
+	public void registeredDecoderReplacesBuiltInHandling() throws Exception {
+		runWithConnection(fcpConnection -> {
+			BlockingQueue<FcpMessage> receivedMessages = new ArrayBlockingQueue<>(2);
+			fcpConnection.addFcpListener(new FcpAdapter() {
+				@Override
+				public void receivedNodeHello(FcpConnection fcpConnection, NodeHello nodeHello) {
+					receivedMessages.add(new FcpMessage("Unexpected"));
+				}
+			});
+			assertThat(fcpConnection.registerMessageDecoder("NodeHello", (fcpMessage, payloadReader) -> fcpMessage, receivedMessages::add), equalTo(true));
+			writeMessageToSocket("NodeHello", "Version=Test");
+			assertThat(receivedMessages.take().getField("Version"), equalTo("Test"));
+		});
+	}
+
 	@Test
 	public void closedConnectionIsDispatchedCorrectly() throws Exception {
 		runWithConnection(fcpConnection -> {
@@ -353,6 +618,9 @@ public class DefaultFcpConnectionTest {
 	@Rule
 	public final LocalServer localServer = new LocalServer();
 
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 	@Rule
 	public final Timeout timeout = Timeout.seconds(5);
 
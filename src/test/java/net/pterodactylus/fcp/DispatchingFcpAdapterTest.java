@@ -4,12 +4,16 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThrows;
 
 public class DispatchingFcpAdapterTest {
 
@@ -239,6 +243,72 @@ public class DispatchingFcpAdapterTest {
 		assertThat(receivedMessages, contains(message, message));
 	}
 
+	@Test
+	public void listenerCanBeAddedForMessageClass() {
+		DispatchingFcpAdapter adapter = new DispatchingFcpAdapter();
+		AtomicReference<NodeHello> receivedNodeHello = new AtomicReference<>();
+		adapter.addListener(NodeHello.class, receivedNodeHello::set);
+		NodeHello nodeHello = new NodeHello(null);
+		adapter.receivedNodeHello(null, nodeHello);
+		assertThat(receivedNodeHello.get(), sameInstance(nodeHello));
+	}
+
+	@Test
+	public void listenerCanBeAddedForMessageType() {
+		DispatchingFcpAdapter adapter = new DispatchingFcpAdapter();
+		AtomicReference<Object> receivedThrowable = new AtomicReference<>();
+		adapter.addListener(MessageType.ConnectionClosed, receivedThrowable::set);
+		Throwable throwable = new Exception("Test");
+		adapter.connectionClosed(null, throwable);
+		assertThat(receivedThrowable.get(), sameInstance(throwable));
+		assertThat(adapter.hasListeners(MessageType.ConnectionClosed), equalTo(true));
+		assertThat(adapter.hasListeners(MessageType.NodeHello), equalTo(false));
+	}
+
+	@Test
+	public void removedListenerIsNotNotifiedAnymore() {
+		DispatchingFcpAdapter adapter = new DispatchingFcpAdapter();
+		List<Object> receivedMessages = new ArrayList<>();
+		Consumer<Object> firstListener = message -> receivedMessages.add("first");
+		Consumer<Object> secondListener = message -> receivedMessages.add("second");
+		adapter.addListener("Message", firstListener);
+		adapter.addListener("Message", secondListener);
+		assertThat(adapter.removeListener("Message", firstListener), equalTo(true));
+		assertThat(adapter.removeListener("Message", firstListener), equalTo(false));
+		adapter.receivedMessage(null, new FcpMessage("Test"));
+		assertThat(receivedMessages, contains("second"));
+		assertThat(adapter.removeListener(MessageType.UnknownMessage, secondListener), equalTo(true));
+		assertThat(adapter.hasListeners(MessageType.UnknownMessage), equalTo(false));
+	}
+
+	@Test
+	public void addingListenerForUnknownMessageNameThrowsException() {
+		assertThrows(IllegalArgumentException.class, () -> new DispatchingFcpAdapter().addListener("NoSuchMessage", message -> {
+		}));
+	}
+
+	@Test
+	public void listenersCanBeChangedWhileDispatching() throws InterruptedException {
+		DispatchingFcpAdapter adapter = new DispatchingFcpAdapter();
+		AtomicInteger receivedMessages = new AtomicInteger();
+		adapter.addListener(MessageType.UnknownMessage, message -> receivedMessages.incrementAndGet());
+		Thread changingThread = new Thread(() -> {
+			for (int index = 0; index < 10000; index++) {
+				Consumer<Object> listener = message -> {
+				};
+				adapter.addListener(MessageType.UnknownMessage, listener);
+				adapter.removeListener(MessageType.UnknownMessage, listener);
+			}
+		});
+		changingThread.start();
+		FcpMessage message = new FcpMessage("Test");
+		for (int index = 0; index < 10000; index++) {
+			adapter.receivedMessage(null, message);
+		}
+		changingThread.join();
+		assertThat(receivedMessages.get(), equalTo(10000));
+	}
+
 	private <T> void dispatchMessageAndVerifyDispatch(String messageName, T message, BiConsumer<FcpListener, T> messageDispatcher) {
 		DispatchingFcpAdapter adapter = new DispatchingFcpAdapter();
 		AtomicReference<Object> receivedMessage = new AtomicReference<>();
@@ -3,6 +3,9 @@ package net.pterodactylus.fcp;
 import net.pterodactylus.fcp.test.NodeRefs;
 import org.junit.Test;
 
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
@@ -10,6 +13,7 @@ import java.util.function.Supplier;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.sameInstance;
 
 public class FcpListenerManagerTest {
@@ -36,6 +40,61 @@ public class FcpListenerManagerTest {
 		assertThat(nodeHelloReceived.get(), equalTo(false));
 	}
 
+	@Test
+	public void identifiedListenerReceivesMessagesForItsIdentifier() {
+		DispatchingFcpAdapter fcpListener = new DispatchingFcpAdapter();
+		AtomicReference<SimpleProgress> receivedSimpleProgress = new AtomicReference<>();
+		fcpListener.addListener("SimpleProgress", receivedSimpleProgress::set);
+		fcpListenerManager.addListener("request-1", fcpListener);
+		SimpleProgress simpleProgress = new SimpleProgress(new FcpMessage("SimpleProgress").put("Identifier", "request-1"));
+		fcpListenerManager.fireReceivedSimpleProgress(simpleProgress);
+		assertThat(receivedSimpleProgress.get(), sameInstance(simpleProgress));
+	}
+
+	@Test
+	public void identifiedListenerDoesNotReceiveMessagesForOtherIdentifiers() {
+		DispatchingFcpAdapter fcpListener = new DispatchingFcpAdapter();
+		AtomicReference<SimpleProgress> receivedSimpleProgress = new AtomicReference<>();
+		fcpListener.addListener("SimpleProgress", receivedSimpleProgress::set);
+		fcpListenerManager.addListener("request-1", fcpListener);
+		fcpListenerManager.fireReceivedSimpleProgress(new SimpleProgress(new FcpMessage("SimpleProgress").put("Identifier", "request-2")));
+		assertThat(receivedSimpleProgress.get(), nullValue());
+	}
+
+	@Test
+	public void identifiedListenerReceivesMessagesWithoutIdentifier() {
+		DispatchingFcpAdapter fcpListener = new DispatchingFcpAdapter();
+		AtomicReference<ProtocolError> receivedProtocolError = new AtomicReference<>();
+		fcpListener.addListener("ProtocolError", receivedProtocolError::set);
+		fcpListenerManager.addListener("request-1", fcpListener);
+		ProtocolError protocolError = new ProtocolError(null);
+		fcpListenerManager.fireReceivedProtocolError(protocolError);
+		assertThat(receivedProtocolError.get(), sameInstance(protocolError));
+	}
+
+	@Test
+	public void unidentifiedListenerReceivesMessagesForAllIdentifiers() {
+		DispatchingFcpAdapter fcpListener = new DispatchingFcpAdapter();
+		AtomicReference<SimpleProgress> receivedSimpleProgress = new AtomicReference<>();
+		fcpListener.addListener("SimpleProgress", receivedSimpleProgress::set);
+		fcpListenerManager.addListener(fcpListener);
+		fcpListenerManager.addListener("request-1", new DispatchingFcpAdapter());
+		SimpleProgress simpleProgress = new SimpleProgress(new FcpMessage("SimpleProgress").put("Identifier", "request-2"));
+		fcpListenerManager.fireReceivedSimpleProgress(simpleProgress);
+		assertThat(receivedSimpleProgress.get(), sameInstance(simpleProgress));
+	}
+
+	@Test
+	public void identifiedListenerCanBeRemoved() {
+		DispatchingFcpAdapter fcpListener = new DispatchingFcpAdapter();
+		AtomicReference<SimpleProgress> receivedSimpleProgress = new AtomicReference<>();
+		fcpListener.addListener("SimpleProgress", receivedSimpleProgress::set);
+		fcpListenerManager.addListener("request-1", fcpListener);
+		fcpListenerManager.removeListener("request-1", fcpListener);
+		fcpListenerManager.fireReceivedSimpleProgress(new SimpleProgress(new FcpMessage("SimpleProgress").put("Identifier", "request-1")));
+		assertThat(receivedSimpleProgress.get(), nullValue());
+	}
+
 	@Test
 	public void nodeHelloIsForwardedToListeners() {
 		runTestForListenerMethod("NodeHello", () -> new NodeHello(null), fcpListenerManager::fireReceivedNodeHello);
@@ -243,6 +302,66 @@ public class FcpListenerManagerTest {
 		runTestForListenerMethod("ConnectionClosed", Throwable::new, fcpListenerManager::fireConnectionClosed);
 	}
 
+	@Test
+	public void adapterIsOnlyInterestedInOverriddenMethods() {
+		fcpListenerManager.addListener(new FcpAdapter() {
+			@Override
+			public void receivedPeer(FcpConnection fcpConnection, Peer peer) {
+			}
+		});
+		assertThat(fcpListenerManager.hasListeners(MessageType.Peer), equalTo(true));
+		assertThat(fcpListenerManager.hasListeners(MessageType.NodeHello), equalTo(false));
+	}
+
+	@Test
+	public void listenerImplementingInterfaceIsInterestedInAllMessages() {
+		fcpListenerManager.addListener(new DispatchingFcpAdapter());
+		for (MessageType messageType : MessageType.values()) {
+			assertThat(fcpListenerManager.hasListeners(messageType), equalTo(true));
+		}
+	}
+
+	@Test
+	public void uninterestedAdapterIsNotNotified() {
+		AtomicReference<NodeHello> receivedNodeHello = new AtomicReference<>();
+		fcpListenerManager.addListener(new FcpAdapter() {
+			@Override
+			public void receivedPeer(FcpConnection fcpConnection, Peer peer) {
+			}
+		});
+		fcpListenerManager.addListener("id", new FcpAdapter() {
+			@Override
+			public void receivedNodeHello(FcpConnection fcpConnection, NodeHello nodeHello) {
+				receivedNodeHello.set(nodeHello);
+			}
+		});
+		NodeHello nodeHello = new NodeHello(new FcpMessage("NodeHello"));
+		fcpListenerManager.fireReceivedNodeHello(nodeHello);
+		assertThat(receivedNodeHello.get(), sameInstance(nodeHello));
+		assertThat(fcpListenerManager.hasListeners(MessageType.Peer), equalTo(true));
+	}
+
+	@Test
+	public void removingIdentifiedListenerRemovesInterest() {
+		FcpAdapter fcpListener = new FcpAdapter() {
+			@Override
+			public void receivedSimpleProgress(FcpConnection fcpConnection, SimpleProgress simpleProgress) {
+			}
+		};
+		fcpListenerManager.addListener("id", fcpListener);
+		assertThat(fcpListenerManager.hasListeners(MessageType.SimpleProgress), equalTo(true));
+		fcpListenerManager.removeListener("id", fcpListener);
+		assertThat(fcpListenerManager.hasListeners(MessageType.SimpleProgress), equalTo(false));
+	}
+
+	@Test
+	public void everyListenerMethodHasAMessageType() {
+		for (Method method : FcpListener.class.getMethods()) {
+			assertThat(method.getName(), Arrays.stream(MessageType.values()).anyMatch(messageType -> messageType.getListenerMethodName().equals(method.getName())
+					&& method.getParameterTypes()[1].equals(messageType.getEventClass())), equalTo(true));
+		}
+	}
+
 	private <T> void runTestForListenerMethod(String eventName, Supplier<T> creator, Consumer<T> listener) {
 		AtomicReference<T> firstReceivedCloseConnectionDuplicateClientName = createContainerAndAddListener(eventName);
 		AtomicReference<T> secondReceivedCloseConnectionDuplicateClientName = createContainerAndAddListener(eventName);
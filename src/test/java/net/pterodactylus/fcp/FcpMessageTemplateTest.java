@@ -0,0 +1,79 @@
+package net.pterodactylus.fcp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThrows;
+
+public class FcpMessageTemplateTest {
+
+	@Test
+	public void createdMessageContainsConstantAndVariableFields() {
+		FcpMessage fcpMessage = template.create("request-1", "KSK@test");
+		assertThat(fcpMessage.getName(), equalTo("ClientGet"));
+		assertThat(fcpMessage.getField("Identifier"), equalTo("request-1"));
+		assertThat(fcpMessage.getField("URI"), equalTo("KSK@test"));
+		assertThat(fcpMessage.getField("ReturnType"), equalTo("direct"));
+	}
+
+	@Test
+	public void createdMessageIsEncodedLikeEquivalentMessage() throws IOException {
+		FcpMessage fcpMessage = template.create("request-1", "KSK@tëst");
+		FcpMessage equivalentMessage = new FcpMessage("ClientGet");
+		for (String field : createPrototype()) {
+			if (!field.equals("Identifier") && !field.equals("URI")) {
+				equivalentMessage.setField(field, createPrototype().getField(field));
+			}
+		}
+		equivalentMessage.setField("Identifier", "request-1");
+		equivalentMessage.setField("URI", "KSK@tëst");
+		assertThat(encode(fcpMessage), equalTo(encode(equivalentMessage)));
+	}
+
+	@Test
+	public void changedMessageIsEncodedWithChanges() throws IOException {
+		FcpMessage fcpMessage = template.create("request-1", "KSK@test");
+		fcpMessage.setField("ReturnType", "none");
+		assertThat(new String(encode(fcpMessage), UTF_8).contains("ReturnType=none\r\n"), equalTo(true));
+	}
+
+	@Test
+	public void templateIsNotChangedByChangesToPrototype() {
+		FcpMessage prototype = createPrototype();
+		FcpMessageTemplate template = new FcpMessageTemplate(prototype, "Identifier");
+		prototype.setField("ReturnType", "none");
+		assertThat(template.create("request-1").getField("ReturnType"), equalTo("direct"));
+	}
+
+	@Test
+	public void variableFieldNamesAreReturned() {
+		assertThat(template.getVariableFieldNames(), contains("Identifier", "URI"));
+	}
+
+	@Test
+	public void creatingMessageWithWrongNumberOfValuesThrowsException() {
+		assertThrows(IllegalArgumentException.class, () -> template.create("request-1"));
+	}
+
+	private static FcpMessage createPrototype() {
+		ClientGet clientGet = new ClientGet("KSK@prototype", "prototype");
+		clientGet.setMaxRetries(-1);
+		return clientGet;
+	}
+
+	private static byte[] encode(FcpMessage fcpMessage) throws IOException {
+		try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+			fcpMessage.write(outputStream);
+			return outputStream.toByteArray();
+		}
+	}
+
+	private final FcpMessageTemplate template = new FcpMessageTemplate(createPrototype(), "Identifier", "URI");
+
+}
@@ -1,10 +1,19 @@
 package net.pterodactylus.fcp;
 
+import net.pterodactylus.fcp.io.ByteBufferPool;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.stream.Collectors.toList;
@@ -13,9 +22,11 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.aMapWithSize;
 import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.anEmptyMap;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThrows;
 
 public class FcpMessageTest {
@@ -61,6 +72,116 @@ public class FcpMessageTest {
 		assertThat(stream(fcpMessage.spliterator(), false).collect(toList()), containsInAnyOrder("Test1", "Test2", "Test3"));
 	}
 
+	@Test
+	public void fieldsAreIteratedInInsertionOrder() {
+		for (int index = 20; index > 0; index--) {
+			fcpMessage.put("Test" + index, "value" + index);
+		}
+		fcpMessage.put("Test10", "changed");
+		assertThat(stream(fcpMessage.spliterator(), false).collect(toList()).subList(0, 3), contains("Test20", "Test19", "Test18"));
+		assertThat(fcpMessage.getFields().keySet().iterator().next(), equalTo("Test20"));
+		assertThat(fcpMessage.getField("Test10"), equalTo("changed"));
+		assertThat(fcpMessage.getFields(), aMapWithSize(20));
+	}
+
+	@Test
+	public void manyFieldsAreFoundAndKeepTheirOrder() {
+		for (int index = 0; index < 1000; index++) {
+			fcpMessage.put("Field" + index, "value" + index);
+		}
+		fcpMessage.put("Field500", "changed");
+		assertThat(fcpMessage.getField("Field999"), equalTo("value999"));
+		assertThat(fcpMessage.getField("Field500"), equalTo("changed"));
+		assertThat(fcpMessage.hasField("Field1000"), equalTo(false));
+		assertThat(fcpMessage.getFields(), aMapWithSize(1000));
+		assertThat(stream(fcpMessage.spliterator(), false).collect(toList()).subList(498, 501), contains("Field498", "Field499", "Field500"));
+	}
+
+	@Test
+	public void fieldsAreWrittenInInsertionOrder() throws IOException {
+		fcpMessage.put("Zeta", "1");
+		fcpMessage.put("Alpha", "2");
+		fcpMessage.put("Zeta", "3");
+		try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+			fcpMessage.write(outputStream);
+			assertThat(outputStream.toByteArray(), equalTo("TestMessage\r\nZeta=3\r\nAlpha=2\r\nEndMessage\r\n".getBytes(UTF_8)));
+		}
+	}
+
+	@Test
+	public void fieldsViewReflectsLaterChanges() {
+		Map<String, String> fields = fcpMessage.getFields();
+		fcpMessage.put("Test", "value");
+		assertThat(fields, hasEntry("Test", "value"));
+		assertThat(fcpMessage.getFields(), sameInstance(fields));
+	}
+
+	@Test
+	public void fieldsViewCanNotBeModified() {
+		assertThrows(UnsupportedOperationException.class, () -> fcpMessage.getFields().put("Test", "value"));
+	}
+
+	@Test
+	public void subtreeContainsFieldsBelowPrefixWithoutPrefix() {
+		fcpMessage.put("Replies.Status", "OK");
+		fcpMessage.put("RepliesX", "no");
+		fcpMessage.put("Identifier", "id");
+		fcpMessage.put("Replies.Nested.Value", "1");
+		assertThat(fcpMessage.subtree("Replies"), allOf(aMapWithSize(2), hasEntry("Status", "OK"), hasEntry("Nested.Value", "1")));
+		assertThat(fcpMessage.subtree("Replies").keySet(), contains("Status", "Nested.Value"));
+		assertThat(fcpMessage.subtree("Replies.Nested"), allOf(aMapWithSize(1), hasEntry("Value", "1")));
+	}
+
+	@Test
+	public void fieldsWithPrefixKeepCompleteNames() {
+		fcpMessage.put("volatile.status", "CONNECTED");
+		fcpMessage.put("metadata.timeLastConnected", "1");
+		assertThat(fcpMessage.getFields("volatile"), allOf(aMapWithSize(1), hasEntry("volatile.status", "CONNECTED")));
+	}
+
+	@Test
+	public void subtreeWithoutFieldsIsEmpty() {
+		fcpMessage.put("Identifier", "id");
+		assertThat(fcpMessage.subtree("Replies"), anEmptyMap());
+	}
+
+	@Test
+	public void subtreeReflectsLaterChanges() {
+		fcpMessage.put("Replies.Status", "OK");
+		Map<String, String> replies = fcpMessage.subtree("Replies");
+		Map<String, String> files = fcpMessage.subtree("Files");
+		fcpMessage.put("Replies.Status", "Failed");
+		fcpMessage.put("Replies.Reason", "Error");
+		fcpMessage.put("Files.0.Name", "index.html");
+		assertThat(replies, allOf(aMapWithSize(2), hasEntry("Status", "Failed"), hasEntry("Reason", "Error")));
+		assertThat(files, allOf(aMapWithSize(1), hasEntry("0.Name", "index.html")));
+		assertThat(fcpMessage.subtree("Files.0"), hasEntry("Name", "index.html"));
+	}
+
+	@Test
+	public void subtreesCanBeReadFromManyThreadsAtOnce() throws Exception {
+		for (int index = 0; index < 200; index++) {
+			fcpMessage.put("Files." + index + ".Name", "file" + index);
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int thread = 0; thread < 8; thread++) {
+				results.add(executor.submit(() -> IntStream.range(0, 200).allMatch(index -> fcpMessage.subtree("Files." + index).get("Name").equals("file" + index) && (fcpMessage.getFields("Files").size() == 200))));
+			}
+			for (Future<Boolean> result : results) {
+				assertThat(result.get(), equalTo(true));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void subtreeCanNotBeModified() {
+		assertThrows(UnsupportedOperationException.class, () -> fcpMessage.subtree("Replies").put("Test", "value"));
+	}
+
 	@Test
 	public void messageAndFieldsAreWrittenToOutputStreamUsingCrLfAndUtf8() throws IOException {
 		fcpMessage.put("Test field", "test välue");
@@ -70,6 +191,43 @@ public class FcpMessageTest {
 		}
 	}
 
+	@Test
+	public void valuesWithAllKindsOfCharactersAreEncodedLikeStringEncoding() throws IOException {
+		String value = "ascii, ä, €, \ud83d\ude00, unpaired \ud83d, and \ude00";
+		fcpMessage.put("Field", value);
+		try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+			fcpMessage.write(outputStream);
+			assertThat(outputStream.toByteArray(), equalTo(("TestMessage\r\nField=" + value + "\r\nEndMessage\r\n").getBytes(UTF_8)));
+		}
+	}
+
+	@Test
+	public void messageLargerThanBufferIsEncodedCompletely() throws IOException {
+		StringBuilder value = new StringBuilder();
+		for (int index = 0; index < 100000; index++) {
+			value.append((char) ('a' + (index % 26)));
+		}
+		fcpMessage.put("Field", value.toString());
+		try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+			fcpMessage.write(outputStream);
+			assertThat(outputStream.toByteArray(), equalTo(("TestMessage\r\nField=" + value + "\r\nEndMessage\r\n").getBytes(UTF_8)));
+		}
+	}
+
+	@Test
+	public void pooledBufferIsReleasedWhenWritingFails() {
+		ByteBufferPool byteBufferPool = ByteBufferPool.getDefault();
+		int pooledBufferCount = byteBufferPool.getPooledBufferCount();
+		OutputStream failingOutputStream = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("write failed");
+			}
+		};
+		assertThrows(IOException.class, () -> fcpMessage.write(failingOutputStream));
+		assertThat(byteBufferPool.getPooledBufferCount(), equalTo(Math.max(pooledBufferCount, 1)));
+	}
+
 	@Test
 	public void messageWithPayloadIsTerminatedWithDataAndWithoutTerminatingLineBreak() throws Exception {
 		fcpMessage.setPayloadInputStream(new ByteArrayInputStream("Test".getBytes()));
@@ -0,0 +1,146 @@
+package net.pterodactylus.fcp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+
+public class FcpMessageWriterTest {
+
+	@Test
+	public void queuedMessagesAreWrittenWithASingleWrite() throws Exception {
+		List<FcpMessage> fcpMessages = new ArrayList<>();
+		for (int index = 0; index < 100; index++) {
+			fcpMessages.add(new FcpMessage("Test").put("Index", String.valueOf(index)));
+		}
+		CompletableFuture<Void> completion = messageWriter.enqueue(fcpMessages);
+		startWriter();
+		completion.get();
+		assertThat(outputStream.writes, equalTo(1));
+		assertThat(outputStream.flushes, equalTo(1));
+		StringBuilder expectedOutput = new StringBuilder();
+		for (int index = 0; index < 100; index++) {
+			expectedOutput.append("Test\r\nIndex=").append(index).append("\r\nEndMessage\r\n");
+		}
+		assertThat(outputStream.toString("UTF-8"), equalTo(expectedOutput.toString()));
+	}
+
+	@Test
+	public void messagesQueuedSeparatelyAreWrittenTogether() throws Exception {
+		messageWriter.enqueue(singletonList(new FcpMessage("First")));
+		CompletableFuture<Void> completion = messageWriter.enqueue(singletonList(new FcpMessage("Second")));
+		startWriter();
+		completion.get();
+		assertThat(outputStream.writes, equalTo(1));
+		assertThat(outputStream.toString("UTF-8"), equalTo("First\r\nEndMessage\r\nSecond\r\nEndMessage\r\n"));
+	}
+
+	@Test
+	public void payloadIsWrittenAfterHeader() throws Exception {
+		FcpMessage messageWithPayload = new FcpMessage("Test", new ByteArrayInputStream("Payload".getBytes(UTF_8)));
+		CompletableFuture<Void> completion = messageWriter.enqueue(asList(messageWithPayload, new FcpMessage("Next")));
+		startWriter();
+		completion.get();
+		assertThat(outputStream.toString("UTF-8"), equalTo("Test\r\nData\r\nPayloadNext\r\nEndMessage\r\n"));
+	}
+
+	@Test
+	public void failedWriteFailsMessagesAndCallsErrorHandler() throws Exception {
+		outputStream.fail = true;
+		CompletableFuture<Void> completion = messageWriter.enqueue(singletonList(new FcpMessage("Test")));
+		startWriter();
+		assertThat(errors.take(), instanceOf(IOException.class));
+		assertThat(getCause(completion), instanceOf(IOException.class));
+	}
+
+	@Test
+	public void closingFailsQueuedMessages() throws Exception {
+		CompletableFuture<Void> completion = messageWriter.enqueue(singletonList(new FcpMessage("Test")));
+		messageWriter.close(null);
+		startWriter();
+		assertThat(getCause(completion), instanceOf(IOException.class));
+		assertThat(outputStream.size(), equalTo(0));
+	}
+
+	@Test
+	public void messagesQueuedAfterClosingAreFailed() throws Exception {
+		messageWriter.close(null);
+		assertThat(getCause(messageWriter.enqueue(singletonList(new FcpMessage("Test")))), instanceOf(IOException.class));
+	}
+
+	private void startWriter() {
+		Thread writerThread = new Thread(messageWriter);
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	private static Throwable getCause(CompletableFuture<Void> completion) throws InterruptedException {
+		try {
+			completion.get();
+			return null;
+		} catch (ExecutionException ee1) {
+			return ee1.getCause();
+		}
+	}
+
+	private final CountingOutputStream outputStream = new CountingOutputStream();
+	private final BlockingQueue<Throwable> errors = new ArrayBlockingQueue<>(1);
+	private final FcpMessageWriter messageWriter = new FcpMessageWriter(outputStream, errors::add);
+
+	@Rule
+	public final Timeout timeout = Timeout.seconds(5);
+
+	private static class CountingOutputStream extends OutputStream {
+
+		@Override
+		public void write(int b) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (fail) {
+				throw new IOException();
+			}
+			writes++;
+			bytes.write(b, off, len);
+		}
+
+		@Override
+		public void flush() {
+			flushes++;
+		}
+
+		private int size() {
+			return bytes.size();
+		}
+
+		private String toString(String charsetName) throws IOException {
+			return bytes.toString(charsetName);
+		}
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private volatile boolean fail;
+		private volatile int writes;
+		private volatile int flushes;
+
+	}
+
+}
@@ -79,6 +79,19 @@ public class FcpUtilsTest {
 		assertThrows(NumberFormatException.class, () -> decodeMultiIntegerField("1;not-a-number;3"));
 	}
 
+	@Test
+	public void decodeMultiIntegerFieldIgnoresTrailingSeparators() {
+		assertThat(decodeMultiIntegerField("-1;+2;3;;"), equalTo(new int[] { -1, 2, 3 }));
+		assertThat(decodeMultiIntegerField(";"), equalTo(new int[0]));
+	}
+
+	@Test
+	public void decodeMultiIntegerFieldThrowsExceptionOnEmptyValue() {
+		assertThrows(NumberFormatException.class, () -> decodeMultiIntegerField(""));
+		assertThrows(NumberFormatException.class, () -> decodeMultiIntegerField("1;;3"));
+		assertThrows(NumberFormatException.class, () -> decodeMultiIntegerField("2147483648"));
+	}
+
 	@Test
 	public void encodeMultiIntegerFieldEncodesASingleIntegerCorrectly() {
 		assertThat(encodeMultiIntegerField(new int[] { 123 }), equalTo("123"));
@@ -139,6 +152,42 @@ public class FcpUtilsTest {
 		assertThat(safeParseLong("not-a-number", 234), equalTo(234L));
 	}
 
+	@Test
+	public void safeParseIntHandlesSignsAndLimits() {
+		assertThat(safeParseInt("-123"), equalTo(-123));
+		assertThat(safeParseInt("+123"), equalTo(123));
+		assertThat(safeParseInt("2147483647"), equalTo(Integer.MAX_VALUE));
+		assertThat(safeParseInt("-2147483648"), equalTo(Integer.MIN_VALUE));
+	}
+
+	@Test
+	public void safeParseIntReturnsDefaultValueOnMissingOrOverflowingNumber() {
+		assertThat(safeParseInt(null, 234), equalTo(234));
+		assertThat(safeParseInt("", 234), equalTo(234));
+		assertThat(safeParseInt("-", 234), equalTo(234));
+		assertThat(safeParseInt("2147483648", 234), equalTo(234));
+		assertThat(safeParseInt("-2147483649", 234), equalTo(234));
+		assertThat(safeParseInt("12a", 234), equalTo(234));
+	}
+
+	@Test
+	public void safeParseLongHandlesSignsAndLimits() {
+		assertThat(safeParseLong("-12345678901"), equalTo(-12345678901L));
+		assertThat(safeParseLong("+12345678901"), equalTo(12345678901L));
+		assertThat(safeParseLong("9223372036854775807"), equalTo(Long.MAX_VALUE));
+		assertThat(safeParseLong("-9223372036854775808"), equalTo(Long.MIN_VALUE));
+	}
+
+	@Test
+	public void safeParseLongReturnsDefaultValueOnMissingOrOverflowingNumber() {
+		assertThat(safeParseLong(null, 234), equalTo(234L));
+		assertThat(safeParseLong("", 234), equalTo(234L));
+		assertThat(safeParseLong("+", 234), equalTo(234L));
+		assertThat(safeParseLong("9223372036854775808", 234), equalTo(234L));
+		assertThat(safeParseLong("-9223372036854775809", 234), equalTo(234L));
+		assertThat(safeParseLong("1 2", 234), equalTo(234L));
+	}
+
 	@Test
 	public void socketIsClosed() {
 		AtomicBoolean closed = new AtomicBoolean(false);
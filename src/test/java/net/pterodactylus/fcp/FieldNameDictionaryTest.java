@@ -0,0 +1,84 @@
+package net.pterodactylus.fcp;
+
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class FieldNameDictionaryTest {
+
+	@Test
+	public void knownFieldNameIsResolvedAsHit() {
+		String identifier = resolve("Identifier");
+		assertThat(identifier, equalTo("Identifier"));
+		assertThat(resolve("Identifier"), sameInstance(identifier));
+		assertThat(fieldNameDictionary.getHits(), equalTo(2L));
+		assertThat(fieldNameDictionary.getMisses(), equalTo(0L));
+	}
+
+	@Test
+	public void knownMessageNameIsResolvedAsHit() {
+		assertThat(resolve("SimpleProgress"), equalTo("SimpleProgress"));
+		assertThat(fieldNameDictionary.getHits(), equalTo(1L));
+	}
+
+	@Test
+	public void unknownNameIsAddedAfterMiss() {
+		int size = fieldNameDictionary.size();
+		String name = resolve("Some.Unknown.Field");
+		assertThat(name, equalTo("Some.Unknown.Field"));
+		assertThat(fieldNameDictionary.getMisses(), equalTo(1L));
+		assertThat(fieldNameDictionary.size(), equalTo(size + 1));
+		assertThat(resolve("Some.Unknown.Field"), sameInstance(name));
+		assertThat(fieldNameDictionary.getHits(), equalTo(1L));
+	}
+
+	@Test
+	public void nameInsideLargerBufferIsResolved() {
+		byte[] buffer = "Identifier=Test".getBytes(UTF_8);
+		assertThat(fieldNameDictionary.resolve(buffer, 0, 10), equalTo("Identifier"));
+		assertThat(fieldNameDictionary.getHits(), equalTo(1L));
+	}
+
+	@Test
+	public void nonAsciiNameIsDecodedAsUtf8() {
+		assertThat(resolve("Fäld"), equalTo("Fäld"));
+		assertThat(resolve("Fäld"), equalTo("Fäld"));
+		assertThat(fieldNameDictionary.getHits(), equalTo(1L));
+	}
+
+	@Test
+	public void dictionaryDoesNotGrowBeyondMaximumSize() {
+		FieldNameDictionary fieldNameDictionary = new FieldNameDictionary(200);
+		for (int index = 0; index < 1000; index++) {
+			byte[] name = ("Field" + index).getBytes(UTF_8);
+			assertThat(fieldNameDictionary.resolve(name, 0, name.length), equalTo("Field" + index));
+		}
+		assertThat(fieldNameDictionary.size(), equalTo(200));
+		byte[] name = "Field999".getBytes(UTF_8);
+		fieldNameDictionary.resolve(name, 0, name.length);
+		assertThat(fieldNameDictionary.getMisses(), equalTo(1001L));
+	}
+
+	@Test
+	public void manyNamesCanBeAdded() {
+		for (int index = 0; index < 1000; index++) {
+			resolve("Field" + index);
+		}
+		for (int index = 0; index < 1000; index++) {
+			resolve("Field" + index);
+		}
+		assertThat(fieldNameDictionary.getMisses(), equalTo(1000L));
+		assertThat(fieldNameDictionary.getHits(), equalTo(1000L));
+	}
+
+	private String resolve(String name) {
+		byte[] encodedName = name.getBytes(UTF_8);
+		return fieldNameDictionary.resolve(encodedName, 0, encodedName.length);
+	}
+
+	private final FieldNameDictionary fieldNameDictionary = new FieldNameDictionary(FieldNameDictionary.DEFAULT_MAX_SIZE);
+
+}
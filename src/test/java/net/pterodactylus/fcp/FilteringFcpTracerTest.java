@@ -0,0 +1,90 @@
+package net.pterodactylus.fcp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static net.pterodactylus.fcp.FcpTraceRecord.Direction.received;
+import static net.pterodactylus.fcp.FcpTraceRecord.Direction.sent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThrows;
+
+public class FilteringFcpTracerTest {
+
+	@Test
+	public void allMessagesAreTracedByDefault() {
+		assertThat(tracer.isTraced(sent, "ClientHello"), equalTo(true));
+		assertThat(tracer.isTraced(received, "NodeHello"), equalTo(true));
+	}
+
+	@Test
+	public void onlyMessagesWithConfiguredNamesAreTraced() {
+		tracer.setMessageNames(Arrays.asList("NodeHello", "ProtocolError"));
+		assertThat(tracer.isTraced(received, "NodeHello"), equalTo(true));
+		assertThat(tracer.isTraced(received, "SimpleProgress"), equalTo(false));
+	}
+
+	@Test
+	public void oneInNMessagesIsTraced() {
+		tracer.setSampleInterval(3);
+		List<Boolean> traced = new ArrayList<>();
+		for (int index = 0; index < 7; index++) {
+			traced.add(tracer.isTraced(received, "SimpleProgress"));
+		}
+		assertThat(traced, contains(true, false, false, true, false, false, true));
+	}
+
+	@Test
+	public void filteredMessagesDoNotCountForSampling() {
+		tracer.setMessageNames(Arrays.asList("NodeHello"));
+		tracer.setSampleInterval(2);
+		assertThat(tracer.isTraced(received, "NodeHello"), equalTo(true));
+		assertThat(tracer.isTraced(received, "SimpleProgress"), equalTo(false));
+		assertThat(tracer.isTraced(received, "NodeHello"), equalTo(false));
+		assertThat(tracer.isTraced(received, "NodeHello"), equalTo(true));
+	}
+
+	@Test
+	public void delegateCanRejectMessages() {
+		FilteringFcpTracer tracer = new FilteringFcpTracer(new FcpTracer() {
+			@Override
+			public boolean isTraced(FcpTraceRecord.Direction direction, String messageName) {
+				return direction == sent;
+			}
+
+			@Override
+			public void trace(FcpTraceRecord traceRecord) {
+			}
+		});
+		assertThat(tracer.isTraced(received, "NodeHello"), equalTo(false));
+		assertThat(tracer.isTraced(sent, "ClientHello"), equalTo(true));
+	}
+
+	@Test
+	public void tracedRecordsAreHandedToDelegate() {
+		FcpTraceRecord.trace(tracer, sent, new FcpMessage("ClientHello").put("Name", "Test"), false);
+		assertThat(traceRecords.size(), equalTo(1));
+		assertThat(traceRecords.get(0).toString().endsWith(" sent ClientHello\r\nName=Test\r\nEndMessage\r\n"), equalTo(true));
+	}
+
+	@Test
+	public void disabledTracingDoesNotCreateRecords() {
+		tracer.setMessageNames(Arrays.asList("NodeHello"));
+		FcpTraceRecord.trace(tracer, sent, new FcpMessage("ClientHello"), false);
+		assertThat(traceRecords, empty());
+	}
+
+	@Test
+	public void invalidSampleIntervalIsRejected() {
+		assertThrows(IllegalArgumentException.class, () -> tracer.setSampleInterval(0));
+	}
+
+	private final List<FcpTraceRecord> traceRecords = new ArrayList<>();
+	private final FilteringFcpTracer tracer = new FilteringFcpTracer(traceRecords::add);
+
+}
@@ -0,0 +1,375 @@
+package net.pterodactylus.fcp;
+
+import net.pterodactylus.fcp.test.LocalServer;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class NioFcpConnectionTest {
+
+	@Test
+	public void canConnectToAddress() throws Exception {
+		runWithConnection(fcpConnection -> {
+			Socket socket = localServer.getSocket();
+			assertThat(socket, notNullValue());
+			assertThat(fcpConnection.isClosed(), equalTo(false));
+		});
+	}
+
+	@Test
+	public void messageIsSentCorrectly() throws Exception {
+		runWithConnection(fcpConnection -> {
+			FcpMessage fcpMessage = new FcpMessage("TestClient");
+			fcpMessage.setField("Test", "yes");
+			fcpConnection.sendMessage(fcpMessage);
+		});
+		assertThat(readLinesFromSocket(), contains("TestClient", "Test=yes", "EndMessage"));
+	}
+
+	@Test
+	public void messageWithPayloadIsSentCorrectly() throws Exception {
+		runWithConnection(fcpConnection -> {
+			FcpMessage fcpMessage = new FcpMessage("TestClient", new ByteArrayInputStream("Payload!\n".getBytes(UTF_8)));
+			fcpMessage.setField("DataLength", "9");
+			fcpConnection.sendMessage(fcpMessage);
+		});
+		assertThat(readLinesFromSocket(), contains("TestClient", "DataLength=9", "Data", "Payload!"));
+	}
+
+	@Test
+	public void largePayloadIsSentCompletely() throws Exception {
+		byte[] payload = createPayload(1 << 20);
+		runWithConnection(fcpConnection -> {
+			startSocketReader();
+			fcpConnection.sendMessage(new FcpMessage("Test", new ByteArrayInputStream(payload)));
+		});
+		byte[] received = receivedData.take();
+		byte[] header = "Test\r\nData\r\n".getBytes(UTF_8);
+		assertThat(Arrays.copyOf(received, header.length), equalTo(header));
+		assertThat(Arrays.copyOfRange(received, header.length, received.length), equalTo(payload));
+	}
+
+	@Test
+	public void filePayloadIsTransferredCompletely() throws Exception {
+		byte[] payload = createPayload(3 << 20);
+		Path file = temporaryFolder.newFile().toPath();
+		Files.write(file, payload);
+		runWithConnection(fcpConnection -> {
+			startSocketReader();
+			ClientPut clientPut = new ClientPut("CHK@", "Test");
+			clientPut.setData(file);
+			fcpConnection.sendMessage(clientPut);
+		});
+		byte[] received = receivedData.take();
+		assertThat(Arrays.copyOfRange(received, received.length - payload.length, received.length), equalTo(payload));
+		String header = new String(received, 0, received.length - payload.length, UTF_8);
+		assertThat(header, containsString("\r\nDataLength=" + payload.length + "\r\n"));
+		assertThat(header, endsWith("\r\nData\r\n"));
+	}
+
+	@Test
+	public void allDataIsDispatchedCorrectly() throws Exception {
+		runWithConnection(fcpConnection -> {
+			BlockingQueue<String> receivedPayload = new ArrayBlockingQueue<>(1);
+			fcpConnection.addFcpListener(new FcpAdapter() {
+				@Override
+				public void receivedAllData(FcpConnection fcpConnection, AllData allData) {
+					receivedPayload.add(readPayload(allData.getPayloadInputStream()));
+				}
+			});
+			writeToSocket("AllData\r\nIdentifier=TestRequest\r\nDataLength=12\r\nData\r\nHello World!".getBytes(UTF_8));
+			assertThat(receivedPayload.take(), equalTo("Hello World!"));
+		});
+	}
+
+	@Test
+	public void sentAndReceivedMessagesAreTraced() throws Exception {
+		runWithConnection(fcpConnection -> {
+			BlockingQueue<FcpTraceRecord> traceRecords = new ArrayBlockingQueue<>(2);
+			((NioFcpConnection) fcpConnection).setTracer(traceRecords::add);
+			fcpConnection.sendMessage(new FcpMessage("TestClient").put("Field", "Value"));
+			FcpTraceRecord sentRecord = traceRecords.take();
+			assertThat(sentRecord.getDirection(), equalTo(FcpTraceRecord.Direction.sent));
+			assertThat(sentRecord.getFramedMessage(), equalTo("TestClient\r\nField=Value\r\nEndMessage\r\n".getBytes(UTF_8)));
+			writeToSocket("AllData\r\nIdentifier=TestRequest\r\nDataLength=12\r\nData\r\nHello World!".getBytes(UTF_8));
+			FcpTraceRecord receivedRecord = traceRecords.take();
+			assertThat(receivedRecord.getDirection(), equalTo(FcpTraceRecord.Direction.received));
+			assertThat(receivedRecord.getMessageName(), equalTo("AllData"));
+			assertThat(receivedRecord.getFramedMessage(), equalTo("AllData\r\nIdentifier=TestRequest\r\nDataLength=12\r\nData\r\n".getBytes(UTF_8)));
+		});
+	}
+
+	@Test
+	public void largeAllDataIsDispatchedCorrectly() throws Exception {
+		byte[] payload = createPayload(200000);
+		runWithConnection(fcpConnection -> {
+			fcpConnection.addFcpListener(new FcpAdapter() {
+				@Override
+				public void receivedAllData(FcpConnection fcpConnection, AllData allData) {
+					try (InputStream payloadInputStream = allData.getPayloadInputStream()) {
+						ByteArrayOutputStream receivedBytes = new ByteArrayOutputStream();
+						FcpUtils.copy(payloadInputStream, receivedBytes);
+						receivedData.add(receivedBytes.toByteArray());
+					} catch (IOException ioe1) {
+						throw new RuntimeException(ioe1);
+					}
+				}
+			});
+			ByteArrayOutputStream message = new ByteArrayOutputStream();
+			message.write(("AllData\nIdentifier=TestRequest\nDataLength=" + payload.length + "\nData\n").getBytes(UTF_8));
+			message.write(payload);
+			message.write("NodeHello\nEndMessage\n".getBytes(UTF_8));
+			writeToSocket(message.toByteArray());
+			assertThat(receivedData.take(), equalTo(payload));
+		});
+	}
+
+	@Test
+	public void allDataPayloadIsTransferredIntoPayloadSink() throws Exception {
+		byte[] payload = createPayload(300000);
+		Path file = temporaryFolder.newFile().toPath();
+		runWithConnection(fcpConnection -> {
+			BlockingQueue<String> receivedMessages = new ArrayBlockingQueue<>(2);
+			fcpConnection.addFcpListener(new FcpAdapter() {
+				@Override
+				public void receivedAllData(FcpConnection fcpConnection, AllData allData) {
+					receivedMessages.add("AllData:" + readPayload(allData.getPayloadInputStream()));
+				}
+
+				@Override
+				public void receivedNodeHello(FcpConnection fcpConnection, NodeHello nodeHello) {
+					receivedMessages.add("NodeHello");
+				}
+			});
+			assertThat(fcpConnection.addPayloadSink("TestRequest", PayloadSink.toFile(file)), equalTo(true));
+			writeToSocket(("AllData\r\nIdentifier=TestRequest\r\nDataLength=" + payload.length + "\r\nData\r\n").getBytes(UTF_8));
+			OutputStream socketOutputStream = localServer.getSocket().getOutputStream();
+			for (int offset = 0; offset < payload.length; offset += 50000) {
+				socketOutputStream.write(payload, offset, Math.min(50000, payload.length - offset));
+				socketOutputStream.flush();
+				Thread.sleep(10);
+			}
+			writeToSocket("NodeHello\nEndMessage\n".getBytes(UTF_8));
+			assertThat(receivedMessages.take(), equalTo("AllData:"));
+			assertThat(receivedMessages.take(), equalTo("NodeHello"));
+		});
+		assertThat(Files.readAllBytes(file), equalTo(payload));
+	}
+
+	@Test
+	public void multipleMessagesAreDispatchedInOrder() throws Exception {
+		runWithConnection(fcpConnection -> {
+			BlockingQueue<String> receivedMessages = new ArrayBlockingQueue<>(3);
+			fcpConnection.addFcpListener(new FcpAdapter() {
+				@Override
+				public void receivedNodeHello(FcpConnection fcpConnection, NodeHello nodeHello) {
+					receivedMessages.add("NodeHello");
+				}
+
+				@Override
+				public void receivedAllData(FcpConnection fcpConnection, AllData allData) {
+					receivedMessages.add("AllData:" + readPayload(allData.getPayloadInputStream()));
+				}
+
+				@Override
+				public void receivedMessage(FcpConnection fcpConnection, FcpMessage fcpMessage) {
+					receivedMessages.add(fcpMessage.getName());
+				}
+			});
+			writeToSocket("NodeHello\nEndMessage\nAllData\nDataLength=2\nData\nokUnknownMessage\nEndMessage\n".getBytes(UTF_8));
+			assertThat(receivedMessages.take(), equalTo("NodeHello"));
+			assertThat(receivedMessages.take(), equalTo("AllData:ok"));
+			assertThat(receivedMessages.take(), equalTo("UnknownMessage"));
+		});
+	}
+
+	@Test
+	public void closedConnectionIsDispatchedCorrectly() throws Exception {
+		runWithConnection(fcpConnection -> {
+			BlockingQueue<Boolean> connectionClosed = new ArrayBlockingQueue<>(1);
+			fcpConnection.addFcpListener(new FcpAdapter() {
+				@Override
+				public void connectionClosed(FcpConnection fcpConnection, Throwable throwable) {
+					connectionClosed.add(true);
+				}
+			});
+			localServer.getSocket().close();
+			assertThat(connectionClosed.take(), equalTo(true));
+			assertThat(fcpConnection.isClosed(), equalTo(true));
+		});
+	}
+
+	@Test(expected = IOException.class)
+	public void sendingMessageOnClosedConnectionThrowsException() throws Exception {
+		runWithConnection(fcpConnection -> {
+			fcpConnection.close();
+			fcpConnection.sendMessage(new FcpMessage("Test"));
+		});
+	}
+
+	@Test
+	public void connectionsCanShareEventLoop() throws Exception {
+		BlockingQueue<String> receivedMessages = new ArrayBlockingQueue<>(2);
+		try (FcpConnection firstConnection = new NioFcpConnection(eventLoop, "localhost", localServer.getPort());
+		     FcpConnection secondConnection = new NioFcpConnection(eventLoop, "localhost", secondLocalServer.getPort())) {
+			firstConnection.connect();
+			secondConnection.connect();
+			firstConnection.addFcpListener(new FcpAdapter() {
+				@Override
+				public void receivedMessage(FcpConnection fcpConnection, FcpMessage fcpMessage) {
+					receivedMessages.add("first:" + fcpMessage.getName());
+				}
+			});
+			secondConnection.addFcpListener(new FcpAdapter() {
+				@Override
+				public void receivedMessage(FcpConnection fcpConnection, FcpMessage fcpMessage) {
+					receivedMessages.add("second:" + fcpMessage.getName());
+				}
+			});
+			secondLocalServer.getSocket().getOutputStream().write("Second\nEndMessage\n".getBytes(UTF_8));
+			assertThat(receivedMessages.take(), equalTo("second:Second"));
+			localServer.getSocket().getOutputStream().write("First\nEndMessage\n".getBytes(UTF_8));
+			assertThat(receivedMessages.take(), equalTo("first:First"));
+		}
+	}
+
+	@Test
+	public void coalescedProgressIsDeliveredOnEventLoop() throws Exception {
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+		try (NioFcpConnection fcpConnection = new NioFcpConnection(eventLoop, "localhost", localServer.getPort())) {
+			fcpConnection.setProgressCoalescer(new ProgressCoalescer(executor, 10, TimeUnit.MILLISECONDS));
+			fcpConnection.connect();
+			BlockingQueue<Thread> dispatchingThreads = new ArrayBlockingQueue<>(2);
+			fcpConnection.addFcpListener(new FcpAdapter() {
+				@Override
+				public void receivedNodeHello(FcpConnection fcpConnection, NodeHello nodeHello) {
+					dispatchingThreads.add(Thread.currentThread());
+				}
+
+				@Override
+				public void receivedSimpleProgress(FcpConnection fcpConnection, SimpleProgress simpleProgress) {
+					dispatchingThreads.add(Thread.currentThread());
+				}
+			});
+			writeToSocket("NodeHello\nEndMessage\nSimpleProgress\nIdentifier=TestRequest\nSucceeded=1\nEndMessage\n".getBytes(UTF_8));
+			assertThat(dispatchingThreads.take(), sameInstance(dispatchingThreads.take()));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void tasksQueuedOnClosedEventLoopAreStillRun() throws Exception {
+		eventLoop.close();
+		Thread.sleep(100);
+		CountDownLatch taskRun = new CountDownLatch(1);
+		eventLoop.execute(taskRun::countDown);
+		taskRun.await();
+	}
+
+	private List<String> readLinesFromSocket() throws IOException {
+		try (InputStream socketInputStream = localServer.getSocket().getInputStream();
+		     Reader socketReader = new InputStreamReader(socketInputStream, UTF_8);
+		     BufferedReader bufferedReader = new BufferedReader(socketReader)) {
+			List<String> sentLines = new ArrayList<>();
+			String line = bufferedReader.readLine();
+			while (line != null) {
+				sentLines.add(line);
+				line = bufferedReader.readLine();
+			}
+			return sentLines;
+		}
+	}
+
+	private void startSocketReader() {
+		new Thread(() -> {
+			try (InputStream socketInputStream = localServer.getSocket().getInputStream()) {
+				ByteArrayOutputStream receivedBytes = new ByteArrayOutputStream();
+				FcpUtils.copy(socketInputStream, receivedBytes);
+				receivedData.add(receivedBytes.toByteArray());
+			} catch (IOException ioe1) {
+				throw new RuntimeException(ioe1);
+			}
+		}).start();
+	}
+
+	private void writeToSocket(byte[] bytes) throws IOException {
+		OutputStream socketOutputStream = localServer.getSocket().getOutputStream();
+		socketOutputStream.write(bytes);
+		socketOutputStream.flush();
+	}
+
+	private static String readPayload(InputStream payloadInputStream) {
+		try {
+			ByteArrayOutputStream payload = new ByteArrayOutputStream();
+			FcpUtils.copy(payloadInputStream, payload);
+			return new String(payload.toByteArray(), UTF_8);
+		} catch (IOException ioe1) {
+			throw new RuntimeException(ioe1);
+		}
+	}
+
+	private static byte[] createPayload(int length) {
+		byte[] payload = new byte[length];
+		for (int index = 0; index < length; index++) {
+			payload[index] = (byte) (index * 31);
+		}
+		return payload;
+	}
+
+	private void runWithConnection(DefaultFcpConnectionTest.ThrowingConsumer<FcpConnection, ?> action) throws Exception {
+		try (FcpConnection fcpConnection = new NioFcpConnection(eventLoop, "localhost", localServer.getPort())) {
+			fcpConnection.connect();
+			action.accept(fcpConnection);
+		}
+	}
+
+	@After
+	public void closeEventLoop() {
+		eventLoop.close();
+	}
+
+	private final FcpEventLoop eventLoop = createEventLoop();
+	private final BlockingQueue<byte[]> receivedData = new ArrayBlockingQueue<>(1);
+
+	private static FcpEventLoop createEventLoop() {
+		try {
+			return new FcpEventLoop();
+		} catch (IOException ioe1) {
+			throw new RuntimeException(ioe1);
+		}
+	}
+
+	@Rule
+	public final LocalServer localServer = new LocalServer();
+
+	@Rule
+	public final LocalServer secondLocalServer = new LocalServer();
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Rule
+	public final Timeout timeout = Timeout.seconds(5);
+
+}
@@ -13,6 +13,8 @@ import static org.hamcrest.Matchers.aMapWithSize;
 import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 
 public class PeerTest {
 
@@ -162,6 +164,40 @@ public class PeerTest {
 		assertThat(createPeer(addMetadataFields()).getMetadata("a"), equalTo("MA1"));
 	}
 
+	@Test
+	public void changesToNodeRefDoNotAffectPeer() {
+		String name = peer.getMyName();
+		NodeRef nodeRef = peer.getNodeRef();
+		nodeRef.setName("Changed Name");
+		assertThat(peer.getNodeRef(), not(sameInstance(nodeRef)));
+		assertThat(peer.getNodeRef().getMyName(), equalTo(name));
+	}
+
+	@Test
+	public void arkIsOnlyCreatedOnce() {
+		assertThat(peer.getARK(), sameInstance(peer.getARK()));
+	}
+
+	@Test
+	public void changedFieldCreatesNewVersion() {
+		FcpMessage peerMessage = new FcpMessage("Peer");
+		peerMessage.setField("version", "Node,0.1.2,1.2.3,234");
+		Peer peer = new Peer(peerMessage);
+		Version version = peer.getVersion();
+		peerMessage.setField("version", "Node,0.1.2,1.2.3,235");
+		assertThat(peer.getVersion(), not(sameInstance(version)));
+		assertThat(peer.getVersion().getBuildNumber(), equalTo(235));
+	}
+
+	@Test
+	public void dsaGroupAndVersionsAreSharedBetweenPeers() {
+		Peer firstPeer = createPeer(m -> m.setField("dsaGroup.p", new String("shared-prime")));
+		Peer secondPeer = createPeer(m -> m.setField("dsaGroup.p", new String("shared-prime")));
+		assertThat(secondPeer.getDSAGroup(), sameInstance(firstPeer.getDSAGroup()));
+		assertThat(secondPeer.getVersion(), sameInstance(firstPeer.getVersion()));
+		assertThat(secondPeer.getLastGoodVersion(), sameInstance(firstPeer.getLastGoodVersion()));
+	}
+
 	private final Peer peer = createPeer();
 
 }
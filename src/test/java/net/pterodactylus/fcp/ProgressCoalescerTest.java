@@ -0,0 +1,120 @@
+package net.pterodactylus.fcp;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class ProgressCoalescerTest {
+
+	@Test
+	public void onlyNewestProgressPerIdentifierIsDelivered() {
+		ProgressCoalescer progressCoalescer = new ProgressCoalescer(executor, 1, TimeUnit.HOURS);
+		for (int index = 0; index < 10; index++) {
+			int number = index;
+			progressCoalescer.coalesce("first", () -> delivered.add("first:" + number));
+			progressCoalescer.coalesce("second", () -> delivered.add("second:" + number));
+		}
+		assertThat(delivered, empty());
+		progressCoalescer.flush();
+		assertThat(delivered, contains("first:9", "second:9"));
+		assertThat(progressCoalescer.getReceivedCount(), equalTo(20L));
+		assertThat(progressCoalescer.getDeliveredCount(), equalTo(2L));
+	}
+
+	@Test
+	public void flushingIdentifierDeliversOnlyItsProgress() {
+		ProgressCoalescer progressCoalescer = new ProgressCoalescer(executor, 1, TimeUnit.HOURS);
+		progressCoalescer.coalesce("first", () -> delivered.add("first"));
+		progressCoalescer.coalesce("second", () -> delivered.add("second"));
+		progressCoalescer.flush("first");
+		progressCoalescer.flush("first");
+		assertThat(delivered, contains("first"));
+	}
+
+	@Test
+	public void waitingProgressIsDeliveredAfterInterval() throws InterruptedException {
+		ProgressCoalescer progressCoalescer = new ProgressCoalescer(executor, 10, TimeUnit.MILLISECONDS);
+		progressCoalescer.setDispatchExecutor(dispatchExecutor);
+		CountDownLatch deliveredProgress = new CountDownLatch(2);
+		progressCoalescer.coalesce("first", () -> {
+			delivered.add("first");
+			deliveredProgress.countDown();
+		});
+		progressCoalescer.coalesce("second", () -> {
+			delivered.add("second");
+			deliveredProgress.countDown();
+		});
+		deliveredProgress.await();
+		assertThat(delivered, containsInAnyOrder("first", "second"));
+	}
+
+	@Test
+	public void progressReceivedAfterDeliveryIsDeliveredAgain() throws InterruptedException {
+		ProgressCoalescer progressCoalescer = new ProgressCoalescer(executor, 10, TimeUnit.MILLISECONDS);
+		progressCoalescer.setDispatchExecutor(dispatchExecutor);
+		CountDownLatch firstDelivery = new CountDownLatch(1);
+		progressCoalescer.coalesce("request", firstDelivery::countDown);
+		firstDelivery.await();
+		CountDownLatch secondDelivery = new CountDownLatch(1);
+		progressCoalescer.coalesce("request", secondDelivery::countDown);
+		secondDelivery.await();
+	}
+
+	@Test
+	public void waitingProgressIsDeliveredOnDispatchingThread() throws Exception {
+		ProgressCoalescer progressCoalescer = new ProgressCoalescer(executor, 10, TimeUnit.MILLISECONDS);
+		progressCoalescer.setDispatchExecutor(dispatchExecutor);
+		Thread dispatchingThread = dispatchExecutor.submit(Thread::currentThread).get();
+		BlockingQueue<Thread> deliveringThreads = new ArrayBlockingQueue<>(1);
+		progressCoalescer.coalesce("request", () -> deliveringThreads.add(Thread.currentThread()));
+		assertThat(deliveringThreads.take(), sameInstance(dispatchingThread));
+	}
+
+	@Test
+	public void dueProgressIsOnlyDeliveredWhenFlushedWithoutDispatchExecutor() throws InterruptedException {
+		ProgressCoalescer progressCoalescer = new ProgressCoalescer(executor, 1, TimeUnit.MILLISECONDS);
+		progressCoalescer.coalesce("request", () -> delivered.add("request"));
+		Thread.sleep(50);
+		assertThat(delivered, empty());
+		progressCoalescer.flushIfDue();
+		assertThat(delivered, contains("request"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeIntervalIsRejected() {
+		new ProgressCoalescer(executor, -1, TimeUnit.SECONDS);
+	}
+
+	@After
+	public void shutdownExecutor() {
+		executor.shutdownNow();
+		dispatchExecutor.shutdownNow();
+	}
+
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+	private final ExecutorService dispatchExecutor = Executors.newSingleThreadExecutor();
+	private final List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+
+	@Rule
+	public final Timeout timeout = Timeout.seconds(5);
+
+}
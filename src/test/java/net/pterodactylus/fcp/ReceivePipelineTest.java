@@ -0,0 +1,160 @@
+package net.pterodactylus.fcp;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+public class ReceivePipelineTest {
+
+	@Test
+	public void tasksWithSameIdentifierAreRunInOrder() throws Exception {
+		ReceivePipeline receivePipeline = new ReceivePipeline(executor, 4, 1000);
+		List<Integer> processed = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch finished = new CountDownLatch(100);
+		for (int index = 0; index < 100; index++) {
+			int number = index;
+			receivePipeline.submit("request", () -> {
+				processed.add(number);
+				finished.countDown();
+			}, true);
+		}
+		finished.await();
+		for (int index = 0; index < 100; index++) {
+			assertThat(processed.get(index), equalTo(index));
+		}
+	}
+
+	@Test
+	public void slowTaskDoesNotBlockTasksWithOtherIdentifiers() throws Exception {
+		ReceivePipeline receivePipeline = new ReceivePipeline(executor, 4, 1000);
+		CountDownLatch slowTaskReleased = new CountDownLatch(1);
+		CountDownLatch fastTaskRun = new CountDownLatch(1);
+		receivePipeline.submit("slow", () -> awaitUninterruptibly(slowTaskReleased), true);
+		String otherIdentifier = findIdentifierOnOtherStripe(4, "slow");
+		receivePipeline.submit(otherIdentifier, fastTaskRun::countDown, true);
+		assertThat(fastTaskRun.await(1, TimeUnit.SECONDS), equalTo(true));
+		slowTaskReleased.countDown();
+	}
+
+	@Test
+	public void taskWithoutIdentifierRunsAfterEarlierAndBeforeLaterTasks() throws Exception {
+		ReceivePipeline receivePipeline = new ReceivePipeline(executor, 4, 1000);
+		List<String> processed = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch firstTaskReleased = new CountDownLatch(1);
+		CountDownLatch finished = new CountDownLatch(1);
+		receivePipeline.submit("first", () -> {
+			awaitUninterruptibly(firstTaskReleased);
+			processed.add("first");
+		}, true);
+		receivePipeline.submit(null, () -> processed.add("barrier"), true);
+		receivePipeline.submit(findIdentifierOnOtherStripe(4, "first"), () -> {
+			processed.add("second");
+			finished.countDown();
+		}, true);
+		Thread.sleep(50);
+		assertThat(processed, hasSize(0));
+		firstTaskReleased.countDown();
+		finished.await();
+		assertThat(processed, contains("first", "barrier", "second"));
+	}
+
+	@Test
+	public void queueDepthCountsWaitingTasks() throws Exception {
+		ReceivePipeline receivePipeline = new ReceivePipeline(executor, 1, 10);
+		CountDownLatch taskReleased = new CountDownLatch(1);
+		CountDownLatch finished = new CountDownLatch(3);
+		for (int index = 0; index < 3; index++) {
+			receivePipeline.submit("request", () -> {
+				awaitUninterruptibly(taskReleased);
+				finished.countDown();
+			}, true);
+		}
+		assertThat(receivePipeline.getQueueDepth(), equalTo(3));
+		taskReleased.countDown();
+		finished.await();
+		while (receivePipeline.getQueueDepth() > 0) {
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	public void submittingToFullPipelineWaits() throws Exception {
+		ReceivePipeline receivePipeline = new ReceivePipeline(executor, 1, 1);
+		CountDownLatch taskReleased = new CountDownLatch(1);
+		receivePipeline.submit("request", () -> awaitUninterruptibly(taskReleased), true);
+		AtomicBoolean secondTaskSubmitted = new AtomicBoolean();
+		Thread submitter = new Thread(() -> {
+			try {
+				receivePipeline.submit("request", () -> { }, true);
+				secondTaskSubmitted.set(true);
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		submitter.start();
+		Thread.sleep(50);
+		assertThat(secondTaskSubmitted.get(), equalTo(false));
+		taskReleased.countDown();
+		submitter.join();
+		assertThat(secondTaskSubmitted.get(), equalTo(true));
+	}
+
+	@Test
+	public void tasksRejectedByExecutorAreDroppedAndTheirPayloadsClosed() throws Exception {
+		executor.shutdown();
+		ReceivePipeline receivePipeline = new ReceivePipeline(executor, 2, 2);
+		AtomicBoolean taskRun = new AtomicBoolean();
+		List<String> closedPayloads = Collections.synchronizedList(new ArrayList<>());
+		for (int index = 0; index < 3; index++) {
+			String payload = "payload-" + index;
+			receivePipeline.submit("request", () -> taskRun.set(true), () -> closedPayloads.add(payload), true);
+		}
+		receivePipeline.submit(null, () -> taskRun.set(true), () -> closedPayloads.add("barrier"), true);
+		assertThat(taskRun.get(), equalTo(false));
+		assertThat(closedPayloads, contains("payload-0", "payload-1", "payload-2", "barrier"));
+		assertThat(receivePipeline.getQueueDepth(), equalTo(0));
+	}
+
+	private static String findIdentifierOnOtherStripe(int stripeCount, String identifier) {
+		for (int index = 0; ; index++) {
+			String otherIdentifier = "other-" + index;
+			if (ReceivePipeline.stripeIndex(otherIdentifier, stripeCount) != ReceivePipeline.stripeIndex(identifier, stripeCount)) {
+				return otherIdentifier;
+			}
+		}
+	}
+
+	private static void awaitUninterruptibly(CountDownLatch countDownLatch) {
+		try {
+			countDownLatch.await();
+		} catch (InterruptedException ie1) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@After
+	public void shutdownExecutor() {
+		executor.shutdownNow();
+	}
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	@Rule
+	public final Timeout timeout = Timeout.seconds(5);
+
+}
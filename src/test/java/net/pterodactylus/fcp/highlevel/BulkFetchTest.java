@@ -0,0 +1,157 @@
+package net.pterodactylus.fcp.highlevel;
+
+import net.pterodactylus.fcp.AllData;
+import net.pterodactylus.fcp.FcpConnection;
+import net.pterodactylus.fcp.FcpListener;
+import net.pterodactylus.fcp.FcpMessage;
+import net.pterodactylus.fcp.GetFailed;
+import net.pterodactylus.fcp.ProtocolError;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static net.pterodactylus.fcp.highlevel.FakeFcpConnection.createFcpConnection;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThrows;
+
+public class BulkFetchTest {
+
+	@Test
+	public void allUrisAreFetchedWithBoundedParallelism() throws Exception {
+		List<String> uris = IntStream.range(0, 200).mapToObj(index -> "KSK@test-" + index).collect(Collectors.toList());
+		BulkFetch bulkFetch = new BulkFetch(fcpClient);
+		bulkFetch.setMaxRequestsInFlight(8);
+		BulkFetchStatistics statistics = bulkFetch.fetch(uris, (uri, getResult) -> fetchedUris.add(uri + "=" + getResult.isSuccess()));
+		assertThat(fetchedUris, containsInAnyOrder(uris.stream().map(uri -> uri + "=true").toArray()));
+		assertThat(maxRequestsInFlight.get(), lessThanOrEqualTo(8));
+		assertThat(statistics.getStartedCount(), equalTo(200L));
+		assertThat(statistics.getSucceededCount(), equalTo(200L));
+		assertThat(statistics.getFailedCount(), equalTo(0L));
+		assertThat(statistics.getByteCount(), equalTo(uris.stream().mapToLong(String::length).sum()));
+	}
+
+	@Test
+	public void failuresAreCountedByErrorCode() throws Exception {
+		BulkFetch bulkFetch = new BulkFetch(fcpClient);
+		BulkFetchStatistics statistics = bulkFetch.fetch(() -> IntStream.range(0, 10).mapToObj(index -> "KSK@" + ((index < 3) ? "missing" : "test")).iterator(), (uri, getResult) -> fetchedUris.add(uri + "=" + getResult.getErrorCode()));
+		assertThat(statistics.getSucceededCount(), equalTo(7L));
+		assertThat(statistics.getFailedCount(), equalTo(3L));
+		assertThat(statistics.getErrorCodeCounts(), hasEntry(13, 3L));
+		assertThat(fetchedUris.stream().filter(result -> result.equals("KSK@missing=13")).count(), equalTo(3L));
+	}
+
+	@Test
+	public void protocolErrorsAreCountedAndDoNotStopBulkFetch() throws Exception {
+		BulkFetch bulkFetch = new BulkFetch(fcpClient);
+		BulkFetchStatistics statistics = bulkFetch.fetch(() -> IntStream.range(0, 10).mapToObj(index -> "KSK@" + ((index < 2) ? "invalid" : "test")).iterator(), (uri, getResult) -> fetchedUris.add(uri + "=" + getResult.isSuccess()));
+		assertThat(statistics.getStartedCount(), equalTo(10L));
+		assertThat(statistics.getSucceededCount(), equalTo(8L));
+		assertThat(statistics.getFailedCount(), equalTo(2L));
+		assertThat(statistics.getProtocolErrorCodeCounts(), hasEntry(4, 2L));
+		assertThat(fetchedUris.stream().filter(result -> result.equals("KSK@invalid=false")).count(), equalTo(2L));
+	}
+
+	@Test
+	public void failingIteratorFailsBulkFetch() {
+		BulkFetch bulkFetch = new BulkFetch(fcpClient);
+		Iterator<String> uris = IntStream.range(0, 10).mapToObj(index -> {
+			if (index == 5) {
+				throw new IllegalStateException("no more URIs");
+			}
+			return "KSK@test";
+		}).iterator();
+		ExecutionException executionException = assertThrows(ExecutionException.class, () -> bulkFetch.fetchAsync(uris, (uri, getResult) -> fetchedUris.add(uri)).get());
+		assertThat(executionException.getCause(), instanceOf(IllegalStateException.class));
+		assertThat(bulkFetch.getStatistics().getStartedCount(), equalTo(5L));
+	}
+
+	@Test
+	public void redirectsAreFollowed() throws Exception {
+		BulkFetch bulkFetch = new BulkFetch(fcpClient);
+		BulkFetchStatistics statistics = bulkFetch.fetch(Collections.singletonList("KSK@redirect"), (uri, getResult) -> fetchedUris.add(uri + "=" + getResult.getRealUri()));
+		assertThat(fetchedUris, containsInAnyOrder("KSK@redirect=KSK@target"));
+		assertThat(statistics.getSucceededCount(), equalTo(1L));
+		assertThat(statistics.getRedirectedCount(), equalTo(1L));
+	}
+
+	@Test
+	public void connectionFailureStopsBulkFetch() {
+		fcpConnection.failingSends = true;
+		BulkFetch bulkFetch = new BulkFetch(fcpClient);
+		ExecutionException executionException = assertThrows(ExecutionException.class, () -> bulkFetch.fetchAsync(Collections.nCopies(100, "KSK@test").iterator(), (uri, getResult) -> fetchedUris.add(uri)).get());
+		assertThat(executionException.getCause(), instanceOf(IOException.class));
+		assertThat(bulkFetch.getStatistics().getStartedCount(), lessThanOrEqualTo((long) BulkFetch.DEFAULT_MAX_REQUESTS_IN_FLIGHT));
+		assertThat(bulkFetch.getStatistics().getFailedCount(), equalTo((long) fetchedUris.size()));
+	}
+
+	@Test
+	public void bulkFetchCanOnlyBeStartedOnce() throws Exception {
+		BulkFetch bulkFetch = new BulkFetch(fcpClient);
+		bulkFetch.fetch(Collections.<String>emptyList(), (uri, getResult) -> {
+		});
+		assertThrows(IllegalStateException.class, () -> bulkFetch.fetch(Collections.<String>emptyList(), (uri, getResult) -> {
+		}));
+	}
+
+	@After
+	public void shutdownExecutor() {
+		nodeExecutor.shutdownNow();
+	}
+
+	private void replyTo(BiConsumer<FcpListener, FcpConnection> notification) {
+		int requestsInFlight = currentRequestsInFlight.incrementAndGet();
+		maxRequestsInFlight.accumulateAndGet(requestsInFlight, Math::max);
+		nodeExecutor.execute(() -> {
+			currentRequestsInFlight.decrementAndGet();
+			fcpConnection.deliver(notification);
+		});
+	}
+
+	private BiConsumer<FcpListener, FcpConnection> answer(FcpMessage fcpMessage) {
+		String identifier = fcpMessage.getField("Identifier");
+		String uri = fcpMessage.getField("URI");
+		if (uri.equals("KSK@invalid")) {
+			replyTo((listener, connection) -> listener.receivedProtocolError(connection, new ProtocolError(new FcpMessage("ProtocolError").put("Identifier", identifier).put("Code", "4"))));
+		} else if (uri.equals("KSK@missing")) {
+			replyTo((listener, connection) -> listener.receivedGetFailed(connection, new GetFailed(new FcpMessage("GetFailed").put("Identifier", identifier).put("Code", "13"))));
+		} else if (uri.equals("KSK@redirect")) {
+			replyTo((listener, connection) -> listener.receivedGetFailed(connection, new GetFailed(new FcpMessage("GetFailed").put("Identifier", identifier).put("Code", "27").put("RedirectURI", "KSK@target"))));
+		} else {
+			byte[] data = uri.getBytes(UTF_8);
+			replyTo((listener, connection) -> listener.receivedAllData(connection, new AllData(new FcpMessage("AllData").put("Identifier", identifier).put("DataLength", String.valueOf(data.length)), new ByteArrayInputStream(data))));
+		}
+		return FakeFcpConnection::doNothing;
+	}
+
+	private final ExecutorService nodeExecutor = Executors.newSingleThreadExecutor();
+	private final AtomicInteger currentRequestsInFlight = new AtomicInteger();
+	private final AtomicInteger maxRequestsInFlight = new AtomicInteger();
+	private final List<String> fetchedUris = Collections.synchronizedList(new ArrayList<>());
+	private final FakeFcpConnection fcpConnection = createFcpConnection(this::answer);
+	private final FcpClient fcpClient = new FcpClient(fcpConnection);
+
+	@Rule
+	public final Timeout timeout = Timeout.seconds(5);
+
+}
@@ -0,0 +1,141 @@
+package net.pterodactylus.fcp.highlevel;
+
+import net.pterodactylus.fcp.FcpConnection;
+import net.pterodactylus.fcp.FcpListener;
+import net.pterodactylus.fcp.FcpMessage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * {@link FcpConnection} for tests. Sent messages are recorded and answered
+ * by the notification the message consumer creates for them; every listener
+ * is notified on its own thread.
+ */
+class FakeFcpConnection implements FcpConnection {
+
+	final List<FcpListener> listeners;
+	final List<FcpMessage> sentMessages = new CopyOnWriteArrayList<>();
+	final AtomicInteger connectAttempts = new AtomicInteger();
+	final AtomicInteger failingConnects = new AtomicInteger();
+	volatile boolean failingSends;
+	private final Function<FcpMessage, BiConsumer<FcpListener, FcpConnection>> messageConsumer;
+	private volatile boolean closed;
+
+	static FakeFcpConnection createFcpConnection() {
+		return createFcpConnection(m -> FakeFcpConnection::doNothing);
+	}
+
+	static FakeFcpConnection createFcpConnectionReactingToSingleMessage(Predicate<FcpMessage> messageFilter, BiConsumer<FcpListener, FcpConnection> messageConsumer) {
+		return createFcpConnection(message -> {
+			if (messageFilter.test(message)) {
+				return messageConsumer;
+			}
+			return FakeFcpConnection::doNothing;
+		});
+	}
+
+	static FakeFcpConnection createFcpConnectionAnsweringSingleMessage(Predicate<FcpMessage> messageFilter, Function<FcpMessage, BiConsumer<FcpListener, FcpConnection>> answerGenerator) {
+		return createFcpConnection(message -> {
+			if (messageFilter.test(message)) {
+				return answerGenerator.apply(message);
+			}
+			return FakeFcpConnection::doNothing;
+		});
+	}
+
+	static FakeFcpConnection createFcpConnection(Function<FcpMessage, BiConsumer<FcpListener, FcpConnection>> messageConsumer) {
+		return createFcpConnection(new CopyOnWriteArrayList<>(), messageConsumer);
+	}
+
+	static FakeFcpConnection createFcpConnection(List<FcpListener> listeners, Function<FcpMessage, BiConsumer<FcpListener, FcpConnection>> messageConsumer) {
+		return new FakeFcpConnection(listeners, messageConsumer);
+	}
+
+	static void doNothing(FcpListener listener, FcpConnection connection) {
+		// do nothing.
+	}
+
+	static Predicate<FcpMessage> named(String name) {
+		return message -> message.getName().equals(name);
+	}
+
+	static Predicate<FcpMessage> withField(String name, String value) {
+		return message -> Objects.equals(message.getField(name), value);
+	}
+
+	private FakeFcpConnection(List<FcpListener> listeners, Function<FcpMessage, BiConsumer<FcpListener, FcpConnection>> messageConsumer) {
+		this.listeners = listeners;
+		this.messageConsumer = messageConsumer;
+	}
+
+	List<String> sentFields(String messageName, String field) {
+		List<String> fields = new ArrayList<>();
+		sentMessages.stream().filter(message -> message.getName().equals(messageName)).forEach(message -> fields.add(message.getField(field)));
+		return fields;
+	}
+
+	void deliver(BiConsumer<FcpListener, FcpConnection> notification) {
+		listeners.forEach(listener -> notification.accept(listener, this));
+	}
+
+	void drop() {
+		closed = true;
+		deliver((listener, connection) -> listener.connectionClosed(connection, new IOException("connection reset")));
+	}
+
+	@Override
+	public void addFcpListener(FcpListener fcpListener) {
+		listeners.add(fcpListener);
+	}
+
+	@Override
+	public void removeFcpListener(FcpListener fcpListener) {
+		listeners.remove(fcpListener);
+	}
+
+	@Override
+	public boolean isClosed() {
+		return closed;
+	}
+
+	@Override
+	public void connect() throws IOException {
+		connectAttempts.incrementAndGet();
+		if (failingConnects.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+			throw new IOException("connection refused");
+		}
+		closed = false;
+	}
+
+	@Override
+	@Deprecated
+	public void disconnect() {
+		close();
+	}
+
+	@Override
+	public void close() {
+		if (!closed) {
+			drop();
+		}
+	}
+
+	@Override
+	public void sendMessage(FcpMessage fcpMessage) throws IOException {
+		if (failingSends) {
+			throw new IOException("connection is closed");
+		}
+		sentMessages.add(fcpMessage);
+		BiConsumer<FcpListener, FcpConnection> listenerNotifier = messageConsumer.apply(fcpMessage);
+		listeners.forEach(listener -> new Thread(() -> listenerNotifier.accept(listener, this)).start());
+	}
+
+}
@@ -0,0 +1,220 @@
+package net.pterodactylus.fcp.highlevel;
+
+import net.pterodactylus.fcp.AllData;
+import net.pterodactylus.fcp.FcpConnection;
+import net.pterodactylus.fcp.FcpListener;
+import net.pterodactylus.fcp.FcpMessage;
+import net.pterodactylus.fcp.NodeData;
+import net.pterodactylus.fcp.NodeHello;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static java.util.Arrays.asList;
+import static net.pterodactylus.fcp.highlevel.FakeFcpConnection.createFcpConnection;
+import static net.pterodactylus.fcp.test.NodeRefs.copyNodeRefToMessage;
+import static net.pterodactylus.fcp.test.NodeRefs.createNodeRef;
+import static net.pterodactylus.fcp.test.Peers.createPeer;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertThrows;
+
+public class FcpClientPoolTest {
+
+	@Test
+	public void clientsAreConnectedWithUniqueNames() throws Exception {
+		try (FcpClientPool fcpClientPool = createPool(false)) {
+			fcpClientPool.connect("Pool");
+			assertThat(firstConnection.sentFields("ClientHello", "Name"), contains("Pool-0"));
+			assertThat(secondConnection.sentFields("ClientHello", "Name"), contains("Pool-1"));
+			assertThat(fcpClientPool.isConnected(), equalTo(true));
+		}
+	}
+
+	@Test
+	public void requestsAreSpreadByOutstandingRequests() {
+		try (FcpClientPool fcpClientPool = createPool(true)) {
+			fcpClientPool.getURIAsync("KSK@first");
+			fcpClientPool.getURIAsync("KSK@second");
+			fcpClientPool.getURIAsync("KSK@third");
+			assertThat(firstConnection.sentFields("ClientGet", "URI"), contains("KSK@first", "KSK@third"));
+			assertThat(secondConnection.sentFields("ClientGet", "URI"), contains("KSK@second"));
+			assertThat(fcpClientPool.getOutstandingRequests(fcpClientPool.getClients().get(0)), equalTo(2));
+		}
+	}
+
+	@Test
+	public void finishedRequestsAreNotOutstandingAnymore() throws Exception {
+		firstConnectionAnswersRequests = true;
+		try (FcpClientPool fcpClientPool = createPool(true)) {
+			GetResult getResult = fcpClientPool.getURIAsync("KSK@test").get();
+			assertThat(getResult.isSuccess(), equalTo(true));
+			assertThat(fcpClientPool.getOutstandingRequests(fcpClientPool.getClients().get(0)), equalTo(0));
+		}
+	}
+
+	@Test
+	public void consistentHashingSendsRequestsForTheSameKeyToTheSameClient() {
+		try (FcpClientPool fcpClientPool = createPool(true)) {
+			fcpClientPool.setLoadBalancing(FcpClientPool.LoadBalancing.consistentHashing);
+			for (int index = 0; index < 20; index++) {
+				fcpClientPool.getURIAsync("KSK@same");
+			}
+			for (int index = 0; index < 100; index++) {
+				fcpClientPool.getURIAsync("KSK@test-" + index);
+			}
+			List<String> firstUris = firstConnection.sentFields("ClientGet", "URI");
+			List<String> secondUris = secondConnection.sentFields("ClientGet", "URI");
+			assertThat(firstUris.contains("KSK@same") ? secondUris.contains("KSK@same") : !secondUris.contains("KSK@same"), equalTo(false));
+			assertThat(firstUris.size() > 20, equalTo(true));
+			assertThat(secondUris.size() > 20, equalTo(true));
+		}
+	}
+
+	@Test
+	public void chkInsertsAreSpreadOverClientsWithConsistentHashing() {
+		try (FcpClientPool fcpClientPool = createPool(true)) {
+			fcpClientPool.setLoadBalancing(FcpClientPool.LoadBalancing.consistentHashing);
+			for (int index = 0; index < 4; index++) {
+				fcpClientPool.putDataAsync("CHK@", new byte[] { 1 }, new PutOptions());
+			}
+			assertThat(firstConnection.sentFields("ClientPut", "URI"), hasSize(2));
+			assertThat(secondConnection.sentFields("ClientPut", "URI"), hasSize(2));
+		}
+	}
+
+	@Test
+	public void cancellingRequestOfPoolCancelsRequestOfClient() {
+		try (FcpClientPool fcpClientPool = createPool(true)) {
+			CompletableFuture<GetResult> getResult = fcpClientPool.getURIAsync("KSK@test");
+			getResult.cancel(false);
+			assertThat(fcpClientPool.getOutstandingRequests(fcpClientPool.getClients().get(0)), equalTo(0));
+		}
+	}
+
+	@Test
+	public void disconnectedClientsAreNotUsed() {
+		try (FcpClientPool fcpClientPool = createPool(true)) {
+			firstConnection.close();
+			fcpClientPool.getURIAsync("KSK@first");
+			fcpClientPool.setLoadBalancing(FcpClientPool.LoadBalancing.consistentHashing);
+			for (int index = 0; index < 10; index++) {
+				fcpClientPool.getURIAsync("KSK@test-" + index);
+			}
+			assertThat(firstConnection.sentFields("ClientGet", "URI"), hasSize(0));
+			assertThat(secondConnection.sentFields("ClientGet", "URI"), hasSize(11));
+		}
+	}
+
+	@Test
+	public void clientFailingHealthCheckIsNotUsed() throws Exception {
+		secondConnectionAnswersHealthChecks = false;
+		try (FcpClientPool fcpClientPool = createPool(true)) {
+			fcpClientPool.setHealthCheck(executor, 10, 250, TimeUnit.MILLISECONDS);
+			while (fcpClientPool.isHealthy(fcpClientPool.getClients().get(1))) {
+				Thread.sleep(10);
+			}
+			assertThat(fcpClientPool.isHealthy(fcpClientPool.getClients().get(0)), equalTo(true));
+			fcpClientPool.getURIAsync("KSK@first");
+			fcpClientPool.getURIAsync("KSK@second");
+			assertThat(firstConnection.sentFields("ClientGet", "URI"), contains("KSK@first", "KSK@second"));
+		}
+	}
+
+	@Test
+	public void clientIsHealthyAgainWhenNodeAnswersAfterMissedHealthCheck() throws Exception {
+		secondConnectionAnswersHealthChecks = false;
+		try (FcpClientPool fcpClientPool = createPool(true)) {
+			int listenerCount = secondConnection.listeners.size();
+			fcpClientPool.setHealthCheck(executor, 10, 50, TimeUnit.MILLISECONDS);
+			while (fcpClientPool.isHealthy(fcpClientPool.getClients().get(1))) {
+				Thread.sleep(10);
+			}
+			while (secondConnection.sentFields("GetNode", "Identifier").size() < 3) {
+				Thread.sleep(10);
+			}
+			assertThat(secondConnection.listeners.size() <= listenerCount + 1, equalTo(true));
+			secondConnectionAnswersHealthChecks = true;
+			while (!fcpClientPool.isHealthy(fcpClientPool.getClients().get(1))) {
+				Thread.sleep(10);
+			}
+		}
+	}
+
+	@Test
+	public void operationThatCanNotBeStartedIsNotOutstanding() {
+		FcpClient failingClient = new FcpClient(firstConnection, true) {
+			@Override
+			public CompletableFuture<GetResult> getURIAsync(String uri) {
+				throw new IllegalStateException("can not start request");
+			}
+		};
+		try (FcpClientPool fcpClientPool = new FcpClientPool(asList(failingClient))) {
+			CompletableFuture<GetResult> getResult = fcpClientPool.getURIAsync("KSK@test");
+			ExecutionException executionException = assertThrows(ExecutionException.class, getResult::get);
+			assertThat(executionException.getCause(), instanceOf(IllegalStateException.class));
+			assertThat(fcpClientPool.getOutstandingRequests(failingClient), equalTo(0));
+		}
+	}
+
+	@Test
+	public void nodeOperationsAreExecutedOnPrimaryNode() {
+		try (FcpClientPool fcpClientPool = createPool(true)) {
+			fcpClientPool.getURIAsync("KSK@first");
+			for (int index = 0; index < 3; index++) {
+				fcpClientPool.getNodeInformationAsync(false, false, false);
+			}
+			fcpClientPool.getPeerNoteAsync(createPeer());
+			assertThat(firstConnection.sentFields("GetNode", "Identifier"), hasSize(3));
+			assertThat(firstConnection.sentFields("ListPeerNotes", "Identifier"), hasSize(1));
+			assertThat(secondConnection.sentFields("GetNode", "Identifier"), hasSize(0));
+			assertThat(secondConnection.sentFields("ListPeerNotes", "Identifier"), hasSize(0));
+		}
+	}
+
+	@After
+	public void shutdownExecutor() {
+		executor.shutdownNow();
+	}
+
+	private FcpClientPool createPool(boolean connected) {
+		return new FcpClientPool(asList(new FcpClient(firstConnection, connected), new FcpClient(secondConnection, connected)));
+	}
+
+	private static BiConsumer<FcpListener, FcpConnection> answer(FcpMessage fcpMessage, boolean answerRequests, boolean answerHealthChecks) {
+		if (fcpMessage.getName().equals("ClientHello")) {
+			return (listener, connection) -> listener.receivedNodeHello(connection, new NodeHello(new FcpMessage("NodeHello")));
+		} else if (fcpMessage.getName().equals("GetNode") && answerHealthChecks) {
+			FcpMessage nodeData = new FcpMessage("NodeData");
+			copyNodeRefToMessage(createNodeRef()).accept(nodeData);
+			nodeData.put("Identifier", fcpMessage.getField("Identifier"));
+			return (listener, connection) -> listener.receivedNodeData(connection, new NodeData(nodeData));
+		} else if (fcpMessage.getName().equals("ClientGet") && answerRequests) {
+			return (listener, connection) -> listener.receivedAllData(connection, new AllData(new FcpMessage("AllData").put("Identifier", fcpMessage.getField("Identifier")).put("DataLength", "0"), new ByteArrayInputStream(new byte[0])));
+		}
+		return FakeFcpConnection::doNothing;
+	}
+
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+	private volatile boolean firstConnectionAnswersRequests;
+	private volatile boolean secondConnectionAnswersHealthChecks = true;
+	private final FakeFcpConnection firstConnection = createFcpConnection(message -> answer(message, firstConnectionAnswersRequests, true));
+	private final FakeFcpConnection secondConnection = createFcpConnection(message -> answer(message, false, secondConnectionAnswersHealthChecks));
+
+	@Rule
+	public final Timeout timeout = Timeout.seconds(5);
+
+}
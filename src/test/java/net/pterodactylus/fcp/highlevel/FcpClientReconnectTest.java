@@ -0,0 +1,138 @@
+package net.pterodactylus.fcp.highlevel;
+
+import net.pterodactylus.fcp.CloseConnectionDuplicateClientName;
+import net.pterodactylus.fcp.DataFound;
+import net.pterodactylus.fcp.FcpConnection;
+import net.pterodactylus.fcp.FcpListener;
+import net.pterodactylus.fcp.FcpMessage;
+import net.pterodactylus.fcp.NodeHello;
+import net.pterodactylus.fcp.PersistentGet;
+import net.pterodactylus.fcp.PersistentPut;
+import net.pterodactylus.fcp.SubscribedUSK;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static net.pterodactylus.fcp.highlevel.FakeFcpConnection.createFcpConnection;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+public class FcpClientReconnectTest {
+
+	@Test
+	public void lostConnectionIsReconnectedAndSessionIsResumed() throws Exception {
+		fcpClient.setAutoReconnect(executor, 10, 100, TimeUnit.MILLISECONDS);
+		fcpClient.connect("Test Client");
+		String uskSubscription = fcpClient.subscribeUSK("USK@test/site/1");
+		String cancelledUskSubscription = fcpClient.subscribeUSK("USK@test/cancelled/1");
+		fcpClient.unsubscribeUSK(cancelledUskSubscription);
+		fcpClient.watchFeeds(true);
+		String feedSubscription = fcpClient.subscribeFeeds();
+		fcpConnection.deliver((listener, connection) -> listener.receivedPersistentGet(connection, new PersistentGet(new FcpMessage("PersistentGet").put("Identifier", "get-1").put("Global", "true"))));
+		fcpConnection.deliver((listener, connection) -> listener.receivedPersistentPut(connection, new PersistentPut(new FcpMessage("PersistentPut").put("Identifier", "put-1").put("Global", "false"))));
+		fcpConnection.deliver((listener, connection) -> listener.receivedPersistentGet(connection, new PersistentGet(new FcpMessage("PersistentGet").put("Identifier", "finished").put("Global", "true"))));
+		fcpConnection.deliver((listener, connection) -> listener.receivedDataFound(connection, new DataFound(new FcpMessage("DataFound").put("Identifier", "finished"))));
+		fcpConnection.sentMessages.clear();
+		fcpConnection.drop();
+		reconnected.await();
+		assertThat(fcpClient.isConnected(), equalTo(true));
+		assertThat(fcpConnection.connectAttempts.get(), equalTo(2));
+		assertThat(fcpConnection.sentFields("ClientHello", "Name"), contains("Test Client"));
+		assertThat(fcpConnection.sentFields("WatchGlobal", "Enabled"), contains("true"));
+		assertThat(fcpConnection.sentFields("WatchFeeds", "Enabled"), contains("true"));
+		assertThat(fcpConnection.sentFields("SubscribeFeeds", "Identifier"), contains(feedSubscription));
+		assertThat(fcpConnection.sentFields("SubscribeUSK", "Identifier"), contains(uskSubscription));
+		assertThat(fcpConnection.sentFields("GetRequestStatus", "Identifier"), containsInAnyOrder("get-1", "put-1"));
+		assertThat(fcpConnection.sentFields("GetRequestStatus", "Global"), containsInAnyOrder("true", "false"));
+		assertThat(fcpConnection.sentFields("ListPersistentRequests", "Identifier"), hasSize(0));
+		assertThat(fcpConnection.sentMessages.get(0).getName(), equalTo("ClientHello"));
+	}
+
+	@Test
+	public void failedReconnectAttemptsAreRetried() throws Exception {
+		fcpClient.setAutoReconnect(executor, 10, 40, TimeUnit.MILLISECONDS);
+		fcpClient.connect("Test Client");
+		fcpConnection.failingConnects.set(3);
+		fcpConnection.drop();
+		reconnected.await();
+		assertThat(fcpConnection.connectAttempts.get(), equalTo(5));
+		assertThat(fcpClient.isConnected(), equalTo(true));
+	}
+
+	@Test
+	public void clientDoesNotReconnectAfterDisconnect() throws Exception {
+		fcpClient.setAutoReconnect(executor, 10, 100, TimeUnit.MILLISECONDS);
+		fcpClient.connect("Test Client");
+		fcpClient.disconnect();
+		Thread.sleep(100);
+		assertThat(fcpConnection.connectAttempts.get(), equalTo(1));
+		assertThat(fcpClient.isConnected(), equalTo(false));
+	}
+
+	@Test
+	public void clientDoesNotReconnectWithoutAutoReconnect() throws Exception {
+		fcpClient.connect("Test Client");
+		fcpConnection.drop();
+		Thread.sleep(100);
+		assertThat(fcpConnection.connectAttempts.get(), equalTo(1));
+		assertThat(fcpClient.isConnected(), equalTo(false));
+	}
+
+	@Test
+	public void clientDoesNotReconnectIfNameIsTakenByAnotherClient() throws Exception {
+		fcpClient.setAutoReconnect(executor, 10, 100, TimeUnit.MILLISECONDS);
+		fcpClient.connect("Test Client");
+		fcpConnection.deliver((listener, connection) -> listener.receivedCloseConnectionDuplicateClientName(connection, new CloseConnectionDuplicateClientName(new FcpMessage("CloseConnectionDuplicateClientName"))));
+		fcpConnection.drop();
+		Thread.sleep(100);
+		assertThat(fcpConnection.connectAttempts.get(), equalTo(1));
+	}
+
+	@After
+	public void shutdownExecutor() {
+		executor.shutdownNow();
+	}
+
+	private static BiConsumer<FcpListener, FcpConnection> answer(FcpMessage fcpMessage) {
+		if (fcpMessage.getName().equals("ClientHello")) {
+			return (listener, connection) -> listener.receivedNodeHello(connection, new NodeHello(new FcpMessage("NodeHello")));
+		} else if (fcpMessage.getName().equals("SubscribeUSK")) {
+			return (listener, connection) -> listener.receivedSubscribedUSK(connection, new SubscribedUSK(new FcpMessage("SubscribedUSK").put("Identifier", fcpMessage.getField("Identifier"))));
+		}
+		return FakeFcpConnection::doNothing;
+	}
+
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+	private final FakeFcpConnection fcpConnection = createFcpConnection(FcpClientReconnectTest::answer);
+	private final FcpClient fcpClient = new FcpClient(fcpConnection, false);
+	private final CountDownLatch reconnected = new CountDownLatch(1);
+
+	{
+		fcpClient.addFcpClientListener(new FcpClientListener() {
+
+			@Override
+			public void fcpClientDisconnected(FcpClient fcpClient) {
+			}
+
+			@Override
+			public void fcpClientReconnected(FcpClient fcpClient) {
+				reconnected.countDown();
+			}
+
+		});
+	}
+
+	@Rule
+	public final Timeout timeout = Timeout.seconds(5);
+
+}
@@ -17,19 +17,25 @@ import net.pterodactylus.fcp.GetFailed;
 import net.pterodactylus.fcp.NodeData;
 import net.pterodactylus.fcp.NodeHello;
 import net.pterodactylus.fcp.NodeRef;
+import net.pterodactylus.fcp.PayloadSink;
 import net.pterodactylus.fcp.Peer;
 import net.pterodactylus.fcp.PeerNote;
 import net.pterodactylus.fcp.PeerRemoved;
 import net.pterodactylus.fcp.PersistentGet;
 import net.pterodactylus.fcp.PersistentPut;
 import net.pterodactylus.fcp.PersistentPutDir;
+import net.pterodactylus.fcp.Priority;
 import net.pterodactylus.fcp.ProtocolError;
+import net.pterodactylus.fcp.PutFailed;
+import net.pterodactylus.fcp.PutSuccessful;
 import net.pterodactylus.fcp.SSKKeypair;
 import net.pterodactylus.fcp.SimpleProgress;
+import net.pterodactylus.fcp.URIGenerated;
 import net.pterodactylus.fcp.UnknownNodeIdentifier;
 import org.hamcrest.Matcher;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.rules.Timeout;
 
 import java.io.ByteArrayInputStream;
@@ -37,6 +43,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Base64;
@@ -44,15 +52,22 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
-import java.util.function.Predicate;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.stream;
+import static net.pterodactylus.fcp.highlevel.FakeFcpConnection.createFcpConnection;
+import static net.pterodactylus.fcp.highlevel.FakeFcpConnection.createFcpConnectionAnsweringSingleMessage;
+import static net.pterodactylus.fcp.highlevel.FakeFcpConnection.createFcpConnectionReactingToSingleMessage;
+import static net.pterodactylus.fcp.highlevel.FakeFcpConnection.named;
+import static net.pterodactylus.fcp.highlevel.FakeFcpConnection.withField;
 import static net.pterodactylus.fcp.AddPeer.Trust.HIGH;
 import static net.pterodactylus.fcp.AddPeer.Trust.LOW;
 import static net.pterodactylus.fcp.AddPeer.Trust.NORMAL;
@@ -76,6 +91,8 @@ import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThrows;
 
@@ -192,6 +209,23 @@ public class FcpClientTest {
 		}
 	}
 
+	@Test
+	public void getUriWritesDataIntoPayloadSink() throws Exception {
+		FcpConnection fcpConnection = createFcpConnection(message -> (listener, connection) -> {
+			if (message.getName().equals("ClientGet") && message.getField("URI").equals("KSK@test")) {
+				listener.receivedAllData(connection, new AllData(new FcpMessage("AllData").put("Identifier", message.getField("Identifier")).put("DataLength", "4"), new ByteArrayInputStream("Data".getBytes())));
+			}
+		});
+		ByteArrayOutputStream receivedData = new ByteArrayOutputStream();
+		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
+			GetResult getResult = fcpClient.getURI("KSK@test", PayloadSink.toOutputStream(receivedData));
+			assertThat(getResult.isSuccess(), equalTo(true));
+			assertThat(getResult.getContentLength(), equalTo(4L));
+			assertThat(getResult.getInputStream(), nullValue());
+		}
+		assertThat(receivedData.toString("UTF-8"), equalTo("Data"));
+	}
+
 	private void sendClientGetAndReturnAllData(Function<FcpMessage, BiConsumer<FcpListener, FcpConnection>> messageReplier) throws Exception {
 		FcpConnection fcpConnection = createFcpConnection(messageReplier);
 		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
@@ -202,6 +236,57 @@ public class FcpClientTest {
 		}
 	}
 
+	@Test
+	public void manyAsynchronousGetsCanBeInFlightAtTheSameTime() throws Exception {
+		CountDownLatch allRequestsSent = new CountDownLatch(1);
+		FcpConnection fcpConnection = createFcpConnection(message -> (listener, connection) -> {
+			if (message.getName().equals("ClientGet")) {
+				try {
+					allRequestsSent.await();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				byte[] data = message.getField("URI").getBytes(UTF_8);
+				listener.receivedAllData(connection, new AllData(new FcpMessage("AllData").put("Identifier", message.getField("Identifier")).put("DataLength", String.valueOf(data.length)), new ByteArrayInputStream(data)));
+			}
+		});
+		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
+			List<CompletableFuture<GetResult>> getResults = new ArrayList<>();
+			for (int index = 0; index < 20; index++) {
+				getResults.add(fcpClient.getURIAsync("KSK@test-" + index));
+			}
+			assertThat(getResults.stream().anyMatch(CompletableFuture::isDone), equalTo(false));
+			allRequestsSent.countDown();
+			for (int index = 0; index < 20; index++) {
+				GetResult getResult = getResults.get(index).get();
+				assertThat(getResult.isSuccess(), equalTo(true));
+				ByteArrayOutputStream data = new ByteArrayOutputStream();
+				FcpUtils.copy(getResult.getInputStream(), data);
+				assertThat(new String(data.toByteArray(), UTF_8), equalTo("KSK@test-" + index));
+			}
+		}
+	}
+
+	@Test
+	public void asynchronousRequestIsCompletedWithProtocolError() {
+		FcpConnection fcpConnection = createFcpConnectionReactingToSingleMessage(named("ListPersistentRequests"), (listener, connection) ->
+				listener.receivedProtocolError(connection, new ProtocolError(new FcpMessage("ProtocolError").put("Code", "123"))));
+		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
+			ExecutionException executionException = assertThrows(ExecutionException.class, () -> fcpClient.getRequestsAsync(true).get());
+			assertThat(executionException.getCause(), instanceOf(FcpProtocolException.class));
+			assertThat(fcpClient.isConnected(), equalTo(true));
+		}
+	}
+
+	@Test
+	public void asynchronousRequestOnDisconnectedClientFails() {
+		FcpConnection fcpConnection = createFcpConnection();
+		try (FcpClient fcpClient = new FcpClient(fcpConnection, false)) {
+			ExecutionException executionException = assertThrows(ExecutionException.class, () -> fcpClient.generateKeyPairAsync().get());
+			assertThat(executionException.getCause(), instanceOf(FcpException.class));
+		}
+	}
+
 	@Test
 	public void getPeersWithMetadataFlagSetSendsCorrectMessage() {
 		sendListPeersAndVerifySentMessagesAndReturnedPeers(FcpClientTest::getPeers, true, false, contains(hasField("WithMetadata", equalTo("true"))), anything());
@@ -357,7 +442,7 @@ public class FcpClientTest {
 					listener.receivedEndListPeers(connection, new EndListPeers(new FcpMessage("EndListPeers").put("Identifier", identifier)));
 				};
 			}
-			return FcpClientTest::doNothing;
+			return FakeFcpConnection::doNothing;
 		});
 		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
 			Collection<Peer> peers = peerRetrieval.apply(fcpClient).apply(withMetadataFlag, withVolatileFlag);
@@ -477,7 +562,7 @@ public class FcpClientTest {
 				sentMessages.add(message);
 				return (listener, connection) -> listener.receivedPeer(connection, new Peer(null));
 			}
-			return FcpClientTest::doNothing;
+			return FakeFcpConnection::doNothing;
 		});
 		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
 			addPeer.apply(fcpClient).accept(trust, visibility);
@@ -493,7 +578,7 @@ public class FcpClientTest {
 				sentMessages.add(message);
 				return (listener, connection) -> listener.receivedPeer(connection, createPeer());
 			}
-			return FcpClientTest::doNothing;
+			return FakeFcpConnection::doNothing;
 		});
 		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
 			fcpClient.modifyPeer(createPeer(), modifyPeer -> modifyPeer.setAllowLocalAddresses(true));
@@ -511,7 +596,7 @@ public class FcpClientTest {
 				peerRemovedMessage.put("NodeIdentifier", message.getField("NodeIdentifier"));
 				return (listener, connection) -> listener.receivedPeerRemoved(connection, new PeerRemoved(peerRemovedMessage));
 			}
-			return FcpClientTest::doNothing;
+			return FakeFcpConnection::doNothing;
 		});
 		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
 			fcpClient.removePeer(createPeer());
@@ -525,7 +610,7 @@ public class FcpClientTest {
 			if (message.getName().equals("RemovePeer")) {
 				return (listener, connection) -> listener.receivedUnknownNodeIdentifier(connection, new UnknownNodeIdentifier(message));
 			}
-			return FcpClientTest::doNothing;
+			return FakeFcpConnection::doNothing;
 		});
 		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
 			fcpClient.removePeer(createPeer());
@@ -570,7 +655,7 @@ public class FcpClientTest {
 					listener.receivedEndListPeerNotes(connection, new EndListPeerNotes(new FcpMessage("EndListPeerNotes")));
 				};
 			}
-			return FcpClientTest::doNothing;
+			return FakeFcpConnection::doNothing;
 		});
 		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
 			PeerNote peerNote = fcpClient.getPeerNote(createPeer());
@@ -589,6 +674,53 @@ public class FcpClientTest {
 		}
 	}
 
+	@Test
+	public void concurrentPeerNoteRequestsAreAnsweredSeparately() throws Exception {
+		AtomicReference<FcpMessage> firstRequest = new AtomicReference<>();
+		FcpConnection fcpConnection = createFcpConnection(message -> {
+			if (message.getName().equals("ListPeerNotes") && firstRequest.compareAndSet(null, message)) {
+				return FakeFcpConnection::doNothing;
+			}
+			if (message.getName().equals("ListPeerNotes")) {
+				return (listener, connection) -> {
+					listener.receivedPeerNote(connection, new PeerNote(new FcpMessage("PeerNote").put("Identifier", message.getField("Identifier")).put("NodeIdentifier", message.getField("NodeIdentifier")).put("PeerNoteType", "1").put("NoteText", "")));
+					listener.receivedEndListPeerNotes(connection, new EndListPeerNotes(new FcpMessage("EndListPeerNotes").put("Identifier", message.getField("Identifier"))));
+				};
+			}
+			return FakeFcpConnection::doNothing;
+		});
+		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
+			CompletableFuture<PeerNote> firstPeerNote = fcpClient.getPeerNoteAsync(createPeer(peerMessage -> peerMessage.put("identity", "first")));
+			PeerNote secondPeerNote = fcpClient.getPeerNoteAsync(createPeer(peerMessage -> peerMessage.put("identity", "second"))).get();
+			assertThat(secondPeerNote.getNodeIdentifier(), equalTo("second"));
+			assertThat(firstPeerNote.isDone(), equalTo(false));
+		}
+	}
+
+	@Test
+	public void protocolErrorForDifferentRequestDoesNotFailRequest() throws Exception {
+		FcpConnection fcpConnection = createFcpConnectionAnsweringSingleMessage(named("GetConfig"), message -> (listener, connection) -> {
+			listener.receivedProtocolError(connection, new ProtocolError(new FcpMessage("ProtocolError").put("Code", "123").put("Identifier", "different-request")));
+			sendConfigData(listener, connection);
+		});
+		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
+			assertThat(fcpClient.getConfig(), hasEntry("current.param1", "value1"));
+		}
+	}
+
+	@Test
+	public void cancellingRequestRemovesItsListener() throws Exception {
+		List<FcpListener> listeners = new CopyOnWriteArrayList<>();
+		FcpConnection fcpConnection = createFcpConnection(listeners, message -> FakeFcpConnection::doNothing);
+		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
+			int listenerCount = listeners.size();
+			CompletableFuture<NodeData> nodeData = fcpClient.getNodeInformationAsync(false, false, false);
+			assertThat(listeners, hasSize(listenerCount + 1));
+			nodeData.cancel(false);
+			assertThat(listeners, hasSize(listenerCount));
+		}
+	}
+
 	@Test
 	public void modifyPeerNoteSendsCorrectMessage() throws Exception {
 		FcpConnection fcpConnection = createFcpConnection(message -> {
@@ -597,7 +729,7 @@ public class FcpClientTest {
 					listener.receivedPeerNote(connection, new PeerNote(new FcpMessage("PeerNote").put("NodeIdentifier", message.getField("NodeIdentifier"))));
 				};
 			}
-			return FcpClientTest::doNothing;
+			return FakeFcpConnection::doNothing;
 		});
 		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
 			fcpClient.modifyPeerNote(createPeer(), "new note");
@@ -618,7 +750,7 @@ public class FcpClientTest {
 					listener.receivedPeerNote(connection, new PeerNote(new FcpMessage("PeerNote").put("NodeIdentifier", message.getField("NodeIdentifier"))));
 				};
 			}
-			return FcpClientTest::doNothing;
+			return FakeFcpConnection::doNothing;
 		});
 		Thread thread = new Thread(() -> {
 			try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
@@ -632,6 +764,139 @@ public class FcpClientTest {
 		assertThat(thread.isAlive(), equalTo(true));
 	}
 
+	@Test
+	public void putDataSendsClientPutWithOptionsAndPayload() throws Exception {
+		AtomicReference<FcpMessage> sentMessage = new AtomicReference<>();
+		ByteArrayOutputStream sentPayload = new ByteArrayOutputStream();
+		FcpConnection fcpConnection = createFcpConnection(message -> {
+			if (message.getName().equals("ClientPut")) {
+				sentMessage.set(message);
+				try {
+					FcpUtils.copy(message.getPayloadInputStream(), sentPayload);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+				return (listener, connection) -> {
+					listener.receivedURIGenerated(connection, new URIGenerated(new FcpMessage("URIGenerated").put("Identifier", message.getField("Identifier")).put("URI", "CHK@generated")));
+					listener.receivedPutSuccessful(connection, new PutSuccessful(new FcpMessage("PutSuccessful").put("Identifier", message.getField("Identifier")).put("URI", "CHK@final")));
+				};
+			}
+			return FakeFcpConnection::doNothing;
+		});
+		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
+			PutOptions putOptions = new PutOptions();
+			putOptions.setContentType("text/plain");
+			putOptions.setPriority(Priority.bulkSplitfile);
+			putOptions.setEarlyEncode(true);
+			putOptions.setGetCHKOnly(true);
+			PutResult putResult = fcpClient.putData("CHK@", "Data".getBytes(UTF_8), putOptions);
+			assertThat(putResult.isSuccess(), equalTo(true));
+			assertThat(putResult.getUri(), equalTo("CHK@final"));
+			assertThat(sentMessage.get(), allOf(
+					hasField("URI", equalTo("CHK@")),
+					hasField("UploadFrom", equalTo("direct")),
+					hasField("DataLength", equalTo("4")),
+					hasField("Metadata.ContentType", equalTo("text/plain")),
+					hasField("PriorityClass", equalTo("4")),
+					hasField("EarlyEncode", equalTo("true")),
+					hasField("GetCHKOnly", equalTo("true"))
+			));
+			assertThat(new String(sentPayload.toByteArray(), UTF_8), equalTo("Data"));
+		}
+	}
+
+	@Test
+	public void generatedUriIsHandedToConsumerBeforeInsertFinishes() throws Exception {
+		FcpConnection fcpConnection = createFcpConnection(message -> {
+			if (message.getName().equals("ClientPut")) {
+				return (listener, connection) -> {
+					listener.receivedURIGenerated(connection, new URIGenerated(new FcpMessage("URIGenerated").put("Identifier", "other").put("URI", "CHK@other")));
+					listener.receivedURIGenerated(connection, new URIGenerated(new FcpMessage("URIGenerated").put("Identifier", message.getField("Identifier")).put("URI", "CHK@generated")));
+				};
+			}
+			return FakeFcpConnection::doNothing;
+		});
+		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
+			CompletableFuture<String> generatedUri = new CompletableFuture<>();
+			PutOptions putOptions = new PutOptions();
+			putOptions.setEarlyEncode(true);
+			putOptions.setUriGeneratedConsumer(generatedUri::complete);
+			CompletableFuture<PutResult> putResult = fcpClient.putStreamAsync("CHK@", new ByteArrayInputStream(new byte[0]), 0, putOptions);
+			assertThat(generatedUri.get(), equalTo("CHK@generated"));
+			assertThat(putResult.isDone(), equalTo(false));
+		}
+	}
+
+	@Test
+	public void failedPutReturnsErrorCode() throws Exception {
+		FcpConnection fcpConnection = createFcpConnection(message -> {
+			if (message.getName().equals("ClientPut")) {
+				return (listener, connection) -> listener.receivedPutFailed(connection, new PutFailed(new FcpMessage("PutFailed").put("Identifier", message.getField("Identifier")).put("Code", "9").put("CodeDescription", "Collision").put("Fatal", "true").put("ExpectedURI", "KSK@test")));
+			}
+			return FakeFcpConnection::doNothing;
+		});
+		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
+			PutResult putResult = fcpClient.putData("KSK@test", new byte[1], new PutOptions());
+			assertThat(putResult.isSuccess(), equalTo(false));
+			assertThat(putResult.getErrorCode(), equalTo(9));
+			assertThat(putResult.getErrorDescription(), equalTo("Collision"));
+			assertThat(putResult.isFatal(), equalTo(true));
+			assertThat(putResult.getUri(), equalTo("KSK@test"));
+		}
+	}
+
+	@Test
+	public void putFileStreamsFileAsPayload() throws Exception {
+		Path file = temporaryFolder.newFile().toPath();
+		Files.write(file, "File".getBytes(UTF_8));
+		AtomicReference<FcpMessage> sentMessage = new AtomicReference<>();
+		FcpConnection fcpConnection = createFcpConnection(message -> {
+			sentMessage.set(message);
+			return (listener, connection) -> listener.receivedPutSuccessful(connection, new PutSuccessful(new FcpMessage("PutSuccessful").put("Identifier", message.getField("Identifier")).put("URI", "CHK@file")));
+		});
+		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
+			PutResult putResult = fcpClient.putFile("CHK@", file, new PutOptions());
+			assertThat(putResult.getUri(), equalTo("CHK@file"));
+			assertThat(sentMessage.get(), hasField("DataLength", equalTo("4")));
+			assertThat(sentMessage.get().getPayloadInputStream(), streamContaining('F', 'i', 'l', 'e'));
+		}
+	}
+
+	@Test
+	public void putDirectorySendsAllFilesWithRelativeNames() throws Exception {
+		Path directory = temporaryFolder.newFolder().toPath();
+		Files.createDirectories(directory.resolve("sub"));
+		Files.write(directory.resolve("index.html"), "Index".getBytes(UTF_8));
+		Files.write(directory.resolve("sub").resolve("file.txt"), "File".getBytes(UTF_8));
+		AtomicReference<FcpMessage> sentMessage = new AtomicReference<>();
+		FcpConnection fcpConnection = createFcpConnection(message -> {
+			sentMessage.set(message);
+			return (listener, connection) -> listener.receivedPutSuccessful(connection, new PutSuccessful(new FcpMessage("PutSuccessful").put("Identifier", message.getField("Identifier")).put("URI", "CHK@site/")));
+		});
+		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
+			PutOptions putOptions = new PutOptions();
+			putOptions.setDefaultName("index.html");
+			PutResult putResult = fcpClient.putDirectory("CHK@", directory, putOptions);
+			assertThat(putResult.getUri(), equalTo("CHK@site/"));
+			assertThat(sentMessage.get(), allOf(
+					hasField("DefaultName", equalTo("index.html")),
+					hasField("Files.0.Name", equalTo("index.html")),
+					hasField("Files.0.DataLength", equalTo("5")),
+					hasField("Files.1.Name", equalTo("sub/file.txt")),
+					hasField("Files.1.DataLength", equalTo("4"))
+			));
+			assertThat(sentMessage.get().getPayloadInputStream(), streamContaining('I', 'n', 'd', 'e', 'x', 'F', 'i', 'l', 'e'));
+		}
+	}
+
+	@Test
+	public void putDirectoryOfMissingDirectoryFails() {
+		FcpConnection fcpConnection = createFcpConnection();
+		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
+			assertThrows(IOException.class, () -> fcpClient.putDirectory("CHK@", temporaryFolder.getRoot().toPath().resolve("missing"), new PutOptions()));
+		}
+	}
+
 	@Test
 	public void generatingKeyPairSendsCorrectMessage() throws IOException, FcpException {
 		FcpConnection fcpConnection = createFcpConnectionReactingToSingleMessage(named("GenerateSSK"), (listener, connection) -> listener.receivedSSKKeypair(connection, new SSKKeypair(new FcpMessage("SSKKeypair").put("InsertURI", "insert-uri").put("RequestURI", "request-uri"))));
@@ -854,7 +1119,7 @@ public class FcpClientTest {
 					listener.receivedFCPPluginReply(connection, new FCPPluginReply(new FcpMessage("FCPPluginReply").put("Identifier", message.getField("Identifier")), null));
 				};
 			}
-			return FcpClientTest::doNothing;
+			return FakeFcpConnection::doNothing;
 		});
 		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
 			HashMap<String, String> parameters = new HashMap<>();
@@ -879,7 +1144,7 @@ public class FcpClientTest {
 					throw new RuntimeException(e);
 				}
 			}
-			return FcpClientTest::doNothing;
+			return FakeFcpConnection::doNothing;
 		});
 		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
 			Map<String, String> replies = fcpClient.sendPluginMessage("test.plugin.TestPlugin", new HashMap<>(), 12, new ByteArrayInputStream("Hello World!".getBytes(UTF_8)));
@@ -900,7 +1165,7 @@ public class FcpClientTest {
 					));
 				};
 			}
-			return FcpClientTest::doNothing;
+			return FakeFcpConnection::doNothing;
 		});
 		try (FcpClient fcpClient = new FcpClient(fcpConnection)) {
 			Map<String, String> reply = fcpClient.sendPluginMessage("test.plugin.TestPlugin", new HashMap<>());
@@ -1009,72 +1274,8 @@ public class FcpClientTest {
 		listener.receivedConfigData(connection, new ConfigData(configData));
 	}
 
-	private static void doNothing(FcpListener listener, FcpConnection connection) {
-		// do nothing.
-	}
-
-	private static FcpConnection createFcpConnection() {
-		return createFcpConnection(m -> FcpClientTest::doNothing);
-	}
-
-	private static FcpConnection createFcpConnectionReactingToSingleMessage(Predicate<FcpMessage> messageFilter, BiConsumer<FcpListener, FcpConnection> messageConsumer) {
-		return createFcpConnection(message -> {
-			if (messageFilter.test(message)) {
-				return messageConsumer;
-			}
-			return FcpClientTest::doNothing;
-		});
-	}
-
-	private static FcpConnection createFcpConnection(Function<FcpMessage, BiConsumer<FcpListener, FcpConnection>> messageConsumer) {
-		return new FcpConnection() {
-			private final List<FcpListener> listeners = new ArrayList<>();
-			private volatile boolean closed = false;
-
-			@Override
-			public void addFcpListener(FcpListener fcpListener) {
-				listeners.add(fcpListener);
-			}
-
-			@Override
-			public void removeFcpListener(FcpListener fcpListener) {
-				listeners.remove(fcpListener);
-			}
-
-			@Override
-			public boolean isClosed() {
-				return closed;
-			}
-
-			@Override
-			public void connect() throws IllegalStateException {
-			}
-
-			@Override
-			public void disconnect() {
-				close();
-			}
-
-			@Override
-			public void close() {
-				closed = true;
-			}
-
-			@Override
-			public void sendMessage(FcpMessage fcpMessage) {
-				BiConsumer<FcpListener, FcpConnection> listenerNotifier = messageConsumer.apply(fcpMessage);
-				listeners.forEach(listener -> new Thread(() -> listenerNotifier.accept(listener, this)).start());
-			}
-		};
-	}
-
-	private static Predicate<FcpMessage> named(String name) {
-		return message -> message.getName().equals(name);
-	}
-
-	private static Predicate<FcpMessage> withField(String name, String value) {
-		return message -> Objects.equals(message.getField(name), value);
-	}
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
 
 	@Rule
 	public final Timeout timeout = Timeout.seconds(5);
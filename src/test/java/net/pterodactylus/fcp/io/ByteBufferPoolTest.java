@@ -0,0 +1,60 @@
+package net.pterodactylus.fcp.io;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThrows;
+
+public class ByteBufferPoolTest {
+
+	@Test
+	public void acquiredBufferHasBufferSize() {
+		ByteBuffer buffer = byteBufferPool.acquire();
+		assertThat(buffer.capacity(), equalTo(1024));
+		assertThat(buffer.remaining(), equalTo(1024));
+	}
+
+	@Test
+	public void releasedBufferIsReusedAndCleared() {
+		ByteBuffer buffer = byteBufferPool.acquire();
+		buffer.put((byte) 1);
+		byteBufferPool.release(buffer);
+		ByteBuffer reusedBuffer = byteBufferPool.acquire();
+		assertThat(reusedBuffer, sameInstance(buffer));
+		assertThat(reusedBuffer.position(), equalTo(0));
+		assertThat(byteBufferPool.getAllocationCount(), equalTo(1L));
+	}
+
+	@Test
+	public void atMostMaxPooledBuffersAreKept() {
+		ByteBuffer[] buffers = new ByteBuffer[3];
+		for (int index = 0; index < buffers.length; index++) {
+			buffers[index] = byteBufferPool.acquire();
+		}
+		for (ByteBuffer buffer : buffers) {
+			byteBufferPool.release(buffer);
+		}
+		assertThat(byteBufferPool.getPooledBufferCount(), equalTo(2));
+	}
+
+	@Test
+	public void bufferOfOtherSizeIsNotPooled() {
+		ByteBuffer foreignBuffer = ByteBuffer.allocate(512);
+		byteBufferPool.release(foreignBuffer);
+		assertThat(byteBufferPool.getPooledBufferCount(), equalTo(0));
+		assertThat(byteBufferPool.acquire(), not(sameInstance(foreignBuffer)));
+	}
+
+	@Test
+	public void invalidBufferSizeIsRejected() {
+		assertThrows(IllegalArgumentException.class, () -> new ByteBufferPool(0, 1));
+	}
+
+	private final ByteBufferPool byteBufferPool = new ByteBufferPool(1024, 2);
+
+}
@@ -0,0 +1,88 @@
+package net.pterodactylus.fcp.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class FilePayloadInputStreamTest {
+
+	@Test
+	public void lengthIsTakenFromFile() throws IOException {
+		Path file = createFile(1234);
+		assertThat(new FilePayloadInputStream(file).getLength(), equalTo(1234L));
+	}
+
+	@Test
+	public void contentCanBeRead() throws IOException {
+		Path file = createFile(100000);
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		try (FilePayloadInputStream filePayloadInputStream = new FilePayloadInputStream(file)) {
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = filePayloadInputStream.read(buffer)) != -1) {
+				content.write(buffer, 0, read);
+			}
+			assertThat(filePayloadInputStream.getRemaining(), equalTo(0L));
+		}
+		assertThat(content.toByteArray(), equalTo(Files.readAllBytes(file)));
+	}
+
+	@Test
+	public void contentCanBeTransferredToChannel() throws IOException {
+		Path file = createFile(100000);
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		try (FilePayloadInputStream filePayloadInputStream = new FilePayloadInputStream(file)) {
+			filePayloadInputStream.read();
+			while (filePayloadInputStream.getRemaining() > 0) {
+				filePayloadInputStream.transferTo(Channels.newChannel(content));
+			}
+		}
+		byte[] expectedContent = Files.readAllBytes(file);
+		assertThat(content.toByteArray().length, equalTo(expectedContent.length - 1));
+		assertThat(content.toByteArray()[0], equalTo(expectedContent[1]));
+	}
+
+	@Test(expected = EOFException.class)
+	public void truncatedFileCausesException() throws IOException {
+		Path file = createFile(1000);
+		FilePayloadInputStream filePayloadInputStream = new FilePayloadInputStream(file);
+		Files.write(file, new byte[10]);
+		filePayloadInputStream.transferTo(Channels.newChannel(new ByteArrayOutputStream()));
+		filePayloadInputStream.transferTo(Channels.newChannel(new ByteArrayOutputStream()));
+	}
+
+	@Test
+	public void skippedBytesAreNotRead() throws IOException {
+		Path file = createFile(10);
+		try (FilePayloadInputStream filePayloadInputStream = new FilePayloadInputStream(file)) {
+			assertThat(filePayloadInputStream.skip(8), equalTo(8L));
+			assertThat(filePayloadInputStream.read(), equalTo(8));
+			assertThat(filePayloadInputStream.read(), equalTo(9));
+			assertThat(filePayloadInputStream.read(), equalTo(-1));
+		}
+	}
+
+	private Path createFile(int length) throws IOException {
+		byte[] content = new byte[length];
+		for (int index = 0; index < length; index++) {
+			content[index] = (byte) index;
+		}
+		Path file = temporaryFolder.newFile().toPath();
+		Files.write(file, content);
+		return file;
+	}
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+}
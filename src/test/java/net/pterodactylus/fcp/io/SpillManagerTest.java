@@ -0,0 +1,137 @@
+package net.pterodactylus.fcp.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.emptyArray;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class SpillManagerTest {
+
+	@Test
+	public void memoryCanBeReservedWithinBudget() {
+		SpillManager spillManager = new SpillManager(100, 100, null);
+		assertThat(spillManager.reserveMemory(60), is(true));
+		assertThat(spillManager.reserveMemory(40), is(true));
+		assertThat(spillManager.getBytesInMemory(), equalTo(100L));
+	}
+
+	@Test
+	public void memoryCanNotBeReservedBeyondBudget() {
+		SpillManager spillManager = new SpillManager(100, 100, null);
+		assertThat(spillManager.reserveMemory(60), is(true));
+		assertThat(spillManager.reserveMemory(41), is(false));
+		assertThat(spillManager.getBytesInMemory(), equalTo(60L));
+	}
+
+	@Test
+	public void releasedMemoryCanBeReservedAgain() {
+		SpillManager spillManager = new SpillManager(100, 100, null);
+		spillManager.reserveMemory(100);
+		spillManager.releaseMemory(100);
+		assertThat(spillManager.reserveMemory(100), is(true));
+	}
+
+	@Test
+	public void spillFileIsCreatedInSpillDirectory() throws IOException {
+		Path spillDirectory = temporaryFolder.getRoot().toPath().resolve("spill");
+		SpillManager spillManager = new SpillManager(100, 100, spillDirectory);
+		File spillFile = spillManager.createSpillFile();
+		assertThat(spillFile.getParentFile().toPath(), equalTo(spillDirectory));
+	}
+
+	@Test
+	public void tempInputStreamWithinBudgetIsKeptInMemoryUntilClosed() throws IOException {
+		SpillManager spillManager = new SpillManager(100, 100, temporaryFolder.getRoot().toPath());
+		TempInputStream tempInputStream = new TempInputStream(new ByteArrayInputStream(new byte[50]), 50, spillManager);
+		assertThat(spillManager.getBytesInMemory(), equalTo(50L));
+		assertThat(spillManager.getBytesOnDisk(), equalTo(0L));
+		assertThat(temporaryFolder.getRoot().list(), emptyArray());
+		tempInputStream.close();
+		tempInputStream.close();
+		assertThat(spillManager.getBytesInMemory(), equalTo(0L));
+	}
+
+	@Test
+	public void tempInputStreamBeyondBudgetIsSpilledToDiskUntilClosed() throws IOException {
+		SpillManager spillManager = new SpillManager(100, 100, temporaryFolder.getRoot().toPath());
+		TempInputStream inMemory = new TempInputStream(new ByteArrayInputStream(new byte[80]), 80, spillManager);
+		TempInputStream spilled = new TempInputStream(new ByteArrayInputStream(new byte[30]), 30, spillManager);
+		assertThat(spillManager.getBytesInMemory(), equalTo(80L));
+		assertThat(spillManager.getBytesOnDisk(), equalTo(30L));
+		assertThat(temporaryFolder.getRoot().list().length, equalTo(1));
+		spilled.close();
+		inMemory.close();
+		assertThat(spillManager.getBytesOnDisk(), equalTo(0L));
+		assertThat(spillManager.getBytesInMemory(), equalTo(0L));
+		assertThat(temporaryFolder.getRoot().list(), emptyArray());
+	}
+
+	@Test
+	public void tempInputStreamLongerThanMaximumIsSpilledToDisk() throws IOException {
+		SpillManager spillManager = new SpillManager(1000, 10, temporaryFolder.getRoot().toPath());
+		try (TempInputStream tempInputStream = new TempInputStream(new ByteArrayInputStream(new byte[11]), 11, spillManager)) {
+			assertThat(spillManager.getBytesOnDisk(), equalTo(11L));
+			assertThat(Files.size(temporaryFolder.getRoot().listFiles()[0].toPath()), equalTo(11L));
+		}
+	}
+
+	@Test
+	public void spillFileOfUnclosedStreamIsDeletedOnceStreamIsUnreachable() throws IOException, InterruptedException {
+		SpillManager spillManager = new SpillManager(0, 0, temporaryFolder.getRoot().toPath());
+		new TempInputStream(new ByteArrayInputStream(new byte[10]), 10, spillManager);
+		assertThat(temporaryFolder.getRoot().list().length, equalTo(1));
+		for (int attempt = 0; (attempt < 50) && (spillManager.getLeakCount() == 0); attempt++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertThat(spillManager.getLeakCount(), equalTo(1L));
+		assertThat(spillManager.getBytesOnDisk(), equalTo(0L));
+		assertThat(temporaryFolder.getRoot().list(), emptyArray());
+	}
+
+	@Test
+	public void closedStreamIsNotCountedAsLeak() throws IOException, InterruptedException {
+		SpillManager spillManager = new SpillManager(100, 100, temporaryFolder.getRoot().toPath());
+		new TempInputStream(new ByteArrayInputStream(new byte[10]), 10, spillManager).close();
+		for (int attempt = 0; attempt < 5; attempt++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertThat(spillManager.getLeakCount(), equalTo(0L));
+		assertThat(spillManager.getBytesInMemory(), equalTo(0L));
+	}
+
+	@Test
+	public void staleSpillFilesAreSweptOnCreation() throws IOException {
+		Path staleSpillFile = temporaryFolder.newFile("fcp-spill-123.bin").toPath();
+		Files.setLastModifiedTime(staleSpillFile, FileTime.fromMillis(0));
+		Path otherFile = temporaryFolder.newFile("other.bin").toPath();
+		Files.setLastModifiedTime(otherFile, FileTime.fromMillis(0));
+		new SpillManager(100, 100, temporaryFolder.getRoot().toPath());
+		assertThat(Files.exists(staleSpillFile), is(false));
+		assertThat(Files.exists(otherFile), is(true));
+	}
+
+	@Test
+	public void currentSpillFilesAreNotSwept() throws IOException {
+		SpillManager spillManager = new SpillManager(100, 100, temporaryFolder.getRoot().toPath());
+		File spillFile = spillManager.createSpillFile();
+		assertThat(new SpillManager(100, 100, temporaryFolder.getRoot().toPath()).sweepStaleSpillFiles(), equalTo(0));
+		assertThat(spillFile.exists(), is(true));
+	}
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+}
@@ -53,4 +53,16 @@ public class TempInputStreamTest {
 		checkTempInputStreamStoresPartOfAnotherStream(2, 1);
 	}
 
+	@Test
+	public void tempInputStreamTakesOverReservationOfData() throws IOException {
+		SpillManager spillManager = new SpillManager(4, 4, null);
+		assertThat(spillManager.reserveMemory(4), is(true));
+		TempInputStream cut = new TempInputStream(prepareArrayOfNBytes(4), spillManager);
+		assertThat(spillManager.getBytesInMemory(), is(4L));
+		assertThat(spillManager.reserveMemory(1), is(false));
+		assertThat(cut.read(), is(0));
+		cut.close();
+		assertThat(spillManager.getBytesInMemory(), is(0L));
+	}
+
 }